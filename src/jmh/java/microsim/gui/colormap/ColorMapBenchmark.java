@@ -0,0 +1,87 @@
+package microsim.gui.colormap;
+
+import java.awt.Color;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Mapping of cell values to colours, done for every cell of a grid layer on
+ * every repaint. Times are per value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ColorMapBenchmark {
+
+    private static final int VALUES = 4096;
+
+    /** Colours of the fixed map, and gradients of the range map. */
+    @Param({ "4", "256" })
+    private int colors;
+
+    private FixedColorMap fixed;
+    private RangeColorMap range;
+
+    private int[] intValues;
+    private double[] doubleValues;
+
+    @Setup
+    public void setup() {
+        fixed = new FixedColorMap();
+        for (int i = 0; i < colors; i++)
+            fixed.addColor(i, new Color(Color.HSBtoRGB((float) i / colors, 1f, 1f)));
+        range = new RangeColorMap(colors, 0., 1., Color.blue, Color.red);
+
+        Random random = new Random(42);
+        intValues = new int[VALUES];
+        doubleValues = new double[VALUES];
+        for (int i = 0; i < VALUES; i++) {
+            intValues[i] = random.nextInt(colors);
+            // Partly outside the range, which is clamped
+            doubleValues[i] = random.nextDouble() * 1.2 - 0.1;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int fixedInt() {
+        int sum = 0;
+        for (int i = 0; i < VALUES; i++)
+            sum += fixed.getColorIndex(intValues[i]);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int fixedDouble() {
+        int sum = 0;
+        for (int i = 0; i < VALUES; i++)
+            sum += fixed.getColorIndex((double) intValues[i]);
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int rangeDouble() {
+        int sum = 0;
+        for (int i = 0; i < VALUES; i++)
+            sum += range.getColorIndex(doubleValues[i]);
+        return sum;
+    }
+}
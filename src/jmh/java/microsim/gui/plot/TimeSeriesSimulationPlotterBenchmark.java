@@ -0,0 +1,80 @@
+package microsim.gui.plot;
+
+import java.util.concurrent.TimeUnit;
+
+import microsim.engine.SimulationEngine;
+import microsim.event.CommonEventType;
+import microsim.event.EventListener;
+import microsim.event.SingleTargetEvent;
+import microsim.exception.SimulationException;
+import microsim.statistics.IDoubleSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One simulation step of a model whose only event updates a time series
+ * plotter, which appends a point to each of its series. The plotter is never
+ * shown, as in batch runs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TimeSeriesSimulationPlotterBenchmark {
+
+    @Param({ "1", "10" })
+    private int series;
+
+    /** Points kept in each series, 0 for all of them. */
+    @Param({ "0", "1000" })
+    private int maxSamples;
+
+    private SimulationEngine engine;
+    private TimeSeriesSimulationPlotter plotter;
+
+    @Setup(Level.Trial)
+    public void schedule() {
+        engine = SimulationEngine.getInstance();
+        // Events cannot be removed from the queue, so a single event is
+        // scheduled and forwarded to the plotter of the current iteration
+        EventListener forwarder = new EventListener() {
+            public void onEvent(Enum<?> type) {
+                plotter.onEvent(type);
+            }
+        };
+        engine.getEventQueue().scheduleRepeat(new SingleTargetEvent(forwarder, CommonEventType.Update), 0., 0, 1.);
+    }
+
+    @Setup(Level.Iteration)
+    public void createPlotter() {
+        // A new plotter for each iteration, so that series do not grow for
+        // the whole run
+        plotter = new TimeSeriesSimulationPlotter("Benchmark", "Value", true, maxSamples);
+        for (int i = 0; i < series; i++) {
+            final double offset = i;
+            plotter.addSeries("Series " + i, new IDoubleSource() {
+                public double getDoubleValue(Enum<?> variableID) {
+                    return offset + Math.sin(engine.getTime());
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public void step() throws SimulationException {
+        engine.step();
+    }
+}
@@ -0,0 +1,56 @@
+package microsim.gui.plot;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Binning of a weighted sample, as done by the Weighted_HistogramSimulationPlotter
+ * on every update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class Weighted_HistogramDatasetBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    private int size;
+
+    @Param({ "10", "100" })
+    private int bins;
+
+    private double[] values;
+    private double[] weightings;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        values = new double[size];
+        weightings = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextGaussian() * 10. + 50.;
+            weightings[i] = 0.5 + random.nextDouble();
+        }
+    }
+
+    @Benchmark
+    public Weighted_HistogramDataset addSeries() {
+        Weighted_HistogramDataset dataset = new Weighted_HistogramDataset();
+        dataset.addSeries("Sample", values, weightings, bins);
+        return dataset;
+    }
+}
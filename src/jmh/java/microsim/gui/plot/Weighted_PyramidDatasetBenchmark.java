@@ -0,0 +1,74 @@
+package microsim.gui.plot;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import microsim.gui.plot.Weighted_PyramidPlotter.GroupName;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Grouping of a pair of weighted samples into age groups, as done by the
+ * Weighted_PyramidPlotter on every update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class Weighted_PyramidDatasetBenchmark {
+
+    private static final int MAXIMUM_AGE = 100;
+
+    @Param({ "1000", "100000", "1000000" })
+    private int size;
+
+    /** Width of the age groups in years: 21 groups of 5 years or 101 of 1. */
+    @Param({ "5", "1" })
+    private int groupWidth;
+
+    private GroupName[] groupNames;
+    private double[][] groupRanges;
+    private String[] keys = { "Males", "Females" };
+    private double[][] values;
+    private double[][] weightings;
+
+    @Setup
+    public void setup() {
+        int groups = MAXIMUM_AGE / groupWidth + 1;
+        groupNames = new GroupName[groups];
+        groupRanges = new double[groups][2];
+        for (int g = 0; g < groups; g++) {
+            groupNames[g] = new GroupName(String.valueOf(g * groupWidth), true);
+            groupRanges[g][0] = g * groupWidth;
+            groupRanges[g][1] = g * groupWidth + groupWidth - 1;
+        }
+
+        Random random = new Random(42);
+        values = new double[2][size];
+        weightings = new double[2][size];
+        for (int s = 0; s < 2; s++)
+            for (int i = 0; i < size; i++) {
+                values[s][i] = random.nextInt(MAXIMUM_AGE + 1);
+                weightings[s][i] = 0.5 + random.nextDouble();
+            }
+    }
+
+    @Benchmark
+    public Weighted_PyramidDataset addSeries() {
+        Weighted_PyramidDataset dataset = new Weighted_PyramidDataset(groupNames, groupRanges, 1.);
+        dataset.addSeries(keys, values, weightings);
+        return dataset;
+    }
+}
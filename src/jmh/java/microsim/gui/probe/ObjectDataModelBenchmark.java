@@ -0,0 +1,70 @@
+package microsim.gui.probe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Refresh of a probe on a collection of agents, done on every update of an
+ * open probe window, with and without a filter query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ObjectDataModelBenchmark {
+
+    @Param({ "1000", "100000" })
+    private int size;
+
+    /** The filter query, none if empty. */
+    @Param({ "", "age > 50 and employed" })
+    private String query;
+
+    private ObjectDataModel model;
+
+    /** Not of interest for users. The probed agents. */
+    public static class Person {
+        public int age;
+        public double income;
+        public boolean employed;
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        List<Person> persons = new ArrayList<Person>(size);
+        for (int i = 0; i < size; i++) {
+            Person person = new Person();
+            person.age = random.nextInt(100);
+            person.income = random.nextDouble() * 50000.;
+            person.employed = random.nextBoolean();
+            persons.add(person);
+        }
+
+        model = new ObjectDataModel(persons);
+        if (query.length() > 0)
+            model.setQuery(ProbeQuery.compile(query, Person.class));
+    }
+
+    @Benchmark
+    public ObjectDataModel update() {
+        model.update();
+        return model;
+    }
+}
@@ -0,0 +1,93 @@
+package microsim.gui.space;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import microsim.gui.colormap.RangeColorMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Repaint of a double grid layer on an off-screen image, after a share of its
+ * cells changed as between two simulation steps. The drawer only redraws the
+ * cells whose colour changed, so the cost depends on the churn as much as on
+ * the grid size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class LayerDblGridDrawerBenchmark {
+
+    @Param({ "100", "500" })
+    private int size;
+
+    @Param({ "1", "4" })
+    private int cellLength;
+
+    /** Share of the cells changing colour between two repaints. */
+    @Param({ "0", "0.1", "1" })
+    private double churn;
+
+    @Param({ "false", "true" })
+    private boolean transparent;
+
+    private double[] matrix;
+    private int[] changing;
+    private LayerDblGridDrawer drawer;
+
+    private BufferedImage target;
+    private Graphics2D graphics;
+
+    @Setup
+    public void setup() {
+        RangeColorMap colors = new RangeColorMap(64, 0., 1., Color.blue, Color.red);
+        Random random = new Random(42);
+        matrix = new double[size * size];
+        for (int i = 0; i < matrix.length; i++)
+            matrix[i] = random.nextDouble();
+        changing = new int[(int) (churn * matrix.length)];
+        for (int i = 0; i < changing.length; i++)
+            changing[i] = churn == 1. ? i : random.nextInt(matrix.length);
+
+        if (transparent)
+            drawer = new LayerDblGridDrawer("Benchmark", matrix, size, size, colors, Color.blue);
+        else
+            drawer = new LayerDblGridDrawer("Benchmark", matrix, size, size, colors);
+
+        target = new BufferedImage(size * cellLength, size * cellLength, BufferedImage.TYPE_INT_RGB);
+        graphics = target.createGraphics();
+        // Builds the buffer image of the drawer
+        drawer.paint(graphics, cellLength);
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage paint() {
+        // Moves the changing cells to the opposite end of the colour range
+        for (int i = 0; i < changing.length; i++)
+            matrix[changing[i]] = 1. - matrix[changing[i]];
+        drawer.paint(graphics, cellLength);
+        return target;
+    }
+}
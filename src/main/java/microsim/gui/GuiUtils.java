@@ -94,6 +94,8 @@ public class GuiUtils {
     }
 
     public static void addWindow(JInternalFrame window) {
+        if (MicrosimShell.currentShell == null) // Headless run, see HeadlessRenderer
+            return;
 
         final JDesktopPane desk = MicrosimShell.currentShell.getJDesktopPane();
 
@@ -150,6 +152,8 @@ public class GuiUtils {
         // SimulationWindow win = new SimulationWindow(null, window.getTitle(),
         // window);
         // win.setDefaultPosition(window.getBounds());
+        if (MicrosimShell.currentShell == null)
+            return;
 
         MicrosimShell.currentShell.getJDesktopPane().add(window);
         // Rectangle r = win.getDefaultPosition();
@@ -0,0 +1,196 @@
+package microsim.gui;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.GraphicsEnvironment;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JInternalFrame;
+import javax.swing.JPanel;
+
+import microsim.engine.SimulationEngine;
+import microsim.event.CommonEventType;
+import microsim.event.EventListener;
+import microsim.gui.shell.MicrosimShell;
+import microsim.gui.space.LayeredSurfaceFrame;
+import microsim.gui.utils.ImageGenerator;
+
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+
+/**
+ * Renders plotting windows off-screen, so that batch runs without a
+ * MicrosimShell (for instance on a cluster, with
+ * <code>-Djava.awt.headless=true</code>) produce the same charts as
+ * interactive runs.
+ * <p>
+ * Plotters are built and scheduled as usual, so they keep their data up to
+ * date, but they are never shown: instead of calling
+ * {@link GuiUtils#addWindow(JInternalFrame)} they are added to a renderer,
+ * which writes a snapshot of each of them whenever it receives an
+ * <code>Update</code> event, or when {@link #snapshot()} is called. Charts are
+ * drawn directly from their JFreeChart object and layered surfaces from their
+ * panel, on the calling thread, without any Swing window or EDT involved.
+ *
+ * <pre>
+ * HeadlessRenderer renderer = new HeadlessRenderer("output/charts");
+ * renderer.add(populationPlotter);
+ * renderer.add(spaceFrame);
+ * getEngine().getEventQueue().scheduleRepeat(new SingleTargetEvent(renderer, CommonEventType.Update), 10., 0, 10.);
+ * </pre>
+ *
+ * Files are named after the window title and the simulation time, e.g.
+ * <code>Population_t10.png</code>. In multi-run jobs use a different directory
+ * for each run.
+ */
+public class HeadlessRenderer implements EventListener {
+
+    private final File directory;
+
+    private final List<JInternalFrame> windows = new ArrayList<JInternalFrame>();
+    private final List<String> names = new ArrayList<String>();
+
+    private String format = "png";
+    private int width = 800;
+    private int height = 600;
+
+    /**
+     * Create a renderer writing into the given directory, which is created if
+     * needed.
+     *
+     * @param directory The output directory.
+     */
+    public HeadlessRenderer(String directory) {
+        this.directory = new File(directory);
+        if (!this.directory.exists() && !this.directory.mkdirs())
+            System.err.println("Cannot create snapshot directory " + directory);
+    }
+
+    /**
+     * Check if windows can be shown, i.e. if a MicrosimShell is running on a
+     * graphical environment.
+     *
+     * @return True if plotters should be added to a HeadlessRenderer rather
+     *         than to the GUI.
+     */
+    public static boolean isHeadless() {
+        return GraphicsEnvironment.isHeadless() || MicrosimShell.currentShell == null;
+    }
+
+    /**
+     * Add a plotting window to be rendered. Supported windows are the
+     * microsim.gui.plot plotters, the LayeredSurfaceFrame and any internal
+     * frame whose content pane is a ChartPanel or a JPanel.
+     *
+     * @param window The window to be rendered.
+     */
+    public void add(JInternalFrame window) {
+        String name = window.getTitle() == null ? "" : window.getTitle().replaceAll("[^A-Za-z0-9_\\-]+", "_");
+        if (name.length() == 0)
+            name = window.getClass().getSimpleName();
+        if (names.contains(name))
+            name = name + "_" + windows.size();
+
+        windows.add(window);
+        names.add(name);
+    }
+
+    /**
+     * Remove a window from the renderer.
+     *
+     * @param window The window to be removed.
+     */
+    public void remove(JInternalFrame window) {
+        int i = windows.indexOf(window);
+        if (i >= 0) {
+            windows.remove(i);
+            names.remove(i);
+        }
+    }
+
+    /**
+     * Set the output format.
+     *
+     * @param format "svg" or any format supported by ImageIO (see
+     *               {@link ImageGenerator#supportedFormats()}). Default is png.
+     */
+    public void setFormat(String format) {
+        this.format = format.toLowerCase();
+    }
+
+    /**
+     * Set the size of chart snapshots. Layered surfaces are always rendered at
+     * the size of their whole grid.
+     *
+     * @param width  The width in pixels.
+     * @param height The height in pixels.
+     */
+    public void setSize(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Snapshot size must be positive.");
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * React to system events.
+     *
+     * @param type Reacts to the CommonEventType.Update event writing a snapshot.
+     */
+    public void onEvent(Enum<?> type) {
+        if (type == CommonEventType.Update)
+            snapshot();
+    }
+
+    /** Write a snapshot of every window at the current simulation time. */
+    public void snapshot() {
+        double time = SimulationEngine.getInstance().getTime();
+        String suffix = "_t" + (time == Math.rint(time) ? String.valueOf((long) time) : String.valueOf(time));
+
+        for (int i = 0; i < windows.size(); i++)
+            render(windows.get(i), new File(directory, names.get(i) + suffix + "." + format).getPath());
+    }
+
+    private void render(JInternalFrame window, String fileName) {
+        boolean svg = format.equals("svg");
+        Container content = window.getContentPane();
+
+        if (content instanceof ChartPanel) {
+            JFreeChart chart = ((ChartPanel) content).getChart();
+            if (svg)
+                ImageGenerator.save(chart, width, height, fileName);
+            else
+                ImageGenerator.saveImage(chart, width, height, fileName, format);
+            return;
+        }
+
+        JPanel panel;
+        if (window instanceof LayeredSurfaceFrame)
+            panel = ((LayeredSurfaceFrame) window).getLayeredPanel();
+        else if (content instanceof JPanel) {
+            // Never shown, so it has to be laid out by hand
+            panel = (JPanel) content;
+            panel.setSize(width, height);
+            layout(panel);
+        } else {
+            System.err.println("Cannot render window " + window.getTitle());
+            return;
+        }
+
+        if (svg)
+            ImageGenerator.save(panel, fileName);
+        else
+            ImageGenerator.saveImage(panel, fileName, format);
+    }
+
+    private static void layout(Component c) {
+        if (c instanceof Container) {
+            Container container = (Container) c;
+            container.doLayout();
+            for (Component child : container.getComponents())
+                layout(child);
+        }
+    }
+}
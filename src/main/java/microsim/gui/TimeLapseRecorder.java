@@ -0,0 +1,485 @@
+package microsim.gui;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JInternalFrame;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import microsim.event.CommonEventType;
+import microsim.event.EventListener;
+import microsim.gui.space.LayeredSurfaceFrame;
+import microsim.gui.utils.APNGWriter;
+import microsim.gui.utils.ImageGenerator;
+import microsim.gui.utils.RenderCost;
+
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+
+/**
+ * Records plotters and space views as a time-lapse while the simulation runs,
+ * either as a numbered image sequence, e.g. <code>Population_000001.png</code>,
+ * ready to be turned into a video, or as one animated PNG per window.
+ * <p>
+ * Every <code>interval</code> <code>Update</code> events each window is drawn
+ * into an image taken from a small pool, and handed to a background thread
+ * for encoding. A window shown on screen is drawn on the event dispatch
+ * thread, which also paints it; a window not shown is drawn on the thread
+ * sending the event, as {@link HeadlessRenderer} does, so the recorder works
+ * with or without a MicrosimShell. The simulation never waits: when the
+ * previous frame of a window is still waiting for the event dispatch thread,
+ * or all its images are still queued for encoding, the frame is skipped, and
+ * counted, instead. Recording is not counted in the GUI cost of the windows.
+ * <pre>
+ * TimeLapseRecorder recorder = new TimeLapseRecorder("output/lapse");
+ * recorder.setInterval(5);
+ * recorder.setAnimated(true);
+ * recorder.add(spaceFrame);
+ * getEngine().getEventQueue().scheduleRepeat(new SingleTargetEvent(recorder, CommonEventType.Update), 0., 0, 1.);
+ * </pre>
+ * {@link #finish()} must be called at the end of the run to write the frames
+ * still queued and complete the animations.
+ */
+public class TimeLapseRecorder implements EventListener {
+
+    private final File directory;
+
+    private final List<Track> tracks = new ArrayList<Track>();
+
+    private int interval = 1;
+    private String format = "png";
+    private boolean animated = false;
+    private int frameRate = 10;
+    private int buffers = 3;
+    private int width = 800;
+    private int height = 600;
+
+    private long updates = 0;
+
+    // Changed when finishing on the event dispatch thread, dropping the
+    // frames still waiting to be drawn there
+    private volatile int epoch = 0;
+
+    private final ThreadPoolExecutor encoder;
+
+    /**
+     * Create a recorder writing into the given directory, which is created if
+     * needed.
+     *
+     * @param directory The output directory.
+     */
+    public TimeLapseRecorder(String directory) {
+        this.directory = new File(directory);
+        if (!this.directory.exists() && !this.directory.mkdirs())
+            System.err.println("Cannot create time-lapse directory " + directory);
+
+        // A single thread keeps the frames of each window in order; frames
+        // finding the queue full are skipped
+        encoder = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(64),
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Time-lapse encoder");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+
+    /**
+     * Add a plotting window to be recorded. Supported windows are the same as
+     * for {@link HeadlessRenderer#add(JInternalFrame)}.
+     *
+     * @param window The window to be recorded.
+     */
+    public synchronized void add(JInternalFrame window) {
+        Container content = window.getContentPane();
+        String title = window.getTitle();
+        if (content instanceof ChartPanel)
+            add(new Track(name(title, window), window, ((ChartPanel) content).getChart(), null));
+        else if (window instanceof LayeredSurfaceFrame)
+            add(new Track(name(title, window), window, null, ((LayeredSurfaceFrame) window).getLayeredPanel()));
+        else if (content instanceof JPanel)
+            add(new Track(name(title, window), window, null, (JPanel) content));
+        else
+            throw new IllegalArgumentException("Cannot record window " + title);
+    }
+
+    /**
+     * Add a panel to be recorded, typically a LayeredSurfacePanel.
+     *
+     * @param panel The panel.
+     * @param name  The name of its files.
+     */
+    public synchronized void add(JPanel panel, String name) {
+        add(new Track(name(name, panel), panel, null, panel));
+    }
+
+    private void add(Track track) {
+        tracks.add(track);
+    }
+
+    private String name(String title, Object source) {
+        String name = title == null ? "" : title.replaceAll("[^A-Za-z0-9_\\-]+", "_");
+        if (name.length() == 0)
+            name = source.getClass().getSimpleName();
+        for (Track track : tracks)
+            if (track.name.equals(name))
+                return name + "_" + tracks.size();
+        return name;
+    }
+
+    /**
+     * Record a frame every given number of updates. Default is 1.
+     *
+     * @param interval The number of <code>Update</code> events between frames.
+     */
+    public void setInterval(int interval) {
+        if (interval <= 0)
+            throw new IllegalArgumentException("Interval must be positive.");
+        this.interval = interval;
+    }
+
+    /**
+     * Set the format of image sequences.
+     *
+     * @param format Any format supported by ImageIO (see
+     *               {@link ImageGenerator#supportedFormats()}). Default is png.
+     */
+    public void setFormat(String format) {
+        this.format = format.toLowerCase();
+    }
+
+    /**
+     * Write one animated PNG per window, <code>&lt;name&gt;.png</code>, instead
+     * of an image sequence. Must be set before recording.
+     *
+     * @param animated True for animated PNG files.
+     * @param frameRate The frames shown per second. Default is 10.
+     */
+    public void setAnimated(boolean animated, int frameRate) {
+        if (frameRate <= 0)
+            throw new IllegalArgumentException("Frame rate must be positive.");
+        this.animated = animated;
+        this.frameRate = frameRate;
+    }
+
+    /**
+     * Write one animated PNG per window, at the frame rate set before or 10
+     * frames per second.
+     *
+     * @param animated True for animated PNG files.
+     */
+    public void setAnimated(boolean animated) {
+        setAnimated(animated, frameRate);
+    }
+
+    /**
+     * Set the size of chart frames. Panels are recorded at their own size.
+     * Must be set before recording.
+     *
+     * @param width  The width in pixels.
+     * @param height The height in pixels.
+     */
+    public void setSize(int width, int height) {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Frame size must be positive.");
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Set how many frames of each window may wait for encoding before frames
+     * are skipped. Default is 3. Must be set before recording.
+     *
+     * @param buffers The number of images pooled for each window.
+     */
+    public void setBuffers(int buffers) {
+        if (buffers <= 0)
+            throw new IllegalArgumentException("Buffers must be positive.");
+        this.buffers = buffers;
+    }
+
+    /**
+     * React to system events.
+     *
+     * @param type Reacts to the CommonEventType.Update event recording a
+     *             frame every <code>interval</code> updates.
+     */
+    public void onEvent(Enum<?> type) {
+        if (type == CommonEventType.Update && updates++ % interval == 0)
+            capture();
+    }
+
+    /** Record a frame of every window now. */
+    public synchronized void capture() {
+        for (Track track : tracks)
+            track.capture();
+    }
+
+    /**
+     * Wait for the queued frames to be written and complete the animated PNG
+     * files. Recording can go on afterwards, but into new animations
+     * replacing the completed ones. Called on the event dispatch thread, the
+     * frames still waiting to be drawn there are dropped.
+     */
+    public void finish() {
+        boolean interrupted = false;
+        if (SwingUtilities.isEventDispatchThread())
+            epoch++;
+        else if (hasPendingFrames()) {
+            // The frames waiting for the event dispatch thread are drawn and
+            // queued before the animations are completed
+            try {
+                SwingUtilities.invokeAndWait(new Runnable() {
+                    public void run() {
+                    }
+                });
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (InvocationTargetException e) {
+                // Nothing to fail
+            }
+        }
+        complete();
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private synchronized boolean hasPendingFrames() {
+        for (Track track : tracks)
+            if (track.pending.get())
+                return true;
+        return false;
+    }
+
+    private synchronized void complete() {
+        Runnable close = new Runnable() {
+            public void run() {
+                for (Track track : tracks)
+                    track.close();
+            }
+        };
+        boolean interrupted = false;
+        Future<?> done = null;
+        while (done == null) {
+            try {
+                done = encoder.submit(close);
+            } catch (RejectedExecutionException e) {
+                // Queue full, wait for the encoder to catch up
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e1) {
+                    interrupted = true;
+                }
+            }
+        }
+        while (true) {
+            try {
+                done.get();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } catch (ExecutionException e) {
+                System.err.println("Error completing time-lapse: " + e.getCause());
+                break;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /** @return The frames written so far, for all windows. */
+    public synchronized int getRecordedFrames() {
+        int frames = 0;
+        for (Track track : tracks)
+            frames += track.recorded.get();
+        return frames;
+    }
+
+    /** @return The frames skipped so far because the encoder was behind. */
+    public synchronized int getSkippedFrames() {
+        int frames = 0;
+        for (Track track : tracks)
+            frames += track.skipped.get();
+        return frames;
+    }
+
+    /**
+     * Not of interest for users. The frames of one window, with their pool of
+     * images. Images are drawn on the recording thread and encoded on the
+     * encoder thread, which hands them back to the pool.
+     */
+    private class Track {
+
+        private final String name;
+        private final Component window;
+        private final JFreeChart chart;
+        private final JPanel panel;
+
+        private final BlockingQueue<BufferedImage> pool;
+        private int allocated = 0;
+        private int frameWidth, frameHeight;
+
+        // Encoder thread only
+        private APNGWriter animation;
+        private int sequence = 0;
+        private volatile boolean failed = false;
+
+        private final AtomicInteger recorded = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+
+        // A frame is waiting to be drawn on the event dispatch thread
+        private final AtomicBoolean pending = new AtomicBoolean();
+
+        Track(String name, Component window, JFreeChart chart, JPanel panel) {
+            this.name = name;
+            this.window = window;
+            this.chart = chart;
+            this.panel = panel;
+            pool = new ArrayBlockingQueue<BufferedImage>(buffers);
+        }
+
+        void capture() {
+            if (failed)
+                return;
+            // A shown window is painted by the event dispatch thread, drawing
+            // it from another thread would race on the state of its drawers
+            boolean onEdt = window.isShowing() && !SwingUtilities.isEventDispatchThread();
+            if (onEdt && pending.get()) {
+                skipped.incrementAndGet();
+                return;
+            }
+            BufferedImage image = pool.poll();
+            if (image == null) {
+                if (allocated == buffers) {
+                    skipped.incrementAndGet();
+                    return;
+                }
+                if (allocated == 0) {
+                    // The size of the first frame is kept for the whole run
+                    Dimension size = chart != null ? new Dimension(width, height) : panelSize();
+                    frameWidth = Math.max(1, size.width);
+                    frameHeight = Math.max(1, size.height);
+                }
+                image = new BufferedImage(frameWidth, frameHeight, BufferedImage.TYPE_INT_RGB);
+                allocated++;
+            }
+
+            final BufferedImage frame = image;
+            if (!onEdt) {
+                draw(frame);
+                submit(frame);
+                return;
+            }
+
+            pending.set(true);
+            final int captureEpoch = epoch;
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    try {
+                        if (captureEpoch != epoch) {
+                            pool.offer(frame);
+                            skipped.incrementAndGet();
+                            return;
+                        }
+                        draw(frame);
+                        submit(frame);
+                    } finally {
+                        pending.set(false);
+                    }
+                }
+            });
+        }
+
+        private void submit(final BufferedImage frame) {
+            try {
+                encoder.execute(new Runnable() {
+                    public void run() {
+                        try {
+                            encode(frame);
+                        } finally {
+                            pool.offer(frame);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                pool.offer(frame);
+                skipped.incrementAndGet();
+            }
+        }
+
+        private Dimension panelSize() {
+            Dimension size = panel.getSize();
+            if (size.width <= 0 || size.height <= 0)
+                size = panel.getPreferredSize();
+            return size;
+        }
+
+        private void draw(BufferedImage image) {
+            final Graphics2D graphics = image.createGraphics();
+            graphics.setColor(Color.black);
+            graphics.fillRect(0, 0, frameWidth, frameHeight);
+            RenderCost.drawUnmeasured(new Runnable() {
+                public void run() {
+                    if (chart != null)
+                        chart.draw(graphics, new Rectangle2D.Double(0, 0, frameWidth, frameHeight));
+                    else
+                        panel.paint(graphics);
+                }
+            });
+            graphics.dispose();
+        }
+
+        private void encode(BufferedImage frame) {
+            if (failed)
+                return;
+            try {
+                if (animated) {
+                    if (animation == null)
+                        animation = new APNGWriter(new File(directory, name + ".png"), frameWidth, frameHeight,
+                                frameRate);
+                    animation.writeFrame(frame);
+                } else
+                    ImageGenerator.write(frame, format,
+                            new File(directory, name + "_" + String.format("%06d", ++sequence) + "." + format));
+                recorded.incrementAndGet();
+            } catch (IOException e) {
+                // Stop recording the window rather than reporting every frame
+                failed = true;
+                System.err.println("Error recording " + name + ", time-lapse stopped: " + e.getMessage());
+            }
+        }
+
+        void close() {
+            if (animation == null)
+                return;
+            try {
+                animation.close();
+            } catch (IOException e) {
+                System.err.println("Error completing " + animation.getFile() + ": " + e.getMessage());
+            }
+            animation = null;
+        }
+    }
+}
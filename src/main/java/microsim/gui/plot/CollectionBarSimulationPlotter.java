@@ -7,6 +7,8 @@ import javax.swing.JInternalFrame;
 
 import microsim.event.CommonEventType;
 import microsim.event.EventListener;
+import microsim.gui.utils.RenderCost;
+import microsim.gui.utils.RenderCostRegistry;
 import microsim.statistics.IDoubleArraySource;
 import microsim.statistics.IFloatArraySource;
 import microsim.statistics.IIntArraySource;
@@ -59,6 +61,8 @@ public class CollectionBarSimulationPlotter extends JInternalFrame implements Ev
 
     private static final long serialVersionUID = 1L;
 
+    private final RenderCost renderCost = RenderCostRegistry.register(this);
+
     private ArrayList<ArraySource> sources;
     private ArrayList<String> categories;
 
@@ -198,6 +202,7 @@ public class CollectionBarSimulationPlotter extends JInternalFrame implements Ev
 
         // NOW DO SOME OPTIONAL CUSTOMISATION OF THE CHART...
         chart.setBackgroundPaint(Color.white);
+        chart.addProgressListener(renderCost);
 
         // get a reference to the plot for further customisation...
         final CategoryPlot plot = chart.getCategoryPlot();
@@ -229,8 +234,10 @@ public class CollectionBarSimulationPlotter extends JInternalFrame implements Ev
     }
 
     public void onEvent(Enum<?> type) {
-        if (type instanceof CommonEventType && type.equals(CommonEventType.Update)) {
+        if (type instanceof CommonEventType && type.equals(CommonEventType.Update) && renderCost.shouldUpdate()) {
+            long start = System.nanoTime();
             update();
+            renderCost.recordSampling(System.nanoTime() - start);
         }
     }
 
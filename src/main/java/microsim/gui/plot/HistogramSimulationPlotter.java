@@ -8,6 +8,8 @@ import javax.swing.JInternalFrame;
 import microsim.engine.SimulationEngine;
 import microsim.event.CommonEventType;
 import microsim.event.EventListener;
+import microsim.gui.utils.RenderCost;
+import microsim.gui.utils.RenderCostRegistry;
 import microsim.statistics.IDoubleArraySource;
 import microsim.statistics.IFloatArraySource;
 import microsim.statistics.IIntArraySource;
@@ -66,6 +68,8 @@ public class HistogramSimulationPlotter extends JInternalFrame implements EventL
 
     private static final long serialVersionUID = 1L;
 
+    private final RenderCost renderCost = RenderCostRegistry.register(this);
+
     final JFreeChart chart;
 
     private ArrayList<ArraySource> sources;
@@ -177,6 +181,7 @@ public class HistogramSimulationPlotter extends JInternalFrame implements EventL
 
         // NOW DO SOME OPTIONAL CUSTOMISATION OF THE CHART...
         chart.setBackgroundPaint(Color.white);
+        chart.addProgressListener(renderCost);
 
         // get a reference to the plot for further customisation...
         final XYPlot plot = chart.getXYPlot();
@@ -207,8 +212,10 @@ public class HistogramSimulationPlotter extends JInternalFrame implements EventL
     }
 
     public void onEvent(Enum<?> type) {
-        if (type instanceof CommonEventType && type.equals(CommonEventType.Update)) {
+        if (type instanceof CommonEventType && type.equals(CommonEventType.Update) && renderCost.shouldUpdate()) {
+            long start = System.nanoTime();
             update();
+            renderCost.recordSampling(System.nanoTime() - start);
         }
     }
 
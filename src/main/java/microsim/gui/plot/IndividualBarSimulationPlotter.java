@@ -8,6 +8,8 @@ import javax.swing.JInternalFrame;
 
 import microsim.event.CommonEventType;
 import microsim.event.EventListener;
+import microsim.gui.utils.RenderCost;
+import microsim.gui.utils.RenderCostRegistry;
 import microsim.gui.colormap.ColorMap;
 import microsim.gui.colormap.FixedColorMap;
 import microsim.reflection.ReflectionUtils;
@@ -66,6 +68,8 @@ public class IndividualBarSimulationPlotter extends JInternalFrame implements Ev
 
     private static final long serialVersionUID = 1L;
 
+    private final RenderCost renderCost = RenderCostRegistry.register(this);
+
     private ArrayList<Source> sources;
     private ArrayList<String> categories;
 
@@ -102,6 +106,7 @@ public class IndividualBarSimulationPlotter extends JInternalFrame implements Ev
 
         // NOW DO SOME OPTIONAL CUSTOMISATION OF THE CHART...
         chart.setBackgroundPaint(Color.white);
+        chart.addProgressListener(renderCost);
 
         // get a reference to the plot for further customisation...
         final CategoryPlot plot = chart.getCategoryPlot();
@@ -135,8 +140,10 @@ public class IndividualBarSimulationPlotter extends JInternalFrame implements Ev
     }
 
     public void onEvent(Enum<?> type) {
-        if (type instanceof CommonEventType && type.equals(CommonEventType.Update)) {
+        if (type instanceof CommonEventType && type.equals(CommonEventType.Update) && renderCost.shouldUpdate()) {
+            long start = System.nanoTime();
             update();
+            renderCost.recordSampling(System.nanoTime() - start);
         }
     }
 
@@ -10,6 +10,8 @@ import javax.swing.JInternalFrame;
 
 import microsim.event.CommonEventType;
 import microsim.event.EventListener;
+import microsim.gui.utils.RenderCost;
+import microsim.gui.utils.RenderCostRegistry;
 import microsim.reflection.ReflectionUtils;
 import microsim.statistics.IDoubleSource;
 import microsim.statistics.IFloatSource;
@@ -76,6 +78,8 @@ public class ScatterplotSimulationPlotterRefreshable extends JInternalFrame impl
 
     private static final long serialVersionUID = 1L;
 
+    private final RenderCost renderCost = RenderCostRegistry.register(this);
+
     private ArrayList<Pair<Source, Source>> sources;
 
     private XYSeriesCollection dataset;
@@ -160,6 +164,7 @@ public class ScatterplotSimulationPlotterRefreshable extends JInternalFrame impl
 
         // NOW DO SOME OPTIONAL CUSTOMISATION OF THE CHART...
         chart.setBackgroundPaint(Color.white);
+        chart.addProgressListener(renderCost);
 
         // get a reference to the plot for further customisation...
         final XYPlot plot = chart.getXYPlot();
@@ -188,11 +193,19 @@ public class ScatterplotSimulationPlotterRefreshable extends JInternalFrame impl
 
     public void onEvent(Enum<?> type) {
         if (type instanceof CommonEventType && type.equals(CommonEventType.Update)) {
-            update();
+            // Points are always collected; a throttled update only skips the redraw
+            boolean notify = renderCost.shouldUpdate();
+            long start = System.nanoTime();
+            update(notify);
+            renderCost.recordSampling(System.nanoTime() - start);
         }
     }
 
     public void update() {
+        update(true);
+    }
+
+    private void update(boolean notify) {
         double x = 0.0, y = 0.0;
         for (int i = 0; i < sources.size(); i++) {
             Source source_X = sources.get(i).getFirst();
@@ -200,7 +213,7 @@ public class ScatterplotSimulationPlotterRefreshable extends JInternalFrame impl
             XYSeries series = dataset.getSeries(i);
             x = source_X.getDouble();
             y = source_Y.getDouble();
-            series.add(x, y);
+            series.add(x, y, notify);
             // if (maxSamples > 0 && series.getItemCount() > maxSamples ) { //Should no
             // longer be necessary if using XYSeries.setMaximumItemCount()
             // XYDataItem xy = series.remove(0);
@@ -10,6 +10,8 @@ import javax.swing.JInternalFrame;
 import microsim.engine.SimulationEngine;
 import microsim.event.CommonEventType;
 import microsim.event.EventListener;
+import microsim.gui.utils.RenderCost;
+import microsim.gui.utils.RenderCostRegistry;
 import microsim.reflection.ReflectionUtils;
 import microsim.statistics.IDoubleSource;
 import microsim.statistics.IFloatSource;
@@ -72,12 +74,16 @@ public class TimeSeriesSimulationPlotter extends JInternalFrame implements Event
 
     private XYSeriesCollection dataset;
 
+    private XYSeriesCollection fixedDataset;
+
     private XYPlot plot;
 
     private XYLineAndShapeRenderer renderer;
 
     private int maxSamples = 0;
 
+    private final RenderCost renderCost = RenderCostRegistry.register(this);
+
     public TimeSeriesSimulationPlotter(String title, String yaxis) { // Include legend by default
         this(title, yaxis, true, 0);
     }
@@ -110,6 +116,7 @@ public class TimeSeriesSimulationPlotter extends JInternalFrame implements Event
 
         // NOW DO SOME OPTIONAL CUSTOMISATION OF THE CHART...
         chart.setBackgroundPaint(Color.white);
+        chart.addProgressListener(renderCost);
 
         // String fontName = chart.getLegend().getItemFont().getFontName();
         // int style = chart.getLegend().getItemFont().getStyle();
@@ -148,16 +155,20 @@ public class TimeSeriesSimulationPlotter extends JInternalFrame implements Event
 
     public void onEvent(Enum<?> type) {
         if (type instanceof CommonEventType && type.equals(CommonEventType.Update)) {
+            // Points are always collected; a throttled update only skips the redraw
+            boolean notify = renderCost.shouldUpdate();
+            long start = System.nanoTime();
             double d = 0.0;
             for (int i = 0; i < sources.size(); i++) {
                 Source source = sources.get(i);
                 XYSeries series = dataset.getSeries(i);
                 d = source.getDouble();
-                series.add(SimulationEngine.getInstance().getTime(), d);
+                series.add(SimulationEngine.getInstance().getTime(), d, notify);
                 // if (maxSamples > 0 && series.getItemCount() > maxSamples ) {
                 // series.remove(0);
                 // }
             }
+            renderCost.recordSampling(System.nanoTime() - start);
         }
     }
 
@@ -522,6 +533,31 @@ public class TimeSeriesSimulationPlotter extends JInternalFrame implements Event
         // plot.addLegend(sources.size() - 1, legend);
     }
 
+    /**
+     * Build a series from points known in advance, e.g. read from the output
+     * database of a run. The series is not updated by the simulation events.
+     * 
+     * @param legend
+     *               The legend name of the series.
+     * @param times
+     *               The simulation times of the points.
+     * @param values
+     *               The values at those times.
+     */
+    public void addSeries(String legend, double[] times, double[] values) {
+        if (fixedDataset == null) {
+            // Kept apart from the sampled series, whose index in the dataset
+            // is the index of their source
+            fixedDataset = new XYSeriesCollection();
+            plot.setDataset(1, fixedDataset);
+            plot.setRenderer(1, new XYLineAndShapeRenderer());
+        }
+        XYSeries series = new XYSeries(legend);
+        for (int i = 0; i < times.length; i++)
+            series.add(times[i], values[i], false);
+        fixedDataset.addSeries(series);
+    }
+
     /**
      * Max samples parameters allow to define a maximum number of points.
      * When set the plotting window shifts automatically along with time.
@@ -10,6 +10,8 @@ import javax.swing.JInternalFrame;
 import microsim.engine.SimulationEngine;
 import microsim.event.CommonEventType;
 import microsim.event.EventListener;
+import microsim.gui.utils.RenderCost;
+import microsim.gui.utils.RenderCostRegistry;
 import microsim.statistics.IUpdatableSource;
 import microsim.statistics.weighted.IWeightedDoubleArraySource;
 import microsim.statistics.weighted.IWeightedFloatArraySource;
@@ -73,6 +75,8 @@ public class Weighted_HistogramSimulationPlotter extends JInternalFrame implemen
 
     private static final long serialVersionUID = 1L;
 
+    private final RenderCost renderCost = RenderCostRegistry.register(this);
+
     final JFreeChart chart;
 
     private ArrayList<WeightedArraySource> sources;
@@ -198,6 +202,7 @@ public class Weighted_HistogramSimulationPlotter extends JInternalFrame implemen
 
         // NOW DO SOME OPTIONAL CUSTOMISATION OF THE CHART...
         chart.setBackgroundPaint(Color.white);
+        chart.addProgressListener(renderCost);
 
         // get a reference to the plot for further customisation...
         final XYPlot plot = chart.getXYPlot();
@@ -228,8 +233,10 @@ public class Weighted_HistogramSimulationPlotter extends JInternalFrame implemen
     }
 
     public void onEvent(Enum<?> type) {
-        if (type instanceof CommonEventType && type.equals(CommonEventType.Update)) {
+        if (type instanceof CommonEventType && type.equals(CommonEventType.Update) && renderCost.shouldUpdate()) {
+            long start = System.nanoTime();
             update();
+            renderCost.recordSampling(System.nanoTime() - start);
         }
     }
 
@@ -8,6 +8,8 @@ import javax.swing.JInternalFrame;
 
 import microsim.event.CommonEventType;
 import microsim.event.EventListener;
+import microsim.gui.utils.RenderCost;
+import microsim.gui.utils.RenderCostRegistry;
 import microsim.statistics.IUpdatableSource;
 import microsim.statistics.weighted.IWeightedDoubleArraySource;
 import microsim.statistics.weighted.IWeightedFloatArraySource;
@@ -86,6 +88,8 @@ public class Weighted_PyramidPlotter extends JInternalFrame implements EventList
 
     private static final long serialVersionUID = 1L;
 
+    private final RenderCost renderCost = RenderCostRegistry.register(this);
+
     private JFreeChart chart;
 
     private WeightedArraySource[] sources;
@@ -363,6 +367,7 @@ public class Weighted_PyramidPlotter extends JInternalFrame implements EventList
                 true);
 
         setChartProperties();
+        chart.addProgressListener(renderCost);
 
         chart.getCategoryPlot().getRangeAxis().setVisible(false);
 
@@ -376,8 +381,10 @@ public class Weighted_PyramidPlotter extends JInternalFrame implements EventList
     }
 
     public void onEvent(Enum<?> type) {
-        if (type instanceof CommonEventType && type.equals(CommonEventType.Update)) {
+        if (type instanceof CommonEventType && type.equals(CommonEventType.Update) && renderCost.shouldUpdate()) {
+            long start = System.nanoTime();
             update();
+            renderCost.recordSampling(System.nanoTime() - start);
         }
     }
 
@@ -437,6 +444,7 @@ public class Weighted_PyramidPlotter extends JInternalFrame implements EventList
                 true);
 
         setChartProperties();
+        chart.addProgressListener(renderCost);
 
         final ChartPanel chartPanel = new ChartPanel(chart);
 
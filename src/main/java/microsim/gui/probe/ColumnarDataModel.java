@@ -0,0 +1,576 @@
+package microsim.gui.probe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Not of interest for users. A data model showing a set of numeric fields
+ * across all the elements of a collection or an array, one column per field.
+ * It is used by the {@link PanelColumnarCollection}.
+ * <p>
+ * The field values are read once, by a {@link Reading}, into one
+ * <code>double[]</code> per field using the typed getters of
+ * {@link ProbeClassInfo}, so primitive fields are never boxed; large
+ * collections are split into chunks read in parallel. The reading runs on a
+ * background thread and is shown by {@link #show(Reading)} on the event
+ * dispatch thread. Sorting permutes an <code>int[]</code> of row indices and never
+ * touches the probed collection. Missing values (null elements or boxed
+ * fields, elements of another class) are NaN and sorted last.
+ */
+public class ColumnarDataModel extends AbstractTableModel {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    /** The number of elements below which extraction is not split. */
+    static final int CHUNK_SIZE = 8192;
+
+    /** The quantiles shown in the statistics. */
+    public static final double[] QUANTILES = { 0.05, 0.25, 0.5, 0.75, 0.95 };
+
+    private static final MethodType READER_TYPE = MethodType.methodType(double.class, Object.class);
+
+    private static final MethodHandle BOOLEAN_TO_DOUBLE, TO_DOUBLE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            BOOLEAN_TO_DOUBLE = lookup.findStatic(ColumnarDataModel.class, "toDouble",
+                    MethodType.methodType(double.class, boolean.class));
+            TO_DOUBLE = lookup.findStatic(ColumnarDataModel.class, "toDouble",
+                    MethodType.methodType(double.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final Object targetObj;
+
+    private Object[] elements = new Object[0];
+    private ProbeClassInfo.FieldAccessor[] fields = new ProbeClassInfo.FieldAccessor[0];
+    private double[][] columns = new double[0][];
+    private int[] order = new int[0];
+
+    private int sortColumn = -1;
+    private boolean ascending = true;
+
+    private final StatisticsModel statistics = new StatisticsModel();
+    private double[][] stats = new double[0][];
+
+    public ColumnarDataModel(Object objToInspect) {
+        if (!objToInspect.getClass().isArray() && !ProbeReflectionUtils.isCollection(objToInspect.getClass()))
+            throw new IllegalArgumentException("A columnar view needs a collection or an array.");
+        targetObj = objToInspect;
+    }
+
+    public Object getProbedObject() {
+        return targetObj;
+    }
+
+    /**
+     * Return the numeric fields of the elements that can be shown, i.e. the
+     * primitive, boxed and Number fields of the class of the first non-null
+     * element and of its superclasses. If the element implements
+     * IProbeFields only the listed fields are returned.
+     *
+     * @return The available fields, possibly empty.
+     */
+    List<ProbeClassInfo.FieldAccessor> getNumericFields() {
+        List<ProbeClassInfo.FieldAccessor> list = new ArrayList<ProbeClassInfo.FieldAccessor>();
+        Object sample = firstElement();
+        if (sample == null)
+            return list;
+
+        List<Object> probeFields = null;
+        if (sample instanceof IProbeFields)
+            probeFields = ((IProbeFields) sample).getProbeFields();
+
+        for (ProbeClassInfo info = ProbeClassInfo.of(sample.getClass()); info != null; info = info
+                .getSuperclassInfo()) {
+            for (ProbeClassInfo.FieldAccessor f : info.getDeclaredFields()) {
+                if (f.isStatic || f.getter == null || !isNumeric(f.fieldType))
+                    continue;
+                if (probeFields != null && !probeFields.contains(f.name))
+                    continue;
+                list.add(f);
+            }
+        }
+        return list;
+    }
+
+    private static boolean isNumeric(Class<?> type) {
+        if (type.isPrimitive())
+            return type != Void.TYPE;
+        return Number.class.isAssignableFrom(type) || type == Boolean.class || type == Character.class;
+    }
+
+    /**
+     * Prepare the reading of the given fields of every element of the probed
+     * object. The reading does not touch the model and is meant to be run on a
+     * background thread, then shown with {@link #show(Reading)}.
+     *
+     * @param selected The fields to be shown, from
+     *                 {@link #getNumericFields()}.
+     * @return The reading, not started.
+     */
+    Reading read(List<ProbeClassInfo.FieldAccessor> selected) {
+        return new Reading(selected.toArray(new ProbeClassInfo.FieldAccessor[selected.size()]));
+    }
+
+    /**
+     * Prepare the reading of the fields shown, to refresh the values.
+     *
+     * @return The reading, not started, or null if no field is shown.
+     */
+    Reading reread() {
+        return fields.length == 0 ? null : new Reading(fields);
+    }
+
+    /**
+     * Show the values of a completed reading, keeping the current sort order.
+     * Must be called on the event dispatch thread; a cancelled or failed
+     * reading is ignored.
+     *
+     * @param reading The reading, done.
+     */
+    void show(Reading reading) {
+        if (!reading.isDone() || reading.isCancelled() || reading.getError() != null)
+            return;
+        elements = reading.snapshot;
+        fields = reading.fields;
+        columns = reading.columns;
+        stats = reading.stats;
+        if (sortColumn > fields.length)
+            sortColumn = -1;
+        sort();
+
+        fireTableStructureChanged();
+        statistics.fireTableDataChanged();
+    }
+
+    // The first non-null element, read without copying the probed object
+    private Object firstElement() {
+        if (targetObj.getClass().isArray()) {
+            int n = Array.getLength(targetObj);
+            for (int i = 0; i < n; i++) {
+                Object o = Array.get(targetObj, i);
+                if (o != null)
+                    return o;
+            }
+            return null;
+        }
+        try {
+            for (Object o : (Collection<?>) targetObj)
+                if (o != null)
+                    return o;
+            return null;
+        } catch (ConcurrentModificationException e) {
+            // Changed by the simulation while iterated
+            for (Object o : takeSnapshot())
+                if (o != null)
+                    return o;
+            return null;
+        }
+    }
+
+    private Object[] takeSnapshot() {
+        if (targetObj.getClass().isArray()) {
+            int n = Array.getLength(targetObj);
+            Object[] a = new Object[n];
+            for (int i = 0; i < n; i++)
+                a[i] = Array.get(targetObj, i);
+            return a;
+        }
+        return ((Collection<?>) targetObj).toArray();
+    }
+
+    /**
+     * Return a getter of type <code>(Object)double</code> for a field.
+     * Primitive fields are read through their typed getter without boxing;
+     * boxed fields, which may be null, through the boxing getter.
+     */
+    private static MethodHandle reader(ProbeClassInfo.FieldAccessor field) {
+        Class<?> type = field.fieldType;
+        if (type == boolean.class)
+            return MethodHandles.filterReturnValue(field.typedGetter, BOOLEAN_TO_DOUBLE);
+        if (type.isPrimitive())
+            return field.typedGetter.asType(READER_TYPE);
+        return MethodHandles.filterReturnValue(field.getter, TO_DOUBLE);
+    }
+
+    private static void extract(Object[] snapshot, ProbeClassInfo.FieldAccessor[] f, MethodHandle[] readers,
+            double[][] cols, int from, int to) throws Throwable {
+        for (int j = 0; j < f.length; j++) {
+            Class<?> owner = f[j].field.getDeclaringClass();
+            MethodHandle reader = readers[j];
+            double[] col = cols[j];
+            for (int i = from; i < to; i++) {
+                Object o = snapshot[i];
+                col[i] = owner.isInstance(o) ? (double) reader.invokeExact(o) : Double.NaN;
+            }
+        }
+    }
+
+    private static double toDouble(boolean value) {
+        return value ? 1. : 0.;
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof Number)
+            return ((Number) value).doubleValue();
+        if (value instanceof Boolean)
+            return ((Boolean) value).booleanValue() ? 1. : 0.;
+        if (value instanceof Character)
+            return ((Character) value).charValue();
+        return Double.NaN;
+    }
+
+    /**
+     * Not of interest for users. The reading of some fields of every element,
+     * run on a background thread. It takes its own snapshot of the probed
+     * object and computes the columns and their statistics, which the model
+     * shows when the reading is done. Cancelling stops it after the chunk
+     * being read.
+     */
+    class Reading implements Runnable {
+
+        private final ProbeClassInfo.FieldAccessor[] fields;
+
+        // Written by the reading thread before done is set
+        private Object[] snapshot;
+        private double[][] columns;
+        private double[][] stats;
+
+        private volatile int elementCount = -1;
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false;
+        private volatile Throwable error;
+
+        Reading(ProbeClassInfo.FieldAccessor[] fields) {
+            this.fields = fields;
+        }
+
+        public void run() {
+            try {
+                Object[] snap = takeSnapshot();
+                elementCount = snap.length;
+                MethodHandle[] readers = new MethodHandle[fields.length];
+                for (int j = 0; j < fields.length; j++)
+                    readers[j] = reader(fields[j]);
+                double[][] cols = new double[fields.length][snap.length];
+
+                if (snap.length > CHUNK_SIZE)
+                    ForkJoinPool.commonPool().invoke(new Extraction(this, snap, readers, cols, 0, snap.length));
+                else
+                    extract(snap, fields, readers, cols, 0, snap.length);
+                if (cancelled)
+                    return;
+
+                double[][] s = new double[fields.length][];
+                for (int i = 0; i < fields.length && !cancelled; i++)
+                    s[i] = computeStatistics(cols[i]);
+
+                snapshot = snap;
+                columns = cols;
+                stats = s;
+            } catch (Throwable e) {
+                error = e;
+            } finally {
+                done = true;
+            }
+        }
+
+        /** Stop the reading after the chunk being read. */
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        boolean isDone() {
+            return done;
+        }
+
+        Throwable getError() {
+            return error;
+        }
+
+        /** @return The number of elements read, or -1 before the snapshot. */
+        int getElementCount() {
+            return elementCount;
+        }
+    }
+
+    /**
+     * Reads a range of elements, splitting it in halves down to CHUNK_SIZE.
+     */
+    private static class Extraction extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Reading reading;
+        private final Object[] snapshot;
+        private final MethodHandle[] readers;
+        private final double[][] columns;
+        private final int from, to;
+
+        Extraction(Reading reading, Object[] snapshot, MethodHandle[] readers, double[][] columns, int from,
+                int to) {
+            this.reading = reading;
+            this.snapshot = snapshot;
+            this.readers = readers;
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            if (reading.isCancelled())
+                return;
+            if (to - from <= CHUNK_SIZE) {
+                try {
+                    extract(snapshot, reading.fields, readers, columns, from, to);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(e);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Extraction(reading, snapshot, readers, columns, from, mid),
+                    new Extraction(reading, snapshot, readers, columns, mid, to));
+        }
+    }
+
+    /**
+     * Compute count, mean, min, quantiles and max of a column, ignoring NaN.
+     * The column itself is not modified.
+     */
+    private static double[] computeStatistics(double[] col) {
+        double[] sorted = col.clone();
+        // NaN are sorted after all the numbers
+        Arrays.sort(sorted);
+        int n = 0;
+        double sum = 0.;
+        while (n < sorted.length && !Double.isNaN(sorted[n]))
+            sum += sorted[n++];
+
+        double[] s = new double[QUANTILES.length + 4];
+        s[0] = n;
+        if (n == 0) {
+            Arrays.fill(s, 1, s.length, Double.NaN);
+            return s;
+        }
+        s[1] = sum / n;
+        s[2] = sorted[0];
+        for (int q = 0; q < QUANTILES.length; q++) {
+            double pos = QUANTILES[q] * (n - 1);
+            int lo = (int) pos;
+            int hi = Math.min(lo + 1, n - 1);
+            s[3 + q] = sorted[lo] + (pos - lo) * (sorted[hi] - sorted[lo]);
+        }
+        s[s.length - 1] = sorted[n - 1];
+        return s;
+    }
+
+    /**
+     * Sort the rows by a column, or invert the order if the rows are already
+     * sorted by it.
+     *
+     * @param column The model column, 0 being the element index.
+     */
+    public void sortBy(int column) {
+        if (column == sortColumn)
+            ascending = !ascending;
+        else {
+            sortColumn = column;
+            ascending = true;
+        }
+        sort();
+        fireTableDataChanged();
+    }
+
+    public int getSortColumn() {
+        return sortColumn;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    private void sort() {
+        int n = elements.length;
+        int[] idx = new int[n];
+        for (int i = 0; i < n; i++)
+            idx[i] = i;
+
+        if (sortColumn > 0)
+            sortIndex(idx, columns[sortColumn - 1], ascending);
+        else if (sortColumn == 0 && !ascending)
+            for (int i = 0; i < n; i++)
+                idx[i] = n - 1 - i;
+        order = idx;
+    }
+
+    /**
+     * Sort an array of indices by the values they point to, with a stable
+     * merge sort on primitives. NaN values are always put last.
+     *
+     * @param idx       The indices to be sorted.
+     * @param keys      The values.
+     * @param ascending The direction.
+     */
+    static void sortIndex(int[] idx, double[] keys, boolean ascending) {
+        int[] tmp = idx.clone();
+        mergeSort(tmp, idx, 0, idx.length, keys, ascending);
+    }
+
+    // Sorts src[from, to) into dst, src and dst holding the same values
+    private static void mergeSort(int[] src, int[] dst, int from, int to, double[] keys, boolean ascending) {
+        int length = to - from;
+        if (length < 16) {
+            for (int i = from + 1; i < to; i++) {
+                int v = dst[i];
+                int j = i;
+                while (j > from && before(v, dst[j - 1], keys, ascending)) {
+                    dst[j] = dst[j - 1];
+                    j--;
+                }
+                dst[j] = v;
+            }
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(dst, src, from, mid, keys, ascending);
+        mergeSort(dst, src, mid, to, keys, ascending);
+
+        if (!before(src[mid], src[mid - 1], keys, ascending)) {
+            System.arraycopy(src, from, dst, from, length);
+            return;
+        }
+        for (int i = from, p = from, q = mid; i < to; i++) {
+            if (q >= to || (p < mid && !before(src[q], src[p], keys, ascending)))
+                dst[i] = src[p++];
+            else
+                dst[i] = src[q++];
+        }
+    }
+
+    private static boolean before(int a, int b, double[] keys, boolean ascending) {
+        double x = keys[a], y = keys[b];
+        if (Double.isNaN(x))
+            return false;
+        if (Double.isNaN(y))
+            return true;
+        return ascending ? x < y : x > y;
+    }
+
+    public int getRowCount() {
+        return order.length;
+    }
+
+    public int getColumnCount() {
+        return fields.length + 1;
+    }
+
+    public String getColumnName(int column) {
+        String name = column == 0 ? "#" : fields[column - 1].name;
+        if (column == sortColumn)
+            name += ascending ? " \u25B2" : " \u25BC";
+        return name;
+    }
+
+    public Class<?> getColumnClass(int column) {
+        return column == 0 ? Integer.class : Double.class;
+    }
+
+    public Object getValueAt(int row, int column) {
+        if (row >= order.length)
+            return null;
+        int i = order[row];
+        if (column == 0)
+            return Integer.valueOf(i);
+        return Double.valueOf(columns[column - 1][i]);
+    }
+
+    /**
+     * Return the element shown at a row, as it was at the last extraction.
+     *
+     * @param row The table row.
+     * @return The element, possibly null.
+     */
+    public Object getObjectAtRow(int row) {
+        return row < order.length ? elements[order[row]] : null;
+    }
+
+    /**
+     * Return the model of the statistics table, with one row per field.
+     *
+     * @return The statistics model, updated at each extraction.
+     */
+    public AbstractTableModel getStatisticsModel() {
+        return statistics;
+    }
+
+    private class StatisticsModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        public int getRowCount() {
+            return fields.length;
+        }
+
+        public int getColumnCount() {
+            return QUANTILES.length + 5;
+        }
+
+        public String getColumnName(int column) {
+            switch (column) {
+            case 0:
+                return "Field";
+            case 1:
+                return "Count";
+            case 2:
+                return "Mean";
+            case 3:
+                return "Min";
+            default:
+                if (column == getColumnCount() - 1)
+                    return "Max";
+                return "P" + Math.round(QUANTILES[column - 4] * 100);
+            }
+        }
+
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : column == 1 ? Integer.class : Double.class;
+        }
+
+        public Object getValueAt(int row, int column) {
+            if (row >= stats.length)
+                return null;
+            if (column == 0)
+                return fields[row].name;
+            if (column == 1)
+                return Integer.valueOf((int) stats[row][0]);
+            return Double.valueOf(stats[row][column - 1]);
+        }
+    }
+}
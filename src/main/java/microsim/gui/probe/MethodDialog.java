@@ -48,15 +48,22 @@ public class MethodDialog extends JDialog {
      * Comment for <code>serialVersionUID</code>
      */
     private static final long serialVersionUID = 1L;
+
+    /** The most calls a method can be timed with. */
+    static final int MAX_REPEAT = 1000000;
     JPanel jPanelMain = new JPanel();
     JScrollPane jScrollPaneTable = new JScrollPane();
     MethodParameterDataModel parameters;// = new MethodParameterDataModel(null);
     JTable jTableMethods = new JTable();
     JButton jBtnCancel = new JButton();
     JButton jBtnExecute = new JButton();
+    JLabel jLblRepeat = new JLabel();
+    JSpinner jSpinRepeat = new JSpinner(new SpinnerNumberModel(1, 1, MAX_REPEAT, 1));
 
     public boolean cancel;
 
+    private Object[] params;
+
     public MethodDialog(Frame frame, String title, boolean modal, Method m) {
         super(frame, title, modal);
         try {
@@ -81,6 +88,20 @@ public class MethodDialog extends JDialog {
         this(null, "", false, m);
     }
 
+    /**
+     * Create a dialog also asking how many times the method has to be
+     * invoked, to time it.
+     *
+     * @param frame  The owner frame.
+     * @param m      The method.
+     * @param repeat The default number of calls.
+     */
+    public MethodDialog(Frame frame, Method m, int repeat) {
+        this(frame, "", true, m);
+        jSpinRepeat.setValue(Integer.valueOf(repeat));
+        setTitle("Time method " + m.toString());
+    }
+
     void jbInit() throws Exception {
         jBtnExecute.setText("Execute");
         jBtnExecute.addActionListener(new java.awt.event.ActionListener() {
@@ -94,7 +115,11 @@ public class MethodDialog extends JDialog {
                 jBtnCancel_actionPerformed(e);
             }
         });
+        jLblRepeat.setText("Repeat");
+        jSpinRepeat.setToolTipText("Invoke the method this number of times and report the time per call");
         this.getContentPane().add(jPanelMain, BorderLayout.SOUTH);
+        jPanelMain.add(jLblRepeat, null);
+        jPanelMain.add(jSpinRepeat, null);
         jPanelMain.add(jBtnCancel, null);
         jPanelMain.add(jBtnExecute, null);
         this.getContentPane().add(jScrollPaneTable, BorderLayout.CENTER);
@@ -107,11 +132,36 @@ public class MethodDialog extends JDialog {
     }
 
     void jBtnExecute_actionPerformed(ActionEvent e) {
+        if (jTableMethods.isEditing())
+            jTableMethods.getCellEditor().stopCellEditing();
+        try {
+            params = parameters.getParams();
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(this, ex.getMessage(), "Invoke method", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
         cancel = false;
         dispose();
     }
 
+    /**
+     * Return the arguments entered, parsed when the Execute button was
+     * pressed.
+     *
+     * @return The arguments.
+     */
     public Object[] getParameters() {
-        return parameters.getParams();
+        if (params == null)
+            params = parameters.getParams();
+        return params;
+    }
+
+    /**
+     * Return the number of times the method has to be invoked.
+     *
+     * @return The number of calls, at least 1.
+     */
+    public int getRepeat() {
+        return ((Number) jSpinRepeat.getValue()).intValue();
     }
 }
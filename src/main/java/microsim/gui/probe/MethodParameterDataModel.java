@@ -128,48 +128,19 @@ public class MethodParameterDataModel extends AbstractTableModel {
         fireTableDataChanged();
     }
 
+    /**
+     * Parse the entered arguments with the converters precompiled for the
+     * parameter types of the method.
+     *
+     * @return The arguments.
+     * @throws IllegalArgumentException If a value is not valid for its type.
+     */
     public Object[] getParams() {
-        Object[] obs = new Object[getRowCount()];
-        Object o;
-
-        try {
-
-            for (int i = 0; i < obs.length; i++) {
-                o = getWrapper(data[i][COL_TYPE].toString(), data[i][COL_VALUE].toString());
-                if (o == null) {
-                    Class<?> cc = Class.forName(data[i][COL_TYPE].toString());
-                    Constructor<?> c = cc.getDeclaredConstructor(new Class[] { (new String()).getClass() });
-                    o = c.newInstance(new Object[] { data[i][COL_VALUE].toString() });
-                }
-                obs[i] = o;
-            }
-        } catch (Exception e) {
-            System.out.println("Err in getParams: " + e.getMessage());
-        }
-
-        return obs;
-
-    }
+        String[] values = new String[getRowCount()];
+        for (int i = 0; i < values.length; i++)
+            values[i] = data[i][COL_VALUE].toString();
 
-    private Object getWrapper(String s, String o) {
-        if (s.equals(Integer.TYPE.getName()))
-            return new Integer(Integer.parseInt(o));
-        if (s.equals(Double.TYPE.getName()))
-            return new Double(Double.parseDouble(o));
-        if (s.equals(Boolean.TYPE.getName()))
-            return new Boolean(Boolean.valueOf(o).booleanValue());
-        if (s.equals(Byte.TYPE.getName()))
-            return new Byte(Byte.parseByte(o));
-        if (s.equals(Character.TYPE.getName()))
-            return new Character(o.charAt(0));
-        if (s.equals(Float.TYPE.getName()))
-            return new Float(Float.parseFloat(o));
-        if (s.equals(Long.TYPE.getName()))
-            return new Long(Long.parseLong(o));
-        if (s.equals(Short.TYPE.getName()))
-            return new Short(Short.parseShort(o));
-
-        return null;
+        return ProbeClassInfo.of(targetObj.getDeclaringClass()).getInvoker(targetObj).convert(values);
     }
 
     public Object getObjectAtRow(int row) {
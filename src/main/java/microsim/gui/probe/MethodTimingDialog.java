@@ -0,0 +1,172 @@
+package microsim.gui.probe;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.lang.reflect.Method;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.Timer;
+
+import microsim.gui.utils.LogHistogram;
+
+/**
+ * Not of interest for users. Invokes a method several times on a background
+ * thread, showing the progress with a Cancel button, and reports the time per
+ * call when done. The calls never run on the event dispatch thread, so a slow
+ * method does not freeze the GUI.
+ */
+class MethodTimingDialog extends JDialog {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    private static final int POLL_MILLIS = 100;
+
+    private final Method method;
+    private final Object target;
+    private final Object[] params;
+    private final int repeat;
+
+    private final LogHistogram times = new LogHistogram();
+    private volatile int completed = 0;
+    private volatile boolean cancelled = false;
+    private volatile boolean finished = false;
+    private volatile long totalNanos;
+    private volatile Object result;
+    private volatile Throwable error;
+
+    private JProgressBar jProgress = new JProgressBar();
+    private JLabel jLblStatus = new JLabel();
+    private JButton jBtnCancel = new JButton();
+
+    private final Timer timer = new Timer(POLL_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            poll();
+        }
+    });
+
+    MethodTimingDialog(Frame frame, Method method, Object target, Object[] params, int repeat) {
+        super(frame, "Timing of " + method.getName(), false);
+        this.method = method;
+        this.target = target;
+        this.params = params;
+        this.repeat = repeat;
+        try {
+            jbInit();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void jbInit() throws Exception {
+        jProgress.setMinimum(0);
+        jProgress.setMaximum(repeat);
+        jProgress.setStringPainted(true);
+        jLblStatus.setText("0 of " + repeat + " calls");
+
+        jBtnCancel.setText("Cancel");
+        jBtnCancel.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                jBtnCancel_actionPerformed(e);
+            }
+        });
+        addWindowListener(new WindowAdapter() {
+            public void windowClosing(WindowEvent e) {
+                cancelled = true;
+            }
+        });
+        setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        JPanel jPanelMain = new JPanel(new BorderLayout(5, 5));
+        jPanelMain.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+        jPanelMain.add(jLblStatus, BorderLayout.NORTH);
+        jPanelMain.add(jProgress, BorderLayout.CENTER);
+        JPanel jPanelBtns = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        jPanelBtns.add(jBtnCancel);
+        jPanelMain.add(jPanelBtns, BorderLayout.SOUTH);
+        getContentPane().add(jPanelMain);
+
+        setSize(350, 130);
+        setLocationRelativeTo(getOwner());
+    }
+
+    /** Show the dialog and start the calls. */
+    void start() {
+        final ProbeClassInfo.MethodInvoker invoker = ProbeClassInfo.of(method.getDeclaringClass()).getInvoker(method);
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                long start = System.nanoTime();
+                try {
+                    for (int i = 0; i < repeat && !cancelled; i++) {
+                        long t = System.nanoTime();
+                        Object o = invoker.invoke(target, params);
+                        times.record(System.nanoTime() - t);
+                        result = o;
+                        completed = i + 1;
+                    }
+                } catch (Throwable e) {
+                    error = e;
+                } finally {
+                    totalNanos = System.nanoTime() - start;
+                    finished = true;
+                }
+            }
+        }, "Timing of " + method.getName());
+        thread.setDaemon(true);
+        thread.start();
+        timer.start();
+        setVisible(true);
+    }
+
+    private void jBtnCancel_actionPerformed(ActionEvent e) {
+        cancelled = true;
+        jBtnCancel.setEnabled(false);
+        jLblStatus.setText("Cancelling after the current call...");
+    }
+
+    private void poll() {
+        int done = completed;
+        jProgress.setValue(done);
+        if (!cancelled)
+            jLblStatus.setText(done + " of " + repeat + " calls");
+        if (!finished)
+            return;
+
+        timer.stop();
+        dispose();
+        if (error != null)
+            // The calls are counted from 1, as in the progress
+            MethodsDataModel.showInvokeError(method, error, "call " + (completed + 1) + " of " + repeat);
+        if (completed == 0)
+            return;
+
+        StringBuilder sb = new StringBuilder();
+        if (cancelled || error != null)
+            sb.append("Stopped after ").append(completed).append(" of ").append(repeat).append(" calls\n\n");
+        if (result != null)
+            sb.append("Result: ").append(result).append("\n\n");
+        sb.append(times.getCount()).append(" calls in ").append(LogHistogram.formatNanos(totalNanos))
+                .append("\n");
+        sb.append("Wall time per call: ").append(LogHistogram.formatNanos(totalNanos / times.getCount()))
+                .append("\n");
+        sb.append("Median: ").append(LogHistogram.formatNanos(times.getValueAtPercentile(50.))).append("\n");
+        sb.append("99th percentile: ").append(LogHistogram.formatNanos(times.getValueAtPercentile(99.)))
+                .append("\n");
+        sb.append("Max: ").append(LogHistogram.formatNanos(times.getMax()));
+
+        JOptionPane.showMessageDialog(getOwner(), sb.toString(), "Timing of " + method.getName(),
+                JOptionPane.PLAIN_MESSAGE);
+    }
+}
@@ -1,13 +1,18 @@
 package microsim.gui.probe;
 
-import javax.swing.ListModel;
-import javax.swing.event.ListDataListener;
+import javax.swing.AbstractListModel;
 import javax.swing.JOptionPane;
 
+import java.awt.Frame;
+
 import org.apache.log4j.Logger;
 
+import microsim.gui.utils.LogHistogram;
+
 import java.util.List;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 
 import java.lang.reflect.*;
 
@@ -46,14 +51,19 @@ import java.lang.reflect.*;
  * @author Michele Sonnessa
  *         <p>
  */
-public class MethodsDataModel implements ListModel {
+public class MethodsDataModel extends AbstractListModel<Object> {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
 
     private static final Logger log = Logger.getLogger(MethodsDataModel.class);
 
     private List<Method> methods;
     private Object targetObj;
     private boolean viewPrivate;
-    private List<Object> probeFields;
+    private Set<Object> probeFields;
 
     private int deepLevel = 0;
 
@@ -62,7 +72,7 @@ public class MethodsDataModel implements ListModel {
         targetObj = o;
         viewPrivate = true;
         try {
-            probeFields = ((IProbeFields) o).getProbeFields();
+            probeFields = new HashSet<Object>(((IProbeFields) o).getProbeFields());
         } catch (Exception e) {
             log.error(
                     "Error creating MethodsDataModel: " + e.getMessage());
@@ -78,10 +88,15 @@ public class MethodsDataModel implements ListModel {
     }
 
     public void update() {
+        int oldSize = methods.size();
         if (probeFields == null)
             update(viewPrivate);
         else
             updateWithFields();
+
+        int size = Math.max(oldSize, methods.size());
+        if (size > 0)
+            fireContentsChanged(this, 0, size - 1);
     }
 
     public void setViewPrivate(boolean privateVariables) {
@@ -96,8 +111,7 @@ public class MethodsDataModel implements ListModel {
         for (int i = 0; i < deepLevel; i++)
             cl = cl.getSuperclass();
 
-        Method[] meth = cl.getDeclaredMethods();
-        AccessibleObject.setAccessible(meth, true);
+        Method[] meth = ProbeClassInfo.of(cl).getDeclaredMethods();
 
         for (int i = 0; i < meth.length; i++)
             if (viewPrivate || Modifier.isPublic(meth[i].getModifiers()))
@@ -111,17 +125,16 @@ public class MethodsDataModel implements ListModel {
     private void updateWithFields() {
         methods.clear();
 
-        Class<?> cl = targetObj.getClass();
+        ProbeClassInfo info = ProbeClassInfo.of(targetObj.getClass());
 
-        while (cl != null) {
-            Method[] meth = cl.getDeclaredMethods();
-            AccessibleObject.setAccessible(meth, true);
+        while (info != null) {
+            Method[] meth = info.getDeclaredMethods();
 
             for (int i = 0; i < meth.length; i++)
                 if (probeFields.contains(meth[i].getName()))
                     methods.add(meth[i]);
 
-            cl = cl.getSuperclass();
+            info = info.getSuperclassInfo();
         }
     }
 
@@ -142,25 +155,14 @@ public class MethodsDataModel implements ListModel {
             return;
         }
 
-        try {
-            Object o = m.invoke(targetObj, null);
-
-            if (o == null)
-                return;
-
-            JOptionPane.showMessageDialog(null, o.toString(),
-                    "Method result", JOptionPane.PLAIN_MESSAGE);
-
-        } catch (Exception e) {
-            System.out.println("Error in method.invoke:" + e.getMessage());
-        }
+        invokeMethodAt(index, new Object[0]);
     }
 
     public void invokeMethodAt(int index, Object[] params) {
         Method m = (Method) methods.get(index);
 
         try {
-            Object o = m.invoke(targetObj, params);
+            Object o = getInvoker(m).invoke(targetObj, params);
 
             if (o == null)
                 return;
@@ -168,14 +170,44 @@ public class MethodsDataModel implements ListModel {
             JOptionPane.showMessageDialog(null, o.toString(),
                     "Method result", JOptionPane.PLAIN_MESSAGE);
 
-        } catch (Exception e) {
-            System.out.println("Error in method.invoke:" + e.getMessage());
+        } catch (Throwable e) {
+            showInvokeError(m, e, null);
         }
     }
 
-    public void addListDataListener(ListDataListener l) {
+    /**
+     * Invoke a method several times on a background thread and show the time
+     * per call, measured around each call. The first calls include the JIT
+     * warm-up, so the median is more representative than the mean for short
+     * methods. A dialog shows the progress and allows to cancel the calls.
+     *
+     * @param owner  The owner of the progress dialog.
+     * @param index  The index of the method.
+     * @param params The arguments, shared by all the calls.
+     * @param repeat The number of calls.
+     */
+    public void timeMethodAt(Frame owner, int index, Object[] params, int repeat) {
+        Method m = (Method) methods.get(index);
+        new MethodTimingDialog(owner, m, targetObj, params, repeat).start();
+    }
+
+    /**
+     * Show the exception thrown by an invoked method.
+     *
+     * @param m     The method.
+     * @param e     The exception, unwrapped if thrown by reflection.
+     * @param where The call that failed, e.g. "call 3 of 1000", or null.
+     */
+    static void showInvokeError(Method m, Throwable e, String where) {
+        if (e instanceof InvocationTargetException && e.getCause() != null)
+            e = e.getCause();
+        log.error("Error invoking " + m.getName(), e);
+        JOptionPane.showMessageDialog(null,
+                m.getName() + (where == null ? "" : " failed at " + where) + ":\n" + e,
+                "Invoke method", JOptionPane.ERROR_MESSAGE);
     }
 
-    public void removeListDataListener(ListDataListener l) {
+    private static ProbeClassInfo.MethodInvoker getInvoker(Method m) {
+        return ProbeClassInfo.of(m.getDeclaringClass()).getInvoker(m);
     }
 }
@@ -6,14 +6,26 @@ import javax.swing.table.*;
 import org.apache.log4j.Logger;
 
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.*;
 
 /**
  * Not of interest for users.
  * A data model used to contain the list of elements within a collection.
  * It is used by the Probe frame.
+ * <p>
+ * The model only keeps a reference to the inspected array, or a snapshot of
+ * the collection taken with <code>toArray()</code>, and renders cells when the
+ * table asks for them, i.e. only for the visible rows. The rendered strings
+ * are kept in a small LRU cache until the next {@link #update()}.
+ * <p>
+ * A {@link ProbeQuery} can be set to show only the matching elements; it is
+ * evaluated again at each update.
  *
  * <p>
  * Title: JAS
@@ -61,9 +73,31 @@ public class ObjectDataModel extends AbstractTableModel {
     private static final int COL_VALUE = 1;
     private static final int COL_TYPE = 2;
 
+    private static final int CACHE_SIZE = 2048;
+
     private boolean isAnArray;
     Object targetObj;
-    Object[][] data;
+
+    // The elements of a collection, taken at the last update. Null for arrays.
+    private Object[] snapshot;
+    private int elementCount;
+    private int rowCount;
+
+    // The element index of each row when filtered, null otherwise
+    private ProbeQuery query;
+    private int[] filter;
+    private long queryNanos;
+
+    // Writes into the inspected array, created at the first edit
+    private VarHandle arrayHandle;
+
+    private final Map<Integer, String> valueCache = new LinkedHashMap<Integer, String>(64, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
 
     public ObjectDataModel(Object objToInspect) {
 
@@ -75,37 +109,124 @@ public class ObjectDataModel extends AbstractTableModel {
                     "You were trying to build an ObjectDataModel passing a wrong object type");
     }
 
+    /**
+     * Take a new snapshot of the inspected object and notify the table of the
+     * changed, inserted or deleted rows.
+     */
     public void update() {
-        if (isAnArray = targetObj.getClass().isArray())
-            updateAnArray();
-        else
-            updateAList();
+        int oldCount = rowCount;
+
+        if (isAnArray = targetObj.getClass().isArray()) {
+            snapshot = null;
+            elementCount = Array.getLength(targetObj);
+        } else {
+            snapshot = ((Collection<?>) targetObj).toArray();
+            elementCount = snapshot.length;
+        }
+        if (query != null) {
+            long start = System.nanoTime();
+            filter = query.select(isAnArray ? (Object[]) targetObj : snapshot);
+            queryNanos = System.nanoTime() - start;
+            rowCount = filter.length;
+        } else {
+            filter = null;
+            rowCount = elementCount;
+        }
+        synchronized (valueCache) {
+            valueCache.clear();
+        }
+
+        int common = Math.min(oldCount, rowCount);
+        if (common > 0)
+            fireTableRowsUpdated(0, common - 1);
+        if (rowCount > oldCount)
+            fireTableRowsInserted(oldCount, rowCount - 1);
+        else if (rowCount < oldCount)
+            fireTableRowsDeleted(rowCount, oldCount - 1);
+    }
+
+    private int getElementIndex(int row) {
+        return filter == null ? row : filter[row];
     }
 
-    private void updateAnArray() {
-        // Object[] objs = (Object[]) targetObj;
+    private Object getElement(int row) {
+        if (isAnArray)
+            return Array.get(targetObj, getElementIndex(row));
+        return snapshot[getElementIndex(row)];
+    }
 
-        data = new Object[Array.getLength(targetObj)][COLUMNS];
-        for (int i = 0; i < Array.getLength(targetObj); i++) {
-            Object o = Array.get(targetObj, i);
-            data[i][COL_VALUE] = o.toString();
-            data[i][COL_TYPE] = o.getClass().getName();
-            data[i][COL_FIELD] = o;
+    /**
+     * Return the class the elements are instances of: the component type of
+     * arrays of objects, or the most specific common superclass of the
+     * elements of collections.
+     *
+     * @return The element class, or null if the collection is empty or the
+     *         elements are primitives.
+     */
+    public Class<?> getElementClass() {
+        if (isAnArray) {
+            Class<?> type = targetObj.getClass().getComponentType();
+            return type.isPrimitive() ? null : type;
+        }
+        Class<?> common = null;
+        Class<?> last = null;
+        for (Object o : snapshot) {
+            if (o == null || o.getClass() == last)
+                continue;
+            last = o.getClass();
+            if (common == null)
+                common = last;
+            while (!common.isAssignableFrom(last))
+                common = common.getSuperclass();
         }
+        return common;
+    }
+
+    /**
+     * Show only the elements matching a query, or all of them.
+     *
+     * @param query The compiled query, or null to remove the filter.
+     */
+    public void setQuery(ProbeQuery query) {
+        if (query != null && isAnArray && targetObj.getClass().getComponentType().isPrimitive())
+            throw new IllegalArgumentException("Arrays of primitives cannot be filtered.");
+        this.query = query;
+        update();
     }
 
-    private void updateAList() {
-        Collection<?> c = (Collection<?>) targetObj;
+    public ProbeQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * Return the number of elements of the probed object, whether they are
+     * shown or not.
+     *
+     * @return The element count at the last update.
+     */
+    public int getElementCount() {
+        return elementCount;
+    }
+
+    /**
+     * Return the time spent evaluating the query at the last update.
+     *
+     * @return The duration in nanoseconds, 0 if there is no query.
+     */
+    public long getQueryNanos() {
+        return query == null ? 0 : queryNanos;
+    }
 
-        data = new Object[c.size()][COLUMNS];
-        Iterator<?> itr = c.iterator();
-        int i = 0;
-        while (itr.hasNext()) {
-            Object o = itr.next();
-            data[i][COL_VALUE] = o.toString();
-            data[i][COL_TYPE] = o.getClass().getName();
-            data[i][COL_FIELD] = o;
-            i++;
+    private String getValueText(int row) {
+        Integer key = Integer.valueOf(row);
+        synchronized (valueCache) {
+            String text = valueCache.get(key);
+            if (text == null) {
+                Object o = getElement(row);
+                text = String.valueOf(o);
+                valueCache.put(key, text);
+            }
+            return text;
         }
     }
 
@@ -121,27 +242,36 @@ public class ObjectDataModel extends AbstractTableModel {
     }
 
     public int getColumnCount() {
-        if (data == null)
+        if (targetObj == null)
             return 0;
         else
             return COLUMNS - 1;
     }
 
     public Object getValueAt(int row, int col) {
-        return data[row][col + 1];
+        if (row >= rowCount)
+            return null;
+
+        switch (col + 1) {
+            case COL_VALUE:
+                return getValueText(row);
+            case COL_TYPE:
+                Object o = getElement(row);
+                return o == null ? "" : o.getClass().getName();
+            default:
+                return getElement(row);
+        }
     }
 
     public int getRowCount() {
-        if (data == null)
-            return 0;
-        else
-            return data.length;
+        return rowCount;
     }
 
+    @SuppressWarnings("unchecked")
     public void setValueAt(Object val, int row, int col) {
 
         try {
-            Object f = data[row][COL_FIELD];
+            Object f = getElement(row);
 
             if (f == null) {
                 JOptionPane.showMessageDialog(null, "The variable is null.\n It is impossible to edit.",
@@ -149,69 +279,53 @@ public class ObjectDataModel extends AbstractTableModel {
                 return;
             }
 
-            if (ProbeReflectionUtils.isEditable(f.getClass()))
-                if (isAnArray)
-                    setPrimitiveValueToArray(f, val, row);
-                else
-                    ProbeReflectionUtils.setValueToObject(f, val);
-            else {
+            if (!ProbeReflectionUtils.isEditable(f.getClass())) {
                 JOptionPane.showMessageDialog(null, "The variable is not a primitive.\n" +
                         "To edit its value you can open a probe to it. ",
                         "Probe editing variable", JOptionPane.INFORMATION_MESSAGE);
                 return;
             }
 
-        } catch (Exception e) {
-            System.out.println("Error setting field: " + e.getMessage());
-            return;
-        }
-        // Indicate the change has happened:
-        data[row][col + 1] = val;
-        fireTableDataChanged();
-    }
+            // Boxed values and strings are immutable and shared, so a new
+            // value replaces the element in its container
+            int index = getElementIndex(row);
+            if (isAnArray) {
+                Class<?> type = targetObj.getClass().getComponentType();
+                Object value = ProbeClassInfo.parse(type.isPrimitive() ? type : f.getClass(), val.toString());
+                if (arrayHandle == null)
+                    arrayHandle = MethodHandles.arrayElementVarHandle(targetObj.getClass());
+                arrayHandle.set(targetObj, index, value);
+            } else if (targetObj instanceof List) {
+                List<Object> list = (List<Object>) targetObj;
+                if (index >= list.size() || list.get(index) != f) {
+                    JOptionPane.showMessageDialog(null, "The list has changed.\nRefresh the probe and try again.",
+                            "Probe editing variable", JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+                Object value = ProbeClassInfo.parse(f.getClass(), val.toString());
+                list.set(index, value);
+                snapshot[index] = value;
+            } else {
+                JOptionPane.showMessageDialog(null, "The elements of a " + targetObj.getClass().getSimpleName()
+                        + " cannot be replaced.\nTo edit a value you can probe the object holding it.",
+                        "Probe editing variable", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
 
-    private void setPrimitiveValueToArray(Object o, Object val, int row) {
-        if (o instanceof String) {
-            Array.set(targetObj, row, val);
-            return;
-        }
-        if (o instanceof Integer) {
-            Array.setInt(targetObj, row, Integer.parseInt(val.toString()));
-            return;
-        }
-        if (o instanceof Double) {
-            Array.setDouble(targetObj, row, Double.parseDouble(val.toString()));
-            return;
-        }
-        if (o instanceof Boolean) {
-            Array.setBoolean(targetObj, row, Boolean.valueOf(val.toString()).booleanValue());
-            return;
-        }
-        if (o instanceof Byte) {
-            Array.setByte(targetObj, row, Byte.parseByte(val.toString()));
+        } catch (RuntimeException e) {
+            JOptionPane.showMessageDialog(null, e.getMessage(), "Probe editing variable", JOptionPane.ERROR_MESSAGE);
             return;
         }
-        if (o instanceof Character) {
-            Array.setChar(targetObj, row, val.toString().charAt(0));
-            return;
-        }
-        if (o instanceof Float) {
-            Array.setFloat(targetObj, row, Float.parseFloat(val.toString()));
-            return;
-        }
-        if (o instanceof Long) {
-            Array.setLong(targetObj, row, Long.parseLong(val.toString()));
-            return;
-        }
-        if (o instanceof Short) {
-            Array.setShort(targetObj, row, Short.parseShort(val.toString()));
-            return;
+        // Indicate the change has happened:
+        synchronized (valueCache) {
+            valueCache.remove(Integer.valueOf(row));
         }
+        fireTableRowsUpdated(row, row);
     }
 
     public Object getObjectAtRow(int row) {
         try {
-            return data[row][COL_FIELD];
+            return getElement(row);
         } catch (Exception e) {
             return null;
         }
@@ -219,7 +333,7 @@ public class ObjectDataModel extends AbstractTableModel {
 
     public String getObjectNameAtRow(int row) {
         try {
-            return data[row][COL_FIELD].getClass().getName();
+            return getElement(row).getClass().getName();
         } catch (Exception e) {
             return "";
         }
@@ -0,0 +1,486 @@
+package microsim.gui.probe;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Not of interest for users. Estimates the memory held by an object, walking
+ * the graph of the objects it references. It is used by the
+ * {@link PanelMemory} on a background thread, and can be cancelled.
+ * <p>
+ * The walk starts from each field of the object (or from each element, for
+ * collections and arrays), which is a row of the result. Every object reached
+ * is labelled with its row; an object reached from two rows is relabelled as
+ * shared, together with everything below it. At the end the retained size of
+ * a row is the size of the objects reachable only through it, i.e. what would
+ * be freed if the field were set to null and nothing outside the probed
+ * object referenced them.
+ * <p>
+ * Sizes are estimates computed from the field layouts cached in
+ * {@link ProbeClassInfo}. The internals of JDK classes cannot be read: their
+ * collections are walked through their public interface, and strings are
+ * assumed to hold one byte per character. Class objects are not followed.
+ */
+class ObjectGraphWalker implements Runnable {
+
+    /** The label of objects reachable from more than one row. */
+    static final int SHARED = -1;
+
+    /** The maximum number of rows for collections and arrays. */
+    static final int MAX_ROWS = 1000;
+
+    /** The walk stops after this number of objects, to bound its memory. */
+    static final int MAX_OBJECTS = 5000000;
+
+    private final Object root;
+
+    private final String[] names;
+    private final Object[] values;
+    private final long[] shallow;
+    private final long[] retained;
+    private final long[] retainedObjects;
+    // The row grouping the elements beyond MAX_ROWS, -1 if none
+    private final int othersRow;
+    private long sharedBytes;
+    private long sharedObjects;
+    private long rootBytes;
+
+    private final IdentityMap visited = new IdentityMap();
+    private final ObjectStack stack = new ObjectStack();
+
+    private volatile long visitedObjects;
+    private volatile long visitedBytes;
+    private volatile boolean cancelled;
+    private volatile boolean done;
+    private volatile boolean truncated;
+    private volatile Throwable error;
+
+    ObjectGraphWalker(Object root) {
+        this.root = root;
+
+        Object[] elements = null;
+        int others = -1;
+        if (root.getClass().isArray() && !root.getClass().getComponentType().isPrimitive())
+            elements = (Object[]) root;
+        else if (root instanceof Collection)
+            elements = ((Collection<?>) root).toArray();
+        else if (root instanceof Map)
+            elements = ((Map<?, ?>) root).values().toArray();
+
+        if (elements != null) {
+            // One row per element, the rest grouped in a last row
+            int n = Math.min(elements.length, MAX_ROWS);
+            if (elements.length > MAX_ROWS)
+                others = n;
+            names = new String[others >= 0 ? n + 1 : n];
+            values = new Object[names.length];
+            for (int i = 0; i < n; i++) {
+                names[i] = "[" + i + "]";
+                values[i] = elements[i];
+            }
+            if (others >= 0) {
+                Object[] rest = new Object[elements.length - n];
+                System.arraycopy(elements, n, rest, 0, rest.length);
+                names[n] = "[" + n + "..." + (elements.length - 1) + "]";
+                values[n] = rest;
+            }
+        } else if (root.getClass().isArray()) {
+            names = new String[0];
+            values = new Object[0];
+        } else {
+            ProbeClassInfo.FieldAccessor[] fields = ProbeClassInfo.of(root.getClass()).getReferenceFields();
+            names = new String[fields.length];
+            values = new Object[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                names[i] = fields[i].name;
+                values[i] = fields[i].get(root);
+            }
+        }
+        othersRow = others;
+        shallow = new long[names.length];
+        retained = new long[names.length];
+        retainedObjects = new long[names.length];
+    }
+
+    public void run() {
+        try {
+            // The probed object is the owner of the rows, not part of them
+            rootBytes = sizeOf(root);
+            visited.put(root, SHARED);
+            for (int i = 0; i < values.length && !cancelled; i++) {
+                // The rest of a large collection is a synthetic array
+                if (values[i] != null)
+                    shallow[i] = i == othersRow ? 0 : sizeOf(values[i]);
+                walk(values[i], i, i == othersRow);
+            }
+        } catch (Throwable e) {
+            error = e;
+        } finally {
+            visitedObjects = visited.size();
+            visited.clear();
+            stack.clear();
+            done = true;
+        }
+    }
+
+    private void walk(Object start, int label, boolean synthetic) {
+        if (start == null)
+            return;
+        if (synthetic) {
+            for (Object o : (Object[]) start)
+                if (o != null)
+                    stack.push(o, label);
+        } else
+            stack.push(start, label);
+
+        while (!stack.isEmpty()) {
+            if (cancelled)
+                return;
+            int l = stack.peekLabel();
+            Object o = stack.pop();
+
+            int slot = visited.find(o);
+            if (slot >= 0) {
+                int owner = visited.valueAt(slot);
+                if (owner == l || owner == SHARED)
+                    continue;
+                // Reached from another row: it and what it holds are shared
+                visited.setValueAt(slot, SHARED);
+                long size = sizeOf(o);
+                retained[owner] -= size;
+                retainedObjects[owner]--;
+                sharedBytes += size;
+                sharedObjects++;
+                pushChildren(o, SHARED);
+                continue;
+            }
+
+            if (visited.size() >= MAX_OBJECTS) {
+                truncated = true;
+                cancelled = true;
+                return;
+            }
+            visited.put(o, l);
+            long size = sizeOf(o);
+            if (l == SHARED) {
+                sharedBytes += size;
+                sharedObjects++;
+            } else {
+                retained[l] += size;
+                retainedObjects[l]++;
+            }
+            if ((visited.size() & 0xFFF) == 0) {
+                visitedObjects = visited.size();
+                visitedBytes = getTotalBytes();
+            }
+            pushChildren(o, l);
+        }
+    }
+
+    private long getTotalBytes() {
+        long total = rootBytes + sharedBytes;
+        for (long r : retained)
+            total += r;
+        return total;
+    }
+
+    private void pushChildren(Object o, int label) {
+        Class<?> type = o.getClass();
+        if (type.isArray()) {
+            if (!type.getComponentType().isPrimitive())
+                for (Object child : (Object[]) o)
+                    if (child != null)
+                        stack.push(child, label);
+            return;
+        }
+        if (type == Class.class)
+            return;
+
+        boolean opaque = false;
+        for (ProbeClassInfo.FieldAccessor f : ProbeClassInfo.of(type).getReferenceFields()) {
+            if (f.getter == null) {
+                opaque = true;
+                continue;
+            }
+            Object child = f.get(o);
+            if (child != null)
+                stack.push(child, label);
+        }
+        if (!opaque)
+            return;
+
+        // The fields of JDK classes are hidden: use their interface
+        try {
+            if (o instanceof Collection) {
+                for (Object child : ((Collection<?>) o).toArray())
+                    if (child != null)
+                        stack.push(child, label);
+            } else if (o instanceof Map) {
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) o).entrySet()) {
+                    if (e.getKey() != null)
+                        stack.push(e.getKey(), label);
+                    if (e.getValue() != null)
+                        stack.push(e.getValue(), label);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Modified by the simulation while walking it
+        }
+    }
+
+    /**
+     * Estimate the shallow size of an object, including the hidden arrays of
+     * strings and JDK collections.
+     */
+    static long sizeOf(Object o) {
+        Class<?> type = o.getClass();
+        if (type.isArray())
+            return ProbeClassInfo.align(ProbeClassInfo.ARRAY_HEADER
+                    + (long) Array.getLength(o) * ProbeClassInfo.sizeOf(type.getComponentType()));
+
+        ProbeClassInfo info = ProbeClassInfo.of(type);
+        long size = info.getShallowSize();
+        if (o instanceof String)
+            return size + ProbeClassInfo.align(ProbeClassInfo.ARRAY_HEADER + ((String) o).length());
+
+        boolean opaque = false;
+        for (ProbeClassInfo.FieldAccessor f : info.getReferenceFields())
+            if (f.getter == null) {
+                opaque = true;
+                break;
+            }
+        if (!opaque)
+            return size;
+        try {
+            if (o instanceof Collection)
+                size += ProbeClassInfo.align(ProbeClassInfo.ARRAY_HEADER
+                        + (long) ((Collection<?>) o).size() * ProbeClassInfo.REFERENCE_SIZE);
+            else if (o instanceof Map) {
+                // A table slot and an entry of hash, key, value and next
+                long n = ((Map<?, ?>) o).size();
+                size += ProbeClassInfo.align(ProbeClassInfo.ARRAY_HEADER + n * ProbeClassInfo.REFERENCE_SIZE)
+                        + n * ProbeClassInfo.align(ProbeClassInfo.OBJECT_HEADER + 4 + 3 * ProbeClassInfo.REFERENCE_SIZE);
+            }
+        } catch (RuntimeException e) {
+            // Modified by the simulation while walking it
+        }
+        return size;
+    }
+
+    /** Stop the walk as soon as possible. */
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() {
+        return cancelled && !truncated;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Check if the walk stopped at {@link #MAX_OBJECTS}, so that the sizes
+     * are underestimated.
+     *
+     * @return True if the graph was not walked entirely.
+     */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    Throwable getError() {
+        return error;
+    }
+
+    long getVisitedObjects() {
+        return visitedObjects;
+    }
+
+    long getVisitedBytes() {
+        return done ? getTotalBytes() : visitedBytes;
+    }
+
+    int getRowCount() {
+        return names.length;
+    }
+
+    String getName(int row) {
+        return names[row];
+    }
+
+    String getTypeName(int row) {
+        Object v = values[row];
+        if (row == othersRow)
+            return "";
+        return v == null ? "null" : v.getClass().getName();
+    }
+
+    long getShallowBytes(int row) {
+        return shallow[row];
+    }
+
+    long getRetainedBytes(int row) {
+        return retained[row];
+    }
+
+    long getRetainedObjects(int row) {
+        return retainedObjects[row];
+    }
+
+    long getSharedBytes() {
+        return sharedBytes;
+    }
+
+    long getSharedObjects() {
+        return sharedObjects;
+    }
+
+    long getRootBytes() {
+        return rootBytes;
+    }
+
+    /**
+     * An identity map from objects to int labels, with open addressing and
+     * linear probing on <code>System.identityHashCode</code>. The hash codes
+     * are kept in a primitive array so that probing compares ints before
+     * references, and no entry object is allocated.
+     */
+    static class IdentityMap {
+
+        private int[] hashes;
+        private Object[] keys;
+        private int[] labels;
+        private int size;
+        private int mask;
+
+        IdentityMap() {
+            allocate(1 << 10);
+        }
+
+        private void allocate(int capacity) {
+            hashes = new int[capacity];
+            keys = new Object[capacity];
+            labels = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        private static int hash(Object o) {
+            // identityHashCode has few significant low bits on some JVMs
+            int h = System.identityHashCode(o) * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+
+        /**
+         * Find an object.
+         *
+         * @param o The object.
+         * @return Its slot, or a negative value if absent.
+         */
+        int find(Object o) {
+            int h = hash(o);
+            for (int i = h & mask;; i = (i + 1) & mask) {
+                Object k = keys[i];
+                if (k == null)
+                    return -1;
+                if (hashes[i] == h && k == o)
+                    return i;
+            }
+        }
+
+        /** Add an object known to be absent. */
+        void put(Object o, int label) {
+            if (2 * (size + 1) > keys.length)
+                resize();
+            int h = hash(o);
+            int i = h & mask;
+            while (keys[i] != null)
+                i = (i + 1) & mask;
+            hashes[i] = h;
+            keys[i] = o;
+            labels[i] = label;
+            size++;
+        }
+
+        int valueAt(int slot) {
+            return labels[slot];
+        }
+
+        void setValueAt(int slot, int label) {
+            labels[slot] = label;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            allocate(1 << 10);
+            size = 0;
+        }
+
+        private void resize() {
+            int[] oldHashes = hashes;
+            Object[] oldKeys = keys;
+            int[] oldLabels = labels;
+            allocate(oldKeys.length * 2);
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == null)
+                    continue;
+                int i = oldHashes[j] & mask;
+                while (keys[i] != null)
+                    i = (i + 1) & mask;
+                hashes[i] = oldHashes[j];
+                keys[i] = oldKeys[j];
+                labels[i] = oldLabels[j];
+            }
+        }
+    }
+
+    /**
+     * The stack of objects to be visited, with their label, in two growable
+     * arrays.
+     */
+    static class ObjectStack {
+
+        private Object[] objects = new Object[256];
+        private int[] labels = new int[256];
+        private int size;
+
+        void push(Object o, int label) {
+            if (size == objects.length) {
+                Object[] o2 = new Object[size * 2];
+                int[] l2 = new int[size * 2];
+                System.arraycopy(objects, 0, o2, 0, size);
+                System.arraycopy(labels, 0, l2, 0, size);
+                objects = o2;
+                labels = l2;
+            }
+            objects[size] = o;
+            labels[size] = label;
+            size++;
+        }
+
+        int peekLabel() {
+            return labels[size - 1];
+        }
+
+        Object pop() {
+            Object o = objects[--size];
+            objects[size] = null;
+            return o;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            objects = new Object[256];
+            labels = new int[256];
+            size = 0;
+        }
+    }
+}
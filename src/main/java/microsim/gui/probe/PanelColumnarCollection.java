@@ -0,0 +1,215 @@
+package microsim.gui.probe;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.DefaultListModel;
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.ListSelectionModel;
+import javax.swing.Timer;
+
+/**
+ * Not of interest for users. The panel showing chosen numeric fields of the
+ * elements of a collection side by side, with their count, mean, min,
+ * quantiles and max. Clicking on a column header sorts the rows by that
+ * column, clicking again inverts the order.
+ * <p>
+ * Values are read when the "Extract" button is pressed, and again at each
+ * probe refresh, on a background thread which can be cancelled. A Swing timer
+ * shows the values when the reading is over.
+ */
+public class PanelColumnarCollection extends JPanel {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    private static final int POLL_MILLIS = 200;
+
+    ColumnarDataModel dataModel;
+    private List<ProbeClassInfo.FieldAccessor> numericFields;
+    private ColumnarDataModel.Reading reading;
+
+    DefaultListModel<String> fieldListModel = new DefaultListModel<String>();
+    JList<String> jListFields = new JList<String>(fieldListModel);
+    JTable jTableValues = new JTable();
+    JTable jTableStatistics = new JTable();
+    JButton jBtnExtract = new JButton();
+    JButton jBtnCancel = new JButton();
+    JButton jBtnNewProbe = new JButton();
+    JLabel jLblStatus = new JLabel();
+
+    private final Timer timer = new Timer(POLL_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            poll();
+        }
+    });
+
+    public PanelColumnarCollection(Object o) {
+        try {
+            dataModel = new ColumnarDataModel(o);
+            numericFields = dataModel.getNumericFields();
+            jbInit();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    void jbInit() throws Exception {
+        this.setLayout(new BorderLayout());
+
+        for (ProbeClassInfo.FieldAccessor f : numericFields)
+            fieldListModel.addElement(f.name);
+        jListFields.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+        jListFields.setToolTipText("The numeric fields to be shown");
+
+        jTableValues.setModel(dataModel);
+        jTableValues.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        jTableValues.getTableHeader().setReorderingAllowed(false);
+        jTableValues.getTableHeader().addMouseListener(new java.awt.event.MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                int column = jTableValues.columnAtPoint(e.getPoint());
+                if (column >= 0)
+                    dataModel.sortBy(jTableValues.convertColumnIndexToModel(column));
+            }
+        });
+        jTableValues.addMouseListener(new java.awt.event.MouseAdapter() {
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2)
+                    openNewProbe();
+            }
+        });
+        jTableStatistics.setModel(dataModel.getStatisticsModel());
+
+        jBtnExtract.setText("Extract");
+        jBtnExtract.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                extractSelected();
+            }
+        });
+        jBtnCancel.setText("Cancel");
+        jBtnCancel.setEnabled(false);
+        jBtnCancel.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                cancel();
+            }
+        });
+        jBtnNewProbe.setText("Open probe on selected object");
+        jBtnNewProbe.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                openNewProbe();
+            }
+        });
+
+        JPanel jPanelFields = new JPanel(new BorderLayout());
+        jPanelFields.add(new JScrollPane(jListFields), BorderLayout.CENTER);
+        JPanel jPanelExtract = new JPanel(new FlowLayout());
+        jPanelExtract.add(jBtnExtract);
+        jPanelExtract.add(jBtnCancel);
+        jPanelFields.add(jPanelExtract, BorderLayout.SOUTH);
+
+        JSplitPane jSplitTables = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(jTableValues),
+                new JScrollPane(jTableStatistics));
+        jSplitTables.setResizeWeight(0.75);
+
+        JPanel jPanelButtons = new JPanel(new FlowLayout());
+        jPanelButtons.add(jBtnNewProbe);
+        jPanelButtons.add(jLblStatus);
+
+        this.add(new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, jPanelFields, jSplitTables), BorderLayout.CENTER);
+        this.add(jPanelButtons, BorderLayout.SOUTH);
+    }
+
+    private void extractSelected() {
+        int[] selected = jListFields.getSelectedIndices();
+        if (selected.length == 0) {
+            JOptionPane.showMessageDialog(null, "Please select the fields to show first.",
+                    "Columnar view", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        List<ProbeClassInfo.FieldAccessor> list = new ArrayList<ProbeClassInfo.FieldAccessor>(selected.length);
+        for (int i : selected)
+            list.add(numericFields.get(i));
+        start(dataModel.read(list));
+    }
+
+    /** Start a reading on a background thread, unless one is running. */
+    private void start(ColumnarDataModel.Reading r) {
+        if (r == null || (reading != null && !reading.isDone()))
+            return;
+        reading = r;
+        Thread thread = new Thread(r, "Probe columnar view");
+        thread.setDaemon(true);
+        thread.start();
+
+        jBtnExtract.setEnabled(false);
+        jBtnCancel.setEnabled(true);
+        timer.start();
+    }
+
+    /** Stop the running reading, if any. */
+    public void cancel() {
+        if (reading != null)
+            reading.cancel();
+    }
+
+    private void poll() {
+        ColumnarDataModel.Reading r = reading;
+        if (!r.isDone()) {
+            int n = r.getElementCount();
+            jLblStatus.setText(n < 0 ? "Copying the elements..." : "Reading " + n + " elements...");
+            return;
+        }
+
+        timer.stop();
+        jBtnExtract.setEnabled(true);
+        jBtnCancel.setEnabled(false);
+        dataModel.show(r);
+
+        if (r.getError() != null) {
+            jLblStatus.setText("Error: " + r.getError());
+            r.getError().printStackTrace();
+        } else if (r.isCancelled())
+            jLblStatus.setText("Cancelled, showing the previous values.");
+        else
+            jLblStatus.setText(r.getElementCount() + " elements");
+    }
+
+    private void openNewProbe() {
+        if (jTableValues.getSelectedRow() < 0) {
+            JOptionPane.showMessageDialog(null, "Please select an element to probe first.",
+                    "Probe an element of a list", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        Object o = dataModel.getObjectAtRow(jTableValues.getSelectedRow());
+        if (o == null) {
+            JOptionPane.showMessageDialog(null, "The selected element is null.",
+                    "Probe an element of a list", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        ProbeFrame pF = new ProbeFrame(o, this.toString() + "." + o.getClass().getName());
+        pF.setVisible(true);
+    }
+
+    public void updateList() {
+        // A refresh arriving while reading is dropped, the next one reads again
+        start(dataModel.reread());
+    }
+
+    public Object getProbedObject() {
+        return dataModel.getProbedObject();
+    }
+}
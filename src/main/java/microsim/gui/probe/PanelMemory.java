@@ -0,0 +1,186 @@
+package microsim.gui.probe;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Not of interest for users. The panel of the probe showing an estimate of
+ * the memory held by each field of the probed object (or by each element of
+ * a collection), computed by an {@link ObjectGraphWalker}.
+ * <p>
+ * The graph is walked on a background thread when the "Analyse" button is
+ * pressed, and can be cancelled. A Swing timer shows the progress and fills
+ * the table when the walk is over.
+ */
+public class PanelMemory extends JPanel {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    private static final int POLL_MILLIS = 200;
+
+    private final Object probedObject;
+    private ObjectGraphWalker walker;
+    private Thread thread;
+
+    private final MemoryTableModel model = new MemoryTableModel();
+
+    JTable jTableMemory = new JTable(model);
+    JButton jBtnAnalyse = new JButton();
+    JButton jBtnCancel = new JButton();
+    JLabel jLblStatus = new JLabel();
+
+    private final Timer timer = new Timer(POLL_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            poll();
+        }
+    });
+
+    public PanelMemory(Object o) {
+        probedObject = o;
+        try {
+            jbInit();
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    void jbInit() throws Exception {
+        this.setLayout(new BorderLayout());
+        jTableMemory.setAutoCreateRowSorter(true);
+
+        jBtnAnalyse.setText("Analyse");
+        jBtnAnalyse.setToolTipText("Walk the objects referenced by the probed object and estimate their size");
+        jBtnAnalyse.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                start();
+            }
+        });
+        jBtnCancel.setText("Cancel");
+        jBtnCancel.setEnabled(false);
+        jBtnCancel.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                cancel();
+            }
+        });
+        jLblStatus.setText("Press Analyse to estimate the memory held by each field.");
+
+        JPanel jPanelButtons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        jPanelButtons.add(jBtnAnalyse);
+        jPanelButtons.add(jBtnCancel);
+        jPanelButtons.add(jLblStatus);
+
+        this.add(new JScrollPane(jTableMemory), BorderLayout.CENTER);
+        this.add(jPanelButtons, BorderLayout.SOUTH);
+    }
+
+    /** Start walking the object graph on a background thread. */
+    public void start() {
+        if (thread != null && thread.isAlive())
+            return;
+        walker = new ObjectGraphWalker(probedObject);
+        model.fireTableDataChanged();
+
+        thread = new Thread(walker, "Probe memory analysis");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+
+        jBtnAnalyse.setEnabled(false);
+        jBtnCancel.setEnabled(true);
+        timer.start();
+    }
+
+    /** Stop the running walk, if any. */
+    public void cancel() {
+        if (walker != null)
+            walker.cancel();
+    }
+
+    private void poll() {
+        ObjectGraphWalker w = walker;
+        if (!w.isDone()) {
+            jLblStatus.setText("Walking: " + w.getVisitedObjects() + " objects, "
+                    + formatBytes(w.getVisitedBytes()));
+            return;
+        }
+
+        timer.stop();
+        jBtnAnalyse.setEnabled(true);
+        jBtnCancel.setEnabled(false);
+        model.fireTableDataChanged();
+
+        if (w.getError() != null) {
+            jLblStatus.setText("Error: " + w.getError());
+            w.getError().printStackTrace();
+            return;
+        }
+        String status = w.getVisitedObjects() + " objects, " + formatBytes(w.getVisitedBytes()) + " (object "
+                + formatBytes(w.getRootBytes()) + ", shared " + formatBytes(w.getSharedBytes()) + " in "
+                + w.getSharedObjects() + " objects)";
+        if (w.isTruncated())
+            status = "Stopped after " + status;
+        else if (w.isCancelled())
+            status = "Cancelled after " + status;
+        jLblStatus.setText(status);
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 10L * 1024)
+            return bytes + " B";
+        if (bytes < 10L * 1024 * 1024)
+            return (bytes / 1024) + " KB";
+        return (bytes / (1024 * 1024)) + " MB";
+    }
+
+    private class MemoryTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns = { "Field", "Type", "Shallow bytes", "Retained bytes", "Retained objects" };
+
+        public int getRowCount() {
+            ObjectGraphWalker w = walker;
+            return w == null || !w.isDone() ? 0 : w.getRowCount();
+        }
+
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        public Class<?> getColumnClass(int column) {
+            return column < 2 ? String.class : Long.class;
+        }
+
+        public Object getValueAt(int row, int column) {
+            ObjectGraphWalker w = walker;
+            switch (column) {
+            case 0:
+                return w.getName(row);
+            case 1:
+                return w.getTypeName(row);
+            case 2:
+                return Long.valueOf(w.getShallowBytes(row));
+            case 3:
+                return Long.valueOf(w.getRetainedBytes(row));
+            default:
+                return Long.valueOf(w.getRetainedObjects(row));
+            }
+        }
+    }
+}
@@ -48,6 +48,12 @@ public class PanelObjectCollection extends JPanel {
     ObjectDataModel dataModel;
 
     JButton jBtnNewProbe = new JButton();
+    JButton jBtnColumns = new JButton();
+    JTextField jTxtQuery = new JTextField();
+    JButton jBtnFilter = new JButton();
+    JButton jBtnClearFilter = new JButton();
+    JLabel jLblMatches = new JLabel();
+    PanelColumnarCollection columnarPanel;
     JScrollPane jScrollPaneObjects = new JScrollPane();
     JTable jTableObjects = new JTable();
 
@@ -76,11 +82,51 @@ public class PanelObjectCollection extends JPanel {
             }
         });
 
+        jBtnColumns.setText("Columnar view");
+        jBtnColumns.setToolTipText("Show numeric fields of all the elements, with their statistics");
+        jBtnColumns.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                openColumnarView();
+            }
+        });
+
+        jTxtQuery.setToolTipText("Show the elements matching an expression, e.g. age > 90 and income < 0");
+        jTxtQuery.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                applyQuery();
+            }
+        });
+        jBtnFilter.setText("Filter");
+        jBtnFilter.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                applyQuery();
+            }
+        });
+        jBtnClearFilter.setText("Clear");
+        jBtnClearFilter.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                jTxtQuery.setText("");
+                applyQuery();
+            }
+        });
+        JPanel jPanelQuery = new JPanel(new BorderLayout(4, 0));
+        JPanel jPanelQueryButtons = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        jPanelQueryButtons.add(jBtnFilter);
+        jPanelQueryButtons.add(jBtnClearFilter);
+        jPanelQueryButtons.add(jLblMatches);
+        jPanelQuery.add(new JLabel(" Filter:"), BorderLayout.WEST);
+        jPanelQuery.add(jTxtQuery, BorderLayout.CENTER);
+        jPanelQuery.add(jPanelQueryButtons, BorderLayout.EAST);
+        this.add(jPanelQuery, BorderLayout.NORTH);
+
         for (int i = 0; i < jTableObjects.getColumnModel().getColumnCount(); i++)
             jTableObjects.getColumnModel().getColumn(i).setHeaderValue(
                     dataModel.getHeaderText(i));
 
-        this.add(jBtnNewProbe, BorderLayout.SOUTH);
+        JPanel jPanelButtons = new JPanel(new FlowLayout());
+        jPanelButtons.add(jBtnNewProbe);
+        jPanelButtons.add(jBtnColumns);
+        this.add(jPanelButtons, BorderLayout.SOUTH);
         this.add(jScrollPaneObjects, BorderLayout.CENTER);
         jScrollPaneObjects.getViewport().add(jTableObjects, null);
     }
@@ -107,9 +153,59 @@ public class PanelObjectCollection extends JPanel {
         pF.setVisible(true);
     }
 
+    private void applyQuery() {
+        String text = jTxtQuery.getText().trim();
+        if (text.length() == 0) {
+            dataModel.setQuery(null);
+            jLblMatches.setText("");
+            return;
+        }
+
+        Class<?> type = dataModel.getElementClass();
+        if (type == null) {
+            JOptionPane.showMessageDialog(null, "The elements of this collection cannot be filtered.",
+                    "Filter a list", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        try {
+            dataModel.setQuery(ProbeQuery.compile(text, type));
+        } catch (IllegalArgumentException ex) {
+            JOptionPane.showMessageDialog(null, ex.getMessage(), "Filter a list", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        showMatches();
+    }
+
+    private void showMatches() {
+        if (dataModel.getQuery() == null)
+            return;
+        jLblMatches.setText(dataModel.getRowCount() + " of " + dataModel.getElementCount() + " ("
+                + (dataModel.getQueryNanos() / 1000000L) + " ms)");
+    }
+
+    /**
+     * Open the columnar view of the collection in a new tab next to this
+     * panel, or select it if already open.
+     */
+    private void openColumnarView() {
+        JTabbedPane tabs = (JTabbedPane) SwingUtilities.getAncestorOfClass(JTabbedPane.class, this);
+        if (tabs == null)
+            return;
+        if (columnarPanel == null || tabs.indexOfComponent(columnarPanel) < 0) {
+            columnarPanel = new PanelColumnarCollection(dataModel.getProbedObject());
+            int i = tabs.indexOfComponent(this);
+            tabs.add(columnarPanel, (i >= 0 ? tabs.getTitleAt(i) : "List values") + " (columns)");
+        }
+        tabs.setSelectedComponent(columnarPanel);
+    }
+
     public void updateList() {
+        // The model notifies the table of the changed rows
         dataModel.update();
-        updateUI();
+        showMatches();
+        // Extraction reads every element, so only when visible
+        if (columnarPanel != null && columnarPanel.isShowing())
+            columnarPanel.updateList();
     }
 
     public Object getProbedObject() {
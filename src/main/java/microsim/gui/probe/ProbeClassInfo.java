@@ -0,0 +1,506 @@
+package microsim.gui.probe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Not of interest for users. The reflective metadata used by the probes,
+ * resolved once per class and cached through a <code>ClassValue</code>: the
+ * declared and public fields with their accessors, the declared methods and
+ * the collection and array flags.
+ * <p>
+ * Field accessors are <code>MethodHandle</code> getters adapted to the
+ * <code>(Object)Object</code> type, plus the <code>VarHandle</code> of the
+ * field. Fields of classes that cannot be opened (e.g. JDK internals) have no
+ * accessor and read as null.
+ */
+class ProbeClassInfo {
+
+    private static final ClassValue<ProbeClassInfo> CACHE = new ClassValue<ProbeClassInfo>() {
+        protected ProbeClassInfo computeValue(Class<?> type) {
+            return new ProbeClassInfo(type);
+        }
+    };
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType CONVERTER_TYPE = MethodType.methodType(Object.class, String.class);
+
+    // Object layout estimates, assuming compressed references below 32 GB
+    static final int REFERENCE_SIZE = Runtime.getRuntime().maxMemory() < (32L << 30) ? 4 : 8;
+    static final int OBJECT_HEADER = REFERENCE_SIZE == 4 ? 12 : 16;
+    static final int ARRAY_HEADER = REFERENCE_SIZE == 4 ? 16 : 24;
+
+    // Parse the text entered by the user into a value of a given type
+    private static final ClassValue<MethodHandle> CONVERTERS = new ClassValue<MethodHandle>() {
+        protected MethodHandle computeValue(Class<?> type) {
+            return findConverter(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final boolean collection;
+    private final boolean array;
+
+    // Resolved lazily, as most classes are only checked for the flags
+    private volatile FieldAccessor[] declaredFields;
+    private volatile FieldAccessor[] publicFields;
+    private volatile Method[] declaredMethods;
+    private volatile FieldAccessor[] referenceFields;
+    private volatile long shallowSize = -1;
+    private final Map<Method, MethodInvoker> invokers = new ConcurrentHashMap<Method, MethodInvoker>();
+
+    private ProbeClassInfo(Class<?> type) {
+        this.type = type;
+        this.collection = Collection.class.isAssignableFrom(type);
+        this.array = type.isArray();
+    }
+
+    /**
+     * Return the cached metadata of a class.
+     *
+     * @param type The class.
+     * @return Its metadata.
+     */
+    static ProbeClassInfo of(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    boolean isCollection() {
+        return collection;
+    }
+
+    boolean isArray() {
+        return array;
+    }
+
+    /**
+     * Return the metadata of the superclass.
+     *
+     * @return The superclass metadata, or null for Object, interfaces and
+     *         primitives.
+     */
+    ProbeClassInfo getSuperclassInfo() {
+        Class<?> sup = type.getSuperclass();
+        return sup == null ? null : of(sup);
+    }
+
+    /**
+     * Return the fields declared by the class, whatever their visibility.
+     *
+     * @return The shared array of accessors. Must not be modified.
+     */
+    FieldAccessor[] getDeclaredFields() {
+        FieldAccessor[] fields = declaredFields;
+        if (fields == null)
+            declaredFields = fields = resolve(type.getDeclaredFields());
+        return fields;
+    }
+
+    /**
+     * Return the public fields of the class, including inherited ones.
+     *
+     * @return The shared array of accessors. Must not be modified.
+     */
+    FieldAccessor[] getPublicFields() {
+        FieldAccessor[] fields = publicFields;
+        if (fields == null)
+            publicFields = fields = resolve(type.getFields());
+        return fields;
+    }
+
+    /**
+     * Return the methods declared by the class, made accessible when possible.
+     *
+     * @return The shared array of methods. Must not be modified.
+     */
+    Method[] getDeclaredMethods() {
+        Method[] methods = declaredMethods;
+        if (methods == null) {
+            methods = type.getDeclaredMethods();
+            for (Method m : methods) {
+                try {
+                    m.setAccessible(true);
+                } catch (RuntimeException e) {
+                    // Not opened to us, only public methods will be invocable
+                }
+            }
+            declaredMethods = methods;
+        }
+        return methods;
+    }
+
+    /**
+     * Return the non-static fields of reference type of the class and of its
+     * superclasses, the ones followed when walking an object graph.
+     *
+     * @return The shared array of accessors. Must not be modified.
+     */
+    FieldAccessor[] getReferenceFields() {
+        FieldAccessor[] fields = referenceFields;
+        if (fields == null) {
+            List<FieldAccessor> list = new ArrayList<FieldAccessor>();
+            for (ProbeClassInfo info = this; info != null; info = info.getSuperclassInfo())
+                for (FieldAccessor f : info.getDeclaredFields())
+                    if (!f.isStatic && !f.fieldType.isPrimitive())
+                        list.add(f);
+            referenceFields = fields = list.toArray(new FieldAccessor[list.size()]);
+        }
+        return fields;
+    }
+
+    /**
+     * Estimate the size of an instance of the class, without the objects it
+     * references: object header plus instance fields, rounded up to 8 bytes.
+     * The actual layout depends on the JVM; compressed references are assumed
+     * for heaps below 32 GB.
+     *
+     * @return The size in bytes. For arrays, the size of the header only.
+     */
+    long getShallowSize() {
+        long size = shallowSize;
+        if (size < 0) {
+            if (array)
+                size = ARRAY_HEADER;
+            else {
+                size = OBJECT_HEADER;
+                for (ProbeClassInfo info = this; info != null; info = info.getSuperclassInfo())
+                    for (Field f : info.type.getDeclaredFields())
+                        if (!Modifier.isStatic(f.getModifiers()))
+                            size += sizeOf(f.getType());
+                size = align(size);
+            }
+            shallowSize = size;
+        }
+        return size;
+    }
+
+    /**
+     * Return the size of a field or array element of the given type.
+     *
+     * @param type The type.
+     * @return The size in bytes.
+     */
+    static int sizeOf(Class<?> type) {
+        if (type == long.class || type == double.class)
+            return 8;
+        if (type == int.class || type == float.class)
+            return 4;
+        if (type == short.class || type == char.class)
+            return 2;
+        if (type == byte.class || type == boolean.class)
+            return 1;
+        return REFERENCE_SIZE;
+    }
+
+    static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * Return the invoker of a method declared by the class, built at the
+     * first call.
+     *
+     * @param m The method.
+     * @return Its cached invoker.
+     */
+    MethodInvoker getInvoker(Method m) {
+        MethodInvoker invoker = invokers.get(m);
+        if (invoker == null) {
+            invoker = new MethodInvoker(m);
+            MethodInvoker previous = invokers.putIfAbsent(m, invoker);
+            if (previous != null)
+                invoker = previous;
+        }
+        return invoker;
+    }
+
+    /**
+     * Check if values of a type can be entered as text, i.e. if it is a
+     * primitive, a wrapper, a String or a class with a valueOf(String) method
+     * or a String constructor.
+     *
+     * @param type The type.
+     * @return True if {@link #parse(Class, String)} can create its values.
+     */
+    static boolean isParsable(Class<?> type) {
+        return CONVERTERS.get(type) != null;
+    }
+
+    /**
+     * Parse a value entered as text.
+     *
+     * @param type The type of the value.
+     * @param text The text.
+     * @return The value, boxed for primitive types.
+     * @throws IllegalArgumentException If the text is not valid for the type.
+     */
+    static Object parse(Class<?> type, String text) {
+        if (type == boolean.class || type == Boolean.class) {
+            // Boolean.valueOf would read anything else as false
+            String trimmed = text == null ? "" : text.trim();
+            if (!trimmed.equalsIgnoreCase("true") && !trimmed.equalsIgnoreCase("false"))
+                throw new IllegalArgumentException("Invalid value '" + text + "' for type " + type.getName()
+                        + ": either true or false.");
+            return Boolean.valueOf(trimmed);
+        }
+        MethodHandle converter = CONVERTERS.get(type);
+        if (converter == null)
+            throw new IllegalArgumentException("Values of type " + type.getName() + " cannot be entered.");
+        try {
+            return (Object) converter.invokeExact(text);
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Invalid value '" + text + "' for type " + type.getName() + ".");
+        }
+    }
+
+    private static MethodHandle findConverter(Class<?> type) {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            if (type == String.class)
+                return MethodHandles.identity(String.class).asType(CONVERTER_TYPE);
+            if (type == char.class || type == Character.class)
+                return MethodHandles.insertArguments(
+                        lookup.findVirtual(String.class, "charAt", MethodType.methodType(char.class, int.class)), 1,
+                        0).asType(CONVERTER_TYPE);
+            if (type == void.class)
+                return null;
+            if (type.isPrimitive())
+                type = MethodType.methodType(type).wrap().returnType();
+            try {
+                return lookup.findStatic(type, "valueOf", MethodType.methodType(type, String.class))
+                        .asType(CONVERTER_TYPE);
+            } catch (NoSuchMethodException e) {
+                return lookup.findConstructor(type, MethodType.methodType(void.class, String.class))
+                        .asType(CONVERTER_TYPE);
+            }
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static FieldAccessor[] resolve(Field[] fields) {
+        List<FieldAccessor> list = new ArrayList<FieldAccessor>(fields.length);
+        for (Field f : fields)
+            list.add(new FieldAccessor(f));
+        return list.toArray(new FieldAccessor[list.size()]);
+    }
+
+    /**
+     * The accessors of a single field. The <code>typedGetter</code> has type
+     * <code>(Object)T</code>, T being the field type, so primitive values can
+     * be read without boxing.
+     */
+    static class FieldAccessor {
+
+        final Field field;
+        final String name;
+        final Class<?> fieldType;
+        final boolean isStatic;
+        final boolean collectionType;
+
+        // Null if the field cannot be accessed
+        final MethodHandle getter;
+        final MethodHandle typedGetter;
+        final VarHandle handle;
+
+        FieldAccessor(Field f) {
+            field = f;
+            name = f.getName();
+            fieldType = f.getType();
+            isStatic = Modifier.isStatic(f.getModifiers());
+            collectionType = of(fieldType).isCollection();
+
+            try {
+                f.setAccessible(true);
+            } catch (RuntimeException e) {
+                // Not opened to us, checked again below
+            }
+
+            MethodHandle mh = null;
+            VarHandle vh = null;
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(f.getDeclaringClass(),
+                        MethodHandles.lookup());
+                mh = lookup.unreflectGetter(f);
+                vh = lookup.unreflectVarHandle(f);
+            } catch (Exception e) {
+                // No private access to the class: use the accessible Field if any
+                try {
+                    mh = MethodHandles.lookup().unreflectGetter(f);
+                } catch (Exception e1) {
+                    mh = null;
+                }
+            }
+
+            if (mh != null) {
+                if (isStatic)
+                    mh = MethodHandles.dropArguments(mh, 0, Object.class);
+                mh = mh.asType(mh.type().changeParameterType(0, Object.class));
+            }
+            typedGetter = mh;
+            getter = mh == null ? null : mh.asType(GETTER_TYPE);
+            handle = vh;
+        }
+
+        /**
+         * Read the field value.
+         *
+         * @param target The object owning the field, ignored for static
+         *               fields.
+         * @return The (boxed) value, or null if the field is not accessible.
+         */
+        Object get(Object target) {
+            if (getter == null)
+                return null;
+            try {
+                return (Object) getter.invokeExact(target);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Write the field value through its VarHandle, or through the
+         * accessible Field if the class could not be opened.
+         *
+         * @param target The object owning the field, ignored for static
+         *               fields.
+         * @param value  The new value, boxed for primitive fields.
+         * @throws IllegalStateException If the field is final or not
+         *                               accessible.
+         */
+        void set(Object target, Object value) {
+            if (Modifier.isFinal(field.getModifiers()))
+                throw new IllegalStateException("Field " + name + " is final.");
+            if (handle != null) {
+                if (isStatic)
+                    handle.set(value);
+                else
+                    handle.set(target, value);
+                return;
+            }
+            try {
+                field.set(target, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Field " + name + " is not accessible.");
+            }
+        }
+    }
+
+    /**
+     * The invoker of a single method: a <code>(Object,Object[])Object</code>
+     * MethodHandle spreading the arguments, and one
+     * <code>(String)Object</code> converter per parameter, parsing the text
+     * entered by the user.
+     */
+    static class MethodInvoker {
+
+        private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object.class,
+                Object[].class);
+
+        final Method method;
+        final Class<?>[] parameterTypes;
+
+        // Null if the method cannot be accessed
+        final MethodHandle invoker;
+        // Null entries for types that cannot be parsed
+        final MethodHandle[] converters;
+
+        MethodInvoker(Method m) {
+            method = m;
+            parameterTypes = m.getParameterTypes();
+
+            MethodHandle mh;
+            try {
+                mh = MethodHandles.lookup().unreflect(m);
+            } catch (IllegalAccessException e) {
+                try {
+                    mh = MethodHandles.privateLookupIn(m.getDeclaringClass(), MethodHandles.lookup()).unreflect(m);
+                } catch (Exception e1) {
+                    mh = null;
+                }
+            }
+            if (mh != null) {
+                if (Modifier.isStatic(m.getModifiers()))
+                    mh = MethodHandles.dropArguments(mh, 0, Object.class);
+                mh = mh.asSpreader(Object[].class, parameterTypes.length).asType(INVOKER_TYPE);
+            }
+            invoker = mh;
+
+            converters = new MethodHandle[parameterTypes.length];
+            for (int i = 0; i < converters.length; i++)
+                converters[i] = CONVERTERS.get(parameterTypes[i]);
+        }
+
+        /**
+         * Check if the method can be invoked with arguments entered as text.
+         *
+         * @return True if the method is accessible and every parameter can be
+         *         parsed.
+         */
+        boolean isExecutable() {
+            if (invoker == null)
+                return false;
+            for (MethodHandle c : converters)
+                if (c == null)
+                    return false;
+            return true;
+        }
+
+        /**
+         * Parse the arguments entered by the user.
+         *
+         * @param values The text of each argument.
+         * @return The arguments, ready to be passed to
+         *         {@link #invoke(Object, Object[])}.
+         * @throws IllegalArgumentException If a value cannot be parsed.
+         */
+        Object[] convert(String[] values) {
+            Object[] args = new Object[values.length];
+            for (int i = 0; i < args.length; i++) {
+                if (converters[i] == null)
+                    throw new IllegalArgumentException(
+                            "Arguments of type " + parameterTypes[i].getName() + " cannot be entered.");
+                try {
+                    args[i] = (Object) converters[i].invokeExact(values[i]);
+                } catch (Throwable e) {
+                    throw new IllegalArgumentException("Invalid value '" + values[i] + "' for argument " + (i + 1)
+                            + " of type " + parameterTypes[i].getName() + ".");
+                }
+            }
+            return args;
+        }
+
+        /**
+         * Invoke the method.
+         *
+         * @param target The object, ignored for static methods.
+         * @param args   The arguments.
+         * @return The result, null for void methods.
+         * @throws Throwable Whatever the method throws.
+         */
+        Object invoke(Object target, Object[] args) throws Throwable {
+            if (invoker == null)
+                throw new IllegalAccessException("Method " + method.getName() + " is not accessible.");
+            return (Object) invoker.invokeExact(target, args);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package microsim.gui.probe;
 import java.awt.*;
 import java.awt.event.*;
 import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
 
 import java.util.List;
 import java.util.Iterator;
@@ -10,6 +11,10 @@ import java.util.ArrayList;
 
 import java.lang.reflect.Method;
 
+import microsim.engine.EngineListener;
+import microsim.engine.SimulationEngine;
+import microsim.event.SystemEventType;
+
 /**
  * The probe window class. It is able to inspect content of objects.
  * If the probed object implements the IProbeFields interface
@@ -61,6 +66,25 @@ public class ProbeFrame extends JFrame {
     private List<PanelObjectCollection> openedPanels;
     protected Object probedObject;
 
+    private static final int AUTO_REFRESH_MILLIS = 250;
+    private static final Color CHANGED_COLOR = new Color(255, 240, 160);
+
+    // Set by the engine thread at each step, cleared by the refresh timer
+    private volatile boolean stepped = false;
+
+    private final EngineListener stepListener = new EngineListener() {
+        public void onEngineEvent(SystemEventType event) {
+            if (event.equals(SystemEventType.Step))
+                stepped = true;
+        }
+    };
+
+    private final Timer autoRefreshTimer = new Timer(AUTO_REFRESH_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            autoRefresh();
+        }
+    });
+
     // ImageIcon imageIcon = new ImageIcon(
     // ProbeFrame.class.getResource("/jas/images/Find16.gif"));
 
@@ -83,11 +107,14 @@ public class ProbeFrame extends JFrame {
     JList jListMethods = new JList();
     JScrollPane jScrollMethods = new JScrollPane(jListMethods);
     JButton jBtnInvoke = new JButton();
+    JButton jBtnTime = new JButton();
+    PanelMemory jPaneMemory;
 
     // Lower buttons
     JButton jBtnOK = new JButton();
     JButton jBtnRefresh = new JButton();
     JToggleButton jBtnPrivate = new JToggleButton();
+    JToggleButton jBtnAutoRefresh = new JToggleButton();
     FlowLayout flowLayout1 = new FlowLayout();
     JPanel jNorthPanel = new JPanel();
     JLabel jObjectName = new JLabel("");
@@ -172,6 +199,9 @@ public class ProbeFrame extends JFrame {
 
     /** Show off the frame window. */
     public void dispose() {
+        setAutoRefresh(false);
+        if (jPaneMemory != null)
+            jPaneMemory.cancel();
         probedObject = null;
         variables = null;
         methods = null;
@@ -193,6 +223,18 @@ public class ProbeFrame extends JFrame {
         for (int i = 0; i < jTableVariables.getColumnModel().getColumnCount(); i++)
             jTableVariables.getColumnModel().getColumn(i).setHeaderValue(
                     variables.getHeaderText(i));
+        jTableVariables.setDefaultRenderer(Object.class, new DefaultTableCellRenderer() {
+            private static final long serialVersionUID = 1L;
+
+            public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                    boolean hasFocus, int row, int column) {
+                Component c = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+                if (!isSelected)
+                    c.setBackground(variables != null && variables.isRowChanged(row) ? CHANGED_COLOR
+                            : table.getBackground());
+                return c;
+            }
+        });
 
         jBtnNewProbe.setText("Open probe on selected variable");
         jBtnNewProbe.addActionListener(new java.awt.event.ActionListener() {
@@ -244,7 +286,17 @@ public class ProbeFrame extends JFrame {
                 jBtnInvoke_actionPerformed(e);
             }
         });
-        jPaneMethods.add(jBtnInvoke, BorderLayout.SOUTH);
+        jBtnTime.setText("Time selected method");
+        jBtnTime.setToolTipText("Invoke the method several times and report the time per call");
+        jBtnTime.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                timeMethod();
+            }
+        });
+        JPanel jPanelMethodButtons = new JPanel();
+        jPanelMethodButtons.add(jBtnInvoke);
+        jPanelMethodButtons.add(jBtnTime);
+        jPaneMethods.add(jPanelMethodButtons, BorderLayout.SOUTH);
         jPaneMethods.add(jScrollMethods, BorderLayout.CENTER);
         this.getContentPane().add(jNorthPanel, BorderLayout.NORTH);
 
@@ -262,14 +314,24 @@ public class ProbeFrame extends JFrame {
                 jBtnRefresh_actionPerformed(e);
             }
         });
+        jBtnAutoRefresh.setText("Auto refresh");
+        jBtnAutoRefresh.setToolTipText("Refresh the values while the simulation runs, highlighting the changes");
+        jBtnAutoRefresh.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                setAutoRefresh(jBtnAutoRefresh.isSelected());
+            }
+        });
         this.getContentPane().add(jPanelLowerButtons, BorderLayout.SOUTH);
         jPanelLowerButtons.add(jBtnPrivate, null);
         jPanelLowerButtons.add(jBtnRefresh, null);
+        jPanelLowerButtons.add(jBtnAutoRefresh, null);
         jPanelLowerButtons.add(jBtnOK, null);
 
         this.getContentPane().add(jTabbedPaneMain, BorderLayout.CENTER);
         jTabbedPaneMain.add(jPaneVariables, "Variables");
         jTabbedPaneMain.add(jPaneMethods, "Methods");
+        jPaneMemory = new PanelMemory(probedObject);
+        jTabbedPaneMain.add(jPaneMemory, "Memory");
         jNorthPanel.add(jObjectName, BorderLayout.CENTER);
 
         setSize(new Dimension(414, 403));
@@ -288,15 +350,51 @@ public class ProbeFrame extends JFrame {
 
     private void refreshData() {
         variables.update();
-        jTableVariables.updateUI();
         methods.update();
-        jListMethods.updateUI();
 
         for (int i = 0; i < openedPanels.size(); i++)
             ((PanelObjectCollection) openedPanels.get(i)).updateList();
 
     }
 
+    /**
+     * Refresh the probe at each simulation step. The engine thread only marks
+     * the probe as stale; values are read on the EDT at most every
+     * AUTO_REFRESH_MILLIS milliseconds.
+     * 
+     * @param enabled True to follow the simulation, false to refresh on demand.
+     */
+    public void setAutoRefresh(boolean enabled) {
+        SimulationEngine engine = SimulationEngine.getInstance();
+        if (enabled && !autoRefreshTimer.isRunning()) {
+            if (engine != null)
+                engine.addEngineListener(stepListener);
+            stepped = true;
+            autoRefreshTimer.start();
+        } else if (!enabled && autoRefreshTimer.isRunning()) {
+            autoRefreshTimer.stop();
+            if (engine != null)
+                engine.removeEngineListener(stepListener);
+        }
+        if (jBtnAutoRefresh.isSelected() != enabled)
+            jBtnAutoRefresh.setSelected(enabled);
+    }
+
+    private void autoRefresh() {
+        if (variables == null)
+            return;
+        if (!stepped) {
+            variables.expireHighlights();
+            return;
+        }
+        stepped = false;
+
+        // Methods do not change while running
+        variables.update();
+        for (int i = 0; i < openedPanels.size(); i++)
+            ((PanelObjectCollection) openedPanels.get(i)).updateList();
+    }
+
     void jBtnNewProbe_actionPerformed(ActionEvent e) {
         openNewProbe();
     }
@@ -376,6 +474,29 @@ public class ProbeFrame extends JFrame {
         pF.setVisible(true);
     }
 
+    private void timeMethod() {
+        if (jListMethods.getSelectedIndex() < 0) {
+            JOptionPane.showMessageDialog(null, "Please select a method to time first.",
+                    "Time method", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        Method m = (Method) methods.getElementAt(jListMethods.getSelectedIndex());
+        if (!ProbeReflectionUtils.isAnExecutableMethod(m)) {
+            JOptionPane.showMessageDialog(null,
+                    "Sorry but this method requires complex arguments.\nThis function is not yet implemented.",
+                    "Time method", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+
+        MethodDialog md = new MethodDialog(null, m, 1000);
+        md.setVisible(true);
+        if (md.cancel)
+            return;
+
+        methods.timeMethodAt(this, jListMethods.getSelectedIndex(), md.getParameters(), md.getRepeat());
+    }
+
     private void invokeMethod() {
         Object[] params = {};
         if (jListMethods.getSelectedIndex() == -1)
@@ -395,6 +516,10 @@ public class ProbeFrame extends JFrame {
             if (md.cancel)
                 return;
             params = md.getParameters();
+            if (md.getRepeat() > 1) {
+                methods.timeMethodAt(this, jListMethods.getSelectedIndex(), params, md.getRepeat());
+                return;
+            }
         }
 
         if (jListMethods.getSelectedIndex() < 0) {
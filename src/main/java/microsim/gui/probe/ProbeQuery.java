@@ -0,0 +1,466 @@
+package microsim.gui.probe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Not of interest for users. A filter on the elements of a probed collection,
+ * written as a boolean expression over the fields of the elements:
+ *
+ * <pre>
+ * age &gt; 90 and income &lt; 0
+ * (status == 'Retired' || status == null) &amp;&amp; !employed
+ * </pre>
+ *
+ * Comparisons are made of a field name, one of <code>&lt; &lt;= &gt; &gt;=
+ * == != =</code> and a number, a quoted string, <code>true</code>,
+ * <code>false</code> or <code>null</code>. They can be combined with
+ * <code>and</code>/<code>&amp;&amp;</code>, <code>or</code>/<code>||</code>,
+ * <code>not</code>/<code>!</code> and parentheses. A field name alone stands
+ * for <code>field == true</code>.
+ * <p>
+ * The expression is compiled once against the element class into a single
+ * <code>(Object)boolean</code> MethodHandle, built from the typed field
+ * getters of {@link ProbeClassInfo}, so primitive fields are compared without
+ * boxing. Null elements and elements which are not instances of the element
+ * class never match, even a negated expression.
+ */
+public class ProbeQuery {
+
+    /** The number of elements below which evaluation is not split. */
+    static final int CHUNK_SIZE = 16384;
+
+    private static final MethodHandle LT, LE, GT, GE, EQ, NE, NOT, EQUALS, EQUALS_TEXT, IS_NULL, TO_DOUBLE,
+            IS_INSTANCE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodType compare = MethodType.methodType(boolean.class, double.class, double.class);
+            LT = lookup.findStatic(ProbeQuery.class, "lt", compare);
+            LE = lookup.findStatic(ProbeQuery.class, "le", compare);
+            GT = lookup.findStatic(ProbeQuery.class, "gt", compare);
+            GE = lookup.findStatic(ProbeQuery.class, "ge", compare);
+            EQ = lookup.findStatic(ProbeQuery.class, "eq", compare);
+            NE = lookup.findStatic(ProbeQuery.class, "ne", compare);
+            NOT = lookup.findStatic(ProbeQuery.class, "not", MethodType.methodType(boolean.class, boolean.class));
+            EQUALS = lookup.findStatic(ProbeQuery.class, "equals",
+                    MethodType.methodType(boolean.class, Object.class, Object.class));
+            EQUALS_TEXT = lookup.findStatic(ProbeQuery.class, "equalsText",
+                    MethodType.methodType(boolean.class, String.class, Object.class));
+            IS_NULL = lookup.findStatic(ProbeQuery.class, "isNull",
+                    MethodType.methodType(boolean.class, Object.class));
+            TO_DOUBLE = lookup.findStatic(ProbeQuery.class, "toDouble",
+                    MethodType.methodType(double.class, Object.class));
+            IS_INSTANCE = lookup.findVirtual(Class.class, "isInstance",
+                    MethodType.methodType(boolean.class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final MethodHandle TRUE = MethodHandles.dropArguments(
+            MethodHandles.constant(boolean.class, Boolean.TRUE), 0, Object.class);
+    private static final MethodHandle FALSE = MethodHandles.dropArguments(
+            MethodHandles.constant(boolean.class, Boolean.FALSE), 0, Object.class);
+
+    private final String expression;
+    private final Class<?> elementType;
+    private final MethodHandle predicate;
+
+    // Parser state
+    private String[] tokens;
+    private int[] positions;
+    private int pos;
+
+    private ProbeQuery(String expression, Class<?> elementType) {
+        this.expression = expression;
+        this.elementType = elementType;
+        tokenize();
+        pos = 0;
+        MethodHandle mh = parseOr();
+        if (pos < tokens.length)
+            throw error("Unexpected '" + tokens[pos] + "'");
+        // Null elements and elements of other classes never match
+        predicate = MethodHandles.guardWithTest(IS_INSTANCE.bindTo(elementType), mh, FALSE);
+        tokens = null;
+        positions = null;
+    }
+
+    /**
+     * Compile an expression.
+     *
+     * @param expression  The filter expression.
+     * @param elementType The class the field names are looked up in, with its
+     *                    superclasses.
+     * @return The compiled query.
+     * @throws IllegalArgumentException If the expression is not valid for the
+     *                                  given class.
+     */
+    public static ProbeQuery compile(String expression, Class<?> elementType) {
+        return new ProbeQuery(expression, elementType);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    public Class<?> getElementType() {
+        return elementType;
+    }
+
+    /**
+     * Test a single element.
+     *
+     * @param o The element, possibly null.
+     * @return True if the element matches the expression.
+     */
+    public boolean test(Object o) {
+        try {
+            return (boolean) predicate.invokeExact(o);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Return the indices of the matching elements, in increasing order. Large
+     * arrays are evaluated in parallel chunks.
+     *
+     * @param elements The elements to be tested.
+     * @return The indices of the elements matching the expression.
+     */
+    public int[] select(Object[] elements) {
+        boolean[] matches = new boolean[elements.length];
+        if (elements.length > CHUNK_SIZE)
+            ForkJoinPool.commonPool().invoke(new Evaluation(elements, matches, 0, elements.length));
+        else
+            evaluate(elements, matches, 0, elements.length);
+
+        int count = 0;
+        for (boolean m : matches)
+            if (m)
+                count++;
+        int[] selected = new int[count];
+        for (int i = 0, j = 0; j < count; i++)
+            if (matches[i])
+                selected[j++] = i;
+        return selected;
+    }
+
+    private void evaluate(Object[] elements, boolean[] matches, int from, int to) {
+        MethodHandle p = predicate;
+        try {
+            for (int i = from; i < to; i++)
+                matches[i] = (boolean) p.invokeExact(elements[i]);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Tests a range of elements, splitting it in halves down to CHUNK_SIZE.
+     */
+    private class Evaluation extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] elements;
+        private final boolean[] matches;
+        private final int from, to;
+
+        Evaluation(Object[] elements, boolean[] matches, int from, int to) {
+            this.elements = elements;
+            this.matches = matches;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected void compute() {
+            if (to - from <= CHUNK_SIZE) {
+                evaluate(elements, matches, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Evaluation(elements, matches, from, mid), new Evaluation(elements, matches, mid, to));
+        }
+    }
+
+    // ---- Parser ----
+
+    private void tokenize() {
+        List<String> list = new ArrayList<String>();
+        List<Integer> at = new ArrayList<Integer>();
+        String s = expression;
+        int i = 0;
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+            if (Character.isJavaIdentifierStart(c)) {
+                while (i < s.length() && Character.isJavaIdentifierPart(s.charAt(i)))
+                    i++;
+            } else if (Character.isDigit(c) || c == '.'
+                    || (c == '-' && i + 1 < s.length() && (Character.isDigit(s.charAt(i + 1)) || s.charAt(i + 1) == '.'))) {
+                i++;
+                while (i < s.length() && (Character.isLetterOrDigit(s.charAt(i)) || s.charAt(i) == '.'
+                        || ((s.charAt(i) == '-' || s.charAt(i) == '+')
+                                && (s.charAt(i - 1) == 'e' || s.charAt(i - 1) == 'E'))))
+                    i++;
+            } else if (c == '\'' || c == '"') {
+                i++;
+                while (i < s.length() && s.charAt(i) != c)
+                    i++;
+                if (i >= s.length())
+                    throw new IllegalArgumentException("Unterminated string at position " + (start + 1));
+                i++;
+            } else if (s.startsWith("<=", i) || s.startsWith(">=", i) || s.startsWith("==", i)
+                    || s.startsWith("!=", i) || s.startsWith("&&", i) || s.startsWith("||", i)) {
+                i += 2;
+            } else if ("<>=!()".indexOf(c) >= 0) {
+                i++;
+            } else
+                throw new IllegalArgumentException("Unexpected character '" + c + "' at position " + (start + 1));
+            list.add(s.substring(start, i));
+            at.add(Integer.valueOf(start));
+        }
+        tokens = list.toArray(new String[list.size()]);
+        positions = new int[tokens.length];
+        for (int j = 0; j < positions.length; j++)
+            positions[j] = at.get(j).intValue();
+    }
+
+    private IllegalArgumentException error(String message) {
+        int p = pos < positions.length ? positions[pos] : expression.length();
+        return new IllegalArgumentException(message + " at position " + (p + 1));
+    }
+
+    private String peek() {
+        return pos < tokens.length ? tokens[pos] : null;
+    }
+
+    private boolean accept(String... alternatives) {
+        String t = peek();
+        if (t == null)
+            return false;
+        for (String a : alternatives) {
+            if (t.equalsIgnoreCase(a)) {
+                pos++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MethodHandle parseOr() {
+        MethodHandle left = parseAnd();
+        while (accept("or", "||"))
+            left = MethodHandles.guardWithTest(left, TRUE, parseAnd());
+        return left;
+    }
+
+    private MethodHandle parseAnd() {
+        MethodHandle left = parseNot();
+        while (accept("and", "&&"))
+            left = MethodHandles.guardWithTest(left, parseNot(), FALSE);
+        return left;
+    }
+
+    private MethodHandle parseNot() {
+        if (accept("not", "!"))
+            return MethodHandles.filterReturnValue(parseNot(), NOT);
+        if (accept("(")) {
+            MethodHandle mh = parseOr();
+            if (!accept(")"))
+                throw error("Missing ')'");
+            return mh;
+        }
+        return parseComparison();
+    }
+
+    private MethodHandle parseComparison() {
+        String name = peek();
+        if (name == null)
+            throw error("Missing field name");
+        if (!Character.isJavaIdentifierStart(name.charAt(0)))
+            throw error("Field name expected instead of '" + name + "'");
+        ProbeClassInfo.FieldAccessor field = findField(name);
+        if (field == null)
+            throw error("Unknown field '" + name + "' in " + elementType.getSimpleName());
+        pos++;
+
+        String op = peek();
+        if (!isOperator(op)) {
+            // A boolean field alone
+            if (field.fieldType != boolean.class && field.fieldType != Boolean.class)
+                throw error("Comparison operator expected after '" + name + "'");
+            return MethodHandles.filterReturnValue(field.getter, MethodHandles.insertArguments(EQUALS, 0, Boolean.TRUE));
+        }
+        pos++;
+        if (op.equals("="))
+            op = "==";
+
+        String literal = peek();
+        if (literal == null)
+            throw error("Value expected after '" + op + "'");
+        MethodHandle comparison = compare(field, op, literal);
+        pos++;
+        return comparison;
+    }
+
+    private static boolean isOperator(String t) {
+        return t != null && (t.equals("<") || t.equals("<=") || t.equals(">") || t.equals(">=") || t.equals("==")
+                || t.equals("!=") || t.equals("="));
+    }
+
+    private ProbeClassInfo.FieldAccessor findField(String name) {
+        for (ProbeClassInfo info = ProbeClassInfo.of(elementType); info != null; info = info.getSuperclassInfo()) {
+            for (ProbeClassInfo.FieldAccessor f : info.getDeclaredFields())
+                if (f.name.equals(name) && f.typedGetter != null)
+                    return f;
+        }
+        return null;
+    }
+
+    private MethodHandle compare(ProbeClassInfo.FieldAccessor field, String op, String literal) {
+        Class<?> type = field.fieldType;
+        boolean equality = op.equals("==") || op.equals("!=");
+        char first = literal.charAt(0);
+
+        if (literal.equalsIgnoreCase("null")) {
+            if (type.isPrimitive() || !equality)
+                throw error("'" + field.name + "' cannot be compared to null");
+            return negate(MethodHandles.filterReturnValue(field.getter, IS_NULL), op);
+        }
+
+        if (literal.equalsIgnoreCase("true") || literal.equalsIgnoreCase("false")) {
+            if ((type != boolean.class && type != Boolean.class) || !equality)
+                throw error("'" + field.name + "' cannot be compared to " + literal);
+            MethodHandle eq = MethodHandles.insertArguments(EQUALS, 0, Boolean.valueOf(literal.toLowerCase()));
+            return negate(MethodHandles.filterReturnValue(field.getter, eq), op);
+        }
+
+        if (first == '\'' || first == '"') {
+            String text = literal.substring(1, literal.length() - 1);
+            if (type == char.class && text.length() == 1)
+                return compareNumber(field, op, text.charAt(0));
+            if (type.isPrimitive() || Number.class.isAssignableFrom(type) || !equality)
+                throw error("'" + field.name + "' cannot be compared to a string");
+            MethodHandle eq = MethodHandles.insertArguments(EQUALS_TEXT, 0, text);
+            return negate(MethodHandles.filterReturnValue(field.getter, eq), op);
+        }
+
+        double value;
+        try {
+            value = Double.parseDouble(literal);
+        } catch (NumberFormatException e) {
+            throw error("Invalid value '" + literal + "'");
+        }
+        return compareNumber(field, op, value);
+    }
+
+    private MethodHandle compareNumber(ProbeClassInfo.FieldAccessor field, String op, double value) {
+        Class<?> type = field.fieldType;
+        MethodHandle read;
+        if (type.isPrimitive() && type != boolean.class)
+            read = field.typedGetter.asType(MethodType.methodType(double.class, Object.class));
+        else if (Number.class.isAssignableFrom(type) || type == Character.class)
+            read = MethodHandles.filterReturnValue(field.getter, TO_DOUBLE);
+        else
+            throw error("'" + field.name + "' is not a number");
+
+        MethodHandle cmp;
+        if (op.equals("<"))
+            cmp = LT;
+        else if (op.equals("<="))
+            cmp = LE;
+        else if (op.equals(">"))
+            cmp = GT;
+        else if (op.equals(">="))
+            cmp = GE;
+        else if (op.equals("=="))
+            cmp = EQ;
+        else
+            cmp = NE;
+        return MethodHandles.filterReturnValue(read, MethodHandles.insertArguments(cmp, 1, value));
+    }
+
+    private static MethodHandle negate(MethodHandle mh, String op) {
+        return op.equals("!=") ? MethodHandles.filterReturnValue(mh, NOT) : mh;
+    }
+
+    // ---- Combinators ----
+
+    private static boolean lt(double v, double c) {
+        return v < c;
+    }
+
+    private static boolean le(double v, double c) {
+        return v <= c;
+    }
+
+    private static boolean gt(double v, double c) {
+        return v > c;
+    }
+
+    private static boolean ge(double v, double c) {
+        return v >= c;
+    }
+
+    private static boolean eq(double v, double c) {
+        return v == c;
+    }
+
+    private static boolean ne(double v, double c) {
+        return v != c;
+    }
+
+    private static boolean not(boolean b) {
+        return !b;
+    }
+
+    private static boolean equals(Object c, Object v) {
+        return c.equals(v);
+    }
+
+    private static boolean equalsText(String c, Object v) {
+        if (v == null)
+            return false;
+        if (v instanceof Enum)
+            return ((Enum<?>) v).name().equals(c);
+        return c.equals(v.toString());
+    }
+
+    private static boolean isNull(Object v) {
+        return v == null;
+    }
+
+    // Null boxed values compare false, except with !=
+    private static double toDouble(Object v) {
+        if (v instanceof Number)
+            return ((Number) v).doubleValue();
+        if (v instanceof Character)
+            return ((Character) v).charValue();
+        return Double.NaN;
+    }
+
+    public String toString() {
+        return expression;
+    }
+}
@@ -47,18 +47,7 @@ public class ProbeReflectionUtils {
      * @return True if the class is a Collection, false otherwise.
      */
     public static boolean isCollection(Class<?> f) {
-        Class<?>[] intf = f.getInterfaces();
-        boolean flag = false;
-
-        for (int i = 0; i < intf.length && !flag; i++) {
-            if (intf[i].getName() == "java.util.Collection")
-                flag = true;
-            else if (intf[i].getInterfaces().length > 0)
-                if (isCollection(intf[i]))
-                    flag = true;
-        }
-
-        return flag;
+        return ProbeClassInfo.of(f).isCollection();
     }
 
     /**
@@ -116,7 +105,12 @@ public class ProbeReflectionUtils {
      *            (String, Double, Long, ...).
      * @param val An object whose toString() method return a valid format for
      *            the class type of object o.
+     * @deprecated Boxed values and strings are immutable and may be shared:
+     *             changing one of them changes every variable holding it, and
+     *             recent JDKs forbid it. The probes now write a new value into
+     *             the field, array slot or list element holding the old one.
      */
+    @Deprecated
     public static void setValueToObject(Object o, Object val) {
         try {
 
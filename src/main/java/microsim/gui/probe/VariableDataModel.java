@@ -7,7 +7,10 @@ import org.apache.log4j.Logger;
 
 import java.lang.reflect.*;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Not of interest for users.
@@ -63,7 +66,17 @@ public class VariableDataModel extends AbstractTableModel {
     private Object targetObj;
     private Object[][] data;
     private boolean viewPrivate;
-    private List<Object> probeFields;
+    private Set<Object> probeFields;
+
+    // The fields shown, resolved once and read at each update
+    private ProbeClassInfo.FieldAccessor[] accessors;
+
+    // When the value of each row last changed, to highlight it
+    private long[] changedAt;
+    private boolean[] highlighted;
+
+    /** How long a changed value stays highlighted. */
+    public static final long HIGHLIGHT_MILLIS = 1500;
 
     private int deepLevel = 0;
 
@@ -71,109 +84,79 @@ public class VariableDataModel extends AbstractTableModel {
         targetObj = objToInspect;
         viewPrivate = true;
         try {
-            probeFields = ((IProbeFields) objToInspect).getProbeFields();
+            probeFields = new HashSet<Object>(((IProbeFields) objToInspect).getProbeFields());
         } catch (Exception e) {
             log.error("Error creating VariableDataModel: " + e.getMessage());
         }
-        updateWithFields();
+        update();
     }
 
     public VariableDataModel(Object objToInspect, boolean privateVariables) {
         targetObj = objToInspect;
         viewPrivate = privateVariables;
         probeFields = null;
-        update(viewPrivate);
+        update();
     }
 
-    private void updateWithFields() {
-        Class<?> cl = targetObj.getClass();
-        Field[] fields;
-        int k = 0;
-
-        // Searching for rowCount
-        while (cl != null) {
-            fields = cl.getDeclaredFields();
-            AccessibleObject.setAccessible(fields, true);
-
-            for (int i = 0; i < fields.length; i++)
-                if (probeFields.contains(fields[i].getName()))
-                    k++;
-
-            cl = cl.getSuperclass();
-        }
-
-        // Now fill up the fields
-        data = new Object[k][COLUMNS];
-        cl = targetObj.getClass();
-        k = 0;
-        while (cl != null) {
-            fields = cl.getDeclaredFields();
-            AccessibleObject.setAccessible(fields, true);
-
+    private void resolveWithFields() {
+        List<ProbeClassInfo.FieldAccessor> list = new ArrayList<ProbeClassInfo.FieldAccessor>();
+        ProbeClassInfo info = ProbeClassInfo.of(targetObj.getClass());
+        while (info != null) {
+            ProbeClassInfo.FieldAccessor[] fields = info.getDeclaredFields();
             for (int i = 0; i < fields.length; i++)
-                if (probeFields.contains(fields[i].getName())) {
-                    Field f = fields[i];
-                    data[k][COL_NAME] = f.getName();
-                    data[k][COL_TYPE] = f.getType();
-
-                    try {
-                        Object o = f.get(targetObj);
-                        if (o != null) {
-                            data[k][COL_FIELD] = f;
-                            if (ProbeReflectionUtils.isCollection(f.getType()) || o.getClass().isArray())
-                                data[k][COL_VALUE] = "[...]";
-                            else
-                                data[k][COL_VALUE] = o.toString();
-                        }
-                    } catch (Exception e) {
-                        System.out.println("Error in field :" + e.getMessage());
-                    }
-                    ;
-                    k++;
-                }
+                if (probeFields.contains(fields[i].name))
+                    list.add(fields[i]);
 
-            cl = cl.getSuperclass();
+            info = info.getSuperclassInfo();
         }
+        accessors = list.toArray(new ProbeClassInfo.FieldAccessor[list.size()]);
     }
 
-    public void update() {
-        if (probeFields == null)
-            update(viewPrivate);
-        else
-            updateWithFields();
-    }
-
-    public void setViewPrivate(boolean privateVariables) {
-        viewPrivate = privateVariables;
-    }
-
-    public void setDeepLevel(int level) {
-        deepLevel = level;
-    }
-
-    private void update(boolean privateVariables) {
+    private void resolve() {
         Class<?> cl = targetObj.getClass();
         for (int i = 0; i < deepLevel; i++)
             cl = cl.getSuperclass();
 
-        Field[] fields;
+        ProbeClassInfo info = ProbeClassInfo.of(cl);
         if (viewPrivate)
-            fields = cl.getDeclaredFields();
+            accessors = info.getDeclaredFields();
         else
-            fields = cl.getFields();
-        AccessibleObject.setAccessible(fields, true);
+            accessors = info.getPublicFields();
+    }
 
-        data = new Object[fields.length][COLUMNS];
-        for (int i = 0; i < fields.length; i++) {
-            Field f = fields[i];
-            data[i][COL_NAME] = f.getName();
-            data[i][COL_TYPE] = f.getType();
+    /**
+     * Read the current values of the fields. Only the cells whose value has
+     * changed since the previous update are notified to the table, and their
+     * rows are highlighted for {@link #HIGHLIGHT_MILLIS} milliseconds. To be
+     * called on the EDT.
+     */
+    public void update() {
+        boolean structureChanged = false;
+        if (accessors == null) {
+            if (probeFields == null)
+                resolve();
+            else
+                resolveWithFields();
+            data = new Object[accessors.length][COLUMNS];
+            changedAt = new long[accessors.length];
+            highlighted = new boolean[accessors.length];
+            structureChanged = true;
+        }
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < accessors.length; i++) {
+            ProbeClassInfo.FieldAccessor f = accessors[i];
+            Object oldValue = data[i][COL_VALUE];
+            data[i][COL_NAME] = f.name;
+            data[i][COL_TYPE] = f.fieldType;
+            data[i][COL_FIELD] = null;
+            data[i][COL_VALUE] = null;
 
             try {
                 Object o = f.get(targetObj);
                 if (o != null) {
                     data[i][COL_FIELD] = f;
-                    if (ProbeReflectionUtils.isCollection(f.getType()) || o.getClass().isArray())
+                    if (f.collectionType || o.getClass().isArray())
                         data[i][COL_VALUE] = "[...]";
                     else
                         data[i][COL_VALUE] = o.toString();
@@ -181,8 +164,56 @@ public class VariableDataModel extends AbstractTableModel {
             } catch (Exception e) {
                 System.out.println("Error in field :" + e.getMessage());
             }
-            ;
+
+            if (structureChanged)
+                continue;
+            if (oldValue == null ? data[i][COL_VALUE] != null : !oldValue.equals(data[i][COL_VALUE])) {
+                changedAt[i] = now;
+                highlighted[i] = true;
+                fireTableCellUpdated(i, COL_VALUE - 1);
+            } else if (highlighted[i] && now - changedAt[i] >= HIGHLIGHT_MILLIS) {
+                highlighted[i] = false;
+                fireTableCellUpdated(i, COL_VALUE - 1);
+            }
         }
+
+        if (structureChanged)
+            fireTableDataChanged();
+    }
+
+    /**
+     * Turn off the highlight of the rows that have not changed recently,
+     * without reading the fields. To be called on the EDT.
+     */
+    public void expireHighlights() {
+        if (highlighted == null)
+            return;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < highlighted.length; i++)
+            if (highlighted[i] && now - changedAt[i] >= HIGHLIGHT_MILLIS) {
+                highlighted[i] = false;
+                fireTableCellUpdated(i, COL_VALUE - 1);
+            }
+    }
+
+    /**
+     * Check if the value of a row has recently changed.
+     *
+     * @param row The row index.
+     * @return True if the row has to be highlighted.
+     */
+    public boolean isRowChanged(int row) {
+        return highlighted != null && row < highlighted.length && highlighted[row];
+    }
+
+    public void setViewPrivate(boolean privateVariables) {
+        viewPrivate = privateVariables;
+        accessors = null;
+    }
+
+    public void setDeepLevel(int level) {
+        deepLevel = level;
+        accessors = null;
     }
 
     public String getHeaderText(int column) {
@@ -219,16 +250,18 @@ public class VariableDataModel extends AbstractTableModel {
     public void setValueAt(Object val, int row, int col) {
 
         try {
-            Field f = (Field) data[row][COL_FIELD];
+            ProbeClassInfo.FieldAccessor accessor = (ProbeClassInfo.FieldAccessor) data[row][COL_FIELD];
 
-            if (f == null) {
+            if (accessor == null) {
                 JOptionPane.showMessageDialog(null, "The variable is null.\n It is impossible to edit.",
                         "Probe editing variable", JOptionPane.INFORMATION_MESSAGE);
                 return;
             }
 
-            if (f.getType().isPrimitive() || f.getType().getName().equals("java.lang.String"))
-                setPrimitiveValueToClass(f.getType(), val, f);
+            Class<?> type = accessor.fieldType;
+            if (type.isPrimitive() || ProbeReflectionUtils.isEditable(type))
+                // Boxed values are immutable: a new one is written into the field
+                accessor.set(targetObj, ProbeClassInfo.parse(type, val.toString()));
             else {
                 JOptionPane.showMessageDialog(null, "The variable is not a primitive.\n" +
                         "To edit its value you can open a probe to it. ",
@@ -236,62 +269,19 @@ public class VariableDataModel extends AbstractTableModel {
                 return;
             }
 
-        } catch (Exception e) {
-            System.out.println("Error setting field: " + e.getMessage());
+        } catch (RuntimeException e) {
+            JOptionPane.showMessageDialog(null, e.getMessage(), "Probe editing variable", JOptionPane.ERROR_MESSAGE);
             return;
         }
         // Indicate the change has happened:
-        data[row][col + 1] = val;
-        fireTableDataChanged();
-    }
-
-    private void setPrimitiveValueToClass(Class<?> cl, Object val, Field f) {
-        try {
-            if (cl.getName().equals("java.lang.String")) {
-                f.set(targetObj, val.toString());
-                return;
-            }
-            if (cl == Integer.TYPE) {
-                f.setInt(targetObj, Integer.parseInt(val.toString()));
-                return;
-            }
-            if (cl == Double.TYPE) {
-                f.setDouble(targetObj, Double.parseDouble(val.toString()));
-                return;
-            }
-            if (cl == Boolean.TYPE) {
-                f.setBoolean(targetObj, Boolean.valueOf(val.toString()).booleanValue());
-                return;
-            }
-            if (cl == Byte.TYPE) {
-                f.setByte(targetObj, Byte.parseByte(val.toString()));
-                return;
-            }
-            if (cl == Character.TYPE) {
-                f.setChar(targetObj, val.toString().charAt(0));
-                return;
-            }
-            if (cl == Float.TYPE) {
-                f.setFloat(targetObj, Float.parseFloat(val.toString()));
-                return;
-            }
-            if (cl == Long.TYPE) {
-                f.setLong(targetObj, Long.parseLong(val.toString()));
-                return;
-            }
-            if (cl == Short.TYPE) {
-                f.setShort(targetObj, Short.parseShort(val.toString()));
-                return;
-            }
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
-        }
-        return;
+        Object o = ((ProbeClassInfo.FieldAccessor) data[row][COL_FIELD]).get(targetObj);
+        data[row][col + 1] = o == null ? null : o.toString();
+        fireTableCellUpdated(row, col);
     }
 
     public Object getObjectAtRow(int row) {
         try {
-            return ((Field) data[row][COL_FIELD]).get(targetObj);
+            return ((ProbeClassInfo.FieldAccessor) data[row][COL_FIELD]).get(targetObj);
         } catch (Exception e) {
             return null;
         }
@@ -299,7 +289,7 @@ public class VariableDataModel extends AbstractTableModel {
 
     public String getObjectNameAtRow(int row) {
         try {
-            return ((Field) data[row][COL_FIELD]).getName();
+            return ((ProbeClassInfo.FieldAccessor) data[row][COL_FIELD]).name;
         } catch (Exception e) {
             return "";
         }
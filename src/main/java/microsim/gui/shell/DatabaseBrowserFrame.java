@@ -0,0 +1,447 @@
+package microsim.gui.shell;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JInternalFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JTable;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Not of interest for users. A read only browser of the tables of an H2
+ * database, opened from the database explorer.
+ * <p>
+ * Tables are read a page at a time with keyset pagination: the next page is
+ * the rows whose primary key (or H2 row id when the table has none) follows
+ * the last key of the current page, so that every page costs the same
+ * however far into a large table it is. Queries run on a background thread
+ * and a Swing timer shows their result.
+ */
+class DatabaseBrowserFrame extends JInternalFrame {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    private static final int POLL_MILLIS = 100;
+    private static final String ROW_ID = "_ROWID_";
+
+    private enum Direction {
+        FIRST, NEXT, PREVIOUS
+    }
+
+    private final OutputRun run;
+    private final DatabaseConnections connections;
+    private final ExecutorService executor;
+
+    private final PageTableModel model = new PageTableModel();
+    private List<String[]> tables = Collections.emptyList();
+    private Future<List<String[]>> pendingTables;
+    private Future<Page> pendingPage;
+    private Page page;
+    private long firstRow;
+
+    private final JComboBox<String> jComboTables = new JComboBox<String>();
+    private final JSpinner jSpinnerPageSize = new JSpinner(new SpinnerNumberModel(200, 10, 10000, 10));
+    private final JButton jBtnFirst = new JButton("First");
+    private final JButton jBtnPrevious = new JButton("Previous");
+    private final JButton jBtnNext = new JButton("Next");
+    private final JLabel jLblStatus = new JLabel();
+    private final JTable jTable = new JTable(model);
+
+    private final Timer timer = new Timer(POLL_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            poll();
+        }
+    });
+
+    /**
+     * @param run         The database to browse.
+     * @param connections The connections of the database explorer, which
+     *                    outlive the browser.
+     */
+    DatabaseBrowserFrame(OutputRun run, DatabaseConnections connections) {
+        super("Database " + run.getName(), true, true, true, true);
+        this.run = run;
+        this.connections = connections;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Database browser");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        initialize();
+        loadTables();
+    }
+
+    private void initialize() {
+        jComboTables.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                load(Direction.FIRST);
+            }
+        });
+        jBtnFirst.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                load(Direction.FIRST);
+            }
+        });
+        jBtnPrevious.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                load(Direction.PREVIOUS);
+            }
+        });
+        jBtnNext.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                load(Direction.NEXT);
+            }
+        });
+        jTable.setAutoResizeMode(JTable.AUTO_RESIZE_OFF);
+
+        JPanel jPanelButtons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        jPanelButtons.add(new JLabel("Table:"));
+        jPanelButtons.add(jComboTables);
+        jPanelButtons.add(new JLabel("Rows per page:"));
+        jPanelButtons.add(jSpinnerPageSize);
+        jPanelButtons.add(jBtnFirst);
+        jPanelButtons.add(jBtnPrevious);
+        jPanelButtons.add(jBtnNext);
+
+        JPanel jPanelMain = new JPanel(new BorderLayout());
+        jPanelMain.add(jPanelButtons, BorderLayout.NORTH);
+        jPanelMain.add(new JScrollPane(jTable), BorderLayout.CENTER);
+        jPanelMain.add(jLblStatus, BorderLayout.SOUTH);
+        setContentPane(jPanelMain);
+        setSize(new Dimension(700, 450));
+        updateButtons();
+    }
+
+    /**
+     * @param other A database.
+     * @return True if this frame reads it.
+     */
+    boolean shows(OutputRun other) {
+        return run == other;
+    }
+
+    public void dispose() {
+        timer.stop();
+        executor.shutdownNow();
+        super.dispose();
+    }
+
+    private void loadTables() {
+        jLblStatus.setText("Reading the tables...");
+        pendingTables = executor.submit(new Callable<List<String[]>>() {
+            public List<String[]> call() throws SQLException {
+                Connection connection = connections.getConnection(run.getUrl());
+                try {
+                    return OutputRun.listTables(connection);
+                } finally {
+                    connection.close();
+                }
+            }
+        });
+        timer.start();
+    }
+
+    private void load(Direction direction) {
+        int index = jComboTables.getSelectedIndex();
+        if (index < 0 || pendingTables != null || (pendingPage != null && !pendingPage.isDone()))
+            return;
+        final String[] table = tables.get(index);
+        final int pageSize = ((Number) jSpinnerPageSize.getValue()).intValue();
+        final Direction d = page == null || page.table != table ? Direction.FIRST : direction;
+        final Page current = d == Direction.FIRST ? null : page;
+
+        jLblStatus.setText("Reading " + OutputRun.displayName(table) + "...");
+        pendingPage = executor.submit(new Callable<Page>() {
+            public Page call() throws SQLException {
+                return query(table, d, current, pageSize);
+            }
+        });
+        updateButtons();
+        timer.start();
+    }
+
+    private void poll() {
+        try {
+            if (pendingTables != null) {
+                if (!pendingTables.isDone())
+                    return;
+                tables = pendingTables.get();
+                pendingTables = null;
+                DefaultComboBoxModel<String> names = new DefaultComboBoxModel<String>();
+                for (String[] table : tables)
+                    names.addElement(OutputRun.displayName(table));
+                jComboTables.setModel(names);
+                if (tables.isEmpty()) {
+                    timer.stop();
+                    jLblStatus.setText("The database has no tables.");
+                } else
+                    load(Direction.FIRST);
+                return;
+            }
+            if (pendingPage == null || !pendingPage.isDone())
+                return;
+            Page loaded = pendingPage.get();
+            pendingPage = null;
+            timer.stop();
+            show(loaded);
+        } catch (ExecutionException e) {
+            pendingTables = null;
+            pendingPage = null;
+            timer.stop();
+            jLblStatus.setText("Error: " + e.getCause().getMessage());
+            updateButtons();
+        } catch (InterruptedException e) {
+            timer.stop();
+        }
+    }
+
+    private void show(Page loaded) {
+        // An empty page past either end keeps showing the current one
+        if (loaded.rows.isEmpty() && loaded.direction != Direction.FIRST) {
+            if (loaded.direction == Direction.NEXT)
+                page.hasNext = false;
+            else
+                page.hasPrevious = false;
+            updateButtons();
+            return;
+        }
+        if (loaded.direction == Direction.FIRST || !loaded.hasPrevious)
+            firstRow = 0;
+        else if (loaded.direction == Direction.NEXT)
+            firstRow += page.rows.size();
+        else
+            firstRow = Math.max(0, firstRow - loaded.rows.size());
+        boolean columnsChanged = page == null || !page.columns.equals(loaded.columns);
+        page = loaded;
+        model.setPage(loaded, columnsChanged);
+
+        if (loaded.rows.isEmpty())
+            jLblStatus.setText("The table is empty.");
+        else
+            jLblStatus.setText("Rows " + (firstRow + 1) + " to " + (firstRow + loaded.rows.size()) + ", ordered by "
+                    + loaded.keyColumns);
+        updateButtons();
+    }
+
+    private void updateButtons() {
+        boolean idle = pendingTables == null && (pendingPage == null || pendingPage.isDone());
+        jBtnFirst.setEnabled(idle && page != null);
+        jBtnPrevious.setEnabled(idle && page != null && page.hasPrevious);
+        jBtnNext.setEnabled(idle && page != null && page.hasNext);
+    }
+
+    private Page query(String[] table, Direction direction, Page current, int pageSize) throws SQLException {
+        Connection connection = connections.getConnection(run.getUrl());
+        try {
+            List<String> keys = primaryKey(connection, table);
+            boolean rowId = keys.isEmpty();
+            if (rowId)
+                keys = Collections.singletonList(ROW_ID);
+
+            boolean descending = direction == Direction.PREVIOUS;
+            StringBuilder sql = new StringBuilder("SELECT ");
+            if (rowId)
+                sql.append(ROW_ID).append(", ");
+            sql.append("* FROM ").append(OutputRun.sqlName(table));
+            Object[] after = null;
+            if (direction != Direction.FIRST) {
+                after = descending ? current.firstKey : current.lastKey;
+                sql.append(" WHERE ").append(keysetCondition(keys, descending ? "<" : ">"));
+            }
+            sql.append(" ORDER BY ");
+            for (int i = 0; i < keys.size(); i++)
+                sql.append(i == 0 ? "" : ", ").append(column(keys.get(i))).append(descending ? " DESC" : "");
+            // One more row tells whether there is a page beyond this one
+            sql.append(" LIMIT ").append(pageSize + 1);
+
+            PreparedStatement statement = connection.prepareStatement(sql.toString());
+            try {
+                if (after != null) {
+                    // (a, b) > (x, y) is a > x OR (a = x AND b > y)
+                    int p = 1;
+                    for (int i = 0; i < keys.size(); i++)
+                        for (int j = 0; j <= i; j++)
+                            statement.setObject(p++, after[j]);
+                }
+                ResultSet rs = statement.executeQuery();
+                try {
+                    return read(rs, table, direction, keys, pageSize);
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private static Page read(ResultSet rs, String[] table, Direction direction, List<String> keys, int pageSize)
+            throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int count = metaData.getColumnCount();
+        Page page = new Page(table, direction, keys);
+        for (int c = 1; c <= count; c++)
+            page.columns.add(metaData.getColumnLabel(c));
+        int[] keyIndex = new int[keys.size()];
+        for (int k = 0; k < keys.size(); k++) {
+            keyIndex[k] = 0;
+            for (int c = 0; c < count && keyIndex[k] == 0; c++)
+                if (page.columns.get(c).equalsIgnoreCase(keys.get(k)))
+                    keyIndex[k] = c + 1;
+        }
+
+        while (rs.next()) {
+            Object[] row = new Object[count];
+            for (int c = 0; c < count; c++)
+                row[c] = rs.getObject(c + 1);
+            page.rows.add(row);
+        }
+        boolean more = page.rows.size() > pageSize;
+        if (more)
+            page.rows.remove(page.rows.size() - 1);
+        if (direction == Direction.PREVIOUS) {
+            Collections.reverse(page.rows);
+            page.hasPrevious = more;
+            page.hasNext = true;
+        } else {
+            page.hasPrevious = direction == Direction.NEXT;
+            page.hasNext = more;
+        }
+        if (!page.rows.isEmpty()) {
+            page.firstKey = key(page.rows.get(0), keyIndex);
+            page.lastKey = key(page.rows.get(page.rows.size() - 1), keyIndex);
+        }
+        return page;
+    }
+
+    private static Object[] key(Object[] row, int[] keyIndex) {
+        Object[] key = new Object[keyIndex.length];
+        for (int k = 0; k < keyIndex.length; k++)
+            key[k] = row[keyIndex[k] - 1];
+        return key;
+    }
+
+    private static List<String> primaryKey(Connection connection, String[] table) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        ResultSet rs = metaData.getPrimaryKeys(null, table[0], table[1]);
+        List<String> columns = new ArrayList<String>();
+        List<Integer> sequence = new ArrayList<Integer>();
+        try {
+            while (rs.next()) {
+                // Ordered by column name, not by position in the key
+                int seq = rs.getInt("KEY_SEQ");
+                int i = 0;
+                while (i < sequence.size() && sequence.get(i) < seq)
+                    i++;
+                sequence.add(i, seq);
+                columns.add(i, rs.getString("COLUMN_NAME"));
+            }
+        } finally {
+            rs.close();
+        }
+        return columns;
+    }
+
+    private static String keysetCondition(List<String> keys, String operator) {
+        StringBuilder condition = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++) {
+            condition.append(i == 0 ? "(" : " OR (");
+            for (int j = 0; j < i; j++)
+                condition.append(column(keys.get(j))).append(" = ? AND ");
+            condition.append(column(keys.get(i))).append(' ').append(operator).append(" ?)");
+        }
+        return condition.toString();
+    }
+
+    private static String column(String name) {
+        return name.equals(ROW_ID) ? ROW_ID : OutputRun.quote(name);
+    }
+
+    /**
+     * A page of rows and the keys bounding it.
+     */
+    private static class Page {
+        final String[] table;
+        final Direction direction;
+        final List<String> keyColumns;
+        final List<String> columns = new ArrayList<String>();
+        final List<Object[]> rows = new ArrayList<Object[]>();
+        Object[] firstKey;
+        Object[] lastKey;
+        boolean hasPrevious;
+        boolean hasNext;
+
+        Page(String[] table, Direction direction, List<String> keyColumns) {
+            this.table = table;
+            this.direction = direction;
+            this.keyColumns = keyColumns;
+        }
+    }
+
+    private static class PageTableModel extends AbstractTableModel {
+
+        /**
+         * Comment for <code>serialVersionUID</code>
+         */
+        private static final long serialVersionUID = 1L;
+
+        private Page page;
+
+        void setPage(Page page, boolean columnsChanged) {
+            this.page = page;
+            if (columnsChanged)
+                fireTableStructureChanged();
+            else
+                fireTableDataChanged();
+        }
+
+        public int getRowCount() {
+            return page == null ? 0 : page.rows.size();
+        }
+
+        public int getColumnCount() {
+            return page == null ? 0 : page.columns.size();
+        }
+
+        public String getColumnName(int column) {
+            return page.columns.get(column);
+        }
+
+        public Object getValueAt(int row, int column) {
+            return page.rows.get(row)[column];
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package microsim.gui.shell;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.h2.jdbcx.JdbcConnectionPool;
+
+/**
+ * Not of interest for users. The embedded H2 connections opened by a tool
+ * frame, pooled by database so that counting rows and browsing pages do not
+ * open the database again for each query. Connections are returned to their
+ * pool by closing them, and the pools must be closed when the frame is, so
+ * that H2 releases the files.
+ * <p>
+ * A database about to be deleted is released with
+ * {@link #releaseForDeletion(String)}: from then on no connection to it is
+ * handed out, and its files can be deleted once the connections still in use
+ * have been returned.
+ */
+class DatabaseConnections {
+
+    private static final int MAX_CONNECTIONS_PER_DATABASE = 4;
+
+    private final Map<String, Database> databases = new HashMap<String, Database>();
+
+    /**
+     * Borrow a connection.
+     *
+     * @param url The JDBC url of the database.
+     * @return The connection, to be closed after use.
+     * @throws SQLException If the database cannot be opened or is being
+     *                      deleted.
+     */
+    Connection getConnection(String url) throws SQLException {
+        Database database;
+        synchronized (databases) {
+            database = databases.get(url);
+            if (database != null && database.deleting)
+                throw new SQLException("The database is being deleted.");
+            if (database == null) {
+                JdbcConnectionPool pool = JdbcConnectionPool.create(url, "sa", "");
+                pool.setMaxConnections(MAX_CONNECTIONS_PER_DATABASE);
+                database = new Database(pool);
+                databases.put(url, database);
+            }
+            // The pool is not disposed while a connection is being taken
+            database.borrowing++;
+        }
+        try {
+            return database.pool.getConnection();
+        } finally {
+            synchronized (databases) {
+                database.borrowing--;
+            }
+        }
+    }
+
+    /**
+     * Stop handing out connections to a database about to be deleted, and
+     * close its pool once every connection has been returned. It can be
+     * called again until it returns true.
+     *
+     * @param url The JDBC url of the database.
+     * @return True if no connection is in use any more, so that the files
+     *         can be deleted.
+     */
+    boolean releaseForDeletion(String url) {
+        synchronized (databases) {
+            Database database = databases.get(url);
+            if (database == null) {
+                database = new Database(null);
+                databases.put(url, database);
+            }
+            database.deleting = true;
+            if (database.pool == null)
+                return true;
+            if (database.borrowing > 0 || database.pool.getActiveConnections() > 0)
+                return false;
+            database.pool.dispose();
+            database.pool = null;
+            return true;
+        }
+    }
+
+    /**
+     * Allow connections to a database again once its deletion is over, e.g.
+     * to browse what is left after a failed deletion.
+     *
+     * @param url The JDBC url of the database.
+     */
+    void deletionDone(String url) {
+        synchronized (databases) {
+            Database database = databases.get(url);
+            if (database != null && database.deleting && database.pool == null)
+                databases.remove(url);
+        }
+    }
+
+    /**
+     * Close the pooled connections to a database.
+     *
+     * @param url The JDBC url of the database.
+     */
+    void close(String url) {
+        JdbcConnectionPool pool = null;
+        synchronized (databases) {
+            Database database = databases.get(url);
+            if (database != null && !database.deleting) {
+                databases.remove(url);
+                pool = database.pool;
+            }
+        }
+        if (pool != null)
+            pool.dispose();
+    }
+
+    /** Close the pooled connections to every database. */
+    void closeAll() {
+        List<JdbcConnectionPool> closed = new ArrayList<JdbcConnectionPool>();
+        synchronized (databases) {
+            for (Database database : databases.values())
+                if (database.pool != null)
+                    closed.add(database.pool);
+            databases.clear();
+        }
+        for (JdbcConnectionPool pool : closed)
+            pool.dispose();
+    }
+
+    /** The pool of a database, null once released for deletion. */
+    private static class Database {
+
+        JdbcConnectionPool pool;
+        int borrowing = 0;
+        boolean deleting = false;
+
+        Database(JdbcConnectionPool pool) {
+            this.pool = pool;
+        }
+    }
+}
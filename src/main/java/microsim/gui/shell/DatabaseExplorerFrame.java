@@ -4,19 +4,36 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.ActionEvent;
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.FileSystemException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import javax.swing.DefaultListModel;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JInternalFrame;
 import javax.swing.JLabel;
-import javax.swing.JList;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.JTextArea;
+import javax.swing.ListSelectionModel;
+import javax.swing.Timer;
+import javax.swing.event.ListSelectionEvent;
+import javax.swing.event.ListSelectionListener;
+import javax.swing.table.AbstractTableModel;
 
 import microsim.data.db.DatabaseUtils;
 import microsim.engine.SimulationEngine;
@@ -24,9 +41,20 @@ import microsim.engine.SimulationEngine;
 import org.h2.tools.Console;
 
 /**
- * Not of interest for users. The frame that controls engine parameters. It is
- * shown when the 'Show engine status' menu item of the Control Panel is
- * choosen.
+ * Not of interest for users. The frame listing the input database and the
+ * output database of each run, shown by the 'Database explorer' menu item of
+ * the Tools menu.
+ * <p>
+ * The output directory is scanned on a background thread and runs appear as
+ * they are found, with the size and the last change of their directory. The
+ * rows of each table are counted when a database is selected, through pooled
+ * embedded H2 connections that stay open until the frame is closed, and
+ * databases are browsed in a {@link DatabaseBrowserFrame} or compared in a
+ * {@link RunComparisonFrame}. Selected output databases are deleted in
+ * parallel on background threads, which report the space reclaimed and the
+ * files they could not delete. The windows showing a database are closed
+ * before it is deleted, and its files are only deleted once the connections
+ * still in use, e.g. by a row count, have been returned.
  * 
  * <p>
  * Title: JAS
@@ -62,19 +90,57 @@ public class DatabaseExplorerFrame extends JInternalFrame {
      */
     private static final long serialVersionUID = 1L;
 
+    private static final int POLL_MILLIS = 200;
+    private static final int DELETE_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
     ImageIcon imageMiniPreferences = new ImageIcon(getClass().getResource(
             "/microsim/gui/icons/db.gif"));
 
     JButton jBtnClose = null;
     JButton jBtnDelete = null;
     JButton jBtnApply = null;
+    JButton jBtnConsole = null;
+    JButton jBtnCompare = null;
+    JButton jBtnRefresh = null;
     JButton jBtnInit = null;
     JPanel jPanelProperties = null;
     JPanel jPanelButtons = null;
 
-    JList<String> jList = null;
-    File[] dirs = null;
-    DefaultListModel<String> model = new DefaultListModel<String>();
+    JTable jTableRuns = null;
+    JTable jTableRows = null;
+    JLabel jLblStatus = new JLabel();
+
+    private final RunTableModel model = new RunTableModel();
+    private final RowTableModel rowModel = new RowTableModel();
+
+    private final DatabaseConnections connections = new DatabaseConnections();
+    private final ExecutorService executor;
+    private final ExecutorService deleteExecutor;
+    private final Set<OutputRun> counting = new HashSet<OutputRun>();
+    // The frames sharing the connections, closed with the explorer
+    private final List<JInternalFrame> openFrames = new ArrayList<JInternalFrame>();
+
+    // Filled by the scan thread, moved to the table by the timer
+    private List<OutputRun> scanned = new ArrayList<OutputRun>();
+    private AtomicBoolean scanCancelled = new AtomicBoolean();
+    private OutputRun inputRun;
+
+    // The runs waiting for their connections to be returned, the deletions
+    // in progress and the totals of the current batch
+    private final List<OutputRun> releasing = new ArrayList<OutputRun>();
+    private final Map<DirectoryDeleter, OutputRun> deletions = new LinkedHashMap<DirectoryDeleter, OutputRun>();
+    private final List<String> deletionFailures = new ArrayList<String>();
+    private long deletionBytes;
+    private long reclaimedBytes;
+    private int deletedRuns;
+    private String deletionReport;
+    private Thread scanThread;
+
+    private final Timer timer = new Timer(POLL_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            poll();
+        }
+    });
 
     private javax.swing.JPanel mainContentPane = null;
 
@@ -85,16 +151,32 @@ public class DatabaseExplorerFrame extends JInternalFrame {
      *               The simulation engine to edit.
      */
     public DatabaseExplorerFrame(SimulationEngine engine) {
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Database explorer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        deleteExecutor = Executors.newFixedThreadPool(DELETE_THREADS, new ThreadFactory() {
+            private int count = 0;
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Database explorer delete " + (++count));
+                t.setDaemon(true);
+                return t;
+            }
+        });
         initialize();
+        scan();
     }
 
     private void initialize() {
         // setIconImage(imageMiniPreferences.getImage());
-        JScrollPane scrollPane = new JScrollPane(getMainContentPane());
-        this.setContentPane(scrollPane);
+        this.setContentPane(getMainContentPane());
         this.setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
 
-        setSize(new Dimension(450, 338));
+        setSize(new Dimension(600, 450));
         setTitle("Database Explorer");
         this.setResizable(true);
 
@@ -106,118 +188,317 @@ public class DatabaseExplorerFrame extends JInternalFrame {
             jPanelProperties.setLayout(new BorderLayout());
 
             jPanelProperties.add(new JLabel("Remember to disconnect database to come back"), BorderLayout.NORTH);
-            jPanelProperties.add(getJList(), BorderLayout.CENTER);
+            JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, new JScrollPane(getJTableRuns()),
+                    new JScrollPane(getJTableRows()));
+            split.setResizeWeight(0.7);
+            jPanelProperties.add(split, BorderLayout.CENTER);
+            jPanelProperties.add(jLblStatus, BorderLayout.SOUTH);
 
         }
         return jPanelProperties;
     }
 
-    private JList<String> getJList() {
-        if (jList == null) {
-
-            File outputDir = new File("output");
-            // File[] dirs = outputDir.listFiles();
-            dirs = outputDir.listFiles();
-            if (dirs == null)
-                dirs = new File[0];
-            // String[] outDirs = new String[dirs.length + 1];
-            // outDirs[0] = "INPUT";
-            model.addElement("INPUT");
-            for (int i = 0; i < dirs.length; i++) {
-                File file = dirs[i];
-                // outDirs[i + 1] = file.getName();
-                model.addElement(file.getName());
+    private JTable getJTableRuns() {
+        if (jTableRuns == null) {
+            jTableRuns = new JTable(model);
+            jTableRuns.setAutoCreateRowSorter(true);
+            jTableRuns.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
+            jTableRuns.getSelectionModel().addListSelectionListener(new ListSelectionListener() {
+                public void valueChanged(ListSelectionEvent e) {
+                    if (!e.getValueIsAdjusting())
+                        selectionChanged();
+                }
+            });
+        }
+        return jTableRuns;
+    }
+
+    private JTable getJTableRows() {
+        if (jTableRows == null) {
+            jTableRows = new JTable(rowModel);
+            jTableRows.setAutoCreateRowSorter(true);
+        }
+        return jTableRows;
+    }
+
+    /** List the databases again, on a background thread. */
+    void scan() {
+        // A previous scan still running fills its own list
+        scanCancelled.set(true);
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        final List<OutputRun> runs = new ArrayList<OutputRun>();
+        scanCancelled = cancelled;
+        scanned = runs;
+        rowModel.setRun(null);
+        model.clear();
+        final OutputRun input = OutputRun.input();
+        inputRun = input;
+        deletionReport = null;
+        model.add(input);
+
+        scanThread = new Thread(new Runnable() {
+            public void run() {
+                input.measure();
+                OutputRun.scan(new File("output"), runs, cancelled);
+            }
+        }, "Database explorer scan");
+        scanThread.setDaemon(true);
+        scanThread.start();
+        jLblStatus.setText("Scanning the output directory...");
+        timer.start();
+    }
+
+    private OutputRun getSelectedRun() {
+        int row = jTableRuns.getSelectedRow();
+        return row < 0 ? null : model.get(jTableRuns.convertRowIndexToModel(row));
+    }
+
+    private List<OutputRun> getSelectedRuns() {
+        List<OutputRun> runs = new ArrayList<OutputRun>();
+        for (int row : jTableRuns.getSelectedRows())
+            runs.add(model.get(jTableRuns.convertRowIndexToModel(row)));
+        return runs;
+    }
+
+    private void selectionChanged() {
+        final OutputRun run = getSelectedRun();
+        rowModel.setRun(run);
+        if (run == null || run.getRowCounts() != null || !counting.add(run))
+            return;
+        executor.execute(new Runnable() {
+            public void run() {
+                run.countRows(connections);
+            }
+        });
+        timer.start();
+    }
+
+    private void poll() {
+        synchronized (scanned) {
+            for (OutputRun run : scanned)
+                model.add(run);
+            scanned.clear();
+        }
+
+        for (Iterator<OutputRun> i = counting.iterator(); i.hasNext();) {
+            OutputRun run = i.next();
+            if (run.getRowCounts() != null) {
+                i.remove();
+                model.update(run);
+                if (run == rowModel.run)
+                    rowModel.setRun(run);
+            }
+        }
+
+        if (pollDeletions())
+            return;
+
+        if (scanThread != null) {
+            if (scanThread.isAlive()) {
+                jLblStatus.setText("Scanning the output directory: " + (model.getRowCount() - 1) + " runs");
+                return;
+            }
+            // The input database is measured on the scan thread
+            scanThread = null;
+            model.update(inputRun);
+        }
+        OutputRun run = rowModel.run;
+        if (run != null && run.getError() != null)
+            jLblStatus.setText(run.getName() + ": " + run.getError());
+        else if (!counting.isEmpty())
+            jLblStatus.setText("Counting rows...");
+        else
+            jLblStatus.setText((model.getRowCount() - 1) + " runs"
+                    + (deletionReport == null ? "" : "; " + deletionReport));
+        if (counting.isEmpty())
+            timer.stop();
+    }
+
+    /**
+     * Remove the deleted runs and show the progress of the deletions.
+     *
+     * @return True while deleting.
+     */
+    private boolean pollDeletions() {
+        if (deletions.isEmpty() && releasing.isEmpty())
+            return false;
+
+        for (Iterator<OutputRun> i = releasing.iterator(); i.hasNext();) {
+            OutputRun run = i.next();
+            if (connections.releaseForDeletion(run.getUrl())) {
+                i.remove();
+                DirectoryDeleter deleter = new DirectoryDeleter(run.getDirectory().getAbsoluteFile());
+                deletions.put(deleter, run);
+                deleteExecutor.execute(deleter);
             }
+        }
 
-            // jList = new JList<String>(outDirs);
-            jList = new JList<String>(model);
+        long reclaimed = 0;
+        for (Iterator<Map.Entry<DirectoryDeleter, OutputRun>> i = deletions.entrySet().iterator(); i.hasNext();) {
+            Map.Entry<DirectoryDeleter, OutputRun> deletion = i.next();
+            DirectoryDeleter deleter = deletion.getKey();
+            if (!deleter.isDone()) {
+                reclaimed += deleter.getDeletedBytes();
+                continue;
+            }
+            i.remove();
+            connections.deletionDone(deletion.getValue().getUrl());
+            reclaimedBytes += deleter.getDeletedBytes();
+            List<String> failures = deleter.getFailures();
+            if (failures.isEmpty()) {
+                model.remove(deletion.getValue());
+                deletedRuns++;
+            } else
+                deletionFailures.addAll(failures);
         }
-        return jList;
+        reclaimed += reclaimedBytes;
+
+        if (!deletions.isEmpty() || !releasing.isEmpty()) {
+            String status = "Deleting " + (deletions.size() + releasing.size()) + " runs: " + formatSize(reclaimed)
+                    + " of " + formatSize(deletionBytes) + " reclaimed";
+            if (!releasing.isEmpty())
+                status += ", " + releasing.size() + " waiting for their connections to be closed";
+            jLblStatus.setText(status);
+            return true;
+        }
+
+        // The batch is over
+        rowModel.setRun(getSelectedRun());
+        deletionReport = "deleted " + deletedRuns + " runs, reclaimed " + formatSize(reclaimed);
+        List<String> failures = new ArrayList<String>(deletionFailures);
+        deletionFailures.clear();
+        deletionBytes = 0;
+        reclaimedBytes = 0;
+        deletedRuns = 0;
+        if (!failures.isEmpty()) {
+            deletionReport += ", " + failures.size() + " files not deleted";
+            JTextArea jTextFailures = new JTextArea(Math.min(failures.size(), 15), 60);
+            jTextFailures.setEditable(false);
+            for (String failure : failures)
+                jTextFailures.append(failure + "\n");
+            JOptionPane.showInternalMessageDialog(this, new Object[] {
+                    "These files could not be deleted; check that the databases are not in use by another program or by the simulation.",
+                    new JScrollPane(jTextFailures) }, "Files not deleted", JOptionPane.WARNING_MESSAGE);
+        }
+        return false;
+    }
+
+    static String formatSize(long bytes) {
+        if (bytes < 1024L * 1024 * 1024)
+            return String.format("%.1f MB", bytes / (1024. * 1024));
+        return String.format("%.2f GB", bytes / (1024. * 1024 * 1024));
     }
 
     void jBtnApply_actionPerformed(ActionEvent e) {
-        if (jList.getSelectedValue() == null)
+        OutputRun run = getSelectedRun();
+        if (run == null)
+            return;
+        if (!run.hasDatabase()) {
+            jLblStatus.setText(run.getName() + " has no database.");
+            return;
+        }
+        if (isBeingDeleted(run)) {
+            jLblStatus.setText(run.getName() + " is being deleted.");
+            return;
+        }
+
+        DatabaseBrowserFrame browser = new DatabaseBrowserFrame(run, connections);
+        openFrames.add(browser);
+        getDesktopPane().add(browser);
+        browser.show();
+    }
+
+    void jBtnCompare_actionPerformed(ActionEvent e) {
+        List<OutputRun> runs = new ArrayList<OutputRun>();
+        for (OutputRun run : getSelectedRuns())
+            if (run != inputRun && run.hasDatabase() && !isBeingDeleted(run))
+                runs.add(run);
+        if (runs.size() < 2) {
+            jLblStatus.setText("Select at least two output databases to compare.");
+            return;
+        }
+
+        RunComparisonFrame comparison = new RunComparisonFrame(runs, connections);
+        openFrames.add(comparison);
+        getDesktopPane().add(comparison);
+        comparison.show();
+    }
+
+    void jBtnConsole_actionPerformed(ActionEvent e) {
+        OutputRun run = getSelectedRun();
+        if (run == null)
             return;
 
         try {
-            if (jList.getSelectedIndex() == 0) // Added ";MVCC=TRUE;DB_CLOSE_ON_EXIT=TRUE;FILE_LOCK=NO" in order to
-                                               // allow input database to be inspected, closed and then the simulation
-                                               // to be run. Without this, an exception is thrown as the database is
-                                               // still connected.
-                new Console()
-                        .runTool(new String[] { "-url", "jdbc:h2:file:./input/input;DB_CLOSE_ON_EXIT=TRUE;FILE_LOCK=NO",
-                                "-user", "sa", "-password", "" });
-            else
-                new Console()
-                        .runTool(new String[] { "-url", "jdbc:h2:file:./output/" + jList.getSelectedValue().toString()
-                                + "/database/out;AUTO_SERVER=TRUE", "-user", "sa", "-password", "" });
+            new Console().runTool(new String[] { "-url", run.getUrl(), "-user", "sa", "-password", "" });
         } catch (SQLException e1) {
             e1.printStackTrace();
         }
     }
 
     void jBtnDelete_actionPerformed(ActionEvent e) {
-        if (jList.getSelectedValue() == null)
+        List<OutputRun> runs = getSelectedRuns();
+        if (runs.remove(inputRun)) // Don't delete input database!
+            System.out.println("Only output databases can be deleted via the GUI!");
+        runs.removeAll(deletions.values());
+        runs.removeAll(releasing);
+        if (runs.isEmpty())
             return;
 
-        try {
-            if (jList.getSelectedIndex() == 0) { // Don't delete input database!
-                System.out.println("Only output databases can be deleted via the GUI!");
+        // The windows reading these databases would keep their files open
+        List<JInternalFrame> showing = new ArrayList<JInternalFrame>();
+        for (JInternalFrame frame : openFrames)
+            if (!frame.isClosed() && shows(frame, runs))
+                showing.add(frame);
+        if (runs.size() > 1 || !showing.isEmpty()) {
+            String question = runs.size() > 1 ? "Delete the " + runs.size() + " selected output databases?"
+                    : "Delete the output database of " + runs.get(0).getName() + "?";
+            if (!showing.isEmpty())
+                question += "\nThe " + showing.size() + " windows showing them will be closed.";
+            if (JOptionPane.showInternalConfirmDialog(this, question, "Delete databases",
+                    JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION)
                 return;
-            } else {
-                int indexToDelete = -1;
-                for (int i = 0; i < dirs.length; i++) { // Cannot use jList.getSelectedIndex() to find dirs as index of
-                                                        // dirs array is not updated after an element is deleted, unlike
-                                                        // jList.
-                    // System.out.println(dirs[i].getName() + ", jList selected value " +
-                    // jList.getSelectedValue());
-                    if (dirs[i].getName().equals(jList.getSelectedValue())) {
-                        indexToDelete = i;
-                        break;
-                    }
-                }
-                if ((indexToDelete != -1) && deleteDirectory(dirs[indexToDelete].getAbsoluteFile())) { // Note that dirs
-                                                                                                       // doesn't
-                                                                                                       // contain
-                                                                                                       // "INPUT" as
-                                                                                                       // first entry,
-                                                                                                       // unlike model.
-                    model.removeElementAt(jList.getSelectedIndex());
-                } else {
-                    throw new FileSystemException(
-                            "Database cannot be deleted; check that the database is not in use!  Try again, after closing all connections to the database or restarting the GUI.");
-                }
-            }
-        } catch (IOException e1) {
-            e1.printStackTrace();
         }
+        for (JInternalFrame frame : showing) {
+            frame.dispose();
+            openFrames.remove(frame);
+        }
+
+        // Deleted by pollDeletions once no connection to them is in use; a
+        // row count still waiting is refused a connection from now on
+        for (OutputRun run : runs) {
+            connections.releaseForDeletion(run.getUrl());
+            releasing.add(run);
+            deletionBytes += Math.max(0, run.getSize());
+        }
+        pollDeletions();
+        timer.start();
     }
 
-    /**
-     * Force deletion of directory
-     * 
-     * @param path
-     * @return boolean
-     */
-    static private boolean deleteDirectory(File path) {
-        if (path.exists()) {
-            File[] files = path.listFiles();
-            for (int i = 0; i < files.length; i++) {
-                if (files[i].isDirectory()) {
-                    deleteDirectory(files[i]);
-                } else {
-                    files[i].delete();
-                }
-            }
+    private boolean isBeingDeleted(OutputRun run) {
+        return releasing.contains(run) || deletions.containsValue(run);
+    }
+
+    private static boolean shows(JInternalFrame frame, List<OutputRun> runs) {
+        for (OutputRun run : runs) {
+            if (frame instanceof DatabaseBrowserFrame && ((DatabaseBrowserFrame) frame).shows(run))
+                return true;
+            if (frame instanceof RunComparisonFrame && ((RunComparisonFrame) frame).shows(run))
+                return true;
         }
-        return (path.delete());
+        return false;
     }
 
     void jBtnClose_actionPerformed(ActionEvent e) {
         dispose();
     }
 
+    void jBtnRefresh_actionPerformed(ActionEvent e) {
+        scan();
+    }
+
     void jBtnInit_actionPerformed(ActionEvent e) {
+        connections.close(inputRun.getUrl());
         DatabaseUtils.databaseInputUrl = "./input/input";
         DatabaseUtils.inputSchemaUpdateEntityManger();
         try {
@@ -228,6 +509,20 @@ public class DatabaseExplorerFrame extends JInternalFrame {
         }
     }
 
+    public void dispose() {
+        timer.stop();
+        scanCancelled.set(true);
+        for (JInternalFrame frame : openFrames)
+            frame.dispose();
+        executor.shutdownNow();
+        // Deletions already started run to the end, those still waiting for
+        // their connections are abandoned
+        releasing.clear();
+        deleteExecutor.shutdown();
+        connections.closeAll();
+        super.dispose();
+    }
+
     private javax.swing.JPanel getMainContentPane() {
         if (mainContentPane == null) {
             mainContentPane = new javax.swing.JPanel();
@@ -243,7 +538,10 @@ public class DatabaseExplorerFrame extends JInternalFrame {
             jPanelButtons = new javax.swing.JPanel();
             jPanelButtons.add(getJBtnInit(), null);
             jPanelButtons.add(getJBtnApply(), null);
+            jPanelButtons.add(getJBtnConsole(), null);
+            jPanelButtons.add(getJBtnCompare(), null);
             jPanelButtons.add(getJBtnDelete(), null);
+            jPanelButtons.add(getJBtnRefresh(), null);
             jPanelButtons.add(getJBtnClose(), null);
         }
         return jPanelButtons;
@@ -266,6 +564,7 @@ public class DatabaseExplorerFrame extends JInternalFrame {
         if (jBtnDelete == null) {
             jBtnDelete = new javax.swing.JButton();
             jBtnDelete.setText("Delete database");
+            jBtnDelete.setToolTipText("Delete the selected output databases");
             jBtnDelete.addActionListener(new java.awt.event.ActionListener() {
                 public void actionPerformed(ActionEvent e) {
                     jBtnDelete_actionPerformed(e);
@@ -278,7 +577,8 @@ public class DatabaseExplorerFrame extends JInternalFrame {
     private javax.swing.JButton getJBtnApply() {
         if (jBtnApply == null) {
             jBtnApply = new javax.swing.JButton();
-            jBtnApply.setText("Show database");
+            jBtnApply.setText("Browse");
+            jBtnApply.setToolTipText("Browse the tables of the selected database");
             jBtnApply.addActionListener(new java.awt.event.ActionListener() {
                 public void actionPerformed(ActionEvent e) {
                     jBtnApply_actionPerformed(e);
@@ -288,6 +588,47 @@ public class DatabaseExplorerFrame extends JInternalFrame {
         return jBtnApply;
     }
 
+    private javax.swing.JButton getJBtnConsole() {
+        if (jBtnConsole == null) {
+            jBtnConsole = new javax.swing.JButton();
+            jBtnConsole.setText("Web console");
+            jBtnConsole.setToolTipText("Open the selected database in the H2 web console");
+            jBtnConsole.addActionListener(new java.awt.event.ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    jBtnConsole_actionPerformed(e);
+                }
+            });
+        }
+        return jBtnConsole;
+    }
+
+    private javax.swing.JButton getJBtnCompare() {
+        if (jBtnCompare == null) {
+            jBtnCompare = new javax.swing.JButton();
+            jBtnCompare.setText("Compare runs");
+            jBtnCompare.setToolTipText("Compare a table of the selected output databases");
+            jBtnCompare.addActionListener(new java.awt.event.ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    jBtnCompare_actionPerformed(e);
+                }
+            });
+        }
+        return jBtnCompare;
+    }
+
+    private javax.swing.JButton getJBtnRefresh() {
+        if (jBtnRefresh == null) {
+            jBtnRefresh = new javax.swing.JButton();
+            jBtnRefresh.setText("Refresh");
+            jBtnRefresh.addActionListener(new java.awt.event.ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    jBtnRefresh_actionPerformed(e);
+                }
+            });
+        }
+        return jBtnRefresh;
+    }
+
     private javax.swing.JButton getJBtnInit() {
         if (jBtnInit == null) {
             jBtnInit = new javax.swing.JButton();
@@ -300,4 +641,127 @@ public class DatabaseExplorerFrame extends JInternalFrame {
         }
         return jBtnInit;
     }
+
+    private static class RunTableModel extends AbstractTableModel {
+
+        /**
+         * Comment for <code>serialVersionUID</code>
+         */
+        private static final long serialVersionUID = 1L;
+
+        private static final String[] COLUMNS = { "Database", "Modified", "Size (MB)", "Tables", "Rows" };
+
+        private final List<OutputRun> runs = new ArrayList<OutputRun>();
+
+        void clear() {
+            runs.clear();
+            fireTableDataChanged();
+        }
+
+        void add(OutputRun run) {
+            runs.add(run);
+            fireTableRowsInserted(runs.size() - 1, runs.size() - 1);
+        }
+
+        void remove(OutputRun run) {
+            int row = runs.indexOf(run);
+            if (row >= 0) {
+                runs.remove(row);
+                fireTableRowsDeleted(row, row);
+            }
+        }
+
+        void update(OutputRun run) {
+            int row = runs.indexOf(run);
+            if (row >= 0)
+                fireTableRowsUpdated(row, row);
+        }
+
+        OutputRun get(int row) {
+            return runs.get(row);
+        }
+
+        public int getRowCount() {
+            return runs.size();
+        }
+
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        public Class<?> getColumnClass(int column) {
+            switch (column) {
+            case 1:
+                return Date.class;
+            case 2:
+                return Double.class;
+            case 3:
+                return Integer.class;
+            case 4:
+                return Long.class;
+            default:
+                return String.class;
+            }
+        }
+
+        public Object getValueAt(int row, int column) {
+            OutputRun run = runs.get(row);
+            switch (column) {
+            case 0:
+                return run.getName();
+            case 1:
+                return run.getSize() < 0 ? null : new Date(run.getLastModified());
+            case 2:
+                return run.getSize() < 0 ? null : Math.round(run.getSize() / 10485.76) / 100.;
+            case 3:
+                return run.getRowCounts() == null ? null : run.getRowCounts().size();
+            default:
+                return run.getRowCounts() == null ? null : run.getTotalRows();
+            }
+        }
+    }
+
+    private static class RowTableModel extends AbstractTableModel {
+
+        /**
+         * Comment for <code>serialVersionUID</code>
+         */
+        private static final long serialVersionUID = 1L;
+
+        private OutputRun run;
+        private List<Map.Entry<String, Long>> rows = new ArrayList<Map.Entry<String, Long>>();
+
+        void setRun(OutputRun run) {
+            this.run = run;
+            Map<String, Long> counts = run == null ? null : run.getRowCounts();
+            rows = counts == null ? new ArrayList<Map.Entry<String, Long>>()
+                    : new ArrayList<Map.Entry<String, Long>>(counts.entrySet());
+            fireTableDataChanged();
+        }
+
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        public int getColumnCount() {
+            return 2;
+        }
+
+        public String getColumnName(int column) {
+            return column == 0 ? "Table" : "Rows";
+        }
+
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : Long.class;
+        }
+
+        public Object getValueAt(int row, int column) {
+            Map.Entry<String, Long> entry = rows.get(row);
+            return column == 0 ? entry.getKey() : entry.getValue();
+        }
+    }
 }
@@ -0,0 +1,126 @@
+package microsim.gui.shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Not of interest for users. Deletes a directory tree on the thread running
+ * it, keeping on when a file cannot be deleted and recording which one and
+ * why, typically because it is still open. The bytes and files deleted so
+ * far can be read at any time to show the progress.
+ */
+class DirectoryDeleter implements Runnable {
+
+    private final File directory;
+
+    private final AtomicLong deletedBytes = new AtomicLong();
+    private final AtomicInteger deletedFiles = new AtomicInteger();
+    private final List<String> failures = new ArrayList<String>();
+    private volatile boolean done = false;
+
+    DirectoryDeleter(File directory) {
+        this.directory = directory;
+    }
+
+    public void run() {
+        // Directories above a file that could not be deleted are left alone
+        final Set<Path> kept = new HashSet<Path>();
+        try {
+            Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    try {
+                        Files.delete(file);
+                        deletedBytes.addAndGet(attributes.size());
+                        deletedFiles.incrementAndGet();
+                    } catch (IOException e) {
+                        fail(file, e);
+                        keep(file.getParent());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    fail(file, e);
+                    keep(file.getParent());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) {
+                    if (e != null) {
+                        fail(dir, e);
+                        keep(dir);
+                    }
+                    if (kept.contains(dir)) {
+                        keep(dir.getParent());
+                        return FileVisitResult.CONTINUE;
+                    }
+                    try {
+                        Files.delete(dir);
+                    } catch (IOException e1) {
+                        fail(dir, e1);
+                        keep(dir.getParent());
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                private void keep(Path dir) {
+                    if (dir != null)
+                        kept.add(dir);
+                }
+            });
+        } catch (IOException e) {
+            fail(directory.toPath(), e);
+        } finally {
+            done = true;
+        }
+    }
+
+    private void fail(Path path, IOException e) {
+        String reason;
+        if (e instanceof FileSystemException && ((FileSystemException) e).getReason() != null)
+            reason = ((FileSystemException) e).getReason();
+        else
+            reason = e.getClass().getSimpleName() + (e.getMessage() == null ? "" : " " + e.getMessage());
+        synchronized (failures) {
+            failures.add(path + ": " + reason);
+        }
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    boolean isDone() {
+        return done;
+    }
+
+    long getDeletedBytes() {
+        return deletedBytes.get();
+    }
+
+    int getDeletedFiles() {
+        return deletedFiles.get();
+    }
+
+    /**
+     * @return The files and directories that could not be deleted, each with
+     *         the reason.
+     */
+    List<String> getFailures() {
+        synchronized (failures) {
+            return new ArrayList<String>(failures);
+        }
+    }
+}
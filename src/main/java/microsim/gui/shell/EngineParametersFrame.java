@@ -17,12 +17,16 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
 import javax.swing.JTextField;
-import javax.swing.tree.DefaultMutableTreeNode;
-import javax.swing.tree.DefaultTreeModel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.tree.TreePath;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
 
 import microsim.engine.EngineListener;
 import microsim.engine.SimulationEngine;
-import microsim.event.Event;
 import microsim.event.EventGroup;
 import microsim.event.SystemEventType;
 
@@ -68,6 +72,22 @@ public class EngineParametersFrame extends JInternalFrame implements EngineListe
     private SimulationEngine currentEngine;
     private long oldSeed;
 
+    private static final int EVENT_LIST_MILLIS = 1000;
+
+    private final EventQueueTreeModel eventTreeModel = new EventQueueTreeModel();
+    // Set by the engine thread, cleared by the refresh timer
+    private volatile boolean eventListChanged = true;
+    // Set by the refresh timer, cleared by the engine thread taking the snapshot
+    private volatile boolean snapshotRequested = false;
+
+    private final Timer eventListTimer = new Timer(EVENT_LIST_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            // A request still pending when the engine stopped is served here
+            if ((eventListChanged || snapshotRequested) && isShowing())
+                updateEventList();
+        }
+    });
+
     ImageIcon imageMiniPreferences = new ImageIcon(getClass().getResource(
             "/microsim/gui/icons/engine16.gif"));
 
@@ -81,6 +101,7 @@ public class EngineParametersFrame extends JInternalFrame implements EngineListe
 
     JButton jBtnCancel = null;
     JPanel jPanelEventList = null;
+    EventProfilerPanel jPanelProfiler = null;
 
     JLabel jLblEventList = null;
     JPanel jPanelLineTime = null;
@@ -112,7 +133,10 @@ public class EngineParametersFrame extends JInternalFrame implements EngineListe
         oldSeed = currentEngine.getRandomSeed();
         jTxtRunNumber.setText("" + SimulationEngine.getInstance().getCurrentRunNumber());
         updateEventList();
+        currentEngine.removeEngineListener(this);
         currentEngine.addEngineListener(this);
+        eventListTimer.start();
+        jPanelProfiler.start();
 
         jBtnApply.setEnabled(false);
 
@@ -134,10 +158,17 @@ public class EngineParametersFrame extends JInternalFrame implements EngineListe
             jTabbedPane = new JTabbedPane();
             jTabbedPane.add(getJPanelProperties(), "Engine properties");
             jTabbedPane.add(getJPanelEventList(), "Event list");
+            jTabbedPane.add(getJPanelProfiler(), "Profiler");
         }
         return jTabbedPane;
     }
 
+    private EventProfilerPanel getJPanelProfiler() {
+        if (jPanelProfiler == null)
+            jPanelProfiler = new EventProfilerPanel();
+        return jPanelProfiler;
+    }
+
     private JPanel getJPanelEventList() {
         if (jPanelEventList == null) {
             jPanelEventList = new JPanel();
@@ -273,31 +304,42 @@ public class EngineParametersFrame extends JInternalFrame implements EngineListe
     }
 
     private void close() {
+        eventListTimer.stop();
+        jPanelProfiler.stop();
         currentEngine.removeEngineListener(this);
         dispose();
     }
 
+    /**
+     * Ask for a new snapshot of the event queue. While the simulation runs the
+     * snapshot is taken by the engine thread after its next event, without
+     * pausing the engine, and handed to {@link #showEvents}; an idle engine
+     * does not change the queue, which is then copied right away.
+     */
     private void updateEventList() {
-        currentEngine.pause();
-        Event[] eventArray = currentEngine.getEventQueue().getEventArray();
-
-        DefaultMutableTreeNode root = new DefaultMutableTreeNode();
-
-        for (int i = 0; i < eventArray.length; i++) {
-            Event event = eventArray[i];
-            DefaultMutableTreeNode folderNode = new DefaultMutableTreeNode(
-                    event);
-            root.add(folderNode);
-            if (event instanceof EventGroup) {
-                Event[] subEvents = ((EventGroup) event).eventsToArray();
-                for (int j = 0; j < subEvents.length; j++) {
-                    DefaultMutableTreeNode leafNode = new DefaultMutableTreeNode(
-                            subEvents[j]);
-                    folderNode.add(leafNode);
-                }
-            }
+        eventListChanged = false;
+        if (currentEngine.getRunningStatus())
+            snapshotRequested = true;
+        else {
+            snapshotRequested = false;
+            showEvents(new EventQueueTreeModel.Snapshot(currentEngine.getEventQueue()));
+        }
+    }
+
+    /** Show a snapshot, expanding again the groups still scheduled. */
+    private void showEvents(EventQueueTreeModel.Snapshot snapshot) {
+        List<TreePath> expanded = new ArrayList<TreePath>();
+        Enumeration<TreePath> paths = jTree.getExpandedDescendants(new TreePath(eventTreeModel.getRoot()));
+        if (paths != null)
+            while (paths.hasMoreElements())
+                expanded.add(paths.nextElement());
+
+        if (eventTreeModel.setEvents(snapshot)) {
+            for (TreePath path : expanded)
+                if (path.getPathCount() == 2 && eventTreeModel.contains(path.getLastPathComponent()))
+                    jTree.expandPath(path);
         }
-        jTree.setModel(new DefaultTreeModel(root));
+        jLblEventList.setText("Current event list (" + eventTreeModel.getEventCount() + " events)");
     }
 
     void jTxtSeed_keyTyped(KeyEvent e) {
@@ -405,14 +447,34 @@ public class EngineParametersFrame extends JInternalFrame implements EngineListe
      */
     private javax.swing.JTree getJTree() {
         if (jTree == null) {
-            jTree = new javax.swing.JTree();
+            jTree = new javax.swing.JTree(eventTreeModel);
             jTree.setRootVisible(false);
+            jTree.setShowsRootHandles(true);
+            // Only the visible rows are laid out
+            jTree.setRowHeight(18);
+            jTree.setLargeModel(true);
         }
         return jTree;
     }
 
-    /** Update event list after a step is performed by event list. */
+    /**
+     * Mark the event list as changed after a step is performed by event list.
+     * It is updated by a timer at most every EVENT_LIST_MILLIS milliseconds:
+     * when the timer asks for it, the snapshot is taken here, on the engine
+     * thread between two events, and shown on the event dispatch thread.
+     */
     public void onEngineEvent(SystemEventType event) {
-        updateEventList();
+        eventListChanged = true;
+        if (!snapshotRequested)
+            return;
+        snapshotRequested = false;
+        final EventQueueTreeModel.Snapshot snapshot = new EventQueueTreeModel.Snapshot(
+                currentEngine.getEventQueue());
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                if (isDisplayable())
+                    showEvents(snapshot);
+            }
+        });
     }
 }
@@ -0,0 +1,97 @@
+package microsim.gui.shell;
+
+import java.awt.FlowLayout;
+import java.awt.Font;
+import java.awt.event.ActionEvent;
+
+import javax.swing.BorderFactory;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.Timer;
+
+import microsim.gui.utils.LogHistogram;
+
+/**
+ * Not of interest for users. The status bar of the MicrosimShell showing the
+ * engine throughput collected by an {@link EngineThroughputMonitor}: steps and
+ * events per second, mean and 99th percentile step wall time, heap usage and
+ * garbage collection time. It refreshes itself once per second on the EDT.
+ */
+public class EngineStatusBar extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int REFRESH_MILLIS = 1000;
+
+    private final EngineThroughputMonitor monitor;
+    private final Timer timer;
+
+    private JLabel jLblSteps = null;
+    private JLabel jLblEvents = null;
+    private JLabel jLblStepTime = null;
+    private JLabel jLblHeap = null;
+    private JLabel jLblGc = null;
+
+    public EngineStatusBar(EngineThroughputMonitor monitor) {
+        this.monitor = monitor;
+        initialize();
+
+        timer = new Timer(REFRESH_MILLIS, new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                refresh();
+            }
+        });
+        timer.start();
+    }
+
+    private void initialize() {
+        FlowLayout fl = new FlowLayout();
+        fl.setAlignment(FlowLayout.LEFT);
+        fl.setHgap(16);
+        fl.setVgap(2);
+        setLayout(fl);
+        setBorder(BorderFactory.createEtchedBorder());
+
+        jLblSteps = createLabel("Steps/s: -");
+        jLblEvents = createLabel("Events/s: -");
+        jLblStepTime = createLabel("Step time: -");
+        jLblHeap = createLabel("Heap: -");
+        jLblGc = createLabel("GC: -");
+        jLblStepTime.setToolTipText("Mean and 99th percentile wall time of a simulation step");
+        jLblGc.setToolTipText("Milliseconds per second spent in garbage collection");
+    }
+
+    private JLabel createLabel(String text) {
+        JLabel label = new JLabel(text);
+        label.setFont(new Font(label.getFont().getFontName(), Font.PLAIN,
+                (int) (MicrosimShell.scale * 11)));
+        add(label);
+        return label;
+    }
+
+    /** Sample the monitor and update the labels. */
+    public void refresh() {
+        EngineThroughputMonitor.Sample s = monitor.sample();
+
+        jLblSteps.setText("Steps/s: " + formatRate(s.stepsPerSecond));
+        jLblEvents.setText("Events/s: " + formatRate(s.eventsPerSecond));
+        if (s.p99StepNanos > 0)
+            jLblStepTime.setText("Step time: mean " + LogHistogram.formatNanos(s.meanStepNanos) + ", p99 "
+                    + LogHistogram.formatNanos(s.p99StepNanos));
+        else
+            jLblStepTime.setText("Step time: -");
+        jLblHeap.setText("Heap: " + (s.heapUsedBytes >> 20) + " / " + (s.heapMaxBytes >> 20) + " MB");
+        jLblGc.setText("GC: " + String.format("%.0f", s.gcMillisPerSecond) + " ms/s");
+    }
+
+    /** Stop the refresh timer. */
+    public void stop() {
+        timer.stop();
+    }
+
+    static String formatRate(double rate) {
+        if (rate >= 10000)
+            return String.format("%.1fk", rate / 1000.);
+        return String.format("%.1f", rate);
+    }
+}
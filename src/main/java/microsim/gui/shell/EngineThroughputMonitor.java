@@ -0,0 +1,143 @@
+package microsim.gui.shell;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import microsim.engine.EngineListener;
+import microsim.engine.SimulationEngine;
+import microsim.event.SystemEventType;
+import microsim.gui.utils.LogHistogram;
+
+/**
+ * Not of interest for users. A low-overhead collector of engine throughput
+ * figures, shown by the status bar of the MicrosimShell.
+ * <p>
+ * It listens to the engine events. Every <code>SystemEventType.Step</code>
+ * notification counts as one fired event; whenever the simulation time moves
+ * forward a simulation step is completed and the wall time spent on it is
+ * recorded into a {@link LogHistogram}. The engine thread only reads
+ * <code>System.nanoTime()</code> and updates a few counters, while the GUI
+ * periodically calls {@link #sample()} to turn them into rates.
+ */
+public class EngineThroughputMonitor implements EngineListener {
+
+    private SimulationEngine engine;
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong steps = new AtomicLong();
+    private final LogHistogram stepTimes = new LogHistogram();
+
+    // Only touched by the engine thread
+    private double lastTime = Double.NaN;
+    private long lastStepStart;
+
+    // Only touched by the sampling thread
+    private long lastSampleNanos;
+    private long lastEvents;
+    private long lastSteps;
+    private long lastGcMillis;
+    private Sample lastSample = new Sample();
+
+    private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+
+    public EngineThroughputMonitor() {
+        lastSampleNanos = System.nanoTime();
+        lastGcMillis = getGcMillis();
+    }
+
+    /**
+     * Start listening to the given engine, detaching from the previous one.
+     *
+     * @param engine The engine to be monitored.
+     */
+    public void attach(SimulationEngine engine) {
+        if (this.engine != null)
+            this.engine.removeEngineListener(this);
+        this.engine = engine;
+        if (engine != null)
+            engine.addEngineListener(this);
+        reset();
+    }
+
+    /** Forget the step currently in progress and the recorded step times. */
+    public void reset() {
+        lastTime = Double.NaN;
+        stepTimes.reset();
+    }
+
+    public void onEngineEvent(SystemEventType event) {
+        if (event.equals(SystemEventType.Step)) {
+            long now = System.nanoTime();
+            events.incrementAndGet();
+
+            double time = engine.getTime();
+            if (time != lastTime) {
+                if (!Double.isNaN(lastTime)) {
+                    stepTimes.record(now - lastStepStart);
+                    steps.incrementAndGet();
+                }
+                lastTime = time;
+                lastStepStart = now;
+            }
+        } else if (event.equals(SystemEventType.Build) || event.equals(SystemEventType.Stop))
+            reset();
+    }
+
+    /**
+     * Compute the figures accumulated since the previous call. It is meant to
+     * be called periodically by a single thread, typically the EDT.
+     *
+     * @return The figures of the last sampling interval.
+     */
+    public Sample sample() {
+        long now = System.nanoTime();
+        double seconds = (now - lastSampleNanos) / 1e9;
+        if (seconds <= 0)
+            return lastSample;
+
+        long ev = events.get();
+        long st = steps.get();
+        long gc = getGcMillis();
+        LogHistogram interval = stepTimes.snapshotAndReset();
+        Runtime rt = Runtime.getRuntime();
+
+        Sample s = new Sample();
+        s.eventsPerSecond = (ev - lastEvents) / seconds;
+        s.stepsPerSecond = (st - lastSteps) / seconds;
+        s.meanStepNanos = interval.getMean();
+        s.p99StepNanos = interval.getValueAtPercentile(99.);
+        s.heapUsedBytes = rt.totalMemory() - rt.freeMemory();
+        s.heapMaxBytes = rt.maxMemory();
+        s.gcMillisPerSecond = (gc - lastGcMillis) / seconds;
+
+        lastSampleNanos = now;
+        lastEvents = ev;
+        lastSteps = st;
+        lastGcMillis = gc;
+        lastSample = s;
+        return s;
+    }
+
+    private long getGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean bean : gcBeans) {
+            long t = bean.getCollectionTime();
+            if (t > 0)
+                total += t;
+        }
+        return total;
+    }
+
+    /** The figures collected during one sampling interval. */
+    public static class Sample {
+        public double stepsPerSecond;
+        public double eventsPerSecond;
+        public double meanStepNanos;
+        public long p99StepNanos;
+        public long heapUsedBytes;
+        public long heapMaxBytes;
+        public double gcMillisPerSecond;
+    }
+}
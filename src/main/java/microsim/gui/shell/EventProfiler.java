@@ -0,0 +1,207 @@
+package microsim.gui.shell;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import microsim.engine.SimulationEngine;
+
+/**
+ * Collects the firing counts and times of the events scheduled through a
+ * {@link ProfiledEvent} or a {@link ProfiledEventGroup}, shown by the
+ * "Profiler" tab of the engine status window.
+ * <p>
+ * Profiling is switched on and off at runtime with {@link #setEnabled}. When
+ * it is off the wrappers fire their events directly after reading a single
+ * flag. When it is on each firing costs two <code>System.nanoTime()</code>
+ * calls and a few <code>LongAdder</code> updates, so several simulation
+ * threads can record concurrently. Optionally times are also broken down by
+ * simulation year.
+ *
+ * <pre>
+ * getEngine().getEventQueue().scheduleRepeat(new ProfiledEvent("ageing", new SingleTargetEvent(this, Processes.Ageing)), 0., 0, 1.);
+ * </pre>
+ */
+public class EventProfiler {
+
+    private static volatile boolean enabled = false;
+    private static volatile boolean perYear = false;
+
+    private static final Map<String, EventStats> stats = new ConcurrentHashMap<String, EventStats>();
+    private static final Map<Integer, Map<String, LongAdder>> yearNanos = new ConcurrentHashMap<Integer, Map<String, LongAdder>>();
+
+    private EventProfiler() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switch profiling on or off. Collected figures are kept.
+     *
+     * @param enabled True to time the profiled events.
+     */
+    public static void setEnabled(boolean enabled) {
+        EventProfiler.enabled = enabled;
+    }
+
+    public static boolean isPerYear() {
+        return perYear;
+    }
+
+    /**
+     * Also break the time down by simulation year, i.e. by the integer part
+     * of the engine time.
+     *
+     * @param perYear True to collect the time per year.
+     */
+    public static void setPerYear(boolean perYear) {
+        EventProfiler.perYear = perYear;
+    }
+
+    /**
+     * Record a firing of an event.
+     *
+     * @param name  The name of the event.
+     * @param nanos The time spent firing it.
+     */
+    public static void record(String name, long nanos) {
+        record(name, nanos, false);
+    }
+
+    /**
+     * Record a firing of an event or of a whole group.
+     *
+     * @param name  The name of the event or group.
+     * @param nanos The time spent firing it.
+     * @param group True for the total of a group, whose events are recorded
+     *              on their own: it is left out of the time per year and of
+     *              the overall total, which would otherwise count it twice.
+     */
+    public static void record(String name, long nanos, boolean group) {
+        EventStats s = stats.get(name);
+        if (s == null) {
+            EventStats created = new EventStats(name, group);
+            s = stats.putIfAbsent(name, created);
+            if (s == null)
+                s = created;
+        }
+        s.record(nanos);
+
+        if (perYear && !group) {
+            SimulationEngine engine = SimulationEngine.getInstance();
+            Integer year = Integer.valueOf(engine == null ? 0 : (int) Math.floor(engine.getTime()));
+            Map<String, LongAdder> byName = yearNanos.get(year);
+            if (byName == null) {
+                Map<String, LongAdder> created = new ConcurrentHashMap<String, LongAdder>();
+                byName = yearNanos.putIfAbsent(year, created);
+                if (byName == null)
+                    byName = created;
+            }
+            LongAdder adder = byName.get(name);
+            if (adder == null) {
+                LongAdder created = new LongAdder();
+                adder = byName.putIfAbsent(name, created);
+                if (adder == null)
+                    adder = created;
+            }
+            adder.add(nanos);
+        }
+    }
+
+    /**
+     * Return the figures of every event fired since the last reset.
+     *
+     * @return A new list, in no particular order.
+     */
+    public static List<EventStats> getStats() {
+        return new ArrayList<EventStats>(stats.values());
+    }
+
+    /**
+     * Return the time spent on each event in each simulation year, collected
+     * while {@link #isPerYear()} was on. Groups appear through their events
+     * only, so the times of a year add up to the time spent in that year.
+     *
+     * @return A new map from year to event name to nanoseconds.
+     */
+    public static SortedMap<Integer, Map<String, Long>> getYearNanos() {
+        SortedMap<Integer, Map<String, Long>> copy = new TreeMap<Integer, Map<String, Long>>();
+        for (Map.Entry<Integer, Map<String, LongAdder>> year : yearNanos.entrySet()) {
+            Map<String, Long> byName = new TreeMap<String, Long>();
+            for (Map.Entry<String, LongAdder> e : year.getValue().entrySet())
+                byName.put(e.getKey(), Long.valueOf(e.getValue().sum()));
+            copy.put(year.getKey(), Collections.unmodifiableMap(byName));
+        }
+        return copy;
+    }
+
+    /** Discard all the collected figures. */
+    public static void reset() {
+        stats.clear();
+        yearNanos.clear();
+    }
+
+    /**
+     * The figures of a single event.
+     */
+    public static class EventStats {
+
+        private final String name;
+        private final boolean group;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        EventStats(String name, boolean group) {
+            this.name = name;
+            this.group = group;
+        }
+
+        void record(long nanos) {
+            calls.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos))
+                max = maxNanos.get();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Tell if these are the figures of a whole group, which include the
+         * time of its events.
+         *
+         * @return False for a single event.
+         */
+        public boolean isGroup() {
+            return group;
+        }
+
+        public long getCalls() {
+            return calls.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public double getMeanNanos() {
+            long n = calls.sum();
+            return n == 0 ? 0. : (double) totalNanos.sum() / n;
+        }
+    }
+}
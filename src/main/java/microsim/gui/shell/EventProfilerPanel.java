@@ -0,0 +1,206 @@
+package microsim.gui.shell;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JInternalFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.ChartPanel;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.data.category.DefaultCategoryDataset;
+
+import microsim.gui.GuiUtils;
+
+/**
+ * Not of interest for users. The "Profiler" tab of the
+ * {@link EngineParametersFrame}, showing the figures collected by the
+ * {@link EventProfiler} in a sortable table, refreshed every second while the
+ * tab is showing. The time per simulation year can be charted as stacked bars,
+ * one bar per year and one block per event.
+ */
+class EventProfilerPanel extends JPanel {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    private static final int REFRESH_MILLIS = 1000;
+
+    private final ProfilerTableModel model = new ProfilerTableModel();
+
+    JCheckBox jChkEnabled = new JCheckBox("Profile events");
+    JCheckBox jChkPerYear = new JCheckBox("Per year");
+    JButton jBtnReset = new JButton("Reset");
+    JButton jBtnChart = new JButton("Chart years");
+    JLabel jLblTotal = new JLabel();
+    JTable jTableStats = new JTable(model);
+
+    private final Timer timer = new Timer(REFRESH_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            if (isShowing())
+                refresh();
+        }
+    });
+
+    EventProfilerPanel() {
+        this.setLayout(new BorderLayout());
+        jTableStats.setAutoCreateRowSorter(true);
+
+        jChkEnabled.setSelected(EventProfiler.isEnabled());
+        jChkEnabled.setToolTipText("Time the events scheduled as ProfiledEvent or ProfiledEventGroup");
+        jChkEnabled.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                EventProfiler.setEnabled(jChkEnabled.isSelected());
+            }
+        });
+        jChkPerYear.setSelected(EventProfiler.isPerYear());
+        jChkPerYear.setToolTipText("Also collect the time of each event in each simulation year");
+        jChkPerYear.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                EventProfiler.setPerYear(jChkPerYear.isSelected());
+            }
+        });
+        jBtnReset.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                EventProfiler.reset();
+                refresh();
+            }
+        });
+        jBtnChart.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                showYearChart();
+            }
+        });
+
+        JPanel jPanelButtons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        jPanelButtons.add(jChkEnabled);
+        jPanelButtons.add(jChkPerYear);
+        jPanelButtons.add(jBtnReset);
+        jPanelButtons.add(jBtnChart);
+        jPanelButtons.add(jLblTotal);
+
+        this.add(jPanelButtons, BorderLayout.NORTH);
+        this.add(new JScrollPane(jTableStats), BorderLayout.CENTER);
+        refresh();
+    }
+
+    void start() {
+        timer.start();
+    }
+
+    void stop() {
+        timer.stop();
+    }
+
+    void refresh() {
+        model.setStats(EventProfiler.getStats());
+        jLblTotal.setText(model.stats.size() + " events, " + String.format("%.1f", model.total / 1e6) + " ms");
+    }
+
+    private void showYearChart() {
+        SortedMap<Integer, Map<String, Long>> years = EventProfiler.getYearNanos();
+        if (years.isEmpty()) {
+            jLblTotal.setText("No time per year collected: select \"Per year\" while the simulation runs.");
+            return;
+        }
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+        for (Map.Entry<Integer, Map<String, Long>> year : years.entrySet())
+            for (Map.Entry<String, Long> e : year.getValue().entrySet())
+                dataset.addValue(e.getValue().longValue() / 1e6, e.getKey(), year.getKey());
+
+        JFreeChart chart = ChartFactory.createStackedBarChart("Event time per year", "Year", "ms", dataset,
+                PlotOrientation.VERTICAL, true, true, false);
+        JInternalFrame frame = new JInternalFrame("Event profile", true, true, true, true);
+        frame.setContentPane(new ChartPanel(chart));
+        GuiUtils.addWindow(frame, 40, 40, 700, 450);
+    }
+
+    private static class ProfilerTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns = { "Event", "Calls", "Total ms", "Mean \u00B5s", "Max \u00B5s", "%" };
+
+        private List<EventProfiler.EventStats> stats = Collections.emptyList();
+        // Snapshot of the sums, so that a row does not change while sorted
+        private long[] calls = new long[0];
+        private long[] totals = new long[0];
+        private long total;
+
+        void setStats(List<EventProfiler.EventStats> newStats) {
+            boolean sameRows = newStats.size() == stats.size() && newStats.containsAll(stats);
+            if (sameRows)
+                newStats = stats;
+            else
+                newStats = new ArrayList<EventProfiler.EventStats>(newStats);
+
+            calls = new long[newStats.size()];
+            totals = new long[newStats.size()];
+            total = 0;
+            for (int i = 0; i < calls.length; i++) {
+                EventProfiler.EventStats s = newStats.get(i);
+                calls[i] = s.getCalls();
+                totals[i] = s.getTotalNanos();
+                // Group rows include the time of their events
+                if (!s.isGroup())
+                    total += totals[i];
+            }
+            stats = newStats;
+            if (sameRows && !stats.isEmpty())
+                fireTableRowsUpdated(0, stats.size() - 1);
+            else if (!sameRows)
+                fireTableDataChanged();
+        }
+
+        public int getRowCount() {
+            return stats.size();
+        }
+
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? String.class : column == 1 ? Long.class : Double.class;
+        }
+
+        public Object getValueAt(int row, int column) {
+            EventProfiler.EventStats s = stats.get(row);
+            switch (column) {
+            case 0:
+                return s.getName();
+            case 1:
+                return Long.valueOf(calls[row]);
+            case 2:
+                return Double.valueOf(totals[row] / 1e6);
+            case 3:
+                return Double.valueOf(calls[row] == 0 ? 0. : totals[row] / 1e3 / calls[row]);
+            case 4:
+                return Double.valueOf(s.getMaxNanos() / 1e3);
+            default:
+                return Double.valueOf(total == 0 ? 0. : 100. * totals[row] / total);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package microsim.gui.shell;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.event.TreeModelEvent;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+
+import microsim.event.Event;
+import microsim.event.EventGroup;
+import microsim.event.EventQueue;
+
+/**
+ * Not of interest for users. The tree model of the event list shown by the
+ * {@link EngineParametersFrame}: the scheduled events are the children of the
+ * root, the events of an EventGroup are its children.
+ * <p>
+ * The nodes are the events themselves, no tree node is built. The model shows
+ * a {@link Snapshot} of the event queue and of the events of its groups,
+ * taken on the engine thread between two events, and never reads the queue
+ * itself, which the engine may be changing.
+ */
+class EventQueueTreeModel implements TreeModel {
+
+    private final Object root = "Events";
+
+    private static final Event[] NO_EVENTS = new Event[0];
+
+    private Event[] events = NO_EVENTS;
+    private Map<EventGroup, Event[]> groupEvents = new IdentityHashMap<EventGroup, Event[]>();
+
+    private final List<TreeModelListener> listeners = new ArrayList<TreeModelListener>();
+
+    /**
+     * Replace the snapshot shown. Listeners are notified only of the changes:
+     * of the whole list if the scheduled events are not the same, otherwise of
+     * the groups whose events have changed.
+     *
+     * @param snapshot The new snapshot.
+     * @return True if the whole list has changed.
+     */
+    boolean setEvents(Snapshot snapshot) {
+        Map<EventGroup, Event[]> old = groupEvents;
+        groupEvents = snapshot.groupEvents;
+
+        if (!sameEvents(events, snapshot.events)) {
+            events = snapshot.events;
+            fireStructureChanged(new TreePath(root));
+            return true;
+        }
+
+        for (Map.Entry<EventGroup, Event[]> entry : old.entrySet()) {
+            if (!sameEvents(entry.getValue(), getGroupEvents(entry.getKey())))
+                fireStructureChanged(new TreePath(new Object[] { root, entry.getKey() }));
+        }
+        return false;
+    }
+
+    private void fireStructureChanged(TreePath path) {
+        TreeModelEvent e = new TreeModelEvent(this, path);
+        for (int i = listeners.size() - 1; i >= 0; i--)
+            listeners.get(i).treeStructureChanged(e);
+    }
+
+    private static boolean sameEvents(Event[] a, Event[] b) {
+        if (a.length != b.length)
+            return false;
+        for (int i = 0; i < a.length; i++)
+            if (a[i] != b[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * Check if an event is in the current snapshot.
+     *
+     * @param event The event.
+     * @return True if it is scheduled at the top level.
+     */
+    boolean contains(Object event) {
+        for (Event e : events)
+            if (e == event)
+                return true;
+        return false;
+    }
+
+    int getEventCount() {
+        return events.length;
+    }
+
+    private Event[] getGroupEvents(EventGroup group) {
+        Event[] children = groupEvents.get(group);
+        return children == null ? NO_EVENTS : children;
+    }
+
+    public Object getRoot() {
+        return root;
+    }
+
+    public Object getChild(Object parent, int index) {
+        if (parent == root)
+            return events[index];
+        return getGroupEvents((EventGroup) parent)[index];
+    }
+
+    public int getChildCount(Object parent) {
+        if (parent == root)
+            return events.length;
+        if (parent instanceof EventGroup)
+            return getGroupEvents((EventGroup) parent).length;
+        return 0;
+    }
+
+    public boolean isLeaf(Object node) {
+        // Groups are never read just to draw their expansion handle
+        return node != root && !(node instanceof EventGroup);
+    }
+
+    public int getIndexOfChild(Object parent, Object child) {
+        if (parent == null || child == null)
+            return -1;
+        Event[] children;
+        if (parent == root)
+            children = events;
+        else if (parent instanceof EventGroup)
+            children = getGroupEvents((EventGroup) parent);
+        else
+            return -1;
+        for (int i = 0; i < children.length; i++)
+            if (children[i] == child)
+                return i;
+        return -1;
+    }
+
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // Not editable
+    }
+
+    public void addTreeModelListener(TreeModelListener l) {
+        listeners.add(l);
+    }
+
+    public void removeTreeModelListener(TreeModelListener l) {
+        listeners.remove(l);
+    }
+
+    /**
+     * Not of interest for users. A copy of the scheduled events and of the
+     * events of every group among them, nested groups included. It must be
+     * taken while the queue does not change, i.e. on the engine thread
+     * between two events or while the engine is idle: a copy made while an
+     * event is added or removed can hold null or repeated entries.
+     */
+    static class Snapshot {
+
+        private final Event[] events;
+        private final Map<EventGroup, Event[]> groupEvents = new IdentityHashMap<EventGroup, Event[]>();
+
+        Snapshot(EventQueue queue) {
+            events = copy(queue.getEventArray());
+            for (Event e : events)
+                readGroup(e);
+        }
+
+        private void readGroup(Event e) {
+            if (!(e instanceof EventGroup) || groupEvents.containsKey(e))
+                return;
+            Event[] children = copy(((EventGroup) e).eventsToArray());
+            groupEvents.put((EventGroup) e, children);
+            for (Event child : children)
+                readGroup(child);
+        }
+
+        // Leaves out null entries, which cannot be tree nodes
+        private static Event[] copy(Event[] array) {
+            if (array == null)
+                return NO_EVENTS;
+            List<Event> list = new ArrayList<Event>(array.length);
+            for (Event e : array)
+                if (e != null)
+                    list.add(e);
+            return list.toArray(new Event[list.size()]);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package microsim.gui.shell;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JInternalFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.Timer;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
+import javax.swing.table.AbstractTableModel;
+
+import microsim.gui.utils.RenderCost;
+import microsim.gui.utils.RenderCostRegistry;
+
+/**
+ * Not of interest for users. The frame listing the GUI cost of every open
+ * plotting window: how many updates it received and skipped, the time spent
+ * sampling its sources and drawing it, and its current update interval. It
+ * also controls the auto-throttling of the windows exceeding the frame budget.
+ */
+public class GuiCostFrame extends JInternalFrame {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    private static final int REFRESH_MILLIS = 1000;
+
+    private final CostTableModel model = new CostTableModel();
+    private final Timer timer;
+
+    private JCheckBox jChkThrottle = null;
+    private JTextField jTxtBudget = null;
+    private JButton jBtnReset = null;
+
+    public GuiCostFrame() {
+        initialize();
+
+        timer = new Timer(REFRESH_MILLIS, new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                model.refresh();
+            }
+        });
+        timer.start();
+
+        addInternalFrameListener(new InternalFrameAdapter() {
+            public void internalFrameClosed(InternalFrameEvent e) {
+                timer.stop();
+            }
+        });
+    }
+
+    private void initialize() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(getJPanelSettings(), BorderLayout.NORTH);
+
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+
+        setContentPane(panel);
+        setTitle("GUI cost");
+        setSize(new Dimension(700, 300));
+        setResizable(true);
+        setClosable(true);
+        setMaximizable(true);
+        setIconifiable(true);
+        model.refresh();
+    }
+
+    private JPanel getJPanelSettings() {
+        JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+
+        jChkThrottle = new JCheckBox("Auto-throttle", RenderCostRegistry.isAutoThrottle());
+        jChkThrottle.setToolTipText("Update less frequently the windows whose cost exceeds the budget");
+        jChkThrottle.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                applyBudget();
+                RenderCostRegistry.setAutoThrottle(jChkThrottle.isSelected());
+            }
+        });
+        panel.add(jChkThrottle);
+
+        panel.add(new JLabel("Budget per update (ms):"));
+        jTxtBudget = new JTextField(String.valueOf(RenderCostRegistry.getFrameBudgetNanos() / 1e6), 6);
+        jTxtBudget.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                applyBudget();
+            }
+        });
+        panel.add(jTxtBudget);
+
+        jBtnReset = new JButton("Reset");
+        jBtnReset.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                RenderCostRegistry.resetAll();
+                model.refresh();
+            }
+        });
+        panel.add(jBtnReset);
+
+        return panel;
+    }
+
+    private void applyBudget() {
+        String text = jTxtBudget.getText().trim();
+        try {
+            RenderCostRegistry.setFrameBudgetMillis(Double.parseDouble(text));
+        } catch (IllegalArgumentException e) {
+            // The previous budget is still in use, show it again
+            jTxtBudget.setText(String.valueOf(RenderCostRegistry.getFrameBudgetNanos() / 1e6));
+            JOptionPane.showMessageDialog(this, "Invalid budget \"" + text
+                    + "\": please enter a positive number of milliseconds.", "GUI cost", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private static class CostTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final String[] COLUMNS = { "Window", "Updates", "Skipped", "Sampling mean (ms)",
+                "Render mean (ms)", "Render p99 (ms)", "Recent cost (ms)", "Update every" };
+
+        private List<Object[]> rows = new ArrayList<Object[]>();
+
+        void refresh() {
+            List<Object[]> newRows = new ArrayList<Object[]>();
+            for (RenderCost cost : RenderCostRegistry.getCosts()) {
+                if (cost.getOwner() == null)
+                    continue;
+                newRows.add(new Object[] { cost.getName(), cost.getUpdates(), cost.getSkipped(),
+                        toMillis(cost.getSamplingTimes().getMean()), toMillis(cost.getRenderTimes().getMean()),
+                        toMillis(cost.getRenderTimes().getValueAtPercentile(99.)),
+                        toMillis(cost.getRecentCostNanos()), cost.getInterval() });
+            }
+
+            boolean sameRows = newRows.size() == rows.size();
+            rows = newRows;
+            if (sameRows && !rows.isEmpty())
+                fireTableRowsUpdated(0, rows.size() - 1);
+            else
+                fireTableDataChanged();
+        }
+
+        private static Double toMillis(double nanos) {
+            return Math.round(nanos / 1e4) / 100.;
+        }
+
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        public Class<?> getColumnClass(int column) {
+            switch (column) {
+            case 0:
+                return String.class;
+            case 1:
+            case 2:
+                return Long.class;
+            case 7:
+                return Integer.class;
+            default:
+                return Double.class;
+            }
+        }
+
+        public Object getValueAt(int row, int column) {
+            return rows.get(row)[column];
+        }
+    }
+}
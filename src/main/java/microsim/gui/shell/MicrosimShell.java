@@ -4,12 +4,12 @@ import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Toolkit;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 
@@ -30,8 +30,10 @@ import microsim.engine.SimulationManager;
 import microsim.event.SystemEventType;
 import microsim.exception.SimulationException;
 import microsim.gui.GuiUtils;
+import microsim.gui.shell.parameter.ParameterChangeLog;
+import microsim.gui.shell.parameter.ParameterDescriptor;
 import microsim.gui.shell.parameter.ParameterFrame;
-import microsim.gui.shell.parameter.ParameterInspector;
+import microsim.gui.shell.parameter.SweepDesignerFrame;
 
 /**
  * The JAS object is tne main GUI window. It represents the simulation
@@ -80,6 +82,8 @@ public class MicrosimShell extends JFrame {
 
     private final SimulationController controller = new SimulationController(this);
 
+    private final EngineThroughputMonitor throughputMonitor = new EngineThroughputMonitor();
+
     private CaptureConsoleWindow consoleWindow = null;
 
     private javax.swing.JPanel jContentPane = null;
@@ -146,12 +150,22 @@ public class MicrosimShell extends JFrame {
 
     private javax.swing.JLabel jNullLabel = null;
 
+    private EngineStatusBar jStatusBar = null;
+
     // private javax.swing.JMenuItem jMenuToolsOption = null;
 
     private javax.swing.JMenuItem jMenuToolsWindowPositions = null;
 
     private javax.swing.JMenuItem jMenuToolsDatabaseExplorer = null;
 
+    private javax.swing.JMenuItem jMenuToolsGuiCost = null;
+
+    private javax.swing.JCheckBoxMenuItem jMenuToolsParameterLog = null;
+
+    private javax.swing.JMenuItem jMenuToolsSaveParameterLog = null;
+
+    private javax.swing.JMenuItem jMenuToolsSweep = null;
+
     private javax.swing.JMenuItem jMenuHelpAbout = null;
 
     // private javax.swing.JMenuItem jMenuHelpWebSite = null;
@@ -242,6 +256,7 @@ public class MicrosimShell extends JFrame {
             jContentPane.setLayout(new java.awt.BorderLayout());
             jContentPane.add(getJPanelTop(), java.awt.BorderLayout.NORTH);
             jContentPane.add(getJSplitPane(), java.awt.BorderLayout.CENTER);
+            jContentPane.add(getJStatusBar(), java.awt.BorderLayout.SOUTH);
         }
         return jContentPane;
     }
@@ -523,6 +538,57 @@ public class MicrosimShell extends JFrame {
             callerEngine.setRunningStatus(st);
         }
 
+        public void showGuiCost() {
+            GuiCostFrame costFrame = new GuiCostFrame();
+            getJDesktopPane().add(costFrame);
+            costFrame.show();
+        }
+
+        /**
+         * Save the parameter changes recorded so far as a CSV file and clear
+         * the log, so that the next file starts with the changes made after
+         * this one. The log is kept if the file cannot be written.
+         */
+        public void saveParameterLog() {
+            if (ParameterChangeLog.getEntries().isEmpty()) {
+                String msg = "No parameter change has been recorded.";
+                if (!ParameterChangeLog.isEnabled())
+                    msg += "\nSwitch on Tools > Log parameter changes first.";
+                JOptionPane.showMessageDialog(jasWindow, msg, "Parameter log", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new File("parameter_changes.csv"));
+            if (chooser.showSaveDialog(jasWindow) != JFileChooser.APPROVE_OPTION)
+                return;
+            File file = chooser.getSelectedFile();
+            if (!file.getName().toLowerCase().endsWith(".csv"))
+                file = new File(file.getAbsolutePath() + ".csv");
+
+            try {
+                Writer out = new BufferedWriter(new FileWriter(file));
+                try {
+                    ParameterChangeLog.write(out);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                JOptionPane.showMessageDialog(jasWindow, "Error writing file:\n" + e.getMessage(), "Parameter log",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            // Changes are recorded on the event dispatch thread, as this, so
+            // none can be lost between writing and clearing
+            ParameterChangeLog.clear();
+        }
+
+        public void showSweepDesigner() {
+            SweepDesignerFrame sweepFrame = new SweepDesignerFrame(callerEngine.getModelArray());
+            getJDesktopPane().add(sweepFrame);
+            sweepFrame.show();
+        }
+
         public void editProperties() {
             // (new JASParameters(jasWindow, settings)).setVisible(true);
         }
@@ -574,6 +640,7 @@ public class MicrosimShell extends JFrame {
         public void attachToSimEngine(SimulationEngine engine) {
             callerEngine = engine;
             callerEngine.addEngineListener(this);
+            throughputMonitor.attach(engine);
         }
 
         public void doStep() throws SimulationException {
@@ -616,6 +683,7 @@ public class MicrosimShell extends JFrame {
 
         private void quitEngine() {
             callerEngine.pause();
+            getJStatusBar().stop();
 
             callerEngine.quit();
 
@@ -784,102 +852,15 @@ public class MicrosimShell extends JFrame {
             else if (event.equals(SystemEventType.Setup)) {
                 parameterFrames.clear();
                 for (SimulationManager model : controller.callerEngine.getModelArray()) {
-                    List<Field> fields = ParameterInspector.extractModelParameters(model.getClass());
-
                     // Check that getter and setter exists for each model parameter (to ensure
-                    // ability to control via microsim.shell GUI)
-                    HashSet<String> getters = new HashSet<String>();
-                    HashSet<String> setters = new HashSet<String>();
-                    Method[] methods = model.getClass().getMethods();
-
-                    for (Method method : methods) {
-                        if (isGetter(method)) {
-                            getters.add(method.getName());
-                        } else if (isSetter(method)) {
-                            setters.add(method.getName());
-                        }
+                    // ability to control via microsim.shell GUI). The accessors are resolved once
+                    // per class, so restarting the model does not scan it again.
+                    List<ParameterDescriptor> parameters = ParameterDescriptor.forClass(model.getClass());
+                    for (ParameterDescriptor parameter : parameters) {
+                        parameter.checkAccessors(model);
                     }
 
-                    for (Field modelParameter : fields) {
-                        String modelParameterName = modelParameter.getName();
-                        if (modelParameterName.length() > 1) {
-                            if (Character.isLowerCase(modelParameterName.charAt(0))
-                                    && Character.isUpperCase(modelParameterName.charAt(1))) {
-                                if (!getters.contains("get" + modelParameterName)) { // handles cases for fields with a
-                                                                                     // name whose first character is
-                                                                                     // lower case, followed by a
-                                                                                     // capital letter, e.g. nWorkers.
-                                                                                     // In this case, the Java Beans
-                                                                                     // convention is for a getter
-                                                                                     // called getnWorkers, instead of
-                                                                                     // getNWorkers.
-                                    if (!getters.contains("is" + modelParameterName)) { // handles case for boolean 'is'
-                                                                                        // getter methods
-                                        throw new RuntimeException("Model parameter " + modelParameterName
-                                                + " has no getter method.  Please create a getter method called get"
-                                                + modelParameterName + " in the " + model.getClass()
-                                                + " to enable this model parameter to be read by the GUI.");
-                                    }
-                                }
-                                if (!setters.contains("set" + modelParameterName)) {
-                                    throw new RuntimeException("Model parameter " + modelParameterName
-                                            + " has no setter method.  Please create a setter method called set"
-                                            + modelParameterName + " in the " + model.getClass()
-                                            + " to enable this model parameter to be controlled via the GUI.");
-                                }
-                            } else {
-                                String capModelParameterName = modelParameterName.substring(0, 1).toUpperCase()
-                                        + modelParameterName.substring(1, modelParameterName.length()); // Ensure first
-                                                                                                        // letter of
-                                                                                                        // name is
-                                                                                                        // capitalised
-                                String getterName = "get" + capModelParameterName;
-                                String setterName = "set" + capModelParameterName;
-
-                                if (!getters.contains(getterName)) {
-                                    if (!getters.contains("is" + capModelParameterName)) { // handles case for boolean
-                                                                                           // 'is' getter methods
-                                        throw new RuntimeException("Model parameter " + modelParameterName
-                                                + " has no getter method.  Please create a getter method called "
-                                                + getterName + " in the " + model.getClass()
-                                                + " to enable this model parameter to be read by the GUI.");
-                                    }
-                                }
-                                if (!setters.contains(setterName)) {
-                                    throw new RuntimeException("Model parameter " + modelParameterName
-                                            + " has no setter method.  Please create a setter method called "
-                                            + setterName + " in the " + model.getClass()
-                                            + " to enable this model parameter to be controlled via the GUI.");
-                                }
-                            }
-                        } else { // Still need to check that getter/setters exist for case where a single
-                                 // character is used for the model parameter name.
-                            String capModelParameterName = modelParameterName.substring(0, 1).toUpperCase()
-                                    + modelParameterName.substring(1, modelParameterName.length()); // Ensure first
-                                                                                                    // letter of name is
-                                                                                                    // capitalised
-                            String getterName = "get" + capModelParameterName;
-                            String setterName = "set" + capModelParameterName;
-
-                            if (!getters.contains(getterName)) {
-                                if (!getters.contains("is" + capModelParameterName)) { // handles case for boolean 'is'
-                                                                                       // getter methods
-                                    throw new RuntimeException("Model parameter " + modelParameterName
-                                            + " has no getter method.  Please create a getter method called "
-                                            + getterName + " in the " + model.getClass()
-                                            + " to enable this model parameter to be read by the GUI.");
-                                }
-                            }
-                            if (!setters.contains(setterName)) {
-                                throw new RuntimeException("Model parameter " + modelParameterName
-                                        + " has no setter method.  Please create a setter method called " + setterName
-                                        + " in the " + model.getClass()
-                                        + " to enable this model parameter to be controlled via the GUI.");
-                            }
-                        }
-                    }
-
-                    if (fields.size() > 0) {
+                    if (parameters.size() > 0) {
                         ParameterFrame parameterFrame = new ParameterFrame(model);
                         parameterFrame.setResizable(false); // Now in scrollpane, cannot resize anyway, so set to false.
                         GuiUtils.addWindow(parameterFrame);
@@ -896,24 +877,6 @@ public class MicrosimShell extends JFrame {
 
     }
 
-    private static boolean isGetter(Method method) {
-        if (!(method.getName().startsWith("get") || method.getName().startsWith("is")))
-            return false;
-        if (method.getParameterTypes().length != 0)
-            return false;
-        if (void.class.equals(method.getReturnType()))
-            return false;
-        return true;
-    }
-
-    private static boolean isSetter(Method method) {
-        if (!method.getName().startsWith("set"))
-            return false;
-        if (method.getParameterTypes().length != 1)
-            return false;
-        return true;
-    }
-
     /**
      * This method initializes jBtnReload
      * 
@@ -1085,6 +1048,10 @@ public class MicrosimShell extends JFrame {
             // jMenuTools.add(getJMenuToolsOption());
             jMenuTools.add(getJMenuToolsWindowPositions());
             jMenuTools.add(getJMenuToolsDatabaseExplorer());
+            jMenuTools.add(getJMenuToolsGuiCost());
+            jMenuTools.add(getJMenuToolsParameterLog());
+            jMenuTools.add(getJMenuToolsSaveParameterLog());
+            jMenuTools.add(getJMenuToolsSweep());
         }
         return jMenuTools;
     }
@@ -1292,6 +1259,68 @@ public class MicrosimShell extends JFrame {
         return jMenuToolsDatabaseExplorer;
     }
 
+    private javax.swing.JMenuItem getJMenuToolsGuiCost() {
+        if (jMenuToolsGuiCost == null) {
+            jMenuToolsGuiCost = new javax.swing.JMenuItem();
+            jMenuToolsGuiCost.setText("GUI cost");
+            jMenuToolsGuiCost.setIcon(new javax.swing.ImageIcon(getClass()
+                    .getResource("/microsim/gui/icons/console.gif")));
+            jMenuToolsGuiCost
+                    .addActionListener(new java.awt.event.ActionListener() {
+                        public void actionPerformed(java.awt.event.ActionEvent e) {
+                            controller.showGuiCost();
+                        }
+                    });
+        }
+        return jMenuToolsGuiCost;
+    }
+
+    private javax.swing.JCheckBoxMenuItem getJMenuToolsParameterLog() {
+        if (jMenuToolsParameterLog == null) {
+            jMenuToolsParameterLog = new javax.swing.JCheckBoxMenuItem();
+            jMenuToolsParameterLog.setText("Log parameter changes");
+            jMenuToolsParameterLog.setToolTipText("Record each model parameter changed from the parameter windows");
+            jMenuToolsParameterLog.setSelected(ParameterChangeLog.isEnabled());
+            jMenuToolsParameterLog
+                    .addActionListener(new java.awt.event.ActionListener() {
+                        public void actionPerformed(java.awt.event.ActionEvent e) {
+                            ParameterChangeLog.setEnabled(jMenuToolsParameterLog.isSelected());
+                        }
+                    });
+        }
+        return jMenuToolsParameterLog;
+    }
+
+    private javax.swing.JMenuItem getJMenuToolsSaveParameterLog() {
+        if (jMenuToolsSaveParameterLog == null) {
+            jMenuToolsSaveParameterLog = new javax.swing.JMenuItem();
+            jMenuToolsSaveParameterLog.setText("Save parameter log...");
+            jMenuToolsSaveParameterLog.setToolTipText("Save the recorded parameter changes as CSV and clear the log");
+            jMenuToolsSaveParameterLog
+                    .addActionListener(new java.awt.event.ActionListener() {
+                        public void actionPerformed(java.awt.event.ActionEvent e) {
+                            controller.saveParameterLog();
+                        }
+                    });
+        }
+        return jMenuToolsSaveParameterLog;
+    }
+
+    private javax.swing.JMenuItem getJMenuToolsSweep() {
+        if (jMenuToolsSweep == null) {
+            jMenuToolsSweep = new javax.swing.JMenuItem();
+            jMenuToolsSweep.setText("Parameter sweep");
+            jMenuToolsSweep.setToolTipText("Run the models for ranges of parameter values in local worker processes");
+            jMenuToolsSweep
+                    .addActionListener(new java.awt.event.ActionListener() {
+                        public void actionPerformed(java.awt.event.ActionEvent e) {
+                            controller.showSweepDesigner();
+                        }
+                    });
+        }
+        return jMenuToolsSweep;
+    }
+
     /**
      * This method initializes jMenuSimulationBuild
      * 
@@ -1407,6 +1436,24 @@ public class MicrosimShell extends JFrame {
         return jSlider;
     }
 
+    /** Stop the refresh timer of the status bar with the shell. */
+    public void dispose() {
+        getJStatusBar().stop();
+        super.dispose();
+    }
+
+    /**
+     * This method initializes jStatusBar
+     * 
+     * @return microsim.gui.shell.EngineStatusBar
+     */
+    private EngineStatusBar getJStatusBar() {
+        if (jStatusBar == null) {
+            jStatusBar = new EngineStatusBar(throughputMonitor);
+        }
+        return jStatusBar;
+    }
+
     /**
      * This method initializes jDesktopPane
      * 
@@ -0,0 +1,205 @@
+package microsim.gui.shell;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import microsim.engine.MultiRun;
+
+/**
+ * Not of interest for users. The control panel of several MultiRun
+ * controllers, for instance one per parameter combination. Each controller is
+ * a row of a table showing its state, run progress, throughput and failures.
+ * <p>
+ * The controllers share the SimulationEngine of the JVM, so they are executed
+ * one after another, in the order they were added; the parameter sweep
+ * designer runs simulations in parallel in separate JVMs instead.
+ * <p>
+ * The table is refreshed twice per second by a Swing timer reading a
+ * {@link MultiRunStatusBoard}, which also starts the next controller when the
+ * previous one has stopped, so the cost for the simulation threads does not
+ * depend on the number of engine events. The timer stops when every
+ * controller has finished.
+ *
+ * <pre>
+ * MultiRunDashboard dashboard = new MultiRunDashboard("Calibration");
+ * dashboard.addMultiRun("alpha=0.1", new MyMultiRun(0.1), 500);
+ * dashboard.addMultiRun("alpha=0.2", new MyMultiRun(0.2), 500);
+ * dashboard.setVisible(true);
+ * </pre>
+ */
+public class MultiRunDashboard extends JFrame {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    private static final int REFRESH_MILLIS = 500;
+
+    private final MultiRunStatusBoard board = new MultiRunStatusBoard();
+    private final WorkerTableModel model = new WorkerTableModel();
+
+    private JButton jBtnStart = new JButton();
+    private JButton jBtnQuit = new JButton();
+    private JLabel jLblSummary = new JLabel();
+
+    private final Timer timer = new Timer(REFRESH_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            refresh();
+        }
+    });
+
+    public MultiRunDashboard(String title) {
+        setTitle(title);
+        try {
+            jbInit();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void jbInit() throws Exception {
+        getContentPane().setLayout(new BorderLayout());
+
+        JTable table = new JTable(model);
+        table.setAutoCreateRowSorter(true);
+        getContentPane().add(new JScrollPane(table), BorderLayout.CENTER);
+
+        JPanel jPanelBtns = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        jBtnStart.setText("Start all");
+        jBtnStart.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                startAll();
+            }
+        });
+        jBtnQuit.setText("Quit");
+        jBtnQuit.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                System.exit(0);
+            }
+        });
+        jPanelBtns.add(jBtnStart);
+        jPanelBtns.add(jBtnQuit);
+        jPanelBtns.add(jLblSummary);
+        getContentPane().add(jPanelBtns, BorderLayout.SOUTH);
+
+        setSize(900, 300);
+        setLocationRelativeTo(null);
+    }
+
+    /**
+     * Add a controller to the dashboard. It must not have been started yet.
+     *
+     * @param name    The name of the row.
+     * @param run     The controller.
+     * @param maxRuns The number of runs it will execute, or 0 if unknown.
+     */
+    public void addMultiRun(String name, MultiRun run, int maxRuns) {
+        board.register(name, run, maxRuns);
+        model.fireTableDataChanged();
+    }
+
+    public MultiRunStatusBoard getStatusBoard() {
+        return board;
+    }
+
+    /**
+     * Start the first controller, and the refresh timer which starts the
+     * others in turn.
+     */
+    public void startAll() {
+        jBtnStart.setEnabled(false);
+        board.startNext();
+        timer.start();
+    }
+
+    /**
+     * Close the dashboard, which stops starting controllers and restores the
+     * default uncaught exception handler replaced by the board.
+     */
+    public void dispose() {
+        timer.stop();
+        board.close();
+        super.dispose();
+    }
+
+    private void refresh() {
+        boolean done = !board.startNext() && board.isDone();
+
+        int runs = 0, failed = 0;
+        for (MultiRunStatusBoard.Worker worker : board.getWorkers()) {
+            runs += worker.getProgress().getRunsCompleted();
+            if (worker.getState() == MultiRunStatusBoard.State.Failed)
+                failed++;
+        }
+        jLblSummary.setText(runs + " runs completed, " + failed + " workers failed");
+
+        if (!board.getWorkers().isEmpty())
+            model.fireTableRowsUpdated(0, board.getWorkers().size() - 1);
+        if (done)
+            timer.stop();
+    }
+
+    private class WorkerTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns = { "Worker", "State", "Run", "Steps", "Last run", "Steps/s", "Runs/h",
+                "Time left", "Failures", "Last error" };
+
+        public int getRowCount() {
+            return board.getWorkers().size();
+        }
+
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        public Object getValueAt(int row, int column) {
+            List<MultiRunStatusBoard.Worker> workers = board.getWorkers();
+            if (row >= workers.size())
+                return null;
+            MultiRunStatusBoard.Worker worker = workers.get(row);
+            MultiRunProgress progress = worker.getProgress();
+
+            switch (column) {
+            case 0:
+                return worker.getName();
+            case 1:
+                return worker.getState();
+            case 2:
+                return progress.getRunsCompleted()
+                        + (progress.getMaxRuns() > 0 ? " / " + progress.getMaxRuns() : "");
+            case 3:
+                return progress.getCurrentSteps();
+            case 4:
+                return MultiRunProgress.formatDuration(progress.getLastRunNanos());
+            case 5:
+                return String.format("%.1f", progress.getLastRunStepsPerSecond());
+            case 6:
+                return String.format("%.1f", progress.getRunsPerHour());
+            case 7:
+                return MultiRunProgress.formatDuration(progress.getEtaNanos());
+            case 8:
+                return worker.getFailures();
+            default:
+                return worker.getLastError() == null ? "" : worker.getLastError();
+            }
+        }
+    }
+}
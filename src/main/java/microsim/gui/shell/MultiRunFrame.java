@@ -9,6 +9,7 @@ import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
+import javax.swing.Timer;
 
 import microsim.engine.EngineListener;
 import microsim.engine.MultiRun;
@@ -59,16 +60,29 @@ public class MultiRunFrame extends JFrame implements MultiRunListener, EngineLis
     private JButton jBtnQuit = new JButton();
     private JPanel jPanelBtns = new JPanel();
     private JButton jBtnStart = new JButton();
+    private JLabel jLblLastRun = new JLabel();
+    private JLabel jLblEta = new JLabel();
 
-    private int forward = 1;
+    private static final int REFRESH_MILLIS = 250;
 
     private int maxRuns;
 
     private MultiRun test;
 
+    private final MultiRunProgress progress;
+
+    private volatile String multiRunId = "";
+
+    private final Timer timer = new Timer(REFRESH_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            refresh();
+        }
+    });
+
     public MultiRunFrame(MultiRun test, String title, int maxRuns) {
         this.test = test;
         this.maxRuns = maxRuns;
+        this.progress = new MultiRunProgress(maxRuns);
         test.getEngineListeners().add(this);
         test.getMultiRunListeners().add(this);
         try {
@@ -101,10 +115,20 @@ public class MultiRunFrame extends JFrame implements MultiRunListener, EngineLis
 
         JPanel h3 = new JPanel(new FlowLayout());
         jLblCurrentRun.setText("");
-        jLblCurrentRunLabel.setText("Current step: ");
+        jLblCurrentRunLabel.setText("Run id: ");
         h3.add(jLblCurrentRunLabel);
         h3.add(jLblCurrentRun);
 
+        JPanel h4 = new JPanel(new FlowLayout());
+        jLblLastRun.setText("Last run: -");
+        h4.add(jLblLastRun);
+
+        JPanel h5 = new JPanel(new FlowLayout());
+        jLblEta.setText("Time left: -");
+        jLblEta.setToolTipText("Estimated from the average duration of the last " + MultiRunProgress.WINDOW
+                + " runs");
+        h5.add(jLblEta);
+
         jBtnQuit.setText("Quit");
         jBtnQuit.addActionListener(new java.awt.event.ActionListener() {
             public void actionPerformed(ActionEvent e) {
@@ -123,23 +147,26 @@ public class MultiRunFrame extends JFrame implements MultiRunListener, EngineLis
         jPanelNorth.add(h1, null);
         jPanelNorth.add(h2, null);
         jPanelNorth.add(h3, null);
-        jPanelNorth.add(new JLabel("-"), null);
+        jPanelNorth.add(h4, null);
+        jPanelNorth.add(h5, null);
 
+        jBar.setStringPainted(true);
+        jBar.setString("");
         this.getContentPane().add(jBar);
         this.getContentPane().add(new JLabel("-"));
 
         this.getContentPane().add(jPanelBtns);
         jPanelBtns.add(jBtnQuit, null);
 
-        setSize(300, 180);
+        setSize(320, 240);
         int x = (int) Toolkit.getDefaultToolkit().getScreenSize().getWidth();
         int y = (int) Toolkit.getDefaultToolkit().getScreenSize().getHeight();
-        setLocation((x - 300) / 2, (y - 300) / 2);
+        setLocation((x - 320) / 2, (y - 300) / 2);
     }
 
     public void updateModelNumber(int currentRun, SimulationEngine engine) {
-        jLblNumber.setText(currentRun + "");
-        jLblCurrentRun.setText(engine.getMultiRunId());
+        progress.runStarted(currentRun);
+        multiRunId = engine.getMultiRunId();
     }
 
     void jBtnQuit_actionPerformed(ActionEvent e) {
@@ -147,45 +174,47 @@ public class MultiRunFrame extends JFrame implements MultiRunListener, EngineLis
     }
 
     public void setMaxRuns(int maxRuns) {
-        jBar.setMaximum(maxRuns);
-    }
-
-    public void updateBar() {
-        if (jBar.getValue() == 0 || jBar.getValue() == jBar.getMaximum()) {
-            if (forward == 1)
-                forward = -1;
-            else
-                forward = 1;
-        }
-
-        jBar.setValue(jBar.getValue() + forward);
-
-        repaint();
+        this.maxRuns = maxRuns;
+        progress.setMaxRuns(maxRuns);
+        jBar.setMaximum(Math.max(maxRuns, 1));
     }
 
-    private class Timer extends Thread {
-        private MultiRunFrame caller;
-
-        public Timer(MultiRunFrame caller) {
-            this.caller = caller;
-        }
-
-        public void run() {
-            while (true) {
-                caller.updateBar();
-                try {
-                    sleep(200);
-                } catch (Exception e) {
-                }
-            }
+    /** Update the labels and the bar from the progress model. Runs on the EDT. */
+    private void refresh() {
+        int done = progress.getRunsCompleted();
+        jLblNumber.setText(progress.getCurrentRun() + (maxRuns > 0 ? " / " + maxRuns : ""));
+        jLblCurrentStep.setText(SimulationEngine.getInstance().getTime() + " (" + progress.getCurrentSteps()
+                + " steps)");
+        jLblCurrentRun.setText(multiRunId == null ? "" : multiRunId);
+
+        if (progress.getLastRunNanos() > 0)
+            jLblLastRun.setText("Last run: " + MultiRunProgress.formatDuration(progress.getLastRunNanos()) + ", "
+                    + String.format("%.1f", progress.getLastRunStepsPerSecond()) + " steps/s");
+        jLblEta.setText("Time left: " + MultiRunProgress.formatDuration(progress.getEtaNanos()) + ", "
+                + String.format("%.1f", progress.getRunsPerHour()) + " runs/h");
+
+        if (maxRuns > 0) {
+            jBar.setValue(done);
+            jBar.setString(done + " / " + maxRuns);
+        } else
+            jBar.setString(done + " runs");
+
+        if (!test.isAlive()) {
+            // The multi run thread has exited
+            progress.finished();
+            jBar.setIndeterminate(false);
+            jLblEta.setText("Completed " + done + " runs in "
+                    + MultiRunProgress.formatDuration(progress.getElapsedNanos()));
+            timer.stop();
         }
     }
 
     void jBtnStart_actionPerformed(ActionEvent e) {
         jBtnStart.setEnabled(false);
-        Timer tm = new Timer(this);
-        tm.start();
+        // Without a known number of runs the bar can only show activity
+        jBar.setIndeterminate(maxRuns <= 0);
         test.start();
+        timer.start();
     }
 
     public void beforeSimulationStart(SimulationEngine engine) {
@@ -198,11 +227,15 @@ public class MultiRunFrame extends JFrame implements MultiRunListener, EngineLis
     }
 
     public void afterSimulationCompleted(SimulationEngine engine) {
-
+        progress.runCompleted();
     }
 
     public void onEngineEvent(SystemEventType event) {
         if (event.equals(SystemEventType.Step))
-            jLblCurrentStep.setText(SimulationEngine.getInstance().getTime() + "");
+            progress.step();
+    }
+
+    public MultiRunProgress getProgress() {
+        return progress;
     }
 }
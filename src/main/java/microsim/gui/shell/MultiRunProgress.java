@@ -0,0 +1,184 @@
+package microsim.gui.shell;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Not of interest for users. The progress of a multi-run experiment: runs
+ * completed out of the maximum, steps of the current run, a moving average of
+ * the last run durations and the resulting estimated time to completion.
+ * <p>
+ * The <code>runStarted</code>, <code>step</code> and <code>runCompleted</code>
+ * notifications come from the simulation thread and only update a few atomic
+ * counters, without locks; the getters can be polled by any thread, typically
+ * by a Swing timer on the EDT.
+ */
+public class MultiRunProgress {
+
+    /** The number of recent runs the average duration is computed on. */
+    public static final int WINDOW = 20;
+
+    private volatile int maxRuns;
+
+    private final AtomicInteger runsCompleted = new AtomicInteger();
+    private final AtomicLong currentSteps = new AtomicLong();
+    private final AtomicLong totalSteps = new AtomicLong();
+
+    private volatile int currentRun;
+    private volatile long startNanos;
+    private volatile long runStartNanos;
+    private volatile long lastRunNanos;
+    private volatile long lastRunSteps;
+    private volatile boolean finished;
+
+    private final AtomicLongArray durations = new AtomicLongArray(WINDOW);
+    private final AtomicInteger durationCount = new AtomicInteger();
+
+    /**
+     * @param maxRuns The number of runs of the experiment, or 0 if unknown.
+     */
+    public MultiRunProgress(int maxRuns) {
+        this.maxRuns = maxRuns;
+    }
+
+    /**
+     * Notify the start of a run.
+     *
+     * @param run The run number.
+     */
+    public void runStarted(int run) {
+        long now = System.nanoTime();
+        if (startNanos == 0)
+            startNanos = now;
+        currentRun = run;
+        currentSteps.set(0);
+        runStartNanos = now;
+    }
+
+    /** Notify a step of the current run. */
+    public void step() {
+        currentSteps.incrementAndGet();
+        totalSteps.incrementAndGet();
+    }
+
+    /** Notify the end of the current run. */
+    public void runCompleted() {
+        long duration = System.nanoTime() - runStartNanos;
+        lastRunNanos = duration;
+        lastRunSteps = currentSteps.get();
+
+        durations.set(durationCount.getAndIncrement() % WINDOW, duration);
+        runsCompleted.incrementAndGet();
+    }
+
+    /** Notify the end of the whole experiment. */
+    public void finished() {
+        finished = true;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public int getMaxRuns() {
+        return maxRuns;
+    }
+
+    public void setMaxRuns(int maxRuns) {
+        this.maxRuns = maxRuns;
+    }
+
+    public int getRunsCompleted() {
+        return runsCompleted.get();
+    }
+
+    public int getCurrentRun() {
+        return currentRun;
+    }
+
+    public long getCurrentSteps() {
+        return currentSteps.get();
+    }
+
+    public long getTotalSteps() {
+        return totalSteps.get();
+    }
+
+    public long getLastRunNanos() {
+        return lastRunNanos;
+    }
+
+    /**
+     * Return the steps per second of the last completed run.
+     *
+     * @return The throughput, or 0 if no run has been completed yet.
+     */
+    public double getLastRunStepsPerSecond() {
+        long nanos = lastRunNanos;
+        return nanos == 0 ? 0. : lastRunSteps / (nanos / 1e9);
+    }
+
+    /**
+     * Return the average duration of the last {@link #WINDOW} runs.
+     *
+     * @return The duration in nanoseconds, or 0 if no run has been completed.
+     */
+    public double getMeanRunNanos() {
+        int n = Math.min(durationCount.get(), WINDOW);
+        if (n == 0)
+            return 0.;
+        long sum = 0;
+        for (int i = 0; i < n; i++)
+            sum += durations.get(i);
+        return (double) sum / n;
+    }
+
+    /**
+     * Return the completed runs per hour since the experiment started.
+     *
+     * @return The throughput, or 0 if no run has been completed yet.
+     */
+    public double getRunsPerHour() {
+        long elapsed = getElapsedNanos();
+        return elapsed == 0 ? 0. : runsCompleted.get() / (elapsed / 3.6e12);
+    }
+
+    public long getElapsedNanos() {
+        return startNanos == 0 ? 0 : System.nanoTime() - startNanos;
+    }
+
+    /**
+     * Estimate the time to completion from the average run duration.
+     *
+     * @return The remaining time in nanoseconds, or -1 if it cannot be
+     *         estimated (unknown number of runs or no completed run yet).
+     */
+    public long getEtaNanos() {
+        double mean = getMeanRunNanos();
+        if (maxRuns <= 0 || mean == 0)
+            return -1;
+        if (finished)
+            return 0;
+
+        int remaining = maxRuns - runsCompleted.get();
+        if (remaining <= 0)
+            return 0;
+        // The current run is partially done
+        double inRun = Math.min(mean, System.nanoTime() - runStartNanos);
+        return (long) Math.max(0., remaining * mean - inRun);
+    }
+
+    /**
+     * Format a duration as h:mm:ss.
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The formatted duration, "-" if negative.
+     */
+    public static String formatDuration(long nanos) {
+        if (nanos < 0)
+            return "-";
+        long s = nanos / 1000000000L;
+        return String.format("%d:%02d:%02d", s / 3600, (s / 60) % 60, s % 60);
+    }
+}
@@ -0,0 +1,260 @@
+package microsim.gui.shell;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import microsim.engine.EngineListener;
+import microsim.engine.MultiRun;
+import microsim.engine.MultiRunListener;
+import microsim.engine.SimulationEngine;
+import microsim.event.SystemEventType;
+
+/**
+ * Not of interest for users. The status of several MultiRun controllers
+ * executed one after another, read by the {@link MultiRunDashboard}.
+ * <p>
+ * All the controllers of a JVM drive the single SimulationEngine, so they
+ * cannot run at the same time: {@link #startNext()} starts a controller only
+ * when the previous one has stopped. For simultaneous runs use separate JVMs,
+ * as the parameter sweep does.
+ * <p>
+ * Each controller is tracked by a {@link Worker} listening to its engine and
+ * multi-run events. The engine events reach every controller that registered
+ * listeners with it, so a worker ignores them unless its controller is the
+ * active one. Exceptions thrown by the model on the engine thread are counted
+ * for the active worker: while controllers run, the board replaces the default
+ * uncaught exception handler with one charging the exceptions of the engine
+ * thread, and only those, and restores the previous handler when the last
+ * controller has stopped or the board is closed. Workers only write atomic counters and volatile
+ * fields, so the simulation threads never block on the GUI; the dashboard
+ * polls the board at its own pace.
+ */
+public class MultiRunStatusBoard {
+
+    /** The state of a worker. */
+    public enum State {
+        Waiting, Running, Completed, Failed
+    }
+
+    private final List<Worker> workers = new CopyOnWriteArrayList<Worker>();
+
+    private volatile Worker active;
+    // The thread executing the events, seen by the workers' engine listeners
+    private volatile Thread engineThread;
+    private Thread.UncaughtExceptionHandler previousHandler;
+    private Thread.UncaughtExceptionHandler handler;
+
+    /**
+     * Start tracking a MultiRun controller. It must be called before the
+     * controller is started.
+     *
+     * @param name    The name shown for the worker.
+     * @param run     The controller.
+     * @param maxRuns The number of runs it will execute, or 0 if unknown.
+     * @return The new worker.
+     */
+    public Worker register(String name, MultiRun run, int maxRuns) {
+        Worker worker = new Worker(this, name, run, maxRuns);
+        run.getEngineListeners().add(worker);
+        run.getMultiRunListeners().add(worker);
+        run.setUncaughtExceptionHandler(worker);
+        workers.add(worker);
+        return worker;
+    }
+
+    public List<Worker> getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Start the next waiting controller, unless one is still running.
+     *
+     * @return True if a controller is running.
+     */
+    public synchronized boolean startNext() {
+        if (active != null) {
+            active.poll();
+            if (active.getState() == State.Running || active.getState() == State.Waiting)
+                return true;
+            active = null;
+        }
+        for (Worker worker : workers) {
+            if (worker.getState() == State.Waiting && !worker.started && !worker.getMultiRun().isAlive()) {
+                installHandler();
+                active = worker;
+                worker.start();
+                return true;
+            }
+        }
+        removeHandler();
+        return false;
+    }
+
+    /**
+     * Stop charging exceptions to the workers and restore the previous
+     * default uncaught exception handler. The controllers are not stopped.
+     */
+    public synchronized void close() {
+        removeHandler();
+    }
+
+    /**
+     * Model exceptions are thrown on the engine thread, not on the controller
+     * thread, so they are caught by the default handler and charged to the
+     * active worker. Exceptions of other threads, e.g. of the event dispatch
+     * thread, are only passed on to the previous handler.
+     */
+    private void installHandler() {
+        if (handler != null)
+            return;
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        previousHandler = previous;
+        handler = new Thread.UncaughtExceptionHandler() {
+            public void uncaughtException(Thread t, Throwable e) {
+                Worker worker = active;
+                if (worker != null && t == engineThread)
+                    worker.modelFailed(e);
+                if (previous != null)
+                    previous.uncaughtException(t, e);
+                else
+                    e.printStackTrace();
+            }
+        };
+        Thread.setDefaultUncaughtExceptionHandler(handler);
+    }
+
+    private void removeHandler() {
+        if (handler == null)
+            return;
+        // Left alone if replaced since by someone else
+        if (Thread.getDefaultUncaughtExceptionHandler() == handler)
+            Thread.setDefaultUncaughtExceptionHandler(previousHandler);
+        handler = null;
+        previousHandler = null;
+    }
+
+    /**
+     * Check if every registered controller has stopped.
+     *
+     * @return True if no worker is waiting or running.
+     */
+    public boolean isDone() {
+        for (Worker worker : workers) {
+            worker.poll();
+            if (worker.getState() == State.Waiting || worker.getState() == State.Running)
+                return false;
+        }
+        return true;
+    }
+
+    /** @return The worker whose controller is running, or null. */
+    public Worker getActiveWorker() {
+        return active;
+    }
+
+    /**
+     * The status of a single MultiRun controller.
+     */
+    public static class Worker implements EngineListener, MultiRunListener, Thread.UncaughtExceptionHandler {
+
+        private final MultiRunStatusBoard board;
+        private final String name;
+        private final MultiRun run;
+        private final MultiRunProgress progress;
+
+        private volatile State state = State.Waiting;
+        private volatile boolean started;
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile String lastError;
+
+        Worker(MultiRunStatusBoard board, String name, MultiRun run, int maxRuns) {
+            this.board = board;
+            this.name = name;
+            this.run = run;
+            this.progress = new MultiRunProgress(maxRuns);
+        }
+
+        /** Start the controller thread. Use {@link MultiRunStatusBoard#startNext()}. */
+        void start() {
+            started = true;
+            run.start();
+        }
+
+        /** Engine events are only ours while our controller is running. */
+        private boolean isActive() {
+            return board.active == this && (state == State.Waiting || state == State.Running);
+        }
+
+        public void beforeSimulationStart(SimulationEngine engine) {
+            if (!isActive())
+                return;
+            state = State.Running;
+            progress.runStarted(run.getCounter());
+        }
+
+        public void afterSimulationCompleted(SimulationEngine engine) {
+            if (isActive())
+                progress.runCompleted();
+        }
+
+        public void onEngineEvent(SystemEventType event) {
+            if (event.equals(SystemEventType.Step) && isActive()) {
+                // Steps are sent by the thread executing the events
+                board.engineThread = Thread.currentThread();
+                progress.step();
+            }
+        }
+
+        /** The controller thread died: no more runs of this worker. */
+        public void uncaughtException(Thread t, Throwable e) {
+            failures.incrementAndGet();
+            lastError = e.toString();
+            state = State.Failed;
+            progress.finished();
+            e.printStackTrace();
+        }
+
+        /** A run failed on the engine thread, the controller may go on. */
+        void modelFailed(Throwable e) {
+            failures.incrementAndGet();
+            lastError = e.toString();
+        }
+
+        /**
+         * Update the state of a worker whose thread has exited. Called by the
+         * polling thread.
+         */
+        void poll() {
+            // Check the thread first: once it has exited, a failure is visible
+            if (started && !run.isAlive() && state != State.Failed) {
+                state = State.Completed;
+                progress.finished();
+            }
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public MultiRun getMultiRun() {
+            return run;
+        }
+
+        public MultiRunProgress getProgress() {
+            return progress;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public int getFailures() {
+            return failures.get();
+        }
+
+        public String getLastError() {
+            return lastError;
+        }
+    }
+}
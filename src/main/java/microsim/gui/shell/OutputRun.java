@@ -0,0 +1,247 @@
+package microsim.gui.shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Not of interest for users. A database shown by the database explorer: the
+ * input database or the output database of a run, with the size and
+ * timestamp of its directory and, once counted, the number of rows of each
+ * table.
+ */
+class OutputRun {
+
+    static final String INPUT = "INPUT";
+
+    private final String name;
+    private final File directory;
+    private final String url;
+    private final boolean hasDatabase;
+
+    private volatile long size = -1;
+    private volatile long lastModified;
+    private volatile Map<String, Long> rowCounts;
+    private volatile String error;
+
+    private OutputRun(String name, File directory, String databasePath, String options) {
+        this.name = name;
+        this.directory = directory;
+        hasDatabase = new File(databasePath + ".mv.db").isFile() || new File(databasePath + ".h2.db").isFile();
+        // IFEXISTS keeps H2 from creating an empty database for a failed run
+        url = "jdbc:h2:file:" + databasePath + ";IFEXISTS=TRUE;" + options;
+    }
+
+    static OutputRun input() {
+        // FILE_LOCK=NO lets the simulation open the input database after it
+        // has been inspected
+        return new OutputRun(INPUT, new File("input"), "./input/input", "DB_CLOSE_ON_EXIT=TRUE;FILE_LOCK=NO");
+    }
+
+    static OutputRun output(File directory) {
+        return new OutputRun(directory.getName(), directory, "./output/" + directory.getName() + "/database/out",
+                "AUTO_SERVER=TRUE");
+    }
+
+    /**
+     * List the runs of an output directory, by name, with their size and
+     * timestamp.
+     *
+     * @param outputDirectory The output directory.
+     * @param runs            The list the runs are added to as they are
+     *                        scanned, synchronized on by the caller.
+     * @param cancelled       Checked between runs, the scan stops when it is
+     *                        set.
+     */
+    static void scan(File outputDirectory, List<OutputRun> runs, AtomicBoolean cancelled) {
+        File[] dirs = outputDirectory.listFiles();
+        if (dirs == null)
+            return;
+        Arrays.sort(dirs);
+        for (File dir : dirs) {
+            if (cancelled.get())
+                return;
+            if (!dir.isDirectory())
+                continue;
+            OutputRun run = output(dir);
+            run.measure();
+            synchronized (runs) {
+                runs.add(run);
+            }
+        }
+    }
+
+    /** Read the size and the timestamp of the directory. */
+    void measure() {
+        final long[] total = new long[1];
+        final long[] latest = new long[] { directory.lastModified() };
+        try {
+            Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    total[0] += attributes.size();
+                    latest[0] = Math.max(latest[0], attributes.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            error = e.getMessage();
+        }
+        size = total[0];
+        lastModified = latest[0];
+    }
+
+    /**
+     * Count the rows of every table of the database, keeping the result.
+     *
+     * @param connections The connections to the databases.
+     */
+    void countRows(DatabaseConnections connections) {
+        if (!hasDatabase) {
+            rowCounts = Collections.emptyMap();
+            return;
+        }
+        Map<String, Long> counts = new LinkedHashMap<String, Long>();
+        try {
+            Connection connection = connections.getConnection(url);
+            try {
+                Statement statement = connection.createStatement();
+                try {
+                    for (String[] table : listTables(connection)) {
+                        ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + sqlName(table));
+                        try {
+                            rs.next();
+                            counts.put(displayName(table), rs.getLong(1));
+                        } finally {
+                            rs.close();
+                        }
+                    }
+                } finally {
+                    statement.close();
+                }
+            } finally {
+                connection.close();
+            }
+            rowCounts = Collections.unmodifiableMap(counts);
+        } catch (SQLException e) {
+            error = e.getMessage();
+            rowCounts = Collections.emptyMap();
+        }
+    }
+
+    /**
+     * List the user tables of a database.
+     *
+     * @param connection The connection.
+     * @return The schema and the name of each table.
+     * @throws SQLException If the metadata cannot be read.
+     */
+    static List<String[]> listTables(Connection connection) throws SQLException {
+        List<String[]> tables = new ArrayList<String[]>();
+        DatabaseMetaData metaData = connection.getMetaData();
+        // H2 1.x calls them TABLE, H2 2.x BASE TABLE
+        ResultSet rs = metaData.getTables(null, null, "%", new String[] { "TABLE", "BASE TABLE" });
+        try {
+            while (rs.next()) {
+                String schema = rs.getString("TABLE_SCHEM");
+                if ("INFORMATION_SCHEMA".equalsIgnoreCase(schema))
+                    continue;
+                tables.add(new String[] { schema, rs.getString("TABLE_NAME") });
+            }
+        } finally {
+            rs.close();
+        }
+        return tables;
+    }
+
+    /**
+     * @param table The schema and the name of a table.
+     * @return The name shown to users, qualified outside the PUBLIC schema.
+     */
+    static String displayName(String[] table) {
+        return "PUBLIC".equals(table[0]) ? table[1] : table[0] + "." + table[1];
+    }
+
+    /**
+     * @param table The schema and the name of a table.
+     * @return The quoted name used in queries.
+     */
+    static String sqlName(String[] table) {
+        return quote(table[0]) + "." + quote(table[1]);
+    }
+
+    static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    String getName() {
+        return name;
+    }
+
+    File getDirectory() {
+        return directory;
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    boolean hasDatabase() {
+        return hasDatabase;
+    }
+
+    /**
+     * @return The size in bytes of the run directory, -1 before it is
+     *         measured.
+     */
+    long getSize() {
+        return size;
+    }
+
+    long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return The rows of each table, or null before they are counted.
+     */
+    Map<String, Long> getRowCounts() {
+        return rowCounts;
+    }
+
+    /**
+     * @return The total of the row counts, or -1 before they are counted.
+     */
+    long getTotalRows() {
+        Map<String, Long> counts = rowCounts;
+        if (counts == null)
+            return -1;
+        long total = 0;
+        for (Long count : counts.values())
+            total += count;
+        return total;
+    }
+
+    String getError() {
+        return error;
+    }
+}
@@ -0,0 +1,52 @@
+package microsim.gui.shell;
+
+import microsim.event.Event;
+
+/**
+ * An event firing another event and recording the time spent in the
+ * {@link EventProfiler} when profiling is switched on. Schedule it in place of
+ * the wrapped event:
+ *
+ * <pre>
+ * eventQueue.scheduleRepeat(new ProfiledEvent("Ageing", new SingleTargetEvent(this, Processes.Ageing)), 0., 0, 1.);
+ * </pre>
+ */
+public class ProfiledEvent extends Event {
+
+    private final String name;
+    private final Event event;
+
+    /**
+     * @param name  The name shown by the profiler.
+     * @param event The event to fire.
+     */
+    public ProfiledEvent(String name, Event event) {
+        this.name = name;
+        this.event = event;
+    }
+
+    public void fireEvent() {
+        if (!EventProfiler.isEnabled()) {
+            event.fireEvent();
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            event.fireEvent();
+        } finally {
+            EventProfiler.record(name, System.nanoTime() - start);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    public String toString() {
+        return name;
+    }
+}
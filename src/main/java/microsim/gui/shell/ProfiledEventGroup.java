@@ -0,0 +1,83 @@
+package microsim.gui.shell;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import microsim.event.Event;
+import microsim.event.EventGroup;
+
+/**
+ * An EventGroup recording in the {@link EventProfiler} the time spent on each
+ * of its events when profiling is switched on. Each event is named after the
+ * group followed by the event itself, e.g. "Population > Ageing" when the
+ * group contains a {@link ProfiledEvent} named "Ageing". A ProfiledEventGroup
+ * nested in another one is recorded as a group, its time being already counted
+ * through its own events.
+ */
+public class ProfiledEventGroup extends EventGroup {
+
+    private final String name;
+
+    // The profiler name of each event, built once rather than at each firing
+    private final Map<Event, String> eventNames = new IdentityHashMap<Event, String>();
+
+    /**
+     * @param name The name of the group shown by the profiler.
+     */
+    public ProfiledEventGroup(String name) {
+        this.name = name;
+    }
+
+    public EventGroup addEvent(Event event) {
+        nameOf(event);
+        return super.addEvent(event);
+    }
+
+    public void fireEvent() {
+        if (!EventProfiler.isEnabled()) {
+            super.fireEvent();
+            return;
+        }
+        Event[] events = eventsToArray();
+        if (events == null)
+            return;
+        long groupStart = System.nanoTime();
+        try {
+            for (Event event : events) {
+                long start = System.nanoTime();
+                try {
+                    // Already named, so not timed twice
+                    if (event instanceof ProfiledEvent)
+                        ((ProfiledEvent) event).getEvent().fireEvent();
+                    else
+                        event.fireEvent();
+                } finally {
+                    EventProfiler.record(nameOf(event), System.nanoTime() - start,
+                            event instanceof ProfiledEventGroup);
+                }
+            }
+        } finally {
+            EventProfiler.record(name, System.nanoTime() - groupStart, true);
+        }
+    }
+
+    // Events added through the other methods of EventGroup are named when first fired
+    private String nameOf(Event event) {
+        synchronized (eventNames) {
+            String eventName = eventNames.get(event);
+            if (eventName == null) {
+                eventName = name + " > " + event;
+                eventNames.put(event, eventName);
+            }
+            return eventName;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String toString() {
+        return name;
+    }
+}
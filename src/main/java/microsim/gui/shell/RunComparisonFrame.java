@@ -0,0 +1,505 @@
+package microsim.gui.shell;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.awt.event.ActionEvent;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JInternalFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+
+import microsim.gui.plot.TimeSeriesSimulationPlotter;
+
+/**
+ * Not of interest for users. Compares a table of the output databases of
+ * several runs, opened from the database explorer.
+ * <p>
+ * A statistic of a column is computed for each period (usually the
+ * simulation time) by an aggregate query run by H2 in every database at the
+ * same time, so that only one row per period is read. The values of the runs,
+ * or their differences from the first run, are listed side by side and
+ * charted in a {@link TimeSeriesSimulationPlotter}.
+ */
+class RunComparisonFrame extends JInternalFrame {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    private static final int POLL_MILLIS = 100;
+
+    private enum Statistic {
+        COUNT("Count", "COUNT(*)"),
+        MEAN("Mean", "AVG(CAST(%s AS DOUBLE))"),
+        STANDARD_DEVIATION("Standard deviation", "STDDEV_SAMP(%s)"),
+        MINIMUM("Minimum", "MIN(%s)"),
+        PERCENTILE_10("10th percentile", "PERCENTILE_CONT(0.1) WITHIN GROUP (ORDER BY %s)"),
+        MEDIAN("Median", "MEDIAN(%s)"),
+        PERCENTILE_90("90th percentile", "PERCENTILE_CONT(0.9) WITHIN GROUP (ORDER BY %s)"),
+        MAXIMUM("Maximum", "MAX(%s)"),
+        SUM("Sum", "SUM(%s)");
+
+        private final String label;
+        private final String aggregate;
+
+        Statistic(String label, String aggregate) {
+            this.label = label;
+            this.aggregate = aggregate;
+        }
+
+        String sql(String column) {
+            return String.format(aggregate, column);
+        }
+
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final List<OutputRun> runs;
+    private final DatabaseConnections connections;
+    private final ExecutorService executor;
+
+    private List<String[]> tables = Collections.emptyList();
+    private Future<List<String[]>> pendingTables;
+    private Future<List<String>> pendingColumns;
+    private List<Future<double[][]>> pendingSeries;
+    private String pendingTitle;
+
+    private final ComparisonTableModel model = new ComparisonTableModel();
+
+    private final JComboBox<String> jComboTables = new JComboBox<String>();
+    private final JComboBox<String> jComboPeriod = new JComboBox<String>();
+    private final JComboBox<String> jComboColumn = new JComboBox<String>();
+    private final JComboBox<Statistic> jComboStatistic = new JComboBox<Statistic>(Statistic.values());
+    private final JCheckBox jChkDifferences = new JCheckBox("Differences from the first run");
+    private final JButton jBtnCompare = new JButton("Compare");
+    private final JLabel jLblStatus = new JLabel();
+
+    private final Timer timer = new Timer(POLL_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            poll();
+        }
+    });
+
+    /**
+     * @param runs        The runs to compare, at least two.
+     * @param connections The connections of the database explorer.
+     */
+    RunComparisonFrame(List<OutputRun> runs, DatabaseConnections connections) {
+        super("Compare runs", true, true, true, true);
+        this.runs = new ArrayList<OutputRun>(runs);
+        this.connections = connections;
+        executor = Executors.newFixedThreadPool(Math.min(runs.size(), Runtime.getRuntime().availableProcessors()),
+                new ThreadFactory() {
+                    private int count = 0;
+
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "Run comparison " + (++count));
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        initialize();
+        loadTables();
+    }
+
+    private void initialize() {
+        jComboTables.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                loadColumns();
+            }
+        });
+        jComboStatistic.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                // A count needs no column
+                jComboColumn.setEnabled(jComboStatistic.getSelectedItem() != Statistic.COUNT);
+            }
+        });
+        jComboStatistic.setSelectedItem(Statistic.MEAN);
+        jBtnCompare.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                compare();
+            }
+        });
+        jBtnCompare.setEnabled(false);
+
+        StringBuilder names = new StringBuilder();
+        for (OutputRun run : runs)
+            names.append(names.length() == 0 ? "" : ", ").append(run.getName());
+
+        JPanel jPanelControls = new JPanel(new GridBagLayout());
+        GridBagConstraints c = new GridBagConstraints();
+        c.insets = new Insets(2, 4, 2, 4);
+        c.anchor = GridBagConstraints.WEST;
+        c.gridy = 0;
+        c.gridwidth = 4;
+        jPanelControls.add(new JLabel("Runs: " + names), c);
+        c.gridwidth = 1;
+        addRow(jPanelControls, c, 1, "Table:", jComboTables, "Period:", jComboPeriod);
+        addRow(jPanelControls, c, 2, "Statistic:", jComboStatistic, "Of:", jComboColumn);
+        c.gridy = 3;
+        c.gridx = 0;
+        c.gridwidth = 2;
+        jPanelControls.add(jChkDifferences, c);
+        c.gridx = 2;
+        jPanelControls.add(jBtnCompare, c);
+
+        JPanel jPanelMain = new JPanel(new BorderLayout());
+        jPanelMain.add(jPanelControls, BorderLayout.NORTH);
+        jPanelMain.add(new JScrollPane(new JTable(model)), BorderLayout.CENTER);
+        jPanelMain.add(jLblStatus, BorderLayout.SOUTH);
+        setContentPane(jPanelMain);
+        setSize(new Dimension(600, 400));
+    }
+
+    private static void addRow(JPanel panel, GridBagConstraints c, int row, String label1, JComboBox<?> combo1,
+            String label2, JComboBox<?> combo2) {
+        c.gridy = row;
+        c.gridx = 0;
+        panel.add(new JLabel(label1), c);
+        c.gridx = 1;
+        panel.add(combo1, c);
+        c.gridx = 2;
+        panel.add(new JLabel(label2), c);
+        c.gridx = 3;
+        panel.add(combo2, c);
+    }
+
+    /**
+     * @param other A database.
+     * @return True if this frame reads it.
+     */
+    boolean shows(OutputRun other) {
+        return runs.contains(other);
+    }
+
+    public void dispose() {
+        timer.stop();
+        executor.shutdownNow();
+        super.dispose();
+    }
+
+    private void loadTables() {
+        jLblStatus.setText("Reading the tables...");
+        pendingTables = executor.submit(new Callable<List<String[]>>() {
+            public List<String[]> call() throws SQLException {
+                Connection connection = connections.getConnection(runs.get(0).getUrl());
+                try {
+                    return OutputRun.listTables(connection);
+                } finally {
+                    connection.close();
+                }
+            }
+        });
+        timer.start();
+    }
+
+    private void loadColumns() {
+        int index = jComboTables.getSelectedIndex();
+        if (index < 0 || pendingTables != null)
+            return;
+        final String[] table = tables.get(index);
+        jBtnCompare.setEnabled(false);
+        jLblStatus.setText("Reading the columns of " + OutputRun.displayName(table) + "...");
+        pendingColumns = executor.submit(new Callable<List<String>>() {
+            public List<String> call() throws SQLException {
+                return numericColumns(runs.get(0), table);
+            }
+        });
+        timer.start();
+    }
+
+    private List<String> numericColumns(OutputRun run, String[] table) throws SQLException {
+        List<String> columns = new ArrayList<String>();
+        Connection connection = connections.getConnection(run.getUrl());
+        try {
+            DatabaseMetaData metaData = connection.getMetaData();
+            ResultSet rs = metaData.getColumns(null, table[0], table[1], "%");
+            try {
+                while (rs.next()) {
+                    switch (rs.getInt("DATA_TYPE")) {
+                    case Types.TINYINT:
+                    case Types.SMALLINT:
+                    case Types.INTEGER:
+                    case Types.BIGINT:
+                    case Types.REAL:
+                    case Types.FLOAT:
+                    case Types.DOUBLE:
+                    case Types.DECIMAL:
+                    case Types.NUMERIC:
+                        columns.add(rs.getString("COLUMN_NAME"));
+                        break;
+                    default:
+                        break;
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            connection.close();
+        }
+        return columns;
+    }
+
+    private void compare() {
+        int index = jComboTables.getSelectedIndex();
+        String period = (String) jComboPeriod.getSelectedItem();
+        String column = (String) jComboColumn.getSelectedItem();
+        Statistic statistic = (Statistic) jComboStatistic.getSelectedItem();
+        if (index < 0 || period == null || (column == null && statistic != Statistic.COUNT) || pendingSeries != null)
+            return;
+        String[] table = tables.get(index);
+
+        final String sql = "SELECT " + OutputRun.quote(period) + ", "
+                + statistic.sql(column == null ? null : OutputRun.quote(column)) + " FROM "
+                + OutputRun.sqlName(table) + " GROUP BY " + OutputRun.quote(period) + " ORDER BY "
+                + OutputRun.quote(period);
+        pendingTitle = OutputRun.displayName(table) + ": " + statistic
+                + (statistic == Statistic.COUNT ? "" : " of " + column);
+
+        // One query per database, all at the same time
+        pendingSeries = new ArrayList<Future<double[][]>>();
+        for (final OutputRun run : runs) {
+            pendingSeries.add(executor.submit(new Callable<double[][]>() {
+                public double[][] call() throws SQLException {
+                    return aggregate(run, sql);
+                }
+            }));
+        }
+        jBtnCompare.setEnabled(false);
+        jLblStatus.setText("Querying " + runs.size() + " databases...");
+        timer.start();
+    }
+
+    private double[][] aggregate(OutputRun run, String sql) throws SQLException {
+        List<double[]> points = new ArrayList<double[]>();
+        Connection connection = connections.getConnection(run.getUrl());
+        try {
+            Statement statement = connection.createStatement();
+            try {
+                ResultSet rs = statement.executeQuery(sql);
+                try {
+                    while (rs.next()) {
+                        double time = rs.getDouble(1);
+                        if (rs.wasNull())
+                            continue;
+                        double value = rs.getDouble(2);
+                        points.add(new double[] { time, rs.wasNull() ? Double.NaN : value });
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                statement.close();
+            }
+        } finally {
+            connection.close();
+        }
+
+        double[][] series = new double[2][points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            series[0][i] = points.get(i)[0];
+            series[1][i] = points.get(i)[1];
+        }
+        return series;
+    }
+
+    private void poll() {
+        try {
+            if (pendingTables != null) {
+                if (!pendingTables.isDone())
+                    return;
+                tables = pendingTables.get();
+                pendingTables = null;
+                DefaultComboBoxModel<String> names = new DefaultComboBoxModel<String>();
+                for (String[] table : tables)
+                    names.addElement(OutputRun.displayName(table));
+                jComboTables.setModel(names);
+                if (tables.isEmpty()) {
+                    timer.stop();
+                    jLblStatus.setText("The database of " + runs.get(0).getName() + " has no tables.");
+                } else
+                    loadColumns();
+                return;
+            }
+            if (pendingColumns != null) {
+                if (!pendingColumns.isDone())
+                    return;
+                List<String> columns = pendingColumns.get();
+                pendingColumns = null;
+                timer.stop();
+                jComboPeriod.setModel(new DefaultComboBoxModel<String>(columns.toArray(new String[0])));
+                jComboColumn.setModel(new DefaultComboBoxModel<String>(columns.toArray(new String[0])));
+                for (String column : columns)
+                    if (column.toUpperCase().contains("SIMULATION_TIME")) {
+                        jComboPeriod.setSelectedItem(column);
+                        break;
+                    }
+                jBtnCompare.setEnabled(!columns.isEmpty());
+                jLblStatus.setText(columns.isEmpty() ? "The table has no numeric column." : " ");
+                return;
+            }
+            if (pendingSeries != null) {
+                int done = 0;
+                for (Future<double[][]> f : pendingSeries)
+                    if (f.isDone())
+                        done++;
+                if (done < pendingSeries.size()) {
+                    jLblStatus.setText("Querying: " + done + " of " + pendingSeries.size() + " databases done");
+                    return;
+                }
+                timer.stop();
+                showComparison();
+            }
+        } catch (ExecutionException e) {
+            pendingTables = null;
+            pendingColumns = null;
+            timer.stop();
+            jLblStatus.setText("Error: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            timer.stop();
+        }
+    }
+
+    private void showComparison() throws InterruptedException {
+        List<String> legends = new ArrayList<String>();
+        List<double[][]> series = new ArrayList<double[][]>();
+        StringBuilder errors = new StringBuilder();
+        for (int i = 0; i < runs.size(); i++) {
+            try {
+                series.add(pendingSeries.get(i).get());
+                legends.add(runs.get(i).getName());
+            } catch (ExecutionException e) {
+                // A run without the table is left out
+                errors.append(runs.get(i).getName()).append(": ").append(e.getCause().getMessage()).append(' ');
+            }
+        }
+        pendingSeries = null;
+        jBtnCompare.setEnabled(true);
+        jLblStatus.setText(errors.length() == 0 ? " " : errors.toString());
+        if (series.isEmpty())
+            return;
+
+        boolean differences = jChkDifferences.isSelected() && series.size() > 1;
+        if (differences) {
+            double[][] first = series.get(0);
+            for (int i = 1; i < series.size(); i++) {
+                series.set(i, difference(series.get(i), first));
+                legends.set(i, legends.get(i) + " - " + legends.get(0));
+            }
+            series.remove(0);
+            legends.remove(0);
+        }
+        model.setSeries(legends, series);
+
+        TimeSeriesSimulationPlotter plotter = new TimeSeriesSimulationPlotter(
+                pendingTitle + (differences ? " (differences)" : ""), differences ? "Difference" : "Value");
+        for (int i = 0; i < series.size(); i++)
+            plotter.addSeries(legends.get(i), series.get(i)[0], series.get(i)[1]);
+        getDesktopPane().add(plotter);
+        plotter.show();
+    }
+
+    // The values of a series minus those of a reference, at their common times
+    private static double[][] difference(double[][] series, double[][] reference) {
+        TreeMap<Double, Double> values = new TreeMap<Double, Double>();
+        for (int i = 0; i < reference[0].length; i++)
+            values.put(reference[0][i], reference[1][i]);
+        List<double[]> points = new ArrayList<double[]>();
+        for (int i = 0; i < series[0].length; i++) {
+            Double base = values.get(series[0][i]);
+            if (base != null)
+                points.add(new double[] { series[0][i], series[1][i] - base });
+        }
+        double[][] result = new double[2][points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            result[0][i] = points.get(i)[0];
+            result[1][i] = points.get(i)[1];
+        }
+        return result;
+    }
+
+    /**
+     * The values of each run by period, one column per run.
+     */
+    private static class ComparisonTableModel extends AbstractTableModel {
+
+        /**
+         * Comment for <code>serialVersionUID</code>
+         */
+        private static final long serialVersionUID = 1L;
+
+        private List<String> legends = new ArrayList<String>();
+        private List<Double> periods = new ArrayList<Double>();
+        private List<Double[]> rows = new ArrayList<Double[]>();
+
+        void setSeries(List<String> legends, List<double[][]> series) {
+            TreeMap<Double, Double[]> byPeriod = new TreeMap<Double, Double[]>();
+            for (int s = 0; s < series.size(); s++) {
+                double[][] points = series.get(s);
+                for (int i = 0; i < points[0].length; i++) {
+                    Double[] row = byPeriod.get(points[0][i]);
+                    if (row == null) {
+                        row = new Double[series.size()];
+                        byPeriod.put(points[0][i], row);
+                    }
+                    row[s] = points[1][i];
+                }
+            }
+            this.legends = new ArrayList<String>(legends);
+            periods = new ArrayList<Double>(byPeriod.keySet());
+            rows = new ArrayList<Double[]>(byPeriod.values());
+            fireTableStructureChanged();
+        }
+
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        public int getColumnCount() {
+            return legends.size() + 1;
+        }
+
+        public String getColumnName(int column) {
+            return column == 0 ? "Period" : legends.get(column - 1);
+        }
+
+        public Class<?> getColumnClass(int column) {
+            return Double.class;
+        }
+
+        public Object getValueAt(int row, int column) {
+            return column == 0 ? periods.get(row) : rows.get(row)[column - 1];
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package microsim.gui.shell.parameter;
+
+import java.awt.Component;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
+
+import javax.swing.AbstractButton;
+import javax.swing.JComboBox;
+import javax.swing.JSpinner;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+
+/**
+ * Not of interest for users. Calls back when the user edits a parameter
+ * widget, so that only the edited parameters are saved.
+ */
+final class EditTracker {
+
+    private EditTracker() {
+    }
+
+    /**
+     * Listen to the edits of a widget.
+     *
+     * @param component The widget.
+     * @param onEdit    Run on the event dispatch thread at each edit.
+     * @return False if the type of widget is not known, in which case its
+     *         edits cannot be tracked.
+     */
+    static boolean track(Component component, final Runnable onEdit) {
+        if (component instanceof JTextComponent) {
+            ((JTextComponent) component).getDocument().addDocumentListener(new DocumentListener() {
+                public void insertUpdate(DocumentEvent e) {
+                    onEdit.run();
+                }
+
+                public void removeUpdate(DocumentEvent e) {
+                    onEdit.run();
+                }
+
+                public void changedUpdate(DocumentEvent e) {
+                    onEdit.run();
+                }
+            });
+            return true;
+        }
+        if (component instanceof JSpinner) {
+            JSpinner spinner = (JSpinner) component;
+            spinner.addChangeListener(new ChangeListener() {
+                public void stateChanged(ChangeEvent e) {
+                    onEdit.run();
+                }
+            });
+            // The text typed but not committed yet
+            if (spinner.getEditor() instanceof JSpinner.DefaultEditor)
+                track(((JSpinner.DefaultEditor) spinner.getEditor()).getTextField(), onEdit);
+            return true;
+        }
+        if (component instanceof AbstractButton || component instanceof JComboBox) {
+            ItemListener listener = new ItemListener() {
+                public void itemStateChanged(ItemEvent e) {
+                    onEdit.run();
+                }
+            };
+            if (component instanceof AbstractButton)
+                ((AbstractButton) component).addItemListener(listener);
+            else
+                ((JComboBox<?>) component).addItemListener(listener);
+            return true;
+        }
+        return false;
+    }
+}
@@ -22,6 +22,7 @@ import static org.metawidget.inspector.InspectionResultConstants.PROPERTY;
 import static org.metawidget.inspector.InspectionResultConstants.TRUE;
 
 import java.awt.Component;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.util.Map;
 import java.util.Set;
@@ -139,6 +140,7 @@ public class MetawidgetBinder
             SavedBinding binding = new SavedBinding(componentToBind, componentProperty, names,
                     TRUE.equals(attributes.get(NO_SETTER)));
             saveValueToWidget(binding, sourceValue);
+            binding.setSavedValue(retrieveValueFromWidget(binding));
 
             State state = getState(metawidget);
 
@@ -186,6 +188,7 @@ public class MetawidgetBinder
                     }
 
                     saveValueToWidget(binding, sourceValue);
+                    binding.setSavedValue(retrieveValueFromWidget(binding));
                 }
             } catch (Exception e) {
                 throw WidgetProcessorException.newException(e);
@@ -201,6 +204,13 @@ public class MetawidgetBinder
         }
     }
 
+    /**
+     * Save the values of the edited widgets to the inspected object. Widgets
+     * that have not been edited since the last save, or whose value is back to
+     * the saved one, are skipped. Each change is recorded in the
+     * {@link ParameterChangeLog}.
+     */
+
     public void save(SwingMetawidget metawidget) {
 
         State state = getState(metawidget);
@@ -210,12 +220,24 @@ public class MetawidgetBinder
         if (state.bindings != null) {
             try {
                 for (SavedBinding binding : state.bindings) {
-                    if (!binding.isSettable()) {
+                    if (!binding.isSettable() || !binding.isDirty()) {
                         continue;
                     }
 
                     Object componentValue = retrieveValueFromWidget(binding);
+                    if (binding.isSaved(componentValue)) {
+                        binding.setSavedValue(componentValue);
+                        continue;
+                    }
+
+                    Object source = metawidget.getToInspect();
+                    Object oldValue = null;
+                    if (ParameterChangeLog.isEnabled()) {
+                        oldValue = retrieveValueFromObject(metawidget, source, binding.getNames());
+                    }
                     saveValueToObject(metawidget, binding.getNames(), componentValue);
+                    binding.setSavedValue(componentValue);
+                    ParameterChangeLog.record(source, binding.getNames(), oldValue, componentValue);
                 }
             } catch (Exception e) {
                 throw WidgetProcessorException.newException(e);
@@ -256,6 +278,12 @@ public class MetawidgetBinder
 
     protected Object retrieveValueFromObject(SwingMetawidget metawidget, Object source, String names) throws Exception {
 
+        // Model parameters are read through their cached getter, converted
+        // to text as BeanUtils does
+        ParameterDescriptor parameter = ParameterDescriptor.forName(source.getClass(), names);
+        if (parameter != null && parameter.hasGetter())
+            return ConvertUtils.convert(parameter.get(source));
+
         return BeanUtils.getProperty(source, names);
         /*
          * Field field = source.getClass().getField(names);
@@ -281,6 +309,12 @@ public class MetawidgetBinder
 
         Object source = metawidget.getToInspect();
 
+        ParameterDescriptor parameter = ParameterDescriptor.forName(source.getClass(), names);
+        if (parameter != null && parameter.hasSetter()) {
+            parameter.set(source, convertForSetter(componentValue, parameter.getSetterType()));
+            return;
+        }
+
         Field field = source.getClass().getDeclaredField(names);
         field.setAccessible(true);
 
@@ -306,6 +340,25 @@ public class MetawidgetBinder
 
     }
 
+    /**
+     * Convert the value of a widget to the type of a setter: enum constants
+     * are looked up by name, text and numbers of another type are converted
+     * by <code>ConvertUtils</code>, other values are passed unchanged.
+     */
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object convertForSetter(Object componentValue, Class<?> type) {
+
+        Class<?> boxedType = MethodType.methodType(type).wrap().returnType();
+        if (componentValue == null || boxedType.isInstance(componentValue))
+            return componentValue;
+        if (type.isEnum())
+            return Enum.valueOf((Class<? extends Enum>) type, componentValue.toString());
+        if (componentValue instanceof String || boxedType != type || Number.class.isAssignableFrom(type))
+            return ConvertUtils.convert(componentValue.toString(), type);
+        return componentValue;
+    }
+
     protected Object retrieveValueFromWidget(SavedBinding binding)
             throws Exception {
 
@@ -368,6 +421,13 @@ public class MetawidgetBinder
 
         private boolean mNoSetter;
 
+        // False for widgets whose edits cannot be listened to
+        private boolean mTracked;
+
+        private boolean mDirty;
+
+        private Object mSavedValue;
+
         //
         //
         // Constructor
@@ -380,6 +440,11 @@ public class MetawidgetBinder
             mComponentProperty = componentProperty;
             mNames = names;
             mNoSetter = noSetter;
+            mTracked = EditTracker.track(component, new Runnable() {
+                public void run() {
+                    mDirty = true;
+                }
+            });
         }
 
         //
@@ -413,5 +478,30 @@ public class MetawidgetBinder
 
             return !mNoSetter;
         }
+
+        /**
+         * Whether the widget may have been edited since its value was last
+         * saved or loaded.
+         */
+
+        public boolean isDirty() {
+
+            return mDirty || !mTracked;
+        }
+
+        public boolean isSaved(Object componentValue) {
+
+            return componentValue == null ? mSavedValue == null : componentValue.equals(mSavedValue);
+        }
+
+        /**
+         * Remember the value of the widget as the one of the inspected object.
+         */
+
+        public void setSavedValue(Object componentValue) {
+
+            mSavedValue = componentValue;
+            mDirty = false;
+        }
     }
 }
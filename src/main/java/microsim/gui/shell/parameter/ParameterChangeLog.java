@@ -0,0 +1,135 @@
+package microsim.gui.shell.parameter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+
+import microsim.engine.SimulationEngine;
+
+/**
+ * The record of the model parameters changed from the parameter frames, kept
+ * to know which values a run was started with.
+ * <p>
+ * The log is off by default. When switched on with {@link #setEnabled}, each
+ * saved change is kept in memory and logged at INFO level by the
+ * <code>microsim.gui.shell.parameter.ParameterChangeLog</code> log4j logger,
+ * which can be directed to a file in the log4j configuration. The "Save
+ * parameter log" item of the Tools menu writes the changes as CSV with
+ * {@link #write(Writer)} and clears the log.
+ */
+public class ParameterChangeLog {
+
+    private static final Logger log = Logger.getLogger(ParameterChangeLog.class);
+
+    private static volatile boolean enabled = false;
+
+    private static final List<Entry> entries = new ArrayList<Entry>();
+
+    private ParameterChangeLog() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Switch the log on or off. Changes saved while it is off are not
+     * recorded.
+     *
+     * @param enabled True to record the changes.
+     */
+    public static void setEnabled(boolean enabled) {
+        ParameterChangeLog.enabled = enabled;
+    }
+
+    /**
+     * Record the change of a parameter, if the log is on.
+     *
+     * @param model     The model owning the parameter.
+     * @param parameter The parameter name.
+     * @param oldValue  The value before the change.
+     * @param newValue  The value after the change.
+     */
+    public static void record(Object model, String parameter, Object oldValue, Object newValue) {
+        if (!enabled)
+            return;
+        SimulationEngine engine = SimulationEngine.getInstance();
+        Entry entry = new Entry(System.currentTimeMillis(), engine == null ? 0 : engine.getCurrentRunNumber(),
+                engine == null ? 0. : engine.getTime(), model.getClass().getSimpleName(), parameter,
+                String.valueOf(oldValue), String.valueOf(newValue));
+        synchronized (entries) {
+            entries.add(entry);
+        }
+        log.info(entry);
+    }
+
+    /**
+     * Return the changes recorded since the last {@link #clear()}.
+     *
+     * @return A new list, oldest first.
+     */
+    public static List<Entry> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<Entry>(entries);
+        }
+    }
+
+    public static void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Write the recorded changes as CSV, with a header line.
+     *
+     * @param out The writer, not closed.
+     * @throws IOException If writing fails.
+     */
+    public static void write(Writer out) throws IOException {
+        out.write("timestamp,run,time,model,parameter,old value,new value\n");
+        for (Entry entry : getEntries()) {
+            out.write(entry.timestamp + "," + entry.run + "," + entry.time + "," + quote(entry.model) + ","
+                    + quote(entry.parameter) + "," + quote(entry.oldValue) + "," + quote(entry.newValue) + "\n");
+        }
+    }
+
+    private static String quote(String text) {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0)
+            return text;
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * A single change.
+     */
+    public static class Entry {
+
+        public final long timestamp;
+        public final int run;
+        public final double time;
+        public final String model;
+        public final String parameter;
+        public final String oldValue;
+        public final String newValue;
+
+        Entry(long timestamp, int run, double time, String model, String parameter, String oldValue,
+                String newValue) {
+            this.timestamp = timestamp;
+            this.run = run;
+            this.time = time;
+            this.model = model;
+            this.parameter = parameter;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        public String toString() {
+            return "Run " + run + ", time " + time + ": " + model + "." + parameter + " changed from " + oldValue
+                    + " to " + newValue;
+        }
+    }
+}
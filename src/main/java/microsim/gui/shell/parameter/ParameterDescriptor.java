@@ -0,0 +1,340 @@
+package microsim.gui.shell.parameter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import microsim.annotation.GUIparameter;
+import microsim.annotation.ModelParameter;
+
+/**
+ * A model parameter, i.e. a field annotated with {@link GUIparameter} (or the
+ * deprecated {@link ModelParameter}), with its description and its public
+ * getter and setter resolved as <code>MethodHandle</code>s.
+ * <p>
+ * The parameters of a class are found once and cached through a
+ * <code>ClassValue</code>, so restarting a model, building its parameter
+ * frame and saving the values do not scan the class again.
+ */
+@SuppressWarnings("deprecation")
+public class ParameterDescriptor {
+
+    private static final ClassValue<List<ParameterDescriptor>> CACHE = new ClassValue<List<ParameterDescriptor>>() {
+        protected List<ParameterDescriptor> computeValue(Class<?> type) {
+            return Collections.unmodifiableList(inspect(type));
+        }
+    };
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final Field field;
+    private final String name;
+    private final String description;
+
+    private final String getterName;
+    private final String setterName;
+    // Null if the method does not exist
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+    private final Class<?> setterType;
+
+    private ParameterDescriptor(Field field, Map<String, Method> getters, Map<String, List<Method>> setters) {
+        this.field = field;
+        name = field.getName();
+
+        String text = null;
+        GUIparameter guiParameter = field.getAnnotation(GUIparameter.class);
+        if (guiParameter != null)
+            text = guiParameter.description();
+        if (text == null || text.isEmpty()) {
+            ModelParameter modelParameter = field.getAnnotation(ModelParameter.class);
+            if (modelParameter != null)
+                text = modelParameter.description();
+        }
+        description = text == null || text.isEmpty() ? null : text;
+
+        // A field such as nWorkers has getnWorkers as Java Beans getter
+        String suffix;
+        if (name.length() > 1 && Character.isLowerCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1)))
+            suffix = name;
+        else
+            suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+        Method getterMethod = getters.get("get" + suffix);
+        if (getterMethod == null)
+            getterMethod = getters.get("is" + suffix);
+        // Among overloaded setters, prefer the one taking the type of the field
+        Method setterMethod = null;
+        List<Method> candidates = setters.get("set" + suffix);
+        if (candidates != null) {
+            for (Method method : candidates)
+                if (setterMethod == null || method.getParameterTypes()[0] == field.getType())
+                    setterMethod = method;
+        }
+
+        getterName = getterMethod == null ? "get" + suffix : getterMethod.getName();
+        setterName = "set" + suffix;
+        getter = unreflect(getterMethod, GETTER_TYPE);
+        setter = unreflect(setterMethod, SETTER_TYPE);
+        setterType = setterMethod == null ? null : setterMethod.getParameterTypes()[0];
+    }
+
+    /**
+     * Return the parameters declared by a class.
+     *
+     * @param type The model class.
+     * @return The cached, unmodifiable list of descriptors, in declaration
+     *         order.
+     */
+    public static List<ParameterDescriptor> forClass(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * Return the parameter of a class with a given name.
+     *
+     * @param type The model class.
+     * @param name The field name.
+     * @return The descriptor, or null if the class has no such parameter.
+     */
+    public static ParameterDescriptor forName(Class<?> type, String name) {
+        for (ParameterDescriptor d : CACHE.get(type))
+            if (d.name.equals(name))
+                return d;
+        return null;
+    }
+
+    private static List<ParameterDescriptor> inspect(Class<?> type) {
+        List<ParameterDescriptor> descriptors = new ArrayList<ParameterDescriptor>();
+        Map<String, Method> getters = null;
+        Map<String, List<Method>> setters = null;
+
+        for (Field field : type.getDeclaredFields()) {
+            if (!field.isAnnotationPresent(GUIparameter.class) && !field.isAnnotationPresent(ModelParameter.class))
+                continue;
+            if (getters == null) {
+                getters = new HashMap<String, Method>();
+                setters = new HashMap<String, List<Method>>();
+                for (Method method : type.getMethods()) {
+                    if (isGetter(method)) {
+                        getters.put(method.getName(), method);
+                    } else if (isSetter(method)) {
+                        List<Method> overloads = setters.get(method.getName());
+                        if (overloads == null) {
+                            overloads = new ArrayList<Method>(1);
+                            setters.put(method.getName(), overloads);
+                        }
+                        overloads.add(method);
+                    }
+                }
+            }
+            field.setAccessible(true);
+            descriptors.add(new ParameterDescriptor(field, getters, setters));
+        }
+        return descriptors;
+    }
+
+    private static boolean isGetter(Method method) {
+        String name = method.getName();
+        return (name.startsWith("get") || name.startsWith("is")) && method.getParameterCount() == 0
+                && method.getReturnType() != void.class && !Modifier.isStatic(method.getModifiers());
+    }
+
+    private static boolean isSetter(Method method) {
+        return method.getName().startsWith("set") && method.getParameterCount() == 1
+                && !Modifier.isStatic(method.getModifiers());
+    }
+
+    private static MethodHandle unreflect(Method method, MethodType type) {
+        if (method == null)
+            return null;
+        MethodHandle mh;
+        try {
+            mh = MethodHandles.publicLookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            // e.g. a public method of a class that is not public
+            try {
+                method.setAccessible(true);
+                mh = MethodHandles.lookup().unreflect(method);
+            } catch (IllegalAccessException | RuntimeException ex) {
+                return null;
+            }
+        }
+        if (type.returnType() == void.class)
+            mh = MethodHandles.dropReturn(mh);
+        return mh.asType(type);
+    }
+
+    public Field getField() {
+        return field;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    /**
+     * @return The description given by the annotation, or null.
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return The name of the getter, or the name it should have if missing.
+     */
+    public String getGetterName() {
+        return getterName;
+    }
+
+    /**
+     * @return The name of the setter, whether it exists or not.
+     */
+    public String getSetterName() {
+        return setterName;
+    }
+
+    public boolean hasGetter() {
+        return getter != null;
+    }
+
+    public boolean hasSetter() {
+        return setter != null;
+    }
+
+    /**
+     * @return The type of the setter argument, or null if there is no setter.
+     */
+    public Class<?> getSetterType() {
+        return setterType;
+    }
+
+    /**
+     * Check that the parameter has a public getter and setter, so that the
+     * GUI can read and control it.
+     *
+     * @param model The model the parameter belongs to.
+     * @throws RuntimeException If an accessor is missing.
+     */
+    public void checkAccessors(Object model) {
+        if (getter == null)
+            throw new RuntimeException("Model parameter " + name
+                    + " has no getter method.  Please create a getter method called " + getterName + " in the "
+                    + model.getClass() + " to enable this model parameter to be read by the GUI.");
+        if (setter == null)
+            throw new RuntimeException("Model parameter " + name
+                    + " has no setter method.  Please create a setter method called " + setterName + " in the "
+                    + model.getClass() + " to enable this model parameter to be controlled via the GUI.");
+    }
+
+    /**
+     * Read the parameter through its getter.
+     *
+     * @param model The model.
+     * @return The (boxed) value.
+     * @throws Exception Whatever the getter throws.
+     */
+    public Object get(Object model) throws Exception {
+        if (getter == null)
+            throw new NoSuchMethodException(model.getClass().getName() + "." + getterName);
+        try {
+            return (Object) getter.invokeExact(model);
+        } catch (Exception e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the parameter through its setter.
+     *
+     * @param model The model.
+     * @param value The new value, boxed for primitive parameters.
+     * @throws Exception Whatever the setter throws.
+     */
+    public void set(Object model, Object value) throws Exception {
+        if (setter == null)
+            throw new NoSuchMethodException(model.getClass().getName() + "." + setterName);
+        try {
+            setter.invokeExact(model, value);
+        } catch (Exception e) {
+            throw e;
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Convert a value entered as text to the type of the parameter: numbers,
+     * booleans, characters, enum constants (by name) and strings. Empty text
+     * is null for non primitive types.
+     *
+     * @param text The text.
+     * @return The value, boxed for primitive parameters.
+     * @throws IllegalArgumentException If the text is not a valid value.
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public Object parse(String text) {
+        Class<?> type = getType();
+        if (type == String.class)
+            return text;
+        text = text == null ? "" : text.trim();
+        if (text.isEmpty()) {
+            if (type.isPrimitive())
+                throw new IllegalArgumentException("Parameter " + name + " needs a value.");
+            return null;
+        }
+        if (type == boolean.class || type == Boolean.class) {
+            if (!text.equalsIgnoreCase("true") && !text.equalsIgnoreCase("false"))
+                throw new IllegalArgumentException("Parameter " + name + " is either true or false.");
+            return Boolean.valueOf(text);
+        }
+        if (type == char.class || type == Character.class) {
+            if (text.length() != 1)
+                throw new IllegalArgumentException("Parameter " + name + " takes a single character.");
+            return Character.valueOf(text.charAt(0));
+        }
+        try {
+            if (type == double.class || type == Double.class)
+                return Double.valueOf(text);
+            if (type == float.class || type == Float.class)
+                return Float.valueOf(text);
+            if (type == int.class || type == Integer.class)
+                return Integer.valueOf(text);
+            if (type == long.class || type == Long.class)
+                return Long.valueOf(text);
+            if (type == short.class || type == Short.class)
+                return Short.valueOf(text);
+            if (type == byte.class || type == Byte.class)
+                return Byte.valueOf(text);
+            if (type.isEnum())
+                return Enum.valueOf((Class<? extends Enum>) type, text);
+        } catch (IllegalArgumentException e) {
+            // Thrown by the number parsers and for unknown enum constants
+            throw new IllegalArgumentException("Invalid value '" + text + "' for parameter " + name + ".");
+        }
+        throw new IllegalArgumentException("Values of parameter " + name + " cannot be entered as text.");
+    }
+
+    public String toString() {
+        return name;
+    }
+}
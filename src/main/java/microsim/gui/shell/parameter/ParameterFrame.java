@@ -2,14 +2,11 @@ package microsim.gui.shell.parameter;
 
 import java.awt.Color;
 import java.awt.Font;
-import java.lang.reflect.Field;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
 import javax.swing.*;
-import microsim.annotation.GUIparameter;
-import microsim.annotation.ModelParameter;
 import microsim.gui.shell.MicrosimShell;
 
 import org.metawidget.inspector.composite.CompositeInspector;
@@ -32,6 +29,9 @@ public class ParameterFrame extends JInternalFrame {
 
     private SwingMetawidget metawidget;
 
+    // Null when the parameters are shown by Metawidget
+    private ParameterPanel panel;
+
     public ParameterFrame(Object target) {
         super();
 
@@ -48,12 +48,39 @@ public class ParameterFrame extends JInternalFrame {
         this.setResizable(true);
         this.setTitle(target.getClass().getSimpleName() + "'s parameters");
 
-        List<Field> fields = ParameterInspector.extractModelParameters(target.getClass());
+        List<ParameterDescriptor> parameters = ParameterDescriptor.forClass(target.getClass());
+
+        setSize((int) (MicrosimShell.scale * 320),
+                Math.min((int) (MicrosimShell.scale * Math.max(30 + 26 * parameters.size(), 90)), 500));
+
+        // Common parameter types are edited by a panel built from the cached
+        // descriptors, anything else by Metawidget
+        if (ParameterPanel.supports(parameters)) {
+            try {
+                panel = new ParameterPanel(target, parameters);
+            } catch (RuntimeException e) {
+                System.err.println("Showing the parameters of " + target.getClass().getSimpleName()
+                        + " with Metawidget: " + e.getMessage());
+                panel = null;
+            }
+        }
+        JScrollPane scrollP;
+        if (panel != null) {
+            scrollP = new JScrollPane(panel);
+        } else {
+            scrollP = new JScrollPane(createMetawidget(parameters));
+            if (metawidget.getComponentCount() > 0)
+                scrollP.getViewport().setBackground(metawidget.getComponent(0).getBackground());
+        }
+        getContentPane().add(scrollP);
+        setVisible(true);
+    }
 
+    private SwingMetawidget createMetawidget(List<ParameterDescriptor> parameters) {
         metawidget = new DescriptiveSwingMetawidget();
         CompositeInspectorConfig inspectorConfig = new CompositeInspectorConfig().setInspectors(
                 new ParameterInspector(),
-                new TooltipInspector(fields));
+                new TooltipInspector(parameters));
 
         binder = new MetawidgetBinder();
         metawidget.addWidgetProcessor(binder);
@@ -68,19 +95,14 @@ public class ParameterFrame extends JInternalFrame {
 
         metawidget.setInspector(new CompositeInspector(inspectorConfig));
         metawidget.setToInspect(target);
-
-        setSize((int) (MicrosimShell.scale * 320),
-                Math.min((int) (MicrosimShell.scale * Math.max(30 + 26 * fields.size(), 90)), 500));
-        JScrollPane scrollP = new JScrollPane(metawidget);
-
-        if (metawidget.getComponentCount() > 0)
-            scrollP.getViewport().setBackground(metawidget.getComponent(0).getBackground());
-        getContentPane().add(scrollP);
-        setVisible(true);
+        return metawidget;
     }
 
     public void save() {
-        binder.save(metawidget);
+        if (panel != null)
+            panel.save();
+        else
+            binder.save(metawidget);
     }
 
     public static class TooltipInspector
@@ -88,21 +110,12 @@ public class ParameterFrame extends JInternalFrame {
 
         Map<String, String> guiParamDescriptions;
 
-        TooltipInspector(List<Field> fields) {
+        TooltipInspector(List<ParameterDescriptor> parameters) {
 
             guiParamDescriptions = CollectionUtils.newHashMap();
-            for (Field f : fields) {
-                String description = null;
-                try {
-                    description = f.getAnnotation(GUIparameter.class).description();
-                    if (description == null)
-                        description = f.getAnnotation(ModelParameter.class).description(); // Old deprecated version
-                    if (description != null) {
-                        guiParamDescriptions.put(f.getName(), description);
-                    }
-                } catch (NullPointerException e) {
-                    // Do nothing
-                }
+            for (ParameterDescriptor parameter : parameters) {
+                if (parameter.getDescription() != null)
+                    guiParamDescriptions.put(parameter.getName(), parameter.getDescription());
             }
         }
 
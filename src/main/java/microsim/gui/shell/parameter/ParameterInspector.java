@@ -1,13 +1,9 @@
 package microsim.gui.shell.parameter;
 
-import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
 
-import microsim.annotation.GUIparameter;
-import microsim.annotation.ModelParameter;
-
 import org.metawidget.inspector.iface.Inspector;
 
 @SuppressWarnings("deprecation")
@@ -25,8 +21,8 @@ public class ParameterInspector implements Inspector {
         buf.append("http://metawidget.org/xsd/inspection-result-1.0.xsd\">");
         buf.append("<entity type=\"").append(clazz.getCanonicalName()).append("\" >");
 
-        List<Field> fields = ParameterInspector.extractModelParameters(clazz);
-        for (Field field : fields) {
+        for (ParameterDescriptor parameter : ParameterDescriptor.forClass(clazz)) {
+            Field field = parameter.getField();
             StringBuffer extra = new StringBuffer();
 
             if (field.getType().isEnum()) {
@@ -58,21 +54,18 @@ public class ParameterInspector implements Inspector {
         return buf.toString();
     }
 
+    /**
+     * Return the fields annotated as model parameters, from the cache of
+     * {@link ParameterDescriptor}.
+     *
+     * @param clazz The model class.
+     * @return A new list of accessible fields.
+     */
     public static List<Field> extractModelParameters(Class<?> clazz) {
-        List<Field> collectedFields = new ArrayList<Field>();
-
-        Field[] fields = clazz.getDeclaredFields();
-        for (Field field : fields) {
-            field.setAccessible(true);
-            Annotation annos[] = field.getAnnotations();
-            for (Annotation anno : annos) {
-                if ((anno.annotationType().equals(GUIparameter.class))
-                        || (anno.annotationType().equals(ModelParameter.class))) {
-                    collectedFields.add(field);
-                }
-            }
-        }
-
+        List<ParameterDescriptor> parameters = ParameterDescriptor.forClass(clazz);
+        List<Field> collectedFields = new ArrayList<Field>(parameters.size());
+        for (ParameterDescriptor parameter : parameters)
+            collectedFields.add(parameter.getField());
         return collectedFields;
     }
 }
@@ -0,0 +1,286 @@
+package microsim.gui.shell.parameter;
+
+import java.awt.GridBagConstraints;
+import java.awt.GridBagLayout;
+import java.awt.Insets;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
+import javax.swing.JComponent;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
+
+/**
+ * Not of interest for users. The panel of a {@link ParameterFrame}, built
+ * straight from the {@link ParameterDescriptor}s of the model: one label and
+ * one editor per parameter, read and written through the cached getters and
+ * setters.
+ * <p>
+ * Booleans are edited with a check box, enums with a combo box, primitive
+ * integers with a spinner and other numbers, characters and strings with a
+ * text field. Models having parameters of other types are shown by
+ * Metawidget instead, see {@link #supports(List)}.
+ */
+class ParameterPanel extends JPanel {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    private final Object target;
+    private final List<Editor> editors;
+
+    ParameterPanel(Object target, List<ParameterDescriptor> parameters) {
+        this.target = target;
+        editors = new ArrayList<Editor>(parameters.size());
+        setLayout(new GridBagLayout());
+
+        GridBagConstraints labelConstraints = new GridBagConstraints();
+        labelConstraints.gridx = 0;
+        labelConstraints.anchor = GridBagConstraints.LINE_START;
+        labelConstraints.insets = new Insets(2, 4, 2, 4);
+        GridBagConstraints editorConstraints = new GridBagConstraints();
+        editorConstraints.gridx = 1;
+        editorConstraints.weightx = 1.;
+        editorConstraints.fill = GridBagConstraints.HORIZONTAL;
+        editorConstraints.insets = new Insets(2, 0, 2, 4);
+
+        for (ParameterDescriptor parameter : parameters) {
+            Editor editor = createEditor(parameter);
+            editor.read(target);
+
+            JLabel label = new JLabel(getLabel(parameter.getName()) + ":");
+            label.setLabelFor(editor.component);
+            label.setToolTipText(parameter.getDescription());
+            editor.component.setToolTipText(parameter.getDescription());
+
+            add(label, labelConstraints);
+            add(editor.component, editorConstraints);
+            editors.add(editor);
+        }
+
+        // Keep the rows at the top
+        GridBagConstraints filler = new GridBagConstraints();
+        filler.gridx = 0;
+        filler.weighty = 1.;
+        add(new JPanel(null), filler);
+    }
+
+    /**
+     * Check if every parameter can be edited by this panel.
+     *
+     * @param parameters The parameters of a model.
+     * @return True if they all have a getter, a setter and a supported type.
+     */
+    static boolean supports(List<ParameterDescriptor> parameters) {
+        for (ParameterDescriptor parameter : parameters) {
+            if (!parameter.hasGetter() || !parameter.hasSetter())
+                return false;
+            Class<?> type = parameter.getType();
+            if (boxed(parameter.getSetterType()) != boxed(type))
+                return false;
+            if (!type.isPrimitive() && !type.isEnum() && type != String.class && type != Boolean.class
+                    && type != Character.class && !isNumber(type))
+                return false;
+        }
+        return true;
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    private static boolean isNumber(Class<?> type) {
+        return type == Integer.class || type == Long.class || type == Double.class || type == Float.class
+                || type == Short.class || type == Byte.class;
+    }
+
+    /**
+     * Write the values of the edited editors to the model, recording the
+     * changes in the {@link ParameterChangeLog}.
+     *
+     * @throws IllegalArgumentException If a value is not valid for its
+     *                                  parameter.
+     */
+    void save() {
+        for (Editor editor : editors)
+            editor.save(target);
+    }
+
+    /** Read again the values of the model into the editors. */
+    void rebind() {
+        for (Editor editor : editors)
+            editor.read(target);
+    }
+
+    // e.g. "nWorkers" becomes "N workers"
+    static String getLabel(String name) {
+        StringBuilder label = new StringBuilder(name.length() + 4);
+        label.append(Character.toUpperCase(name.charAt(0)));
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isUpperCase(c) && !Character.isUpperCase(name.charAt(i - 1))) {
+                label.append(' ');
+                // Keep acronyms as they are
+                if (i + 1 < name.length() && Character.isUpperCase(name.charAt(i + 1)))
+                    label.append(c);
+                else
+                    label.append(Character.toLowerCase(c));
+            } else {
+                label.append(c);
+            }
+        }
+        return label.toString();
+    }
+
+    private static Editor createEditor(ParameterDescriptor parameter) {
+        Class<?> type = parameter.getType();
+        if (type == boolean.class || type == Boolean.class)
+            return new CheckBoxEditor(parameter);
+        if (type.isEnum())
+            return new ComboBoxEditor(parameter);
+        if (type == int.class || type == long.class || type == short.class || type == byte.class)
+            return new SpinnerEditor(parameter);
+        return new TextEditor(parameter);
+    }
+
+    /**
+     * The editor of a single parameter. It remembers the value last read from
+     * or written to the model, and is only saved once edited.
+     */
+    private abstract static class Editor {
+
+        final ParameterDescriptor parameter;
+        final JComponent component;
+
+        private boolean dirty;
+        private Object savedValue;
+
+        Editor(ParameterDescriptor parameter, JComponent component) {
+            this.parameter = parameter;
+            this.component = component;
+            EditTracker.track(component, new Runnable() {
+                public void run() {
+                    dirty = true;
+                }
+            });
+        }
+
+        void read(Object target) {
+            try {
+                savedValue = parameter.get(target);
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot read parameter " + parameter.getName() + ": " + e, e);
+            }
+            setValue(savedValue);
+            dirty = false;
+        }
+
+        void save(Object target) {
+            if (!dirty)
+                return;
+            Object value = getValue();
+            if (value == null ? savedValue != null : !value.equals(savedValue)) {
+                try {
+                    parameter.set(target, value);
+                } catch (Exception e) {
+                    throw new IllegalStateException("Cannot set parameter " + parameter.getName() + ": " + e, e);
+                }
+                ParameterChangeLog.record(target, parameter.getName(), savedValue, value);
+                savedValue = value;
+            }
+            dirty = false;
+        }
+
+        abstract void setValue(Object value);
+
+        abstract Object getValue();
+    }
+
+    private static class CheckBoxEditor extends Editor {
+
+        CheckBoxEditor(ParameterDescriptor parameter) {
+            super(parameter, new JCheckBox());
+        }
+
+        void setValue(Object value) {
+            ((JCheckBox) component).setSelected(Boolean.TRUE.equals(value));
+        }
+
+        Object getValue() {
+            return Boolean.valueOf(((JCheckBox) component).isSelected());
+        }
+    }
+
+    private static class ComboBoxEditor extends Editor {
+
+        ComboBoxEditor(ParameterDescriptor parameter) {
+            super(parameter, new JComboBox<Object>(parameter.getType().getEnumConstants()));
+        }
+
+        void setValue(Object value) {
+            ((JComboBox<?>) component).setSelectedItem(value);
+        }
+
+        Object getValue() {
+            return ((JComboBox<?>) component).getSelectedItem();
+        }
+    }
+
+    private static class SpinnerEditor extends Editor {
+
+        SpinnerEditor(ParameterDescriptor parameter) {
+            super(parameter, new JSpinner(createModel(parameter.getType())));
+        }
+
+        private static SpinnerNumberModel createModel(Class<?> type) {
+            if (type == long.class)
+                return new SpinnerNumberModel(Long.valueOf(0), Long.valueOf(Long.MIN_VALUE),
+                        Long.valueOf(Long.MAX_VALUE), Long.valueOf(1));
+            if (type == short.class)
+                return new SpinnerNumberModel(Short.valueOf((short) 0), Short.valueOf(Short.MIN_VALUE),
+                        Short.valueOf(Short.MAX_VALUE), Short.valueOf((short) 1));
+            if (type == byte.class)
+                return new SpinnerNumberModel(Byte.valueOf((byte) 0), Byte.valueOf(Byte.MIN_VALUE),
+                        Byte.valueOf(Byte.MAX_VALUE), Byte.valueOf((byte) 1));
+            return new SpinnerNumberModel(0, Integer.MIN_VALUE, Integer.MAX_VALUE, 1);
+        }
+
+        void setValue(Object value) {
+            ((JSpinner) component).setValue(value);
+        }
+
+        Object getValue() {
+            JSpinner spinner = (JSpinner) component;
+            try {
+                // Take the text being typed, if any
+                spinner.commitEdit();
+            } catch (java.text.ParseException e) {
+                throw new IllegalArgumentException("Invalid value for parameter " + parameter.getName() + ".");
+            }
+            return spinner.getValue();
+        }
+    }
+
+    private static class TextEditor extends Editor {
+
+        TextEditor(ParameterDescriptor parameter) {
+            super(parameter, new JTextField());
+        }
+
+        void setValue(Object value) {
+            ((JTextField) component).setText(value == null ? "" : value.toString());
+        }
+
+        Object getValue() {
+            return parameter.parse(((JTextField) component).getText());
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package microsim.gui.shell.parameter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The design of a parameter sweep: the values taken by some parameters of a
+ * model and how they are combined into runs.
+ * <p>
+ * The values of a parameter are given as text, either as a list
+ * (<code>1, 2, 5</code>) or as a range with a step (<code>0:1:0.25</code>).
+ * A {@link Mode#GRID} design runs every combination of the values. A
+ * {@link Mode#LATIN_HYPERCUBE} design draws a number of samples where each
+ * parameter takes every one of as many equally likely strata exactly once:
+ * ranges are sampled between their bounds (the step is ignored) and lists
+ * are sampled among their values. Each combination is run a number of times
+ * with different random seeds.
+ */
+public class SweepDesign {
+
+    /** The largest number of runs a design may generate. */
+    public static final int MAX_RUNS = 100000;
+
+    public enum Mode {
+        GRID("Full grid"), LATIN_HYPERCUBE("Latin hypercube");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        public String toString() {
+            return label;
+        }
+    }
+
+    private final List<Dimension> dimensions = new ArrayList<Dimension>();
+    private Mode mode = Mode.GRID;
+    private int samples = 10;
+    private int replications = 1;
+    private long seed = 1;
+
+    /**
+     * Add a parameter to the sweep.
+     *
+     * @param parameter The parameter.
+     * @param values    Its values, as a list or a range.
+     * @throws IllegalArgumentException If the values are not valid for the
+     *                                  parameter.
+     */
+    public void addDimension(ParameterDescriptor parameter, String values) {
+        dimensions.add(new Dimension(parameter, values));
+    }
+
+    public List<Dimension> getDimensions() {
+        return Collections.unmodifiableList(dimensions);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * @param samples The number of points of a Latin hypercube design.
+     */
+    public void setSamples(int samples) {
+        this.samples = samples;
+    }
+
+    public int getReplications() {
+        return replications;
+    }
+
+    /**
+     * @param replications The number of runs of each point, with different
+     *                     seeds.
+     */
+    public void setReplications(int replications) {
+        this.replications = replications;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param seed The seed of the first run, the following runs take the next
+     *             seeds. It also seeds the Latin hypercube sampling.
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Return the number of runs the design generates.
+     *
+     * @return The count, or {@link #MAX_RUNS} + 1 if there are more runs than
+     *         the maximum.
+     */
+    public long getRunCount() {
+        long points;
+        if (mode == Mode.LATIN_HYPERCUBE) {
+            points = dimensions.isEmpty() ? 1 : samples;
+        } else {
+            // Clamped after each dimension, so the product cannot overflow
+            points = 1;
+            for (Dimension d : dimensions)
+                points = Math.min(points * d.values.size(), MAX_RUNS + 1L);
+        }
+        return Math.min(points * replications, MAX_RUNS + 1L);
+    }
+
+    /**
+     * Generate the runs of the design.
+     *
+     * @return The runs, each with the text value of every swept parameter.
+     * @throws IllegalArgumentException If the design has more than
+     *                                  {@link #MAX_RUNS} runs.
+     */
+    public List<Run> generate() {
+        long count = getRunCount();
+        if (count > MAX_RUNS)
+            throw new IllegalArgumentException("The design has more runs than the maximum of " + MAX_RUNS + ".");
+
+        List<Map<String, String>> points = mode == Mode.LATIN_HYPERCUBE ? sampleLatinHypercube() : grid();
+        List<Run> runs = new ArrayList<Run>((int) count);
+        for (int p = 0; p < points.size(); p++)
+            for (int r = 0; r < replications; r++)
+                runs.add(new Run(runs.size() + 1, p + 1, r + 1, seed + runs.size(), points.get(p)));
+        return runs;
+    }
+
+    private List<Map<String, String>> grid() {
+        List<Map<String, String>> points = new ArrayList<Map<String, String>>();
+        int[] index = new int[dimensions.size()];
+        while (true) {
+            Map<String, String> point = new LinkedHashMap<String, String>();
+            for (int d = 0; d < index.length; d++)
+                point.put(dimensions.get(d).getName(), dimensions.get(d).values.get(index[d]));
+            points.add(point);
+
+            // Next combination, the last dimension varying fastest
+            int d = index.length - 1;
+            while (d >= 0 && ++index[d] == dimensions.get(d).values.size()) {
+                index[d] = 0;
+                d--;
+            }
+            if (d < 0)
+                return points;
+        }
+    }
+
+    private List<Map<String, String>> sampleLatinHypercube() {
+        Random random = new Random(seed);
+        int n = dimensions.isEmpty() ? 1 : samples;
+        List<Map<String, String>> points = new ArrayList<Map<String, String>>(n);
+        for (int i = 0; i < n; i++)
+            points.add(new LinkedHashMap<String, String>());
+
+        for (Dimension d : dimensions) {
+            int[] strata = new int[n];
+            for (int i = 0; i < n; i++)
+                strata[i] = i;
+            for (int i = n - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int t = strata[i];
+                strata[i] = strata[j];
+                strata[j] = t;
+            }
+            for (int i = 0; i < n; i++) {
+                double u = (strata[i] + random.nextDouble()) / n;
+                points.get(i).put(d.getName(), d.quantile(u));
+            }
+        }
+        return points;
+    }
+
+    /**
+     * The values of a swept parameter.
+     */
+    public static class Dimension {
+
+        private final ParameterDescriptor parameter;
+        private final String text;
+
+        // The listed values, or the grid of a range
+        private final List<String> values;
+        // The values while they are collected, without duplicates
+        private Set<String> unique = new LinkedHashSet<String>();
+        private final boolean range;
+        private double from;
+        private double to;
+
+        Dimension(ParameterDescriptor parameter, String text) {
+            this.parameter = parameter;
+            this.text = text;
+
+            String[] bounds = text.split(":");
+            range = bounds.length == 3 && isNumeric(parameter.getType());
+            if (range) {
+                from = parseNumber(bounds[0]);
+                to = parseNumber(bounds[1]);
+                double step = parseNumber(bounds[2]);
+                if (step <= 0 || to < from)
+                    throw new IllegalArgumentException("The range of parameter " + getName()
+                            + " needs a positive step and an upper bound not below the lower bound.");
+                long steps = (long) Math.floor((to - from) / step + 1e-9);
+                if (steps >= MAX_RUNS)
+                    throw new IllegalArgumentException("The range of parameter " + getName() + " has too many values.");
+                for (long i = 0; i <= steps; i++)
+                    add(format(from + i * step));
+            } else {
+                for (String value : text.split(","))
+                    add(value.trim());
+            }
+            if (unique.isEmpty())
+                throw new IllegalArgumentException("Parameter " + getName() + " has no values.");
+            values = new ArrayList<String>(unique);
+            unique = null;
+        }
+
+        private void add(String value) {
+            if (value.isEmpty())
+                return;
+            // Check the value now rather than in every run
+            parameter.parse(value);
+            unique.add(value);
+        }
+
+        private double parseNumber(String value) {
+            try {
+                return Double.parseDouble(value.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid bound '" + value.trim() + "' for parameter " + getName()
+                        + ".");
+            }
+        }
+
+        private static boolean isNumeric(Class<?> type) {
+            return type != boolean.class && type != char.class
+                    && (type.isPrimitive() || Number.class.isAssignableFrom(type));
+        }
+
+        private boolean isIntegral() {
+            Class<?> type = parameter.getType();
+            return type != double.class && type != float.class && type != Double.class && type != Float.class;
+        }
+
+        private String format(double value) {
+            if (isIntegral())
+                return Long.toString(Math.round(value));
+            // Drop the rounding noise of the steps
+            return Double.toString(Math.round(value * 1e12) / 1e12);
+        }
+
+        // The value at a probability between 0 and 1
+        String quantile(double u) {
+            if (!range)
+                return values.get(Math.min((int) (u * values.size()), values.size() - 1));
+            if (isIntegral())
+                return Long.toString(Math.min((long) Math.floor(from + u * (to - from + 1)), (long) to));
+            return Double.toString(from + u * (to - from));
+        }
+
+        public ParameterDescriptor getParameter() {
+            return parameter;
+        }
+
+        public String getName() {
+            return parameter.getName();
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * @return The values of a grid design.
+         */
+        public List<String> getValues() {
+            return Collections.unmodifiableList(values);
+        }
+    }
+
+    /**
+     * A run of the design.
+     */
+    public static class Run {
+
+        private final int number;
+        private final int point;
+        private final int replication;
+        private final long seed;
+        private final Map<String, String> values;
+
+        Run(int number, int point, int replication, long seed, Map<String, String> values) {
+            this.number = number;
+            this.point = point;
+            this.replication = replication;
+            this.seed = seed;
+            this.values = Collections.unmodifiableMap(values);
+        }
+
+        public int getNumber() {
+            return number;
+        }
+
+        /**
+         * @return The number of the combination of values, from 1.
+         */
+        public int getPoint() {
+            return point;
+        }
+
+        public int getReplication() {
+            return replication;
+        }
+
+        public long getSeed() {
+            return seed;
+        }
+
+        /**
+         * @return The value of each swept parameter, by name.
+         */
+        public Map<String, String> getValues() {
+            return values;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package microsim.gui.shell.parameter;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JInternalFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSpinner;
+import javax.swing.JSplitPane;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SpinnerNumberModel;
+import javax.swing.Timer;
+import javax.swing.event.InternalFrameAdapter;
+import javax.swing.event.InternalFrameEvent;
+import javax.swing.table.AbstractTableModel;
+
+import microsim.engine.SimulationManager;
+
+/**
+ * Not of interest for users. The frame designing a parameter sweep over the
+ * simulation managers of the engine: the parameters to sweep are selected in
+ * a table with their values, the runs are generated by a {@link SweepDesign}
+ * and executed by a {@link SweepRunner} in local worker processes. The results
+ * table is refreshed twice per second as runs finish.
+ */
+public class SweepDesignerFrame extends JInternalFrame {
+
+    /**
+     * Comment for <code>serialVersionUID</code>
+     */
+    private static final long serialVersionUID = 1L;
+
+    private static final int REFRESH_MILLIS = 500;
+
+    private final List<String> managerClasses = new ArrayList<String>();
+    private final ParameterTableModel parameterModel = new ParameterTableModel();
+    private final ResultTableModel resultModel = new ResultTableModel();
+
+    private SweepRunner runner;
+
+    private JComboBox<SweepDesign.Mode> jCmbMode = new JComboBox<SweepDesign.Mode>(SweepDesign.Mode.values());
+    private JSpinner jSpnSamples = new JSpinner(new SpinnerNumberModel(20, 1, SweepDesign.MAX_RUNS, 1));
+    private JSpinner jSpnReplications = new JSpinner(new SpinnerNumberModel(1, 1, 1000, 1));
+    private JTextField jTxtSeed = new JTextField("1", 8);
+    private JTextField jTxtEndTime = new JTextField(6);
+    private JSpinner jSpnWorkers;
+    private JTextField jTxtJvmOptions = new JTextField(10);
+    private JButton jBtnCheck = new JButton("Check");
+    private JButton jBtnRun = new JButton("Run");
+    private JButton jBtnCancel = new JButton("Cancel");
+    private JLabel jLblStatus = new JLabel();
+
+    private final Timer timer = new Timer(REFRESH_MILLIS, new java.awt.event.ActionListener() {
+        public void actionPerformed(ActionEvent e) {
+            refresh();
+        }
+    });
+
+    /**
+     * @param managers The simulation managers of the engine, in the order
+     *                 they were added.
+     */
+    public SweepDesignerFrame(SimulationManager[] managers) {
+        for (SimulationManager manager : managers) {
+            managerClasses.add(manager.getClass().getName());
+            for (ParameterDescriptor parameter : ParameterDescriptor.forClass(manager.getClass()))
+                parameterModel.add(manager, parameter);
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        jSpnWorkers = new JSpinner(new SpinnerNumberModel(cores, 1, cores, 1));
+
+        try {
+            jbInit();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        addInternalFrameListener(new InternalFrameAdapter() {
+            public void internalFrameClosed(InternalFrameEvent e) {
+                timer.stop();
+                if (runner != null)
+                    runner.cancel();
+            }
+        });
+    }
+
+    private void jbInit() throws Exception {
+        JTable jTableParameters = new JTable(parameterModel);
+        jTableParameters.getColumnModel().getColumn(0).setMaxWidth(50);
+        JTable jTableResults = new JTable(resultModel);
+        jTableResults.setAutoCreateRowSorter(true);
+
+        jCmbMode.setToolTipText("Run every combination of the values, or a number of samples covering the ranges");
+        jSpnSamples.setToolTipText("The number of samples of a Latin hypercube design");
+        jSpnReplications.setToolTipText("The number of runs of each combination, with consecutive seeds");
+        jTxtEndTime.setToolTipText("The simulation time at which runs stop; empty to let the model stop them");
+        jSpnWorkers.setToolTipText("The number of runs executed at the same time, each in its own JVM");
+        jTxtJvmOptions.setToolTipText("The options of the worker JVMs, e.g. -Xmx2g");
+
+        jBtnCheck.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                check();
+            }
+        });
+        jBtnRun.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                run();
+            }
+        });
+        jBtnCancel.setEnabled(false);
+        jBtnCancel.addActionListener(new java.awt.event.ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                if (runner != null)
+                    runner.cancel();
+            }
+        });
+
+        JPanel jPanelDesign = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        jPanelDesign.add(jCmbMode);
+        jPanelDesign.add(new JLabel("Samples:"));
+        jPanelDesign.add(jSpnSamples);
+        jPanelDesign.add(new JLabel("Replications:"));
+        jPanelDesign.add(jSpnReplications);
+        jPanelDesign.add(new JLabel("Seed:"));
+        jPanelDesign.add(jTxtSeed);
+
+        JPanel jPanelRun = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        jPanelRun.add(new JLabel("End time:"));
+        jPanelRun.add(jTxtEndTime);
+        jPanelRun.add(new JLabel("Workers:"));
+        jPanelRun.add(jSpnWorkers);
+        jPanelRun.add(new JLabel("JVM options:"));
+        jPanelRun.add(jTxtJvmOptions);
+        jPanelRun.add(jBtnCheck);
+        jPanelRun.add(jBtnRun);
+        jPanelRun.add(jBtnCancel);
+
+        JPanel jPanelSettings = new JPanel(new BorderLayout());
+        jPanelSettings.add(jPanelDesign, BorderLayout.NORTH);
+        jPanelSettings.add(jPanelRun, BorderLayout.SOUTH);
+
+        JPanel jPanelTop = new JPanel(new BorderLayout());
+        jPanelTop.add(new JScrollPane(jTableParameters), BorderLayout.CENTER);
+        jPanelTop.add(jPanelSettings, BorderLayout.SOUTH);
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, jPanelTop, new JScrollPane(jTableResults));
+        split.setResizeWeight(0.5);
+
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(split, BorderLayout.CENTER);
+        panel.add(jLblStatus, BorderLayout.SOUTH);
+        jLblStatus.setText("Select the parameters to sweep and enter their values, as a list (1, 2, 5) or a range (0:1:0.1).");
+
+        setContentPane(panel);
+        setTitle("Parameter sweep");
+        setSize(new Dimension(760, 560));
+        setResizable(true);
+        setClosable(true);
+        setMaximizable(true);
+        setIconifiable(true);
+    }
+
+    private SweepDesign createDesign() {
+        SweepDesign design = new SweepDesign();
+        for (ParameterRow row : parameterModel.rows)
+            if (row.swept)
+                design.addDimension(row.parameter, row.values);
+        design.setMode((SweepDesign.Mode) jCmbMode.getSelectedItem());
+        design.setSamples(((Number) jSpnSamples.getValue()).intValue());
+        design.setReplications(((Number) jSpnReplications.getValue()).intValue());
+        try {
+            design.setSeed(Long.parseLong(jTxtSeed.getText().trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("The seed must be an integer.");
+        }
+        return design;
+    }
+
+    private void check() {
+        try {
+            SweepDesign design = createDesign();
+            long count = design.getRunCount();
+            jLblStatus.setText(design.getDimensions().size() + " parameters swept, "
+                    + (count > SweepDesign.MAX_RUNS ? "more than " + SweepDesign.MAX_RUNS + " runs: too many."
+                            : count + " runs."));
+        } catch (IllegalArgumentException e) {
+            jLblStatus.setText(e.getMessage());
+        }
+    }
+
+    private void run() {
+        if (runner != null && !runner.isDone())
+            return;
+        List<SweepDesign.Run> runs;
+        List<String> swept = new ArrayList<String>();
+        double endTime = -1;
+        try {
+            SweepDesign design = createDesign();
+            for (SweepDesign.Dimension d : design.getDimensions())
+                swept.add(d.getName());
+            runs = design.generate();
+            String end = jTxtEndTime.getText().trim();
+            if (!end.isEmpty())
+                endTime = Double.parseDouble(end);
+        } catch (IllegalArgumentException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Parameter sweep", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        String options = jTxtJvmOptions.getText().trim();
+        List<String> jvmOptions = options.isEmpty() ? Collections.<String>emptyList()
+                : Arrays.asList(options.split("\\s+"));
+        runner = new SweepRunner(runs, managerClasses, endTime, jvmOptions);
+        resultModel.setRunner(runner, swept);
+        runner.start(((Number) jSpnWorkers.getValue()).intValue());
+
+        jBtnRun.setEnabled(false);
+        jBtnCancel.setEnabled(true);
+        timer.start();
+        refresh();
+    }
+
+    private void refresh() {
+        SweepRunner r = runner;
+        if (r == null)
+            return;
+        resultModel.refresh();
+        int total = r.getResults().size();
+        jLblStatus.setText(r.getFinishedCount() + " / " + total + " runs finished");
+        if (r.isDone()) {
+            timer.stop();
+            jBtnRun.setEnabled(true);
+            jBtnCancel.setEnabled(false);
+        }
+    }
+
+    private static class ParameterRow {
+
+        final SimulationManager manager;
+        final ParameterDescriptor parameter;
+        boolean swept;
+        String values;
+
+        ParameterRow(SimulationManager manager, ParameterDescriptor parameter) {
+            this.manager = manager;
+            this.parameter = parameter;
+            Object current;
+            try {
+                current = parameter.hasGetter() ? parameter.get(manager) : null;
+            } catch (Exception e) {
+                current = null;
+            }
+            values = current == null ? "" : current.toString();
+        }
+    }
+
+    private static class ParameterTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] columns = { "Sweep", "Manager", "Parameter", "Type", "Values" };
+
+        private final List<ParameterRow> rows = new ArrayList<ParameterRow>();
+
+        void add(SimulationManager manager, ParameterDescriptor parameter) {
+            rows.add(new ParameterRow(manager, parameter));
+        }
+
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        public int getColumnCount() {
+            return columns.length;
+        }
+
+        public String getColumnName(int column) {
+            return columns[column];
+        }
+
+        public Class<?> getColumnClass(int column) {
+            return column == 0 ? Boolean.class : String.class;
+        }
+
+        public boolean isCellEditable(int row, int column) {
+            return column == 0 || column == 4;
+        }
+
+        public Object getValueAt(int row, int column) {
+            ParameterRow r = rows.get(row);
+            switch (column) {
+            case 0:
+                return Boolean.valueOf(r.swept);
+            case 1:
+                return r.manager.getClass().getSimpleName();
+            case 2:
+                return r.parameter.getName();
+            case 3:
+                return r.parameter.getType().getSimpleName();
+            default:
+                return r.values;
+            }
+        }
+
+        public void setValueAt(Object value, int row, int column) {
+            ParameterRow r = rows.get(row);
+            if (column == 0)
+                r.swept = Boolean.TRUE.equals(value);
+            else if (column == 4) {
+                r.values = String.valueOf(value);
+                // Entering values selects the parameter
+                r.swept = true;
+            }
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    private static class ResultTableModel extends AbstractTableModel {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final String[] FIRST_COLUMNS = { "Run", "Point", "Replication", "Seed" };
+        private static final String[] STATE_COLUMNS = { "State", "Wall time (s)", "Simulation time" };
+
+        private SweepRunner runner;
+        private List<String> swept = Collections.emptyList();
+        private List<String> resultNames = Collections.emptyList();
+
+        void setRunner(SweepRunner runner, List<String> swept) {
+            this.runner = runner;
+            this.swept = swept;
+            resultNames = runner.getResultNames();
+            fireTableStructureChanged();
+        }
+
+        void refresh() {
+            List<String> names = runner.getResultNames();
+            if (!names.equals(resultNames)) {
+                resultNames = names;
+                fireTableStructureChanged();
+            } else if (getRowCount() > 0) {
+                fireTableRowsUpdated(0, getRowCount() - 1);
+            }
+        }
+
+        public int getRowCount() {
+            return runner == null ? 0 : runner.getResults().size();
+        }
+
+        public int getColumnCount() {
+            return FIRST_COLUMNS.length + swept.size() + STATE_COLUMNS.length + resultNames.size() + 1;
+        }
+
+        public String getColumnName(int column) {
+            if (column < FIRST_COLUMNS.length)
+                return FIRST_COLUMNS[column];
+            column -= FIRST_COLUMNS.length;
+            if (column < swept.size())
+                return swept.get(column);
+            column -= swept.size();
+            if (column < STATE_COLUMNS.length)
+                return STATE_COLUMNS[column];
+            column -= STATE_COLUMNS.length;
+            if (column < resultNames.size())
+                return resultNames.get(column);
+            return "Error";
+        }
+
+        public Class<?> getColumnClass(int column) {
+            if (column < 3)
+                return Integer.class;
+            if (column == 3)
+                return Long.class;
+            column -= FIRST_COLUMNS.length + swept.size();
+            if (column == 1 || column == 2 || (column >= STATE_COLUMNS.length && column < STATE_COLUMNS.length
+                    + resultNames.size()))
+                return Double.class;
+            return String.class;
+        }
+
+        public Object getValueAt(int row, int column) {
+            SweepRunner.RunResult result = runner.getResults().get(row);
+            SweepDesign.Run run = result.getRun();
+            switch (column) {
+            case 0:
+                return Integer.valueOf(run.getNumber());
+            case 1:
+                return Integer.valueOf(run.getPoint());
+            case 2:
+                return Integer.valueOf(run.getReplication());
+            case 3:
+                return Long.valueOf(run.getSeed());
+            }
+            column -= FIRST_COLUMNS.length;
+            if (column < swept.size())
+                return run.getValues().get(swept.get(column));
+            column -= swept.size();
+            switch (column) {
+            case 0:
+                return result.getState().toString();
+            case 1:
+                return result.getState() == SweepRunner.State.WAITING ? null
+                        : Double.valueOf(Math.round(result.getNanos() / 1e7) / 100.);
+            case 2:
+                return Double.isNaN(result.getSimulationTime()) ? null : Double.valueOf(result.getSimulationTime());
+            }
+            column -= STATE_COLUMNS.length;
+            if (column < resultNames.size())
+                return result.getValue(resultNames.get(column));
+            return result.getError();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package microsim.gui.shell.parameter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the runs of a {@link SweepDesign} on the local machine. Each run is
+ * a {@link SweepWorker} process started with the classpath of this JVM, and at
+ * most a given number of processes (by default one per core) run at the same
+ * time.
+ * <p>
+ * The state and the results of each run are updated by the pool threads and
+ * read by the sweep designer at each refresh.
+ */
+public class SweepRunner {
+
+    public enum State {
+        WAITING, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    private final List<String> managerClasses;
+    private final double endTime;
+    private final List<String> jvmOptions;
+    private final List<RunResult> results;
+    private final Set<String> resultNames = Collections.synchronizedSet(new LinkedHashSet<String>());
+    private final AtomicInteger finished = new AtomicInteger();
+
+    private ExecutorService pool;
+    private volatile boolean cancelled;
+
+    /**
+     * @param runs           The runs to execute.
+     * @param managerClasses The classes of the simulation managers, in the
+     *                       order they are added to the engine.
+     * @param endTime        The simulation time at which runs are stopped, or
+     *                       a negative value to let the models stop them.
+     * @param jvmOptions     The options of the worker JVMs, e.g.
+     *                       <code>-Xmx2g</code>.
+     */
+    public SweepRunner(List<SweepDesign.Run> runs, List<String> managerClasses, double endTime,
+            List<String> jvmOptions) {
+        this.managerClasses = new ArrayList<String>(managerClasses);
+        this.endTime = endTime;
+        this.jvmOptions = new ArrayList<String>(jvmOptions);
+        results = new ArrayList<RunResult>(runs.size());
+        for (SweepDesign.Run run : runs)
+            results.add(new RunResult(run));
+    }
+
+    /**
+     * Start the runs in the background.
+     *
+     * @param workers The number of runs executed at the same time.
+     */
+    public synchronized void start(int workers) {
+        if (pool != null)
+            throw new IllegalStateException("The sweep has already started.");
+        pool = Executors.newFixedThreadPool(Math.max(1, workers), new ThreadFactory() {
+            private int count = 0;
+
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "Sweep worker " + (++count));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        for (final RunResult result : results) {
+            pool.execute(new Runnable() {
+                public void run() {
+                    execute(result);
+                }
+            });
+        }
+        pool.shutdown();
+    }
+
+    /** Stop the runs in progress and skip the others. */
+    public void cancel() {
+        cancelled = true;
+        for (RunResult result : results) {
+            Process process = result.process;
+            if (process != null)
+                process.destroy();
+        }
+    }
+
+    public boolean isDone() {
+        return finished.get() == results.size();
+    }
+
+    public int getFinishedCount() {
+        return finished.get();
+    }
+
+    public List<RunResult> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * @return The names of the results reported so far, in order of first
+     *         report.
+     */
+    public List<String> getResultNames() {
+        synchronized (resultNames) {
+            return new ArrayList<String>(resultNames);
+        }
+    }
+
+    private void execute(RunResult result) {
+        if (cancelled) {
+            result.state = State.CANCELLED;
+            finished.incrementAndGet();
+            return;
+        }
+        long start = System.nanoTime();
+        result.startNanos = start;
+        result.state = State.RUNNING;
+        State end;
+        try {
+            Process process = new ProcessBuilder(command(result.run)).redirectErrorStream(true).start();
+            result.process = process;
+            if (cancelled)
+                process.destroy();
+            BufferedReader in = new BufferedReader(new InputStreamReader(process.getInputStream()));
+            try {
+                String line;
+                while ((line = in.readLine()) != null)
+                    read(result, line);
+            } finally {
+                in.close();
+            }
+            int exit = process.waitFor();
+            if (cancelled)
+                end = State.CANCELLED;
+            else if (exit != 0) {
+                result.error = "Exit code " + exit + (result.lastLine == null ? "" : ": " + result.lastLine);
+                end = State.FAILED;
+            } else
+                end = State.DONE;
+        } catch (IOException e) {
+            result.error = e.getMessage();
+            end = cancelled ? State.CANCELLED : State.FAILED;
+        } catch (InterruptedException e) {
+            end = State.CANCELLED;
+        }
+        result.process = null;
+        result.nanos = System.nanoTime() - start;
+        result.state = end;
+        finished.incrementAndGet();
+    }
+
+    private void read(RunResult result, String line) {
+        if (!line.startsWith(SweepWorker.PREFIX)) {
+            if (!line.trim().isEmpty())
+                result.lastLine = line.trim();
+            return;
+        }
+        String[] fields = line.substring(SweepWorker.PREFIX.length()).split("\t");
+        try {
+            if (fields[0].equals(SweepWorker.RESULT) && fields.length == 3) {
+                resultNames.add(fields[1]);
+                result.values.put(fields[1], Double.valueOf(fields[2]));
+            } else if (fields[0].equals(SweepWorker.TIME) && fields.length == 2) {
+                result.simulationTime = Double.parseDouble(fields[1]);
+            }
+        } catch (NumberFormatException e) {
+            result.lastLine = line;
+        }
+    }
+
+    private List<String> command(SweepDesign.Run run) {
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(SweepWorker.class.getName());
+        for (String managerClass : managerClasses) {
+            command.add("--manager");
+            command.add(managerClass);
+        }
+        command.add("--seed");
+        command.add(Long.toString(run.getSeed()));
+        if (endTime >= 0) {
+            command.add("--end");
+            command.add(Double.toString(endTime));
+        }
+        for (Map.Entry<String, String> value : run.getValues().entrySet()) {
+            command.add("--set");
+            command.add(value.getKey() + "=" + value.getValue());
+        }
+        return command;
+    }
+
+    /**
+     * The state and results of a run.
+     */
+    public static class RunResult {
+
+        private final SweepDesign.Run run;
+        private final Map<String, Double> values = Collections.synchronizedMap(new LinkedHashMap<String, Double>());
+
+        private volatile State state = State.WAITING;
+        private volatile Process process;
+        private volatile long startNanos;
+        private volatile long nanos;
+        private volatile double simulationTime = Double.NaN;
+        private volatile String lastLine;
+        private volatile String error;
+
+        RunResult(SweepDesign.Run run) {
+            this.run = run;
+        }
+
+        public SweepDesign.Run getRun() {
+            return run;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        /**
+         * @return The wall time of the run in nanoseconds, so far if running.
+         */
+        public long getNanos() {
+            return state == State.RUNNING ? System.nanoTime() - startNanos : nanos;
+        }
+
+        /**
+         * @return The simulation time reached, NaN if not known.
+         */
+        public double getSimulationTime() {
+            return simulationTime;
+        }
+
+        /**
+         * @param name The name of a result.
+         * @return The reported value, or null.
+         */
+        public Double getValue(String name) {
+            return values.get(name);
+        }
+
+        /**
+         * @return The reason of a failure, or null.
+         */
+        public String getError() {
+            return error;
+        }
+    }
+}
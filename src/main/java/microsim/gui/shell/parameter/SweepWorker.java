@@ -0,0 +1,199 @@
+package microsim.gui.shell.parameter;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import microsim.engine.EngineListener;
+import microsim.engine.SimulationEngine;
+import microsim.engine.SimulationManager;
+import microsim.event.Order;
+import microsim.event.SystemEventType;
+
+/**
+ * The process executing a single run of a parameter sweep, started by the
+ * {@link SweepRunner} in its own JVM since the simulation engine is a
+ * singleton. It builds the simulation managers, sets the swept parameters,
+ * runs the simulation without GUI and exits.
+ * <p>
+ * Models report the results shown by the sweep designer by calling
+ * {@link #report(String, double)}, typically at the end of the simulation. The
+ * call does nothing when the model does not run in a sweep:
+ *
+ * <pre>
+ * SweepWorker.report("Population", persons.size());
+ * </pre>
+ *
+ * Not of interest for users otherwise. The arguments are
+ * <code>--manager class</code> for each simulation manager, in the order they
+ * were added to the engine, <code>--seed n</code>, optionally
+ * <code>--end time</code>, at which an End system event is scheduled, and
+ * <code>--set name=value</code> for each swept parameter.
+ */
+public class SweepWorker {
+
+    static final String PREFIX = "#SWEEP\t";
+    static final String RESULT = "result";
+    static final String TIME = "time";
+
+    private static volatile boolean inSweep = false;
+
+    private SweepWorker() {
+    }
+
+    /**
+     * Report a result of the run to the sweep designer.
+     *
+     * @param name  The name of the result, a column of the results table.
+     * @param value The value.
+     */
+    public static void report(String name, double value) {
+        if (inSweep)
+            System.out.println(PREFIX + RESULT + "\t" + name.replace('\t', ' ') + "\t" + value);
+    }
+
+    /**
+     * @return True in the process of a sweep run.
+     */
+    public static boolean isInSweep() {
+        return inSweep;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        inSweep = true;
+        // A model failing on the engine thread would otherwise leave the run waiting
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            public void uncaughtException(Thread t, Throwable e) {
+                e.printStackTrace();
+                System.out.println(e);
+                System.out.flush();
+                System.exit(1);
+            }
+        });
+
+        List<String> managerClasses = new ArrayList<String>();
+        List<String> assignments = new ArrayList<String>();
+        long seed = 0;
+        double endTime = -1;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--manager"))
+                managerClasses.add(args[i + 1]);
+            else if (args[i].equals("--set"))
+                assignments.add(args[i + 1]);
+            else if (args[i].equals("--seed"))
+                seed = Long.parseLong(args[i + 1]);
+            else if (args[i].equals("--end"))
+                endTime = Double.parseDouble(args[i + 1]);
+            else
+                throw new IllegalArgumentException("Unknown argument " + args[i]);
+        }
+
+        List<Object> managers = createManagers(managerClasses);
+        for (String assignment : assignments) {
+            int eq = assignment.indexOf('=');
+            String name = assignment.substring(0, eq);
+            String text = assignment.substring(eq + 1);
+            boolean set = false;
+            for (Object manager : managers) {
+                ParameterDescriptor parameter = ParameterDescriptor.forName(manager.getClass(), name);
+                if (parameter != null) {
+                    parameter.set(manager, parameter.parse(text));
+                    set = true;
+                    break;
+                }
+            }
+            if (!set)
+                throw new IllegalArgumentException("No simulation manager has parameter " + name);
+        }
+
+        SimulationEngine engine = SimulationEngine.getInstance();
+        final CountDownLatch ended = new CountDownLatch(1);
+        final boolean[] started = new boolean[1];
+        engine.addEngineListener(new EngineListener() {
+            public void onEngineEvent(SystemEventType event) {
+                if (event.equals(SystemEventType.Step))
+                    started[0] = true;
+                else if (event.equals(SystemEventType.End) || event.equals(SystemEventType.Stop))
+                    ended.countDown();
+            }
+        });
+        engine.setRandomSeed(seed);
+        for (Object manager : managers)
+            engine.addSimulationManager((SimulationManager) manager);
+        engine.buildModels();
+        // The engine ends the run itself at the end time, after the model's
+        // own events of that time, so every run stops at the same time and
+        // the end of simulation hooks of the model are executed
+        if (endTime >= 0)
+            engine.getEventQueue().scheduleSystem(endTime, Order.AFTER_ALL.getOrdering(), 0., engine,
+                    SystemEventType.End);
+        engine.startSimulation();
+
+        // The engine runs on its own thread, until the end event or until the
+        // model stops it. A run which never starts is left to the sweep's
+        // Cancel, which kills the process.
+        while (!ended.await(100, TimeUnit.MILLISECONDS)) {
+            if (engine.getRunningStatus())
+                started[0] = true;
+            else if (started[0])
+                break;
+        }
+        System.out.println(PREFIX + TIME + "\t" + engine.getTime());
+        System.out.flush();
+        System.exit(0);
+    }
+
+    /**
+     * Create the simulation managers, each with the constructor taking the
+     * most managers already created, e.g. a collector taking the model.
+     * Observers are only needed to show the simulation and are left out.
+     */
+    private static List<Object> createManagers(List<String> classNames) throws Exception {
+        Class<?> observerClass = null;
+        try {
+            observerClass = Class.forName("microsim.engine.AbstractSimulationObserverManager");
+        } catch (ClassNotFoundException e) {
+            // No observer class to leave out
+        }
+
+        List<Object> managers = new ArrayList<Object>();
+        for (String className : classNames) {
+            Class<?> type = Class.forName(className);
+            if (observerClass != null && observerClass.isAssignableFrom(type))
+                continue;
+
+            Constructor<?> best = null;
+            Object[] bestArgs = null;
+            for (Constructor<?> c : type.getConstructors()) {
+                Object[] arguments = findArguments(c.getParameterTypes(), managers);
+                if (arguments != null && (best == null || arguments.length > bestArgs.length)) {
+                    best = c;
+                    bestArgs = arguments;
+                }
+            }
+            if (best == null)
+                throw new IllegalStateException("No constructor of " + className
+                        + " takes only simulation managers as arguments.");
+            managers.add(best.newInstance(bestArgs));
+        }
+        return managers;
+    }
+
+    private static Object[] findArguments(Class<?>[] types, List<Object> managers) {
+        Object[] arguments = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            for (Object manager : managers) {
+                if (types[i].isInstance(manager)) {
+                    arguments[i] = manager;
+                    break;
+                }
+            }
+            if (arguments[i] == null)
+                return null;
+        }
+        return arguments;
+    }
+}
@@ -0,0 +1,31 @@
+package microsim.gui.space;
+
+/**
+ * A layer painting every cell of a grid with a single colour. Exports read the
+ * colours cell by cell, instead of the pixels of the rendered layer, so that
+ * runs of equal cells can be written as a single shape.
+ */
+public interface IGridLayerDrawer extends ILayerDrawer {
+    /**
+     * Return the number of cells in a row of the grid.
+     * 
+     * @return The width of the grid.
+     */
+    public int getGridWidth();
+
+    /**
+     * Return the number of rows of the grid.
+     * 
+     * @return The height of the grid.
+     */
+    public int getGridHeight();
+
+    /**
+     * Fill an array with the colours of a row of cells.
+     * 
+     * @param y    The row.
+     * @param argb The array filled with one ARGB colour per cell, of at least
+     *             the width of the grid. Transparent cells have an alpha of 0.
+     */
+    public void getRowColors(int y, int[] argb);
+}
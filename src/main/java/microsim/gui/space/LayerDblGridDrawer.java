@@ -50,7 +50,7 @@ import microsim.space.DoubleSpace;
  * @author Michele Sonnessa
  *         <p>
  */
-public class LayerDblGridDrawer implements ILayerDrawer {
+public class LayerDblGridDrawer implements IGridLayerDrawer {
     private double[] m;
     private ColorMap color;
     int[] trasparencyColor;
@@ -287,6 +287,25 @@ public class LayerDblGridDrawer implements ILayerDrawer {
         g.drawImage(img, 0, 0, null);
     }
 
+    public int getGridWidth() {
+        return xSize;
+    }
+
+    public int getGridHeight() {
+        return ySize;
+    }
+
+    public void getRowColors(int y, int[] argb) {
+        int k = y * xSize;
+        for (int i = 0; i < xSize; i++, k++) {
+            int[] currColor = color.getColorComponents(color.getColorIndex(m[k]));
+            if (trasparencyColor != null && Arrays.equals(currColor, trasparencyColor))
+                argb[i] = 0;
+            else
+                argb[i] = 0xFF000000 | (currColor[0] << 16) | (currColor[1] << 8) | currColor[2];
+        }
+    }
+
     /**
      * Return if the layer is currently displayed on the LayeredSurfaceFrame.
      * 
@@ -2,6 +2,7 @@ package microsim.gui.space;
 
 import java.awt.BorderLayout;
 import java.awt.Dimension;
+import java.awt.GraphicsEnvironment;
 import java.awt.Toolkit;
 import java.awt.event.ActionEvent;
 import java.awt.event.MouseEvent;
@@ -14,6 +15,8 @@ import javax.swing.JScrollPane;
 import microsim.event.CommonEventType;
 import microsim.event.EventListener;
 import microsim.gui.shell.MicrosimShell;
+import microsim.gui.utils.RenderCost;
+import microsim.gui.utils.RenderCostRegistry;
 
 /**
  * It is the Space Viewer window. It draws grid layers using a list of
@@ -65,6 +68,8 @@ public class LayeredSurfaceFrame extends JInternalFrame implements
     private int cellLen;
     private Dimension screenSize;
 
+    private final RenderCost renderCost = RenderCostRegistry.register(this);
+
     BorderLayout borderLayout1 = new BorderLayout();
     JScrollPane jScrollPane = new JScrollPane();
     LayeredSurfacePanel jLayeredPanel;
@@ -132,12 +137,16 @@ public class LayeredSurfaceFrame extends JInternalFrame implements
                     "LayeredSurfaceFrame must be created "
                             + "with positive width and heigth values.");
 
-        screenSize = Toolkit.getDefaultToolkit().getScreenSize();
+        if (GraphicsEnvironment.isHeadless()) // No screen to fit into, see HeadlessRenderer
+            screenSize = new Dimension(Integer.MAX_VALUE, Integer.MAX_VALUE);
+        else
+            screenSize = Toolkit.getDefaultToolkit().getScreenSize();
         xSize = width;
         ySize = height;
         cellLen = cellLength;
 
         jLayeredPanel = new LayeredSurfacePanel(gridWidth, gridHeight, cellLen);
+        jLayeredPanel.setRenderCost(renderCost);
 
         // setIconImage(imageIcon.getImage());
 
@@ -200,6 +209,15 @@ public class LayeredSurfaceFrame extends JInternalFrame implements
         jLayeredPanel.addLayer(layer);
     }
 
+    /**
+     * Return the panel drawing the layers.
+     * 
+     * @return The layered panel, sized to the whole grid.
+     */
+    public LayeredSurfacePanel getLayeredPanel() {
+        return jLayeredPanel;
+    }
+
     /** Repaint the plot area. */
     public void update() {
         jLayeredPanel.repaint();
@@ -251,10 +269,11 @@ public class LayeredSurfaceFrame extends JInternalFrame implements
      * React to system events.
      * 
      * @param type
-     *             Reacts to the Sim.EVENT_UPDATE event repainting the plot area.
+     *             Reacts to the Sim.EVENT_UPDATE event repainting the plot area,
+     *             unless the window is throttled.
      */
     public void onEvent(Enum<?> type) {
-        if (type == CommonEventType.Update) {
+        if (type == CommonEventType.Update && renderCost.shouldUpdate()) {
             update();
         }
     }
@@ -7,6 +7,8 @@ import javax.swing.JPanel;
 import java.util.List;
 import java.util.ArrayList;
 
+import microsim.gui.utils.RenderCost;
+
 /**
  * Not of interest for users. It is the panel drawing the
  * {@code Layer<type>Drawer} objects added to the LayeredSurfaceFrame.
@@ -57,6 +59,8 @@ public class LayeredSurfacePanel extends JPanel {
 
     private Color background;
 
+    private RenderCost renderCost;
+
     // Used for dragging
     private int lastX, lastY;
 
@@ -155,6 +159,33 @@ public class LayeredSurfacePanel extends JPanel {
         setVirtualDimensions();
     }
 
+    /**
+     * Return the width of the grid.
+     * 
+     * @return The number of cells in a row.
+     */
+    public int getXSize() {
+        return xSize;
+    }
+
+    /**
+     * Return the height of the grid.
+     * 
+     * @return The number of rows.
+     */
+    public int getYSize() {
+        return ySize;
+    }
+
+    /**
+     * Return the current cell length.
+     * 
+     * @return The length of a cell in pixels.
+     */
+    public int getCellLength() {
+        return cellLen;
+    }
+
     /**
      * Add a ILayerDrawer to the layer list.
      * 
@@ -189,6 +220,7 @@ public class LayeredSurfacePanel extends JPanel {
      * @param g The graphic context passed by container.
      */
     public void paintComponent(Graphics g) {
+        long start = System.nanoTime();
         super.paintComponent(g);
 
         if (background != null) {
@@ -203,6 +235,17 @@ public class LayeredSurfacePanel extends JPanel {
                 lay.paint(g, cellLen);
         }
 
+        if (renderCost != null)
+            renderCost.recordRender(System.nanoTime() - start);
+    }
+
+    /**
+     * Set the tracker receiving the time spent painting the layers.
+     *
+     * @param renderCost The cost tracker of the enclosing window, or null.
+     */
+    public void setRenderCost(RenderCost renderCost) {
+        this.renderCost = renderCost;
     }
 
     private void this_mouseClicked(MouseEvent e) {
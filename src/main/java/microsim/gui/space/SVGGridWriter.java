@@ -0,0 +1,143 @@
+package microsim.gui.space;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Not of interest for users. Writes a {@link LayeredSurfacePanel} made of
+ * grid layers as SVG text, straight to a writer and without building a DOM.
+ * <p>
+ * Each layer becomes the rectangles of its runs of equal cells along a row,
+ * and a run identical to the run above it (same cells, same colour) extends
+ * the rectangle above instead of starting a new one, so uniform areas take a
+ * handful of elements however large the grid is. Only two rows of runs are
+ * kept in memory. Transparent cells are left out so that the layers below
+ * show through.
+ */
+public class SVGGridWriter {
+
+    private final Writer out;
+    private final StringBuilder line = new StringBuilder(80);
+
+    // The rectangles still growing downwards, sorted by first cell, as
+    // columns of x, width, y, height and colour
+    private static final int X = 0, WIDTH = 1, Y = 2, HEIGHT = 3, COLOR = 4;
+    private int[][] open;
+    private int openCount;
+    private int[][] next;
+    private int nextCount;
+
+    private SVGGridWriter(Writer out, int width) {
+        this.out = out;
+        open = new int[5][width];
+        next = new int[5][width];
+    }
+
+    /**
+     * Tell whether a panel can be written, i.e. whether all its displayed
+     * layers are grid layers.
+     *
+     * @param panel The panel.
+     * @return True if {@link #write} can write it.
+     */
+    public static boolean canWrite(LayeredSurfacePanel panel) {
+        for (ILayerDrawer layer : panel.getLayers())
+            if (layer.isDisplayed() && !(layer instanceof IGridLayerDrawer))
+                return false;
+        return true;
+    }
+
+    /**
+     * Write the displayed layers of a panel as an SVG document.
+     *
+     * @param panel The panel, whose layers are all grid layers.
+     * @param out   The writer, not closed.
+     * @throws IOException If writing fails.
+     */
+    public static void write(LayeredSurfacePanel panel, Writer out) throws IOException {
+        int width = panel.getXSize();
+        int height = panel.getYSize();
+        int cell = panel.getCellLength();
+
+        out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        out.write("<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"" + width * cell + "\" height=\""
+                + height * cell + "\" viewBox=\"0 0 " + width + " " + height
+                + "\" shape-rendering=\"crispEdges\">\n");
+        Color background = panel.getBackgroundColor();
+        if (background != null)
+            out.write("<rect width=\"" + width + "\" height=\"" + height + "\" fill=\""
+                    + hex(background.getRGB()) + "\"/>\n");
+
+        for (ILayerDrawer layer : panel.getLayers()) {
+            if (!layer.isDisplayed())
+                continue;
+            IGridLayerDrawer grid = (IGridLayerDrawer) layer;
+            out.write("<g>\n");
+            new SVGGridWriter(out, grid.getGridWidth()).writeLayer(grid);
+            out.write("</g>\n");
+        }
+        out.write("</svg>\n");
+    }
+
+    private void writeLayer(IGridLayerDrawer layer) throws IOException {
+        int width = layer.getGridWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < layer.getGridHeight(); y++) {
+            layer.getRowColors(y, row);
+            nextCount = 0;
+            int i = 0;
+            int x = 0;
+            while (x < width) {
+                int color = row[x];
+                int start = x;
+                while (x < width && row[x] == color)
+                    x++;
+                if ((color >>> 24) == 0)
+                    continue;
+
+                // The rectangles above that end before this run are complete
+                while (i < openCount && open[X][i] < start)
+                    flush(i++);
+                if (i < openCount && open[X][i] == start && open[WIDTH][i] == x - start
+                        && open[COLOR][i] == color) {
+                    keep(start, x - start, open[Y][i], open[HEIGHT][i] + 1, color);
+                    i++;
+                } else
+                    keep(start, x - start, y, 1, color);
+            }
+            while (i < openCount)
+                flush(i++);
+
+            int[][] t = open;
+            open = next;
+            next = t;
+            openCount = nextCount;
+        }
+        for (int i = 0; i < openCount; i++)
+            flush(i);
+        openCount = 0;
+    }
+
+    private void keep(int x, int width, int y, int height, int color) {
+        next[X][nextCount] = x;
+        next[WIDTH][nextCount] = width;
+        next[Y][nextCount] = y;
+        next[HEIGHT][nextCount] = height;
+        next[COLOR][nextCount] = color;
+        nextCount++;
+    }
+
+    private void flush(int i) throws IOException {
+        line.setLength(0);
+        line.append("<rect x=\"").append(open[X][i]).append("\" y=\"").append(open[Y][i]).append("\" width=\"")
+                .append(open[WIDTH][i]).append("\" height=\"").append(open[HEIGHT][i]).append("\" fill=\"")
+                .append(hex(open[COLOR][i])).append("\"/>\n");
+        out.append(line);
+    }
+
+    private static String hex(int rgb) {
+        String digits = Integer.toHexString(rgb & 0xFFFFFF);
+        return "#000000".substring(0, 7 - digits.length()) + digits;
+    }
+}
@@ -0,0 +1,234 @@
+package microsim.gui.utils;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an animated PNG one frame at a time, so that frames need not be kept
+ * in memory. All frames have the size given at creation and are shown for the
+ * same time; the animation loops forever. Viewers not supporting APNG show
+ * the first frame.
+ * <p>
+ * Frames are stored as 8 bit RGB, compressed with a fast deflate level. The
+ * number of frames is only known at the end, so it is written by
+ * {@link #close()}, without which the file is not valid.
+ */
+public class APNGWriter {
+
+    private static final byte[] SIGNATURE = { (byte) 137, 80, 78, 71, 13, 10, 26, 10 };
+
+    // Position of the acTL data in the file: signature and IHDR chunk, then
+    // the acTL length and type
+    private static final int ACTL_DATA_OFFSET = 8 + 25 + 8;
+
+    private final File file;
+    private final int width;
+    private final int height;
+    private final int delayNum;
+    private final int delayDen;
+
+    private final DataOutputStream out;
+    private final CRC32 crc = new CRC32();
+    private final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    private final int[] pixels;
+    private final byte[] previous;
+    private final byte[] scanline;
+
+    private int frames = 0;
+    private int sequence = 0;
+    private boolean closed = false;
+
+    /**
+     * Create the file and write its header.
+     *
+     * @param file      The file, replaced if it exists.
+     * @param width     The width of the frames in pixels.
+     * @param height    The height of the frames in pixels.
+     * @param frameRate The frames shown per second.
+     * @throws IOException If the file cannot be written.
+     */
+    public APNGWriter(File file, int width, int height, int frameRate) throws IOException {
+        if (width <= 0 || height <= 0)
+            throw new IllegalArgumentException("Frame size must be positive.");
+        if (frameRate <= 0 || frameRate > 0xFFFF)
+            throw new IllegalArgumentException("Frame rate must be between 1 and 65535.");
+        this.file = file;
+        this.width = width;
+        this.height = height;
+        this.delayNum = 1;
+        this.delayDen = frameRate;
+
+        pixels = new int[width];
+        previous = new byte[width * 3];
+        scanline = new byte[width * 3 + 1];
+
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+        out.write(SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream(13);
+        DataOutputStream data = new DataOutputStream(header);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeByte(8); // bit depth
+        data.writeByte(2); // RGB
+        data.writeByte(0); // deflate
+        data.writeByte(0); // adaptive filtering
+        data.writeByte(0); // no interlace
+        writeChunk("IHDR", header.toByteArray(), 0, header.size());
+
+        // Frame count patched by close(), plays forever
+        writeChunk("acTL", new byte[8], 0, 8);
+    }
+
+    /**
+     * Append a frame. The part of the image outside the size of the animation
+     * is ignored, and a smaller image leaves the rest of the frame black.
+     *
+     * @param image The frame.
+     * @throws IOException If writing fails.
+     */
+    public void writeFrame(BufferedImage image) throws IOException {
+        if (closed)
+            throw new IOException("Animation " + file + " already closed");
+
+        ByteArrayOutputStream control = new ByteArrayOutputStream(26);
+        DataOutputStream data = new DataOutputStream(control);
+        data.writeInt(sequence++);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeInt(0); // x offset
+        data.writeInt(0); // y offset
+        data.writeShort(delayNum);
+        data.writeShort(delayDen);
+        data.writeByte(0); // no disposal
+        data.writeByte(0); // replace the previous frame
+        writeChunk("fcTL", control.toByteArray(), 0, control.size());
+
+        compressed.reset();
+        if (frames > 0) {
+            // Frame data chunks start with their sequence number
+            compressed.write(sequence >>> 24);
+            compressed.write(sequence >>> 16);
+            compressed.write(sequence >>> 8);
+            compressed.write(sequence);
+            sequence++;
+        }
+        deflater.reset();
+        DeflaterOutputStream zip = new DeflaterOutputStream(compressed, deflater, 1 << 16);
+        compress(image, zip);
+        zip.finish();
+
+        byte[] bytes = compressed.toByteArray();
+        if (frames == 0)
+            writeChunk("IDAT", bytes, 0, bytes.length);
+        else
+            writeChunk("fdAT", bytes, 0, bytes.length);
+        frames++;
+    }
+
+    /**
+     * Write the scanlines with the Up filter, which turns the rows repeating
+     * the one above, common in charts and grids, into zeros.
+     */
+    private void compress(BufferedImage image, DeflaterOutputStream zip) throws IOException {
+        int w = Math.min(width, image.getWidth());
+        int h = Math.min(height, image.getHeight());
+        Arrays.fill(previous, (byte) 0);
+        scanline[0] = 2;
+        for (int y = 0; y < height; y++) {
+            if (y < h)
+                image.getRGB(0, y, w, 1, pixels, 0, w);
+            else
+                w = 0;
+            for (int x = 0, i = 0; x < width; x++, i += 3) {
+                int rgb = x < w ? pixels[x] : 0;
+                byte r = (byte) (rgb >> 16);
+                byte g = (byte) (rgb >> 8);
+                byte b = (byte) rgb;
+                scanline[i + 1] = (byte) (r - previous[i]);
+                scanline[i + 2] = (byte) (g - previous[i + 1]);
+                scanline[i + 3] = (byte) (b - previous[i + 2]);
+                previous[i] = r;
+                previous[i + 1] = g;
+                previous[i + 2] = b;
+            }
+            zip.write(scanline);
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int offset, int length) throws IOException {
+        byte[] name = type.getBytes("US-ASCII");
+        out.writeInt(length);
+        out.write(name);
+        out.write(data, offset, length);
+        crc.reset();
+        crc.update(name);
+        crc.update(data, offset, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /** @return The frames written so far. */
+    public int getFrameCount() {
+        return frames;
+    }
+
+    /** @return The file being written. */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Write the frame count and the end of the file, and close it. A file
+     * without frames is deleted, as it would not be a valid image.
+     *
+     * @throws IOException If writing fails.
+     */
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        deflater.end();
+        try {
+            writeChunk("IEND", new byte[0], 0, 0);
+        } finally {
+            out.close();
+        }
+        if (frames == 0) {
+            file.delete();
+            return;
+        }
+
+        byte[] control = new byte[12];
+        control[0] = 'a';
+        control[1] = 'c';
+        control[2] = 'T';
+        control[3] = 'L';
+        control[4] = (byte) (frames >>> 24);
+        control[5] = (byte) (frames >>> 16);
+        control[6] = (byte) (frames >>> 8);
+        control[7] = (byte) frames;
+        crc.reset();
+        crc.update(control, 0, 12);
+        RandomAccessFile patch = new RandomAccessFile(file, "rw");
+        try {
+            patch.seek(ACTL_DATA_OFFSET);
+            patch.writeInt(frames);
+            patch.seek(ACTL_DATA_OFFSET + 8);
+            patch.writeInt((int) crc.getValue());
+        } finally {
+            patch.close();
+        }
+    }
+}
@@ -1,22 +1,67 @@
 package microsim.gui.utils;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.awt.Dimension;
+import java.awt.geom.Rectangle2D;
 import java.awt.event.*;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
 
 import javax.swing.filechooser.FileFilter;
 import java.io.*;
 import javax.swing.*;
 
+import microsim.gui.space.LayeredSurfacePanel;
+import microsim.gui.space.SVGGridWriter;
+
 import org.apache.batik.svggen.SVGGraphics2D;
 import org.apache.batik.dom.GenericDOMImplementation;
+import org.jfree.chart.JFreeChart;
 import org.w3c.dom.Document;
 import org.w3c.dom.DOMImplementation;
 
+/**
+ * Exports panels and charts as SVG or as the image formats of ImageIO.
+ * <p>
+ * Layered surfaces made of grid layers are written as SVG by a
+ * {@link SVGGridWriter}, streaming merged rectangles instead of building the
+ * DOM of one rectangle per cell. Raster exports paint into a scratch image
+ * reused from one export to the next, up to the size of a large screen; an
+ * export finding it in use, or larger than that, paints into a temporary
+ * image instead, so exports never wait for each other and a large export
+ * does not keep its memory. PNG is encoded with a fast compression level;
+ * {@link #saveImageInBackground} encodes on a background thread so that only
+ * painting happens on the caller's thread.
+ */
 public class ImageGenerator {
 
+    // A lower quality compresses harder; this is deflate level 1 in the JDK
+    // writer, much faster than the default level 4 and lossless all the same
+    private static final float PNG_COMPRESSION_QUALITY = 0.85f;
+
+    // Larger images are not kept after the export, about 15 MB as TYPE_INT_RGB
+    private static final long MAX_SCRATCH_PIXELS = 2560L * 1440;
+
+    private static volatile BufferedImage scratch;
+
+    // Held from painting the scratch image until it is encoded
+    private static final Semaphore scratchLock = new Semaphore(1);
+
+    private static ExecutorService encoder;
+
     public static SVGGraphics2D getSVGDocument() {
         // Get a DOMImplementation
         DOMImplementation domImpl = GenericDOMImplementation.getDOMImplementation();
@@ -31,18 +76,14 @@ public class ImageGenerator {
     }
 
     public static String getOutput(SVGGraphics2D generator) {
-        ByteArrayOutputStream stream = null;
+        StringWriter out = new StringWriter();
         try {
-            stream = new ByteArrayOutputStream();
-            OutputStreamWriter out = new OutputStreamWriter(stream, "UTF-8");
-            // Writer out = new OutputStreamWriter(System.out, "UTF-8");
             generator.stream(out, true);
-        } catch (UnsupportedEncodingException ue) {
         } catch (IOException e) {
             System.err.println("Error in SVG generation: " + e.getMessage());
         }
 
-        return stream.toString();
+        return out.toString();
     }
 
     public static void save(SVGGraphics2D generator, String fileName) {
@@ -57,6 +98,16 @@ public class ImageGenerator {
     }
 
     public static String generate(JPanel panel) {
+        if (isGrid(panel)) {
+            StringWriter out = new StringWriter();
+            try {
+                SVGGridWriter.write((LayeredSurfacePanel) panel, out);
+            } catch (IOException e) {
+                System.err.println("Error in SVG generation: " + e.getMessage());
+            }
+            return out.toString();
+        }
+
         SVGGraphics2D svgGenerator = getSVGDocument();
         svgGenerator.setSVGCanvasSize(panel.getSize());
 
@@ -75,6 +126,20 @@ public class ImageGenerator {
     }
 
     public static void save(JPanel panel, String fileName) {
+        if (isGrid(panel)) {
+            try {
+                Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(fileName), "UTF-8"));
+                try {
+                    SVGGridWriter.write((LayeredSurfacePanel) panel, out);
+                } finally {
+                    out.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Error in SVG generation: " + e.getMessage());
+            }
+            return;
+        }
+
         SVGGraphics2D svgGenerator = getSVGDocument();
 
         panel.paint(svgGenerator);
@@ -90,32 +155,197 @@ public class ImageGenerator {
         save(svgGenerator, fileName);
     }
 
+    private static boolean isGrid(JPanel panel) {
+        return panel instanceof LayeredSurfacePanel && SVGGridWriter.canWrite((LayeredSurfacePanel) panel);
+    }
+
     public static BufferedImage toImage(JPanel panel) {
         // Create a Buffered Image
         Dimension d = panel.getSize();
         BufferedImage img = new BufferedImage(d.width + 10,
                 d.height + 10, BufferedImage.TYPE_INT_RGB);
+        paint(panel, img);
+
+        return img;
+    }
+
+    private static void paint(JPanel panel, BufferedImage img) {
         Graphics2D graphics = img.createGraphics();
+        graphics.setColor(Color.black);
+        graphics.fillRect(0, 0, img.getWidth(), img.getHeight());
         graphics.translate(5, 5);
         panel.paint(graphics);
+        graphics.dispose();
+    }
+
+    /**
+     * Take an image of the given size: the scratch image, grown if needed, or
+     * a temporary image if the scratch image is being encoded or the size is
+     * above MAX_SCRATCH_PIXELS. Never waits. It must be handed back with
+     * {@link #releaseScratch(BufferedImage)}.
+     */
+    private static BufferedImage acquireScratch(int width, int height) {
+        if ((long) width * height > MAX_SCRATCH_PIXELS || !scratchLock.tryAcquire())
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        BufferedImage s = scratch;
+        if (s == null || s.getWidth() < width || s.getHeight() < height) {
+            int w = Math.max(width, s == null ? 0 : s.getWidth());
+            int h = Math.max(height, s == null ? 0 : s.getHeight());
+            // A wide export after a tall one would not fit in the limit
+            if ((long) w * h > MAX_SCRATCH_PIXELS) {
+                w = width;
+                h = height;
+            }
+            // The old image can be collected while allocating the new one
+            scratch = null;
+            s = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            scratch = s;
+        }
+        // Shares the pixels of the scratch image
+        return s.getSubimage(0, 0, width, height);
+    }
 
+    /**
+     * Hand back an image taken with {@link #acquireScratch(int, int)}.
+     * Temporary images are simply left to the garbage collector.
+     */
+    private static void releaseScratch(BufferedImage img) {
+        BufferedImage s = scratch;
+        if (s != null && img.getRaster().getDataBuffer() == s.getRaster().getDataBuffer())
+            scratchLock.release();
+    }
+
+    private static BufferedImage paintScratch(JPanel panel) {
+        Dimension d = panel.getSize();
+        BufferedImage img = acquireScratch(d.width + 10, d.height + 10);
+        try {
+            paint(panel, img);
+        } catch (RuntimeException e) {
+            releaseScratch(img);
+            throw e;
+        }
         return img;
     }
 
+    /**
+     * Write an image with ImageIO, compressing PNG files with a fast level.
+     *
+     * @param img    The image.
+     * @param format The format name.
+     * @param file   The file, replaced if it exists.
+     * @throws IOException If no writer supports the format or writing fails.
+     */
+    public static void write(BufferedImage img, String format, File file) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext())
+            throw new IOException("No image writer for format " + format);
+        ImageWriter writer = writers.next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        if (format.equalsIgnoreCase("png") && param.canWriteCompressed()) {
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(PNG_COMPRESSION_QUALITY);
+        }
+
+        // The output stream would not truncate an existing file
+        file.delete();
+        ImageOutputStream out = ImageIO.createImageOutputStream(file);
+        if (out == null)
+            throw new IOException("Cannot write to " + file);
+        try {
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+            out.close();
+        }
+    }
+
+    public static BufferedImage toImage(JFreeChart chart, int width, int height) {
+        // Draws the chart directly, no ChartPanel nor EDT involved
+        return chart.createBufferedImage(width, height, BufferedImage.TYPE_INT_RGB, null);
+    }
+
+    public static void save(JFreeChart chart, int width, int height, String fileName) {
+        SVGGraphics2D svgGenerator = getSVGDocument();
+        svgGenerator.setSVGCanvasSize(new Dimension(width, height));
+
+        chart.draw(svgGenerator, new Rectangle2D.Double(0, 0, width, height));
+
+        save(svgGenerator, fileName);
+    }
+
+    public static void saveImage(JFreeChart chart, int width, int height, String fileName, String format) {
+        BufferedImage img = acquireScratch(width, height);
+        try {
+            Graphics2D graphics = img.createGraphics();
+            graphics.setColor(Color.black);
+            graphics.fillRect(0, 0, width, height);
+            chart.draw(graphics, new Rectangle2D.Double(0, 0, width, height));
+            graphics.dispose();
+            write(img, format, new File(fileName));
+        } catch (IOException e) {
+            System.err.println("Error saving image: " + e.getMessage());
+        } finally {
+            releaseScratch(img);
+        }
+    }
+
     public static String[] supportedFormats() {
         return javax.imageio.ImageIO.getWriterFormatNames();
     }
 
     public static void saveImage(JPanel panel, String fileName, String format) {
+        BufferedImage img = paintScratch(panel);
         try {
-            BufferedImage img = toImage(panel);
-            File f = new File(fileName);
-            ImageIO.write(img, format, f);
+            write(img, format, new File(fileName));
         } catch (IOException e) {
             System.err.println("Error saving image: " + e.getMessage());
+        } finally {
+            releaseScratch(img);
         }
     }
 
+    /**
+     * Paint a panel on the calling thread, which must be the one allowed to
+     * paint it, and encode the image on a background thread. A following
+     * export meanwhile paints into a temporary image.
+     *
+     * @param panel    The panel.
+     * @param fileName The file name.
+     * @param format   The format name, e.g. png.
+     * @return The pending encoding, failing with the IOException of the
+     *         writer.
+     */
+    public static Future<File> saveImageInBackground(JPanel panel, String fileName, final String format) {
+        final BufferedImage img = paintScratch(panel);
+        final File file = new File(fileName);
+        return getEncoder().submit(new Callable<File>() {
+            public File call() throws IOException {
+                try {
+                    write(img, format, file);
+                    return file;
+                } catch (IOException e) {
+                    System.err.println("Error saving image: " + e.getMessage());
+                    throw e;
+                } finally {
+                    releaseScratch(img);
+                }
+            }
+        });
+    }
+
+    private static synchronized ExecutorService getEncoder() {
+        if (encoder == null)
+            encoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "Image encoder");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        return encoder;
+    }
+
     public static JMenu getExportMenu(JPanel panel) {
         Action action;
         JMenu exportMenu = new JMenu("Export");
@@ -150,12 +380,7 @@ public class ImageGenerator {
                     public void actionPerformed(ActionEvent e) {
                         File file = saveDialog(format);
                         if (file != null)
-                            try {
-                                BufferedImage im = toImage(expPanel);
-                                ImageIO.write(im, format, file);
-                            } catch (IOException ex) {
-                                System.err.println("Error saving image: " + ex.getMessage());
-                            }
+                            saveImageInBackground(expPanel, file.toString(), format);
                     }
                 };
                 exportMenu.add(new JMenuItem(action));
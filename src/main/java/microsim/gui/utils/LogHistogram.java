@@ -0,0 +1,171 @@
+package microsim.gui.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A compact histogram of non-negative long values (typically nanosecond
+ * durations) using logarithmic buckets, in the spirit of HdrHistogram.
+ * Every power of two is split into a fixed number of linear sub-buckets, so
+ * the relative error of a recorded value is bounded (about 12% with the
+ * default 8 sub-buckets) while the whole range of a long fits in a few hundred
+ * counters.
+ * <p>
+ * Recording is lock-free and allocation-free, so it can be called from the
+ * simulation thread while the GUI reads and resets the histogram through
+ * {@link #snapshotAndReset()}.
+ */
+public class LogHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSum = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Record a value. Negative values are recorded as zero.
+     *
+     * @param value The value to be recorded.
+     */
+    public void record(long value) {
+        if (value < 0)
+            value = 0;
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(value);
+
+        long max = maxValue.get();
+        while (value > max && !maxValue.compareAndSet(max, value))
+            max = maxValue.get();
+    }
+
+    /** Discard all recorded values. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        totalCount.set(0);
+        totalSum.set(0);
+        maxValue.set(0);
+    }
+
+    /**
+     * Move the recorded values into a new histogram and reset this one.
+     * Values recorded concurrently end up in either histogram, never lost.
+     *
+     * @return A new histogram holding the values recorded since the last call.
+     */
+    public LogHistogram snapshotAndReset() {
+        LogHistogram snapshot = new LogHistogram();
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.getAndSet(i, 0);
+            if (c != 0) {
+                snapshot.counts.set(i, c);
+                count += c;
+            }
+        }
+        totalCount.addAndGet(-count);
+        snapshot.totalCount.set(count);
+        snapshot.totalSum.set(totalSum.getAndSet(0));
+        snapshot.maxValue.set(maxValue.getAndSet(0));
+        return snapshot;
+    }
+
+    /**
+     * Return the number of recorded values.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Return the largest recorded value.
+     *
+     * @return The exact maximum, or 0 if the histogram is empty.
+     */
+    public long getMax() {
+        return maxValue.get();
+    }
+
+    /**
+     * Return the arithmetic mean of the recorded values.
+     *
+     * @return The exact mean, or 0 if the histogram is empty.
+     */
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0. : (double) totalSum.get() / count;
+    }
+
+    /**
+     * Return the value below which the given percentage of the recorded values
+     * falls.
+     *
+     * @param percentile A percentage in the [0, 100] range.
+     * @return The highest value equivalent (within the bucket resolution) to
+     *         the requested percentile, or 0 if the histogram is empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++)
+            count += counts.get(i);
+        if (count == 0)
+            return 0;
+
+        long target = (long) Math.ceil(Math.min(100., Math.max(0., percentile)) / 100. * count);
+        if (target < 1)
+            target = 1;
+
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target)
+                return Math.min(highestEquivalentValue(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Format a duration with the unit fitting its magnitude, e.g. "12.5 ms".
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The formatted duration.
+     */
+    public static String formatNanos(double nanos) {
+        if (nanos >= 1e9)
+            return String.format("%.2f s", nanos / 1e9);
+        if (nanos >= 1e6)
+            return String.format("%.1f ms", nanos / 1e6);
+        if (nanos >= 1e3)
+            return String.format("%.1f us", nanos / 1e3);
+        return String.format("%.0f ns", nanos);
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long lowestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        int sub = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + sub)) << shift;
+    }
+
+    static long highestEquivalentValue(int index) {
+        long next = index + 1 < BUCKETS ? lowestEquivalentValue(index + 1) : 0;
+        return next <= 0 ? Long.MAX_VALUE : next - 1;
+    }
+}
@@ -0,0 +1,205 @@
+package microsim.gui.utils;
+
+import java.awt.Component;
+import java.awt.Frame;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.swing.JInternalFrame;
+
+import org.jfree.chart.event.ChartProgressEvent;
+import org.jfree.chart.event.ChartProgressListener;
+
+/**
+ * Not of interest for users. The GUI cost of a single plotting window: the
+ * time spent sampling its sources when the window is updated, and the time
+ * spent drawing it. Instances are obtained from {@link RenderCostRegistry}.
+ * <p>
+ * A plotter wraps the reading of its sources between
+ * {@link #shouldUpdate()} and {@link #recordSampling(long)}. Chart drawing is
+ * measured by registering the instance as a <code>ChartProgressListener</code>
+ * of the JFreeChart object; other components call {@link #recordRender(long)}
+ * from their paint method. Drawing done for another purpose, e.g. by a
+ * recorder, is left out with {@link #drawUnmeasured(Runnable)}.
+ * <p>
+ * When auto-throttling is enabled in the registry, {@link #shouldUpdate()}
+ * lowers the update frequency of the window until its recent cost per update
+ * fits the frame budget.
+ */
+public class RenderCost implements ChartProgressListener {
+
+    /** The highest number of update events that can be merged into one. */
+    public static final int MAX_INTERVAL = 100;
+
+    private static final double EWMA_WEIGHT = 0.2;
+
+    // True on a thread drawing windows for another purpose than showing them
+    private static final ThreadLocal<Boolean> unmeasured = new ThreadLocal<Boolean>();
+
+    private final WeakReference<Component> owner;
+
+    private final LogHistogram samplingTimes = new LogHistogram();
+    private final LogHistogram renderTimes = new LogHistogram();
+    private final AtomicLong updates = new AtomicLong();
+    private final AtomicLong skipped = new AtomicLong();
+
+    private volatile double recentSamplingNanos;
+    private volatile double recentRenderNanos;
+    private volatile int interval = 1;
+    private int tick;
+
+    private long drawStart;
+
+    RenderCost(Component owner) {
+        this.owner = new WeakReference<Component>(owner);
+    }
+
+    /**
+     * Decide if the current update event has to be served, counting it.
+     *
+     * @return False if the window is throttled and must skip this update.
+     */
+    public boolean shouldUpdate() {
+        updates.incrementAndGet();
+
+        int wanted = 1;
+        if (RenderCostRegistry.isAutoThrottle()) {
+            double cost = recentSamplingNanos + recentRenderNanos;
+            wanted = (int) Math.ceil(cost / RenderCostRegistry.getFrameBudgetNanos());
+            wanted = Math.max(1, Math.min(MAX_INTERVAL, wanted));
+        }
+        interval = wanted;
+
+        if (++tick >= wanted) {
+            tick = 0;
+            return true;
+        }
+        skipped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Record the time spent reading the sources during an update.
+     *
+     * @param nanos The elapsed time in nanoseconds.
+     */
+    public void recordSampling(long nanos) {
+        samplingTimes.record(nanos);
+        recentSamplingNanos += EWMA_WEIGHT * (nanos - recentSamplingNanos);
+    }
+
+    /**
+     * Record the time spent drawing the window.
+     *
+     * @param nanos The elapsed time in nanoseconds.
+     */
+    public void recordRender(long nanos) {
+        if (unmeasured.get() != null)
+            return;
+        renderTimes.record(nanos);
+        recentRenderNanos += EWMA_WEIGHT * (nanos - recentRenderNanos);
+    }
+
+    /** Measure chart drawing. Called by JFreeChart on the EDT. */
+    public void chartProgress(ChartProgressEvent event) {
+        if (unmeasured.get() != null)
+            return;
+        if (event.getType() == ChartProgressEvent.DRAWING_STARTED)
+            drawStart = System.nanoTime();
+        else if (event.getType() == ChartProgressEvent.DRAWING_FINISHED && drawStart != 0) {
+            recordRender(System.nanoTime() - drawStart);
+            drawStart = 0;
+        }
+    }
+
+    /**
+     * Run some drawing without recording it in the cost of the windows drawn:
+     * their chart progress and {@link #recordRender(long)} calls on this
+     * thread are ignored until the drawing returns.
+     *
+     * @param draw The drawing.
+     */
+    public static void drawUnmeasured(Runnable draw) {
+        Boolean previous = unmeasured.get();
+        unmeasured.set(Boolean.TRUE);
+        try {
+            draw.run();
+        } finally {
+            if (previous == null)
+                unmeasured.remove();
+        }
+    }
+
+    /** Clear the recorded figures. */
+    public void reset() {
+        samplingTimes.reset();
+        renderTimes.reset();
+        updates.set(0);
+        skipped.set(0);
+    }
+
+    /**
+     * Return the title of the monitored window.
+     *
+     * @return The window title, or its class name if it has no title.
+     */
+    public String getName() {
+        Component c = owner.get();
+        if (c == null)
+            return "";
+
+        String title = null;
+        if (c instanceof JInternalFrame)
+            title = ((JInternalFrame) c).getTitle();
+        else if (c instanceof Frame)
+            title = ((Frame) c).getTitle();
+
+        if (title == null || title.length() == 0)
+            title = c.getClass().getSimpleName();
+        return title;
+    }
+
+    /**
+     * Return the monitored window.
+     *
+     * @return The window, or null if it has been garbage collected.
+     */
+    public Component getOwner() {
+        return owner.get();
+    }
+
+    public long getUpdates() {
+        return updates.get();
+    }
+
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    public LogHistogram getSamplingTimes() {
+        return samplingTimes;
+    }
+
+    public LogHistogram getRenderTimes() {
+        return renderTimes;
+    }
+
+    /**
+     * Return the recent cost of an update, i.e. the moving average of the
+     * sampling time plus the moving average of the drawing time.
+     *
+     * @return The cost in nanoseconds.
+     */
+    public double getRecentCostNanos() {
+        return recentSamplingNanos + recentRenderNanos;
+    }
+
+    /**
+     * Return the current update interval.
+     *
+     * @return 1 if every update is served, n if one update every n is served.
+     */
+    public int getInterval() {
+        return interval;
+    }
+}
@@ -0,0 +1,90 @@
+package microsim.gui.utils;
+
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.swing.JInternalFrame;
+
+/**
+ * Not of interest for users. Keeps track of the {@link RenderCost} of every
+ * plotting window and holds the auto-throttling settings. Windows are weakly
+ * referenced, so closed plotters are forgotten once garbage collected.
+ */
+public class RenderCostRegistry {
+
+    private static final Map<Component, RenderCost> costs = new WeakHashMap<Component, RenderCost>();
+
+    private static volatile boolean autoThrottle = false;
+
+    private static volatile double frameBudgetNanos = 20e6;
+
+    /**
+     * Return the cost tracker of the given window, creating it if needed.
+     *
+     * @param owner The plotting window.
+     * @return Its cost tracker.
+     */
+    public static synchronized RenderCost register(Component owner) {
+        RenderCost cost = costs.get(owner);
+        if (cost == null) {
+            cost = new RenderCost(owner);
+            costs.put(owner, cost);
+        }
+        return cost;
+    }
+
+    /**
+     * Return the cost trackers of the windows that are still open.
+     *
+     * @return A new list of cost trackers.
+     */
+    public static synchronized List<RenderCost> getCosts() {
+        List<RenderCost> list = new ArrayList<RenderCost>();
+        for (Map.Entry<Component, RenderCost> entry : costs.entrySet()) {
+            Component c = entry.getKey();
+            if (c instanceof JInternalFrame && ((JInternalFrame) c).isClosed())
+                continue;
+            list.add(entry.getValue());
+        }
+        return list;
+    }
+
+    /** Clear the figures recorded by every window. */
+    public static synchronized void resetAll() {
+        for (RenderCost cost : costs.values())
+            cost.reset();
+    }
+
+    public static boolean isAutoThrottle() {
+        return autoThrottle;
+    }
+
+    /**
+     * Enable or disable the auto-throttling of expensive windows.
+     *
+     * @param enabled If true, windows whose cost per update exceeds the frame
+     *                budget are updated less frequently.
+     */
+    public static void setAutoThrottle(boolean enabled) {
+        autoThrottle = enabled;
+    }
+
+    public static double getFrameBudgetNanos() {
+        return frameBudgetNanos;
+    }
+
+    /**
+     * Set the time a single window may spend on an update before being
+     * throttled.
+     *
+     * @param millis The budget in milliseconds. Must be positive.
+     */
+    public static void setFrameBudgetMillis(double millis) {
+        if (!(millis > 0) || Double.isInfinite(millis))
+            throw new IllegalArgumentException("The frame budget must be a positive number.");
+        frameBudgetNanos = millis * 1e6;
+    }
+}